@@ -0,0 +1,44 @@
+package soot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.Body;
+import soot.Scene;
+import soot.SootMethod;
+
+/**
+ * Measures the conversion of bytecode to Jimple. With {@code jb} set to
+ * false only the ASM frontend itself is timed; otherwise the jb pack that
+ * cleans up and types the body is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AsmMethodSourceBenchmark {
+    @Param({ "false", "true" })
+    public boolean jb;
+
+    private SootMethod method;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, jb ? null : "enabled:false");
+        method = Scene.v().getMethod(BenchmarkScene.BIG_METHOD);
+    }
+
+    @Benchmark
+    public Body getBody() {
+        // The method source keeps the ASM instructions, so it can be asked
+        // for a new body any number of times
+        return method.getSource().getBody(method, "jb");
+    }
+}
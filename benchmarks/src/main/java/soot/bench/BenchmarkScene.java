@@ -0,0 +1,84 @@
+package soot.bench;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import soot.Body;
+import soot.G;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.bench.fixture.Circle;
+import soot.bench.fixture.Group;
+import soot.bench.fixture.Interpreter;
+import soot.bench.fixture.Main;
+import soot.bench.fixture.Rect;
+import soot.bench.fixture.Shape;
+import soot.bench.fixture.ShapeVisitor;
+import soot.options.Options;
+
+/**
+ * Sets up a fresh Soot scene over the fixture program in
+ * {@code soot.bench.fixture}, which is loaded from the benchmark jar itself.
+ * The JDK classes are taken from the running JVM's class path and are not
+ * given bodies, so only the fixture code is analyzed.
+ */
+public class BenchmarkScene {
+    public static final Class<?>[] FIXTURE_CLASSES = { Main.class,
+            Interpreter.class, Shape.class, ShapeVisitor.class, Circle.class,
+            Rect.class, Group.class };
+
+    /** The method with the largest body in the fixture. */
+    public static final String BIG_METHOD = "<soot.bench.fixture.Interpreter: int run(int[])>";
+
+    private BenchmarkScene() {
+    }
+
+    /**
+     * Resets Soot and loads the fixture classes.
+     *
+     * @param wholeProgram
+     *            whether to enable whole-program mode, as needed by SPARK
+     * @param jbOptions
+     *            extra options for the jb phase, e.g. {@code "enabled:false"},
+     *            or null
+     */
+    public static void setup(boolean wholeProgram, String jbOptions) {
+        G.reset();
+        Options opts = Options.v();
+        opts.set_prepend_classpath(true);
+        opts.set_soot_classpath(fixturePath());
+        opts.set_src_prec(Options.src_prec_class);
+        opts.set_allow_phantom_refs(true);
+        opts.set_whole_program(wholeProgram);
+        opts.set_output_format(Options.output_format_none);
+        opts.set_exclude(Arrays.asList("java.", "javax.", "sun.", "jdk."));
+        opts.set_no_bodies_for_excluded(true);
+        opts.set_main_class(Main.class.getName());
+        if (jbOptions != null)
+            PhaseOptions.v().setPhaseOption("jb", jbOptions);
+
+        for (Class<?> c : FIXTURE_CLASSES)
+            Scene.v().addBasicClass(c.getName(), SootClass.BODIES);
+        Scene.v().loadNecessaryClasses();
+        for (Class<?> c : FIXTURE_CLASSES)
+            Scene.v().getSootClass(c.getName()).setApplicationClass();
+    }
+
+    /** Returns the body of the given fixture method, building it if needed. */
+    public static Body body(String signature) {
+        SootMethod m = Scene.v().getMethod(signature);
+        return m.retrieveActiveBody();
+    }
+
+    private static String fixturePath() {
+        try {
+            return new File(Main.class.getProtectionDomain().getCodeSource()
+                    .getLocation().toURI()).getPath();
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package soot.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.FastHierarchy;
+import soot.Scene;
+import soot.SootClass;
+import soot.Type;
+
+/**
+ * Measures subtype queries over all pairs of the class types in the scene,
+ * which includes the JDK classes the fixture refers to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FastHierarchyBenchmark {
+    private static final int MAX_TYPES = 256;
+
+    private FastHierarchy hierarchy;
+    private Type[] types;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, null);
+        hierarchy = Scene.v().getOrMakeFastHierarchy();
+        List<Type> ret = new ArrayList<Type>();
+        for (SootClass sc : Scene.v().getClasses()) {
+            if (sc.isPhantom())
+                continue;
+            ret.add(sc.getType());
+            if (ret.size() == MAX_TYPES)
+                break;
+        }
+        types = ret.toArray(new Type[ret.size()]);
+    }
+
+    @Benchmark
+    public int canStoreType() {
+        int ret = 0;
+        for (Type child : types)
+            for (Type parent : types)
+                if (hierarchy.canStoreType(child, parent))
+                    ret++;
+        return ret;
+    }
+}
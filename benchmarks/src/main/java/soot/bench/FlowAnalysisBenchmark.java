@@ -0,0 +1,84 @@
+package soot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.ArraySparseSet;
+import soot.toolkits.scalar.FlowSet;
+import soot.toolkits.scalar.ForwardFlowAnalysis;
+import soot.toolkits.scalar.SimpleLiveLocals;
+
+/**
+ * Measures the generic worklist solvers: a forward analysis computing the
+ * locals that are definitely assigned, and the backward live locals
+ * analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlowAnalysisBenchmark {
+    private UnitGraph graph;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, null);
+        graph = new ExceptionalUnitGraph(
+                BenchmarkScene.body(BenchmarkScene.BIG_METHOD));
+    }
+
+    @Benchmark
+    public Object forward() {
+        return new AssignedLocals(graph);
+    }
+
+    @Benchmark
+    public Object backward() {
+        return new SimpleLiveLocals(graph);
+    }
+
+    static class AssignedLocals extends
+            ForwardFlowAnalysis<Unit, FlowSet<Local>> {
+        AssignedLocals(UnitGraph graph) {
+            super(graph);
+            doAnalysis();
+        }
+
+        @Override
+        protected void flowThrough(FlowSet<Local> in, Unit d,
+                FlowSet<Local> out) {
+            in.copy(out);
+            for (ValueBox box : d.getDefBoxes()) {
+                if (box.getValue() instanceof Local)
+                    out.add((Local) box.getValue());
+            }
+        }
+
+        @Override
+        protected FlowSet<Local> newInitialFlow() {
+            return new ArraySparseSet<Local>();
+        }
+
+        @Override
+        protected void merge(FlowSet<Local> in1, FlowSet<Local> in2,
+                FlowSet<Local> out) {
+            in1.intersection(in2, out);
+        }
+
+        @Override
+        protected void copy(FlowSet<Local> source, FlowSet<Local> dest) {
+            source.copy(dest);
+        }
+    }
+}
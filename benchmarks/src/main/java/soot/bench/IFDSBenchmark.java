@@ -0,0 +1,75 @@
+package soot.bench;
+
+import heros.InterproceduralCFG;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.callgraph.CHATransformer;
+import soot.jimple.toolkits.ide.DefaultJimpleIFDSTabulationProblem;
+import soot.jimple.toolkits.ide.JimpleIFDSSolver;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSPossibleTypes;
+import soot.jimple.toolkits.ide.exampleproblems.IFDSReachingDefinitions;
+import soot.jimple.toolkits.ide.icfg.ConcurrentJimpleBasedICFG;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+
+/**
+ * Solves the bundled IFDS example problems over a CHA call graph of the
+ * fixture program, with the lazily cached and the precomputed concurrent
+ * ICFG and with different numbers of solver threads. The ICFG is built
+ * inside the measured method, so its construction cost is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IFDSBenchmark {
+    @Param({ "reachingDefinitions", "possibleTypes" })
+    public String problem;
+
+    @Param({ "lazy", "concurrent" })
+    public String icfg;
+
+    @Param({ "1", "4", "8" })
+    public int threads;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkScene.setup(true, null);
+        CHATransformer.v().transform();
+        for (Iterator<MethodOrMethodContext> it = Scene.v()
+                .getReachableMethods().listener(); it.hasNext();) {
+            SootMethod m = it.next().method();
+            if (m.isConcrete())
+                m.retrieveActiveBody();
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Object solve() {
+        InterproceduralCFG<Unit, SootMethod> cfg = icfg.equals("concurrent")
+                ? new ConcurrentJimpleBasedICFG()
+                : new JimpleBasedInterproceduralCFG();
+        DefaultJimpleIFDSTabulationProblem p = problem
+                .equals("possibleTypes") ? new IFDSPossibleTypes(cfg)
+                : new IFDSReachingDefinitions(cfg);
+        p.setNumThreads(threads);
+        JimpleIFDSSolver solver = new JimpleIFDSSolver(p);
+        solver.solve();
+        return solver;
+    }
+}
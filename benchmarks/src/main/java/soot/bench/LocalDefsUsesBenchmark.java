@@ -0,0 +1,43 @@
+package soot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+import soot.toolkits.scalar.SimpleLocalDefs;
+import soot.toolkits.scalar.SimpleLocalUses;
+
+/** Measures reaching definitions and the uses derived from them. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalDefsUsesBenchmark {
+    private UnitGraph graph;
+    private SimpleLocalDefs defs;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, null);
+        graph = new ExceptionalUnitGraph(
+                BenchmarkScene.body(BenchmarkScene.BIG_METHOD));
+        defs = new SimpleLocalDefs(graph);
+    }
+
+    @Benchmark
+    public Object localDefs() {
+        return new SimpleLocalDefs(graph);
+    }
+
+    @Benchmark
+    public Object localUses() {
+        return new SimpleLocalUses(graph, defs);
+    }
+}
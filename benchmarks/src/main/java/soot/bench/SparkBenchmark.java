@@ -0,0 +1,53 @@
+package soot.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.jimple.spark.SparkTransformer;
+
+/**
+ * Measures a complete SPARK run, including PAG construction and the
+ * on-the-fly call graph, on the fixture program. The scene is rebuilt
+ * before every invocation since SPARK stores its results in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SparkBenchmark {
+    @Param({ "worklist", "parallel" })
+    public String propagator;
+
+    @Param({ "hybrid", "roaring" })
+    public String setImpl;
+
+    private Map<String, String> options;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        BenchmarkScene.setup(true, null);
+        options = new HashMap<String, String>(PhaseOptions.v()
+                .getPhaseOptions("cg.spark"));
+        options.put("enabled", "true");
+        options.put("propagator", propagator);
+        options.put("set-impl", setImpl);
+    }
+
+    @Benchmark
+    public Object propagate() {
+        SparkTransformer.v().transform("cg.spark", options);
+        return Scene.v().getPointsToAnalysis();
+    }
+}
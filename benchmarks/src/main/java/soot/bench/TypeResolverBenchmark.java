@@ -0,0 +1,49 @@
+package soot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.PhaseOptions;
+import soot.jimple.JimpleBody;
+import soot.jimple.toolkits.typing.fast.TypeResolver;
+
+/**
+ * Measures local type inference. The body is built with the type assigner
+ * and the type-based local packers disabled, so its locals are untyped, and
+ * every invocation works on a fresh copy of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypeResolverBenchmark {
+    private JimpleBody untyped;
+    private JimpleBody body;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, null);
+        PhaseOptions.v().setPhaseOption("jb.tr", "enabled:false");
+        PhaseOptions.v().setPhaseOption("jb.ulp", "enabled:false");
+        PhaseOptions.v().setPhaseOption("jb.lp", "enabled:false");
+        untyped = (JimpleBody) BenchmarkScene.body(BenchmarkScene.BIG_METHOD);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyBody() {
+        body = (JimpleBody) untyped.clone();
+    }
+
+    @Benchmark
+    public JimpleBody inferTypes() {
+        new TypeResolver(body).inferTypes();
+        return body;
+    }
+}
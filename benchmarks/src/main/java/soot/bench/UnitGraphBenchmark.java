@@ -0,0 +1,39 @@
+package soot.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import soot.Body;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+/** Measures the construction of control-flow graphs. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnitGraphBenchmark {
+    private Body body;
+
+    @Setup
+    public void setup() {
+        BenchmarkScene.setup(false, null);
+        body = BenchmarkScene.body(BenchmarkScene.BIG_METHOD);
+    }
+
+    @Benchmark
+    public Object exceptionalUnitGraph() {
+        return new ExceptionalUnitGraph(body);
+    }
+
+    @Benchmark
+    public Object briefUnitGraph() {
+        return new BriefUnitGraph(body);
+    }
+}
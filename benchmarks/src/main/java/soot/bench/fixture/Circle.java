@@ -0,0 +1,18 @@
+package soot.bench.fixture;
+
+public class Circle extends Shape {
+    private final double radius;
+
+    public Circle(String name, double radius) {
+        super(name);
+        this.radius = radius;
+    }
+
+    public double area() {
+        return Math.PI * radius * radius;
+    }
+
+    public Shape scale(double factor) {
+        return new Circle(getName(), radius * factor);
+    }
+}
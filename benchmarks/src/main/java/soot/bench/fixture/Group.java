@@ -0,0 +1,42 @@
+package soot.bench.fixture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A shape made of other shapes. */
+public class Group extends Shape {
+    private final List<Shape> children = new ArrayList<Shape>();
+
+    public Group(String name) {
+        super(name);
+    }
+
+    public Group add(Shape s) {
+        children.add(s);
+        return this;
+    }
+
+    public List<Shape> getChildren() {
+        return children;
+    }
+
+    public double area() {
+        double ret = 0;
+        for (Shape s : children)
+            ret += s.area();
+        return ret;
+    }
+
+    public Shape scale(double factor) {
+        Group ret = new Group(getName());
+        for (Shape s : children)
+            ret.add(s.scale(factor));
+        return ret;
+    }
+
+    public void accept(ShapeVisitor v) {
+        super.accept(v);
+        for (Shape s : children)
+            s.accept(v);
+    }
+}
@@ -0,0 +1,194 @@
+package soot.bench.fixture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small stack machine. {@link #run(int[])} is deliberately one large
+ * method with many locals, branches, loops and a handler, so that it gives
+ * the intraprocedural benchmarks a body of realistic size.
+ */
+public class Interpreter {
+    public static final int PUSH = 0, POP = 1, ADD = 2, SUB = 3, MUL = 4,
+            DIV = 5, REM = 6, NEG = 7, DUP = 8, SWAP = 9, JMP = 10, JZ = 11,
+            JNZ = 12, LOAD = 13, STORE = 14, CALL = 15, RET = 16, PRINT = 17,
+            NEWSHAPE = 18, AREA = 19, SCALE = 20, GROUP = 21, AND = 22,
+            OR = 23, XOR = 24, SHL = 25, SHR = 26, LT = 27, EQ = 28, HALT = 29;
+
+    private final Map<Integer, Shape> shapes = new HashMap<Integer, Shape>();
+    private final List<String> output = new ArrayList<String>();
+
+    public List<String> getOutput() {
+        return output;
+    }
+
+    public int run(int[] code) {
+        int[] stack = new int[256];
+        int[] memory = new int[64];
+        int[] frames = new int[32];
+        int sp = 0, fp = 0, pc = 0, steps = 0;
+        int a, b, c;
+        Shape current = null;
+        Group group = null;
+        StringBuilder line = new StringBuilder();
+        while (pc < code.length) {
+            int op = code[pc++];
+            steps++;
+            try {
+                switch (op) {
+                case PUSH:
+                    stack[sp++] = code[pc++];
+                    break;
+                case POP:
+                    sp--;
+                    break;
+                case ADD:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a + b;
+                    break;
+                case SUB:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a - b;
+                    break;
+                case MUL:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a * b;
+                    break;
+                case DIV:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a / b;
+                    break;
+                case REM:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a % b;
+                    break;
+                case NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case DUP:
+                    a = stack[sp - 1];
+                    stack[sp++] = a;
+                    break;
+                case SWAP:
+                    a = stack[sp - 1];
+                    stack[sp - 1] = stack[sp - 2];
+                    stack[sp - 2] = a;
+                    break;
+                case JMP:
+                    pc = code[pc];
+                    break;
+                case JZ:
+                    c = code[pc++];
+                    if (stack[--sp] == 0)
+                        pc = c;
+                    break;
+                case JNZ:
+                    c = code[pc++];
+                    if (stack[--sp] != 0)
+                        pc = c;
+                    break;
+                case LOAD:
+                    stack[sp++] = memory[code[pc++]];
+                    break;
+                case STORE:
+                    memory[code[pc++]] = stack[--sp];
+                    break;
+                case CALL:
+                    frames[fp++] = pc + 1;
+                    pc = code[pc];
+                    break;
+                case RET:
+                    if (fp == 0)
+                        return stack[sp - 1];
+                    pc = frames[--fp];
+                    break;
+                case PRINT:
+                    line.setLength(0);
+                    for (int i = 0; i < sp; i++) {
+                        if (i > 0)
+                            line.append(' ');
+                        line.append(stack[i]);
+                    }
+                    output.add(line.toString());
+                    break;
+                case NEWSHAPE:
+                    a = stack[--sp];
+                    b = stack[--sp];
+                    if (b == 0)
+                        current = new Circle("c" + steps, a);
+                    else
+                        current = new Rect("r" + steps, a, b);
+                    shapes.put(steps, current);
+                    if (group != null)
+                        group.add(current);
+                    break;
+                case AREA:
+                    stack[sp++] = current == null ? 0 : (int) current.area();
+                    break;
+                case SCALE:
+                    if (current != null)
+                        current = current.scale(stack[--sp]);
+                    break;
+                case GROUP:
+                    if (group == null) {
+                        group = new Group("g" + steps);
+                    } else {
+                        current = group;
+                        group = null;
+                    }
+                    break;
+                case AND:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a & b;
+                    break;
+                case OR:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a | b;
+                    break;
+                case XOR:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a ^ b;
+                    break;
+                case SHL:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a << b;
+                    break;
+                case SHR:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a >> b;
+                    break;
+                case LT:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a < b ? 1 : 0;
+                    break;
+                case EQ:
+                    b = stack[--sp];
+                    a = stack[--sp];
+                    stack[sp++] = a == b ? 1 : 0;
+                    break;
+                case HALT:
+                    return sp > 0 ? stack[sp - 1] : 0;
+                default:
+                    throw new IllegalStateException("Bad opcode " + op + " at " + (pc - 1));
+                }
+            } catch (ArithmeticException e) {
+                output.add("arithmetic error at " + (pc - 1));
+                sp = 0;
+            }
+        }
+        return sp > 0 ? stack[sp - 1] : 0;
+    }
+}
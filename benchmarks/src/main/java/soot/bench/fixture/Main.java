@@ -0,0 +1,31 @@
+package soot.bench.fixture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Entry point of the program that the benchmarks analyze. */
+public class Main {
+    public static void main(String[] args) {
+        Group drawing = new Group("drawing");
+        List<Shape> shapes = new ArrayList<Shape>();
+        for (int i = 0; i < 10; i++) {
+            Shape s = i % 2 == 0 ? new Circle("c" + i, i) : new Rect("r" + i, i, i + 1);
+            shapes.add(s);
+            drawing.add(s.scale(2));
+        }
+        final double[] total = new double[1];
+        drawing.accept(new ShapeVisitor() {
+            public void visit(Shape s) {
+                total[0] += s.area();
+            }
+        });
+
+        Interpreter interpreter = new Interpreter();
+        int[] code = { Interpreter.PUSH, 3, Interpreter.PUSH, 4, Interpreter.NEWSHAPE,
+                Interpreter.AREA, Interpreter.PRINT, Interpreter.HALT };
+        int result = interpreter.run(code);
+        for (String line : interpreter.getOutput())
+            System.out.println(line);
+        System.out.println(result + " " + total[0] + " " + shapes.size());
+    }
+}
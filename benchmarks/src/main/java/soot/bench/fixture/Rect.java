@@ -0,0 +1,20 @@
+package soot.bench.fixture;
+
+public class Rect extends Shape {
+    private final double width;
+    private final double height;
+
+    public Rect(String name, double width, double height) {
+        super(name);
+        this.width = width;
+        this.height = height;
+    }
+
+    public double area() {
+        return width * height;
+    }
+
+    public Shape scale(double factor) {
+        return new Rect(getName(), width * factor, height * factor);
+    }
+}
@@ -0,0 +1,22 @@
+package soot.bench.fixture;
+
+/** Base class of the shapes built by the fixture program. */
+public abstract class Shape {
+    private final String name;
+
+    protected Shape(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public abstract double area();
+
+    public abstract Shape scale(double factor);
+
+    public void accept(ShapeVisitor v) {
+        v.visit(this);
+    }
+}
@@ -0,0 +1,6 @@
+package soot.bench.fixture;
+
+/** Visits the shapes of a drawing. */
+public interface ShapeVisitor {
+    void visit(Shape s);
+}
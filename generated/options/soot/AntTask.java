@@ -184,6 +184,10 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-ignore-resolving-levels");
         }
   
+        public void setlazy_resolving(boolean arg) {
+            if(arg) addArg("-lazy-resolving");
+        }
+  
         public void setsoot_classpath(String arg) {
             addArg("-soot-classpath");
             addArg(arg);
@@ -227,6 +231,21 @@ public class AntTask extends MatchingTask {
             addArg(arg);
         }
   
+        public void setbody_cache_dir(String arg) {
+            addArg("-body-cache-dir");
+            addArg(arg);
+        }
+  
+        public void setload_snapshot(String arg) {
+            addArg("-load-snapshot");
+            addArg(arg);
+        }
+  
+        public void setsave_snapshot(String arg) {
+            addArg("-save-snapshot");
+            addArg(arg);
+        }
+  
         public void setast_metrics(boolean arg) {
             if(arg) addArg("-ast-metrics");
         }
@@ -284,6 +303,16 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-drop-bodies-after-load");
         }
   
+        public void setlibrary_summaries(String arg) {
+            addArg("-library-summaries");
+            addArg(arg);
+        }
+  
+        public void setclass_path_index(String arg) {
+            addArg("-class-path-index");
+            addArg(arg);
+        }
+  
         public void setoutput_dir(String arg) {
             addArg("-output-dir");
             addArg(arg);
@@ -601,6 +630,16 @@ public class AntTask extends MatchingTask {
             if(arg) addArg("-subtract-gc");
         }
   
+        public void setphase_metrics(String arg) {
+            addArg("-phase-metrics");
+            addArg(arg);
+        }
+  
+        public void setphase_trace(String arg) {
+            addArg("-phase-trace");
+            addArg(arg);
+        }
+  
         public void setno_writeout_body_releasing(boolean arg) {
             if(arg) addArg("-no-writeout-body-releasing");
         }
@@ -1605,6 +1644,18 @@ public class AntTask extends MatchingTask {
             addArg("geom-runs:"+arg);
           }
       
+          public void setgeom_threads(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("geom-threads:"+arg);
+          }
+      
+          public void setgeom_mem_budget(String arg) {
+            addArg("-p");
+            addArg("cg.spark");
+            addArg("geom-mem-budget:"+arg);
+          }
+      
         }
     
         public Object createp_cg_paddle() {
@@ -2310,6 +2361,12 @@ public class AntTask extends MatchingTask {
             addArg("prune-cfg:"+(arg?"true":"false"));
           }
       
+          public void setsparse(boolean arg) {
+            addArg("-p");
+            addArg("sop.cpf");
+            addArg("sparse:"+(arg?"true":"false"));
+          }
+      
         }
     
         public Object createp_jtp() {
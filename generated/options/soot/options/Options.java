@@ -222,6 +222,11 @@ public class Options extends OptionsBase {
             )
                 ignore_resolving_levels = true;
     	
+            else if( false 
+            || option.equals( "lazy-resolving" )
+            )
+                lazy_resolving = true;
+    	
             else if( false
             || option.equals( "cp" )
             || option.equals( "soot-class-path" )
@@ -331,6 +336,57 @@ public class Options extends OptionsBase {
                 }
             }
   
+            else if( false
+            || option.equals( "body-cache-dir" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( body_cache_dir.length() == 0 )
+                    body_cache_dir = value;
+                else {
+                    G.v().out.println( "Duplicate values "+body_cache_dir+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
+            else if( false
+            || option.equals( "load-snapshot" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( load_snapshot.length() == 0 )
+                    load_snapshot = value;
+                else {
+                    G.v().out.println( "Duplicate values "+load_snapshot+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
+            else if( false
+            || option.equals( "save-snapshot" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( save_snapshot.length() == 0 )
+                    save_snapshot = value;
+                else {
+                    G.v().out.println( "Duplicate values "+save_snapshot+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false 
             || option.equals( "ast-metrics" )
             )
@@ -474,6 +530,40 @@ public class Options extends OptionsBase {
             )
                 drop_bodies_after_load = false;
     	
+            else if( false
+            || option.equals( "library-summaries" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( library_summaries.length() == 0 )
+                    library_summaries = value;
+                else {
+                    G.v().out.println( "Duplicate values "+library_summaries+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
+            else if( false
+            || option.equals( "class-path-index" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( class_path_index.length() == 0 )
+                    class_path_index = value;
+                else {
+                    G.v().out.println( "Duplicate values "+class_path_index+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false
             || option.equals( "d" )
             || option.equals( "output-dir" )
@@ -1362,6 +1452,40 @@ public class Options extends OptionsBase {
             )
                 subtract_gc = true;
     	
+            else if( false
+            || option.equals( "phase-metrics" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( phase_metrics.length() == 0 )
+                    phase_metrics = value;
+                else {
+                    G.v().out.println( "Duplicate values "+phase_metrics+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
+            else if( false
+            || option.equals( "phase-trace" )
+            ) {
+                if( !hasMoreOptions() ) {
+                    G.v().out.println( "No value given for option -"+option );
+                    return false;
+                }
+                String value = nextOption();
+    
+                if( phase_trace.length() == 0 )
+                    phase_trace = value;
+                else {
+                    G.v().out.println( "Duplicate values "+phase_trace+" and "+value+" for option -"+option );
+                    return false;
+                }
+            }
+  
             else if( false 
             || option.equals( "no-writeout-body-releasing" )
             )
@@ -1463,6 +1587,10 @@ public class Options extends OptionsBase {
     private boolean ignore_resolving_levels = false;
     public void set_ignore_resolving_levels( boolean setting ) { ignore_resolving_levels = setting; }
   
+    public boolean lazy_resolving() { return lazy_resolving; }
+    private boolean lazy_resolving = false;
+    public void set_lazy_resolving( boolean setting ) { lazy_resolving = setting; }
+  
     public String soot_classpath() { return soot_classpath; }
     public void set_soot_classpath( String setting ) { soot_classpath = setting; }
     private String soot_classpath = "";
@@ -1499,6 +1627,15 @@ public class Options extends OptionsBase {
     public int android_api_version() { return android_api_version; }
     public void set_android_api_version( int setting ) { android_api_version = setting; }
     private int android_api_version = -1;
+    public String body_cache_dir() { return body_cache_dir; }
+    public void set_body_cache_dir( String setting ) { body_cache_dir = setting; }
+    private String body_cache_dir = "";
+    public String load_snapshot() { return load_snapshot; }
+    public void set_load_snapshot( String setting ) { load_snapshot = setting; }
+    private String load_snapshot = "";
+    public String save_snapshot() { return save_snapshot; }
+    public void set_save_snapshot( String setting ) { save_snapshot = setting; }
+    private String save_snapshot = "";
     public boolean ast_metrics() { return ast_metrics; }
     private boolean ast_metrics = false;
     public void set_ast_metrics( boolean setting ) { ast_metrics = setting; }
@@ -1540,6 +1677,12 @@ public class Options extends OptionsBase {
     private boolean drop_bodies_after_load = true;
     public void set_drop_bodies_after_load( boolean setting ) { drop_bodies_after_load = setting; }
   
+    public String library_summaries() { return library_summaries; }
+    public void set_library_summaries( String setting ) { library_summaries = setting; }
+    private String library_summaries = "";
+    public String class_path_index() { return class_path_index; }
+    public void set_class_path_index( String setting ) { class_path_index = setting; }
+    private String class_path_index = "";
     public String output_dir() { return output_dir; }
     public void set_output_dir( String setting ) { output_dir = setting; }
     private String output_dir = "";
@@ -1708,6 +1851,12 @@ public class Options extends OptionsBase {
     private boolean subtract_gc = false;
     public void set_subtract_gc( boolean setting ) { subtract_gc = setting; }
   
+    public String phase_metrics() { return phase_metrics; }
+    public void set_phase_metrics( String setting ) { phase_metrics = setting; }
+    private String phase_metrics = "";
+    public String phase_trace() { return phase_trace; }
+    public void set_phase_trace( String setting ) { phase_trace = setting; }
+    private String phase_trace = "";
     public boolean no_writeout_body_releasing() { return no_writeout_body_releasing; }
     private boolean no_writeout_body_releasing = false;
     public void set_no_writeout_body_releasing( boolean setting ) { no_writeout_body_releasing = setting; }
@@ -1735,6 +1884,7 @@ public class Options extends OptionsBase {
 +padOpt(" -debug", "Print various Soot debugging info" )
 +padOpt(" -debug-resolver", "Print debugging info from SootResolver" )
 +padOpt(" -ignore-resolving-levels", "Ignore mismatching resolving levels" )
++padOpt(" -lazy-resolving", "Resolve classes when they are first used" )
 +"\nInput Options:\n"
       
 +padOpt(" -cp PATH -soot-class-path PATH -soot-classpath PATH", "Use PATH as the classpath for finding classes." )
@@ -1745,6 +1895,9 @@ public class Options extends OptionsBase {
 +padOpt(" -oaat", "From the process-dir, processes one class at a time." )
 +padOpt(" -android-jars PATH", "Use PATH as the path for finding the android.jar file" )
 +padOpt(" -force-android-jar PATH", "Force Soot to use PATH as the path for the android.jar file." )
++padOpt(" -body-cache-dir DIR", "Cache Jimple bodies converted from bytecode in DIR" )
++padOpt(" -load-snapshot FILE", "Restore the classes saved in snapshot FILE" )
++padOpt(" -save-snapshot FILE", "Save the loaded classes to snapshot FILE" )
 +padOpt(" -ast-metrics", "Compute AST Metrics if performing java to jimple" )
 +padOpt(" -src-prec FORMAT", "Sets source precedence to FORMAT files" )
 +padVal(" c class (default)", "Favour class files as Soot source" )
@@ -1761,6 +1914,8 @@ public class Options extends OptionsBase {
 +padOpt(" -polyglot", "Use Java 1.4 Polyglot frontend instead of JastAdd" )
 +padOpt(" -permissive-resolving", "Use alternative sources when classes cannot be found using the normal resolving strategy" )
 +padOpt(" -drop-bodies-after-load", "Drop the method source after it has served its purpose of loading the method body" )
++padOpt(" -library-summaries FILE", "Use library method summaries from file" )
++padOpt(" -class-path-index FILE", "Cache the index of class path archives in file" )
 +"\nOutput Options:\n"
       
 +padOpt(" -d DIR -output-dir DIR", "Store output files in DIR" )
@@ -1852,6 +2007,8 @@ public class Options extends OptionsBase {
       
 +padOpt(" -time", "Report time required for transformations" )
 +padOpt(" -subtract-gc", "Subtract gc from time" )
++padOpt(" -phase-metrics FILE", "Write metrics of all phases as JSON to file" )
++padOpt(" -phase-trace FILE", "Write a trace of all phases to file" )
 +padOpt(" -no-writeout-body-releasing", "Disables the release of method bodies after writeout. This flag is used internally." );
     }
 
@@ -2249,6 +2406,8 @@ public class Options extends OptionsBase {
                 
                 +padVal( "none", "Disable propagation" )
                 
+                +padVal( "parallel", "Multi-threaded worklist-based algorithm" )
+                
                 +padOpt( "set-impl", "Select points-to set implementation" )
                 +padVal( "hash", "Use Java HashSet" )
                 
@@ -2264,6 +2423,8 @@ public class Options extends OptionsBase {
                 
                 +padVal( "double (default)", "Double set representation for incremental propagation" )
                 
+                +padVal( "roaring", "Compressed bitmap split into 16-bit chunks" )
+                
                 +padOpt( "double-set-old", "Select implementation of points-to set for old part of double set" )
                 +padVal( "hash", "Use Java HashSet" )
                 
@@ -2277,6 +2438,8 @@ public class Options extends OptionsBase {
                 
                 +padVal( "sharedlist", "Shared list representation" )
                 
+                +padVal( "roaring", "Compressed bitmap split into 16-bit chunks" )
+                
                 +padOpt( "double-set-new", "Select implementation of points-to set for new part of double set" )
                 +padVal( "hash", "Use Java HashSet" )
                 
@@ -2290,6 +2453,8 @@ public class Options extends OptionsBase {
                 
                 +padVal( "sharedlist", "Shared list representation" )
                 
+                +padVal( "roaring", "Compressed bitmap split into 16-bit chunks" )
+                
                 +padOpt( "dump-html (false)", "Dump pointer assignment graph to HTML for debugging" )
                 +padOpt( "dump-pag (false)", "Dump pointer assignment graph for other solvers" )
                 +padOpt( "dump-solution (false)", "Dump final solution for comparison with other solvers" )
@@ -2323,7 +2488,9 @@ public class Options extends OptionsBase {
                 +padOpt( "geom-frac-base (40)", "Fractional parameter for precision/performance trade-off" )
                 +padOpt( "geom-blocking (true)", "Enable blocking strategy for recursive calls" )
                 +padOpt( "geom-runs (1)", "Iterations of analysis" )
-                +padOpt( "geom-app-only (true)", "Processing pointers that impact pointers in application code only" );
+                +padOpt( "geom-app-only (true)", "Processing pointers that impact pointers in application code only" )
+                +padOpt( "geom-threads (1)", "Number of threads solving independent regions" )
+                +padOpt( "geom-mem-budget (0)", "Heap size in MB above which solved regions are trimmed" );
     
         if( phaseName.equals( "cg.paddle" ) )
             return "Phase "+phaseName+":\n"+
@@ -2632,7 +2799,8 @@ public class Options extends OptionsBase {
                 "\nA powerful constant propagator and folder based \non an algorithm sketched by Cytron et al that \ntakes conditional control flow into account. This \noptimization demonstrates some of the benefits of \nSSA -- particularly the fact that Phi nodes \nrepresent natural merge points in the control \nflow. "
                 +"\n\nRecognized options (with default values):\n"
                 +padOpt( "enabled (true)", "" )
-                +padOpt( "prune-cfg (true)", "Take advantage of CFG optimization             opportunities." );
+                +padOpt( "prune-cfg (true)", "Take advantage of CFG optimization             opportunities." )
+                +padOpt( "sparse (false)", "Use a sparse, branch-insensitive analysis." );
     
         if( phaseName.equals( "jtp" ) )
             return "Phase "+phaseName+":\n"+
@@ -3231,7 +3399,9 @@ public class Options extends OptionsBase {
                 +"geom-frac-base "
                 +"geom-blocking "
                 +"geom-runs "
-                +"geom-app-only ";
+                +"geom-app-only "
+                +"geom-threads "
+                +"geom-mem-budget ";
     
         if( phaseName.equals( "cg.paddle" ) )
             return ""
@@ -3380,7 +3550,8 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "sop.cpf" ) )
             return ""
                 +"enabled "
-                +"prune-cfg ";
+                +"prune-cfg "
+                +"sparse ";
     
         if( phaseName.equals( "jtp" ) )
             return ""
@@ -3860,7 +4031,9 @@ public class Options extends OptionsBase {
               +"geom-frac-base:40 "
               +"geom-blocking:true "
               +"geom-runs:1 "
-              +"geom-app-only:true ";
+              +"geom-app-only:true "
+              +"geom-threads:1 "
+              +"geom-mem-budget:0 ";
     
         if( phaseName.equals( "cg.paddle" ) )
             return ""
@@ -4007,7 +4180,8 @@ public class Options extends OptionsBase {
         if( phaseName.equals( "sop.cpf" ) )
             return ""
               +"enabled:true "
-              +"prune-cfg:true ";
+              +"prune-cfg:true "
+              +"sparse:false ";
     
         if( phaseName.equals( "jtp" ) )
             return ""
@@ -538,6 +538,34 @@ public class SparkOptions
         return soot.PhaseOptions.getInt( options, "geom-runs" );
     }
     
+    /** Worker threads --
+    
+     * Number of threads solving independent regions.
+    
+     * 						 The pointers are split into regions that cannot 
+     * exchange points-to information, and the regions are solved 
+     * concurrently by this number of threads. Zero uses one thread per 
+     * available processor, and one solves all pointers with a single 
+     * worklist. 						 
+     */
+    public int geom_threads() {
+        return soot.PhaseOptions.getInt( options, "geom-threads" );
+    }
+    
+    /** Memory budget --
+    
+     * Heap size in MB above which solved regions are trimmed.
+    
+     * 						 When the used heap grows beyond this number of 
+     * megabytes, the regions that have already been solved drop their 
+     * flow edges and complex constraints and keep only their points-to 
+     * figures. The flow graph is rebuilt in the next iteration. Zero 
+     * means no budget. 						 
+     */
+    public int geom_mem_budget() {
+        return soot.PhaseOptions.getInt( options, "geom-mem-budget" );
+    }
+    
     /** Verbose dump file --
     
      * Filename for detailed execution log.
@@ -570,6 +598,7 @@ public class SparkOptions
     public static final int propagator_merge = 4;
     public static final int propagator_alias = 5;
     public static final int propagator_none = 6;
+    public static final int propagator_parallel = 7;
     /** Propagator --
     
      * Select propagation algorithm.
@@ -598,6 +627,9 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "none" ) )
             return propagator_none;
         
+        if( s.equalsIgnoreCase( "parallel" ) )
+            return propagator_parallel;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option propagator" );
     }
     
@@ -608,6 +640,7 @@ public class SparkOptions
     public static final int set_impl_heintze = 5;
     public static final int set_impl_sharedlist = 6;
     public static final int set_impl_double = 7;
+    public static final int set_impl_roaring = 8;
     /** Set Implementation --
     
      * Select points-to set implementation.
@@ -638,6 +671,9 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "double" ) )
             return set_impl_double;
         
+        if( s.equalsIgnoreCase( "roaring" ) )
+            return set_impl_roaring;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option set-impl" );
     }
     
@@ -647,6 +683,7 @@ public class SparkOptions
     public static final int double_set_old_array = 4;
     public static final int double_set_old_heintze = 5;
     public static final int double_set_old_sharedlist = 6;
+    public static final int double_set_old_roaring = 7;
     /** Double Set Old --
     
      * Select implementation of points-to set for old part of double 
@@ -677,6 +714,9 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "sharedlist" ) )
             return double_set_old_sharedlist;
         
+        if( s.equalsIgnoreCase( "roaring" ) )
+            return double_set_old_roaring;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option double-set-old" );
     }
     
@@ -686,6 +726,7 @@ public class SparkOptions
     public static final int double_set_new_array = 4;
     public static final int double_set_new_heintze = 5;
     public static final int double_set_new_sharedlist = 6;
+    public static final int double_set_new_roaring = 7;
     /** Double Set New --
     
      * Select implementation of points-to set for new part of double 
@@ -716,6 +757,9 @@ public class SparkOptions
         if( s.equalsIgnoreCase( "sharedlist" ) )
             return double_set_new_sharedlist;
         
+        if( s.equalsIgnoreCase( "roaring" ) )
+            return double_set_new_roaring;
+        
         throw new RuntimeException( "Invalid value "+s+" of phase option double-set-new" );
     }
     
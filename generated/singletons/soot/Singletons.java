@@ -1359,6 +1359,34 @@ public class Singletons {
     	instance_soot_Timers = null;
     }
 
+    private soot.PhaseMetrics instance_soot_PhaseMetrics;
+    public soot.PhaseMetrics soot_PhaseMetrics() {
+        if( instance_soot_PhaseMetrics == null ) {
+	       	synchronized (this) {
+		        if( instance_soot_PhaseMetrics == null )
+	        		instance_soot_PhaseMetrics = new soot.PhaseMetrics( g );
+	       	}
+       	}
+        return instance_soot_PhaseMetrics;
+    }
+    protected void release_soot_PhaseMetrics() {
+    	instance_soot_PhaseMetrics = null;
+    }
+
+    private soot.jimple.toolkits.ide.libsumm.LibrarySummaries instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries;
+    public soot.jimple.toolkits.ide.libsumm.LibrarySummaries soot_jimple_toolkits_ide_libsumm_LibrarySummaries() {
+        if( instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries == null ) {
+	       	synchronized (this) {
+		        if( instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries == null )
+	        		instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries = new soot.jimple.toolkits.ide.libsumm.LibrarySummaries( g );
+	       	}
+       	}
+        return instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries;
+    }
+    protected void release_soot_jimple_toolkits_ide_libsumm_LibrarySummaries() {
+    	instance_soot_jimple_toolkits_ide_libsumm_LibrarySummaries = null;
+    }
+
     private soot.dava.toolkits.base.AST.TryContentsFinder instance_soot_dava_toolkits_base_AST_TryContentsFinder;
     public soot.dava.toolkits.base.AST.TryContentsFinder soot_dava_toolkits_base_AST_TryContentsFinder() {
         if( instance_soot_dava_toolkits_base_AST_TryContentsFinder == null ) {
@@ -0,0 +1,283 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import soot.jimple.parser.JimpleAST;
+import soot.options.Options;
+
+/**
+ * A method source that keeps the bodies created by another method source in
+ * an on-disk cache (see the <code>-body-cache-dir</code> option). Bodies are
+ * stored as Jimple after the <code>jb</code> pack has been applied. On a
+ * cache hit, the body is parsed from the cached Jimple and the wrapped
+ * method source is never consulted.
+ *
+ * Each class gets its own cache directory whose name is a digest of the
+ * class file contents and of all options that influence the <code>jb</code>
+ * pack, so that stale entries are never read back.
+ */
+public class CachingMethodSource implements MethodSource {
+
+	/**
+	 * Bump whenever the layout of the cache changes
+	 */
+	private static final String CACHE_FORMAT_VERSION = "3";
+
+	/**
+	 * Starts the first line of each entry, which lists the locals of the body
+	 * in order. The Jimple printer groups the locals by type, so the order
+	 * would otherwise be lost.
+	 */
+	private static final String LOCALS_PREFIX = "// locals:";
+
+	private final MethodSource source;
+	private final File classCacheDir;
+
+	/**
+	 * Creates a new caching method source
+	 * @param source The method source that creates bodies on a cache miss
+	 * @param classCacheDir The cache directory of the declaring class as
+	 * returned by {@link #getClassCacheDir(byte[])}
+	 */
+	public CachingMethodSource(MethodSource source, File classCacheDir) {
+		this.source = source;
+		this.classCacheDir = classCacheDir;
+	}
+
+	/**
+	 * Checks whether bodies can be cached with the current options
+	 * @return True if the body cache is enabled, otherwise false
+	 */
+	public static boolean isCacheEnabled() {
+		return !Options.v().body_cache_dir().isEmpty()
+				&& !Options.v().keep_line_number()
+				&& !Options.v().keep_offset();
+	}
+
+	/**
+	 * Wraps the method sources of all concrete methods in the given class so
+	 * that their bodies are taken from the cache when possible
+	 * @param sc The class whose methods to wrap
+	 * @param classBytes The contents of the file the class was read from
+	 */
+	public static void wrapMethodSources(SootClass sc, byte[] classBytes) {
+		File classCacheDir = getClassCacheDir(classBytes);
+		for (SootMethod m : sc.getMethods()) {
+			MethodSource ms = m.getSource();
+			if (ms != null && !(ms instanceof CachingMethodSource))
+				m.setSource(new CachingMethodSource(ms, classCacheDir));
+		}
+	}
+
+	/**
+	 * Gets the cache directory for a class with the given contents
+	 * @param classBytes The contents of the class file
+	 * @return The directory in which the bodies of the class are cached
+	 */
+	public static File getClassCacheDir(byte[] classBytes) {
+		MessageDigest md = newDigest();
+		md.update(classBytes);
+		md.update(utf8(getConfigurationKey()));
+		return new File(Options.v().body_cache_dir(), toHex(md.digest()));
+	}
+
+	/**
+	 * Builds a string that describes the Soot version and all options
+	 * influencing the bodies produced by the jb pack
+	 */
+	static String getConfigurationKey() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(CACHE_FORMAT_VERSION);
+		sb.append(';').append(Main.versionString);
+		sb.append(';').append(Options.v().coffi());
+		sb.append(';').append(Options.v().java_version());
+		sb.append(';').append(Options.v().allow_phantom_refs());
+		// The unit graphs built by the jb transformers depend on these
+		sb.append(';').append(Options.v().omit_excepting_unit_edges());
+		sb.append(';').append(Options.v().throw_analysis());
+		sb.append(';').append(Options.v().check_init_throw_analysis());
+		appendPhaseOptions(sb, "jb");
+		for (Transform t : PackManager.v().getPack("jb"))
+			appendPhaseOptions(sb, t.getPhaseName());
+		// The type assigner (jb.tr) also reads the options of jop.cpf
+		appendPhaseOptions(sb, "jop.cpf");
+		return sb.toString();
+	}
+
+	private static void appendPhaseOptions(StringBuilder sb, String phaseName) {
+		Map<String, String> options = new TreeMap<String, String>(
+				PhaseOptions.v().getPhaseOptions(phaseName));
+		sb.append(';').append(phaseName).append('=').append(options);
+	}
+
+	@Override
+	public Body getBody(SootMethod m, String phaseName) {
+		File cacheFile = new File(classCacheDir,
+				toHex(newDigest().digest(utf8(m.getSubSignature()))) + ".jimple");
+
+		if (cacheFile.exists()) {
+			Body b = readBody(m, cacheFile);
+			if (b != null)
+				return b;
+		}
+
+		Body b = source.getBody(m, phaseName);
+		if (b != null)
+			writeBody(b, cacheFile);
+		return b;
+	}
+
+	/**
+	 * Parses the cached body of the given method
+	 * @return The body from the cache or null if the cache entry could not
+	 * be read
+	 */
+	private Body readBody(SootMethod m, File cacheFile) {
+		BufferedReader is = null;
+		try {
+			is = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+			String localsLine = is.readLine();
+			if (localsLine == null || !localsLine.startsWith(LOCALS_PREFIX))
+				throw new IOException("missing list of locals");
+			Body b = new JimpleAST(is).getBody(m);
+			if (b != null)
+				restoreLocalOrder(b, localsLine.substring(LOCALS_PREFIX.length()).trim());
+			if (b != null && Options.v().verbose())
+				G.v().out.println("[" + m.getName() + "] Retrieving JimpleBody from body cache...");
+			return b;
+		} catch (Exception e) {
+			// A corrupt cache entry is not fatal, we just create the
+			// body again and overwrite the entry
+			G.v().out.println("Warning: Could not read cached body of "
+					+ m.getSignature() + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Puts the locals of the given body into the given order
+	 * @param names The names of the locals in order, separated by spaces
+	 */
+	private static void restoreLocalOrder(Body b, String names) throws IOException {
+		Map<String, Local> locals = new HashMap<String, Local>();
+		for (Local l : b.getLocals())
+			locals.put(l.getName(), l);
+		List<Local> ordered = new ArrayList<Local>(locals.size());
+		if (!names.isEmpty()) {
+			for (String name : names.split(" ")) {
+				Local l = locals.get(name);
+				if (l == null)
+					throw new IOException("unknown local " + name);
+				ordered.add(l);
+			}
+		}
+		if (ordered.size() != b.getLocalCount())
+			throw new IOException("list of locals does not match the body");
+		b.getLocals().clear();
+		b.getLocals().addAll(ordered);
+	}
+
+	/**
+	 * Writes the given body to the cache. The body is first written to a
+	 * temporary file that is then renamed, so concurrent readers never see
+	 * a partially written entry.
+	 */
+	private void writeBody(Body b, File cacheFile) {
+		if (!classCacheDir.isDirectory() && !classCacheDir.mkdirs()
+				&& !classCacheDir.isDirectory()) {
+			G.v().out.println("Warning: Could not create body cache directory " + classCacheDir);
+			return;
+		}
+
+		File tmpFile = null;
+		PrintWriter out = null;
+		try {
+			tmpFile = File.createTempFile("body", ".tmp", classCacheDir);
+			out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+			out.print(LOCALS_PREFIX);
+			for (Local l : b.getLocals())
+				out.print(" " + l.getName());
+			out.println();
+			Printer.v().printStandaloneTo(b, out);
+			out.close();
+			out = null;
+
+			if (!tmpFile.renameTo(cacheFile) && !cacheFile.exists())
+				G.v().out.println("Warning: Could not write body cache entry " + cacheFile);
+		} catch (IOException e) {
+			G.v().out.println("Warning: Could not write body cache entry "
+					+ cacheFile + ": " + e.getMessage());
+		} finally {
+			if (out != null)
+				out.close();
+			if (tmpFile != null && tmpFile.exists())
+				tmpFile.delete();
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 is not supported by this JVM", e);
+		}
+	}
+
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("UTF-8 is not supported by this JVM", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b & 0xff));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,372 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index from entry names, e.g. <code>java/lang/Object.class</code>, to the archive on the
+ * soot class path that contains them. It is built once for the whole class path by reading the
+ * central directory of every archive, so looking up a class no longer has to consult every
+ * archive in turn.
+ *
+ * Archives are memory-mapped, and entries are read straight from the mapping instead of being
+ * opened through a {@link ZipFile}. Archives the index cannot read itself, i.e. Zip64 archives,
+ * archives larger than 2GB and archives with encrypted entries, are listed through
+ * {@link ZipFile} and their entries are marked as not {@link ArchiveEntry#isMapped() mapped}.
+ *
+ * The index can be stored in a cache file. Archives whose size and modification time match the
+ * cache are then not read again until one of their entries is opened.
+ *
+ * Instances are safe to use from several threads once built.
+ */
+public class ClassPathIndex {
+
+	private static final int EOCD_SIG = 0x06054b50, CEN_SIG = 0x02014b50, LOC_SIG = 0x04034b50;
+	private static final int EOCD_LEN = 22, CEN_LEN = 46, LOC_LEN = 30;
+	private static final int STORED = 0, DEFLATED = 8, UNMAPPED = -1;
+	private static final int CACHE_MAGIC = 0x536f6f74, CACHE_VERSION = 1;
+
+	/** A single entry of an indexed archive. */
+	public static final class ArchiveEntry {
+		private final Archive archive;
+		private final String name;
+		private final int method;
+		private final long headerOffset;
+		private final int compressedSize;
+		private final int size;
+
+		ArchiveEntry(Archive archive, String name, int method, long headerOffset, int compressedSize, int size) {
+			this.archive = archive;
+			this.name = name;
+			this.method = method;
+			this.headerOffset = headerOffset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getArchivePath() {
+			return archive.path;
+		}
+
+		/** Returns the position of the archive on the class path. */
+		public int getClassPathPosition() {
+			return archive.position;
+		}
+
+		/**
+		 * Returns true if the entry can be read with {@link #read()}; otherwise it must be
+		 * opened through {@link ZipFile}.
+		 */
+		public boolean isMapped() {
+			return method != UNMAPPED;
+		}
+
+		/** Reads the uncompressed contents of this entry from the mapped archive. */
+		public byte[] read() throws IOException {
+			if (!isMapped())
+				throw new IllegalStateException("Entry " + name + " of " + archive.path + " is not mapped");
+			ByteBuffer buf = archive.buffer();
+			if (buf.getInt((int) headerOffset) != LOC_SIG)
+				throw new IOException("Bad local header for entry " + name + " in " + archive.path);
+			int dataStart = (int) headerOffset + LOC_LEN + (buf.getShort((int) headerOffset + 26) & 0xffff)
+					+ (buf.getShort((int) headerOffset + 28) & 0xffff);
+			byte[] data = new byte[compressedSize];
+			ByteBuffer src = buf.duplicate();
+			src.position(dataStart);
+			src.get(data);
+			if (method == STORED)
+				return data;
+
+			Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(data);
+				byte[] out = new byte[size];
+				int n = 0;
+				while (n < size) {
+					int r = inflater.inflate(out, n, size - n);
+					if (r == 0 && (inflater.finished() || inflater.needsInput()))
+						break;
+					n += r;
+				}
+				if (n != size)
+					throw new IOException("Truncated entry " + name + " in " + archive.path);
+				return out;
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt entry " + name + " in " + archive.path, e);
+			} finally {
+				inflater.end();
+			}
+		}
+
+		public InputStream open() throws IOException {
+			return new ByteArrayInputStream(read());
+		}
+	}
+
+	/** An archive on the class path, mapped when first read. */
+	private static final class Archive {
+		final String path;
+		final int position;
+		final long length;
+		final long lastModified;
+		final List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
+		private MappedByteBuffer buffer;
+
+		Archive(String path, int position) {
+			this(path, position, new File(path).length(), new File(path).lastModified());
+		}
+
+		Archive(String path, int position, long length, long lastModified) {
+			this.path = path;
+			this.position = position;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		synchronized ByteBuffer buffer() throws IOException {
+			if (buffer == null) {
+				RandomAccessFile raf = new RandomAccessFile(path, "r");
+				try {
+					buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+				} finally {
+					// the mapping stays valid after the channel is closed
+					raf.close();
+				}
+			}
+			return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private final Map<String, ArchiveEntry> entries = new HashMap<String, ArchiveEntry>();
+	private final List<Archive> archives = new ArrayList<Archive>();
+	private final List<Integer> directoryPositions = new ArrayList<Integer>();
+	private final List<String> classPath;
+	private final Map<String, Archive> cached;
+	private boolean cacheStale = false;
+
+	/**
+	 * Creates an empty index for the given class path. The archives and directories on it are
+	 * registered with {@link #addArchive(int)} and {@link #addDirectory(int)}.
+	 *
+	 * @param cacheFile
+	 *            a file from which previously indexed archives are taken, or null
+	 */
+	public ClassPathIndex(List<String> classPath, File cacheFile) {
+		this.classPath = classPath;
+		this.cached = cacheFile != null && cacheFile.isFile() ? readCache(cacheFile) : new HashMap<String, Archive>();
+	}
+
+	public List<String> getClassPath() {
+		return classPath;
+	}
+
+	/** Indexes the archive at the given position of the class path. */
+	public void addArchive(int position) {
+		String path = classPath.get(position);
+		Archive archive = new Archive(path, position);
+		Archive old = cached.get(path);
+		if (old != null && old.length == archive.length && old.lastModified == archive.lastModified) {
+			for (ArchiveEntry e : old.entries)
+				archive.entries.add(new ArchiveEntry(archive, e.name, e.method, e.headerOffset, e.compressedSize, e.size));
+		} else {
+			cacheStale = true;
+			try {
+				if (!readCentralDirectory(archive))
+					listWithZipFile(archive);
+			} catch (IOException e) {
+				throw new RuntimeException("Error: Failed to index the archive at path '" + path + "'.", e);
+			}
+		}
+		archives.add(archive);
+		for (ArchiveEntry e : archive.entries) {
+			// earlier class path entries take precedence
+			if (!entries.containsKey(e.name))
+				entries.put(e.name, e);
+		}
+	}
+
+	/** Registers the directory at the given position of the class path. */
+	public void addDirectory(int position) {
+		directoryPositions.add(position);
+	}
+
+	/** Returns the first archive entry with the given name, or null if there is none. */
+	public ArchiveEntry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/** Returns the class path positions of all directories, in ascending order. */
+	public List<Integer> getDirectoryPositions() {
+		return directoryPositions;
+	}
+
+	/** Writes the index to the given cache file if any archive had to be read. */
+	public void saveCache(File cacheFile) throws IOException {
+		if (!cacheStale && cached.size() == archives.size())
+			return;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+		try {
+			out.writeInt(CACHE_MAGIC);
+			out.writeInt(CACHE_VERSION);
+			out.writeInt(archives.size());
+			for (Archive a : archives) {
+				out.writeUTF(a.path);
+				out.writeLong(a.length);
+				out.writeLong(a.lastModified);
+				out.writeInt(a.entries.size());
+				for (ArchiveEntry e : a.entries) {
+					out.writeUTF(e.name);
+					out.writeByte(e.method);
+					out.writeLong(e.headerOffset);
+					out.writeInt(e.compressedSize);
+					out.writeInt(e.size);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static Map<String, Archive> readCache(File cacheFile) {
+		Map<String, Archive> res = new HashMap<String, Archive>();
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION)
+					return res;
+				int archiveCount = in.readInt();
+				for (int i = 0; i < archiveCount; i++) {
+					String path = in.readUTF();
+					long length = in.readLong();
+					long lastModified = in.readLong();
+					Archive a = new Archive(path, -1, length, lastModified);
+					int entryCount = in.readInt();
+					for (int j = 0; j < entryCount; j++)
+						a.entries.add(new ArchiveEntry(a, in.readUTF(), in.readByte(), in.readLong(), in.readInt(),
+								in.readInt()));
+					res.put(path, a);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			// a broken cache is simply rebuilt
+			res.clear();
+		}
+		return res;
+	}
+
+	/**
+	 * Reads the central directory of the given archive from its mapping. Returns false if the
+	 * archive uses a format the index does not read itself.
+	 */
+	private static boolean readCentralDirectory(Archive archive) throws IOException {
+		if (archive.length > Integer.MAX_VALUE)
+			return false;
+		ByteBuffer buf = archive.buffer();
+		int limit = buf.limit();
+		int eocd = -1;
+		for (int i = limit - EOCD_LEN; i >= Math.max(0, limit - EOCD_LEN - 0xffff); i--) {
+			if (buf.getInt(i) == EOCD_SIG) {
+				eocd = i;
+				break;
+			}
+		}
+		if (eocd < 0)
+			throw new IOException("No end of central directory record");
+		int count = buf.getShort(eocd + 10) & 0xffff;
+		long cenOffset = buf.getInt(eocd + 16) & 0xffffffffL;
+		if (count == 0xffff || cenOffset == 0xffffffffL)
+			return false; // Zip64
+
+		List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>(count);
+		int pos = (int) cenOffset;
+		for (int i = 0; i < count; i++) {
+			if (buf.getInt(pos) != CEN_SIG)
+				throw new IOException("Bad central directory entry");
+			int flags = buf.getShort(pos + 8) & 0xffff;
+			int method = buf.getShort(pos + 10) & 0xffff;
+			long csize = buf.getInt(pos + 20) & 0xffffffffL;
+			long size = buf.getInt(pos + 24) & 0xffffffffL;
+			int nameLen = buf.getShort(pos + 28) & 0xffff;
+			int extraLen = buf.getShort(pos + 30) & 0xffff;
+			int commentLen = buf.getShort(pos + 32) & 0xffff;
+			long headerOffset = buf.getInt(pos + 42) & 0xffffffffL;
+			if ((flags & 1) != 0 || (method != STORED && method != DEFLATED) || csize > Integer.MAX_VALUE
+					|| size > Integer.MAX_VALUE || headerOffset == 0xffffffffL)
+				return false;
+
+			byte[] nameBytes = new byte[nameLen];
+			ByteBuffer nameBuf = buf.duplicate();
+			nameBuf.position(pos + CEN_LEN);
+			nameBuf.get(nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+			if (!name.endsWith("/"))
+				entries.add(new ArchiveEntry(archive, name, method, headerOffset, (int) csize, (int) size));
+			pos += CEN_LEN + nameLen + extraLen + commentLen;
+		}
+		archive.entries.addAll(entries);
+		return true;
+	}
+
+	private static void listWithZipFile(Archive archive) throws IOException {
+		ZipFile zf = new ZipFile(archive.path);
+		try {
+			for (Enumeration<? extends ZipEntry> it = zf.entries(); it.hasMoreElements();) {
+				ZipEntry e = it.nextElement();
+				if (!e.isDirectory())
+					archive.entries.add(new ArchiveEntry(archive, e.getName(), UNMAPPED, -1, -1, -1));
+			}
+		} finally {
+			zf.close();
+		}
+	}
+
+}
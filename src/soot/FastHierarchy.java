@@ -19,18 +19,25 @@
 
 package soot;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.jimple.SpecialInvokeExpr;
 import soot.util.ConcurrentHashMultiMap;
 import soot.util.MultiMap;
+import soot.util.NumberedString;
 
 
 /** Represents the class hierarchy.  It is closely linked to a Scene,
@@ -79,8 +86,29 @@ public class FastHierarchy
      * in the inheritance tree. */
     protected Map<SootClass, Interval> classToInterval = new HashMap<SootClass, Interval>();
 
+    /** For each interface, the intervals of all classes implementing it,
+     * directly or through a subinterface, sorted and with nested intervals
+     * removed. Entries 2i and 2i+1 are the bounds of the i-th interval. */
+    protected Map<SootClass, int[]> interfaceToImplementerIntervals = new HashMap<SootClass, int[]>();
+
     protected Scene sc;
 
+    /** The results of {@link #resolveConcreteDispatch(SootClass, SootMethod)},
+     * valid as long as no methods are added to or removed from classes. */
+    private volatile DispatchCache dispatchCache;
+
+    private static final Object NO_TARGET = new Object();
+
+    private static final class DispatchCache {
+        final int stamp;
+        final ConcurrentMap<SootClass, ConcurrentMap<SootMethod, Object>> targets =
+                new ConcurrentHashMap<SootClass, ConcurrentMap<SootMethod, Object>>();
+
+        DispatchCache(int stamp) {
+            this.stamp = stamp;
+        }
+    }
+
     protected class Interval {
         int lower;
         int upper;
@@ -133,16 +161,102 @@ public class FastHierarchy
         }
 
         /* Now do a dfs traversal to get the Interval numbers. */
-        dfsVisit( 0, Scene.v().getSootClass( "java.lang.Object" ) );
+        int next = dfsVisit( 0, Scene.v().getSootClass( "java.lang.Object" ) );
         /* also have to traverse for all phantom classes because they also
-         * can be roots of the type hierarchy
+         * can be roots of the type hierarchy. Their numbering continues
+         * after the one of java.lang.Object, so that intervals of different
+         * trees never overlap.
          */
         for (final Iterator<SootClass> phantomClassIt = Scene.v().getPhantomClasses().snapshotIterator();
         		phantomClassIt.hasNext(); ) {
         	SootClass phantomClass = phantomClassIt.next();
         	if(!phantomClass.isInterface())
-        		dfsVisit( 0, phantomClass );
+        		next = dfsVisit( next, phantomClass );
+        }
+
+        /* Finally compute the closures for all interfaces up front, so that
+         * queries never modify the hierarchy and may run concurrently. */
+        Set<SootClass> interfaces = new HashSet<SootClass>();
+        interfaces.addAll(interfaceToSubinterfaces.keySet());
+        interfaces.addAll(interfaceToImplementers.keySet());
+        for (SootClass cl : sc.getClasses().getElementsUnsorted()) {
+            if( cl.resolvingLevel() >= SootClass.HIERARCHY && cl.isInterface() )
+                interfaces.add(cl);
+        }
+        for (SootClass i : interfaces) {
+            if( !i.isInterface() ) continue;
+            computeAllSubinterfaces(i);
+        }
+        Set<SootClass> done = new HashSet<SootClass>();
+        for (SootClass i : interfaces) {
+            if( !i.isInterface() ) continue;
+            computeAllImplementers(i, done);
+            interfaceToImplementerIntervals.put(i, implementerIntervals(interfaceToAllImplementers.get(i)));
+        }
+    }
+
+    private Set<SootClass> computeAllSubinterfaces( SootClass parent ) {
+        if( !interfaceToAllSubinterfaces.containsKey( parent ) ) {
+            interfaceToAllSubinterfaces.put( parent, parent );
+            for(SootClass si : interfaceToSubinterfaces.get( parent )) {
+                interfaceToAllSubinterfaces.putAll(parent, computeAllSubinterfaces( si ) );
+            }
+        }
+        return interfaceToAllSubinterfaces.get( parent );
+    }
+
+    private Set<SootClass> computeAllImplementers( SootClass parent, Set<SootClass> done ) {
+        if( done.add( parent ) ) {
+            for(SootClass subinterface : computeAllSubinterfaces( parent )) {
+                if( subinterface == parent ) continue;
+                interfaceToAllImplementers.putAll(parent,
+                    computeAllImplementers( subinterface, done ) );
+            }
+            interfaceToAllImplementers.putAll(parent, 
+                    interfaceToImplementers.get( parent ) );
+        }
+        return interfaceToAllImplementers.get( parent );
+    }
+
+    /** Returns the outermost intervals of the given classes, sorted by their
+     * lower bounds. As intervals are either nested or disjoint, a class
+     * is a subclass of one of the given classes iff its interval lies
+     * within one of the returned intervals. */
+    private int[] implementerIntervals( Set<SootClass> implementers ) {
+        List<Interval> intervals = new ArrayList<Interval>(implementers.size());
+        for (SootClass c : implementers) {
+            Interval interval = classToInterval.get(c);
+            if( interval != null ) intervals.add(interval);
+        }
+        Collections.sort(intervals, new Comparator<Interval>() {
+
+            @Override
+            public int compare(Interval o1, Interval o2) {
+                return o1.lower < o2.lower ? -1 : o1.lower == o2.lower ? 0 : 1;
+            }
+
+        });
+        int[] ret = new int[intervals.size() * 2];
+        int n = 0;
+        for (Interval interval : intervals) {
+            if( n > 0 && interval.lower <= ret[n - 1] ) continue; // nested
+            ret[n++] = interval.lower;
+            ret[n++] = interval.upper;
+        }
+        return Arrays.copyOf(ret, n);
+    }
+
+    /** Returns true if the given interval lies within one of the given
+     * outermost intervals. */
+    private static boolean isInIntervals( int[] intervals, Interval child ) {
+        int lo = 0, hi = intervals.length / 2 - 1;
+        // find the last interval starting at or before the child
+        while( lo <= hi ) {
+            int mid = (lo + hi) >>> 1;
+            if( intervals[2 * mid] <= child.lower ) lo = mid + 1;
+            else hi = mid - 1;
         }
+        return hi >= 0 && child.upper <= intervals[2 * hi + 1];
     }
 
     /** Return true if class child is a subclass of class parent, neither of
@@ -161,15 +275,6 @@ public class FastHierarchy
      * implementers of it but NOT their subclasses. */
     public Set<SootClass> getAllImplementersOfInterface( SootClass parent ) {
         parent.checkLevel(SootClass.HIERARCHY);
-        if( !interfaceToAllImplementers.containsKey( parent ) ) {
-            for(SootClass subinterface : getAllSubinterfaces( parent )) {
-                if( subinterface == parent ) continue;
-                interfaceToAllImplementers.putAll(parent,
-                    getAllImplementersOfInterface( subinterface ) );
-            }
-            interfaceToAllImplementers.putAll(parent, 
-                    interfaceToImplementers.get( parent ) );
-        }
         return interfaceToAllImplementers.get( parent );
     }
 
@@ -182,10 +287,8 @@ public class FastHierarchy
         parent.checkLevel(SootClass.HIERARCHY);
         if (!parent.isInterface()) return Collections.<SootClass>emptySet();
         if( !interfaceToAllSubinterfaces.containsKey( parent ) ) {
-            interfaceToAllSubinterfaces.put( parent, parent );
-            for(SootClass si : interfaceToSubinterfaces.get( parent )) {
-                interfaceToAllSubinterfaces.putAll(parent, getAllSubinterfaces( si ) );
-            }
+            // the interface was not known when the hierarchy was built
+            return Collections.singleton( parent );
         }
         return interfaceToAllSubinterfaces.get( parent );
     }
@@ -289,14 +392,8 @@ public class FastHierarchy
                 return getAllSubinterfaces( parent ).contains( child );
             }
         } else {
-            Set<SootClass> impl = getAllImplementersOfInterface( parent );
-            for( Iterator<SootClass> it = impl.iterator(); it.hasNext(); ) {
-                parentInterval = classToInterval.get( it.next() );
-                if( parentInterval != null && parentInterval.isSubrange( childInterval ) ) {
-                    return true;
-                }
-            }
-            return false;
+            int[] intervals = interfaceToImplementerIntervals.get( parent );
+            return intervals != null && isInIntervals( intervals, childInterval );
         }
     }
 
@@ -424,7 +521,7 @@ public class FastHierarchy
      * be called on an o.f() invocation. */
     public Set<SootMethod> resolveAbstractDispatch(SootClass abstractType, SootMethod m )
     {
-        String methodSig = m.getSubSignature();
+        NumberedString methodSig = m.getNumberedSubSignature();
         HashSet<SootClass> resolved = new HashSet<SootClass>();
         HashSet<SootMethod> ret = new HashSet<SootMethod>();
         LinkedList<SootClass> worklist = new LinkedList<SootClass>();
@@ -467,7 +564,8 @@ public class FastHierarchy
     }
 
     /** Given an object of actual type C (o = new C()), returns the method which will be called
-        on an o.f() invocation. */
+        on an o.f() invocation. Results are cached until a method is added
+        to or removed from a class. */
     public SootMethod resolveConcreteDispatch(SootClass concreteType, SootMethod m)
     {
         concreteType.checkLevel(SootClass.HIERARCHY);
@@ -476,7 +574,36 @@ public class FastHierarchy
                 "A concrete type cannot be an interface: "+concreteType );
         }
 
-        String methodSig = m.getSubSignature();
+        int stamp = sc.getMethodsModificationCount();
+        DispatchCache cache = dispatchCache;
+        if( cache == null || cache.stamp != stamp ) {
+            cache = new DispatchCache(stamp);
+            dispatchCache = cache;
+        }
+        ConcurrentMap<SootMethod, Object> targets = cache.targets.get(concreteType);
+        if( targets != null ) {
+            Object target = targets.get(m);
+            if( target != null )
+                return target == NO_TARGET ? null : (SootMethod) target;
+        }
+
+        SootMethod ret = resolveConcreteDispatchUncached(concreteType, m);
+
+        // Do not cache results computed while methods changed
+        if( sc.getMethodsModificationCount() == stamp ) {
+            if( targets == null ) {
+                targets = new ConcurrentHashMap<SootMethod, Object>();
+                ConcurrentMap<SootMethod, Object> old = cache.targets.putIfAbsent(concreteType, targets);
+                if( old != null ) targets = old;
+            }
+            targets.put(m, ret == null ? NO_TARGET : ret);
+        }
+        return ret;
+    }
+
+    private SootMethod resolveConcreteDispatchUncached(SootClass concreteType, SootMethod m)
+    {
+        NumberedString methodSig = m.getNumberedSubSignature();
         while( true ) {
         	SootMethod method = concreteType.getMethodUnsafe(methodSig);
             if( method != null ) {
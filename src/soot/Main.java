@@ -28,6 +28,7 @@ package soot;
 import static java.net.URLEncoder.encode;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -35,11 +36,14 @@ import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.util.Date;
 
 import soot.options.CGOptions;
 import soot.options.Options;
 import soot.toolkits.astmetrics.ClassData;
+import soot.util.ChromeTraceWriter;
+import soot.util.PhaseStatistics;
 
 import com.google.common.base.Joiner;
 
@@ -245,10 +249,27 @@ public class Main {
 
 			autoSetOptions();
 
+			PhaseStatistics phaseStatistics = null;
+			ChromeTraceWriter phaseTrace = null;
+			if (Options.v().time() || Options.v().phase_metrics().length() > 0) {
+				phaseStatistics = new PhaseStatistics();
+				PhaseMetrics.v().addListener(phaseStatistics);
+			}
+			if (Options.v().phase_trace().length() > 0) {
+				phaseTrace = new ChromeTraceWriter();
+				PhaseMetrics.v().addListener(phaseTrace);
+			}
+
 			G.v().out.println("Soot started on " + start);
 
+			if (Options.v().load_snapshot().length() > 0)
+				loadSnapshot(Options.v().load_snapshot());
+
 			Scene.v().loadNecessaryClasses();
 
+			if (Options.v().save_snapshot().length() > 0)
+				saveSnapshot(Options.v().save_snapshot());
+
 			/*
 			 * By this all the java to jimple has occured so we just check ast-metrics flag
 			 *
@@ -282,8 +303,12 @@ public class Main {
 			Timers.v().totalTimer.end();
 
 			// Print out time stats.
-			if (Options.v().time())
+			if (Options.v().time()) {
 				Timers.v().printProfilingInformation();
+				G.v().out.println();
+				phaseStatistics.printSummary(G.v().out);
+			}
+			writePhaseMetrics(phaseStatistics, phaseTrace);
 
 		} catch (CompilationDeathException e) {
 			Timers.v().totalTimer.end();
@@ -306,6 +331,48 @@ public class Main {
 
 	}
 
+	private void loadSnapshot(String fileName) {
+		try {
+			new SceneSnapshot().load(new File(fileName));
+		} catch (IOException e) {
+			throw new CompilationDeathException("Cannot read scene snapshot " + fileName, e);
+		}
+	}
+
+	private void saveSnapshot(String fileName) {
+		try {
+			new SceneSnapshot().save(new File(fileName), true);
+		} catch (IOException e) {
+			throw new CompilationDeathException("Cannot output file " + fileName, e);
+		}
+	}
+
+	private void writePhaseMetrics(PhaseStatistics phaseStatistics,
+			ChromeTraceWriter phaseTrace) {
+		String fileName = Options.v().phase_metrics();
+		try {
+			if (fileName.length() > 0) {
+				Writer out = new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8");
+				try {
+					phaseStatistics.writeJSON(out, 100);
+				} finally {
+					out.close();
+				}
+			}
+			fileName = Options.v().phase_trace();
+			if (fileName.length() > 0) {
+				Writer out = new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8");
+				try {
+					phaseTrace.write(out);
+				} finally {
+					out.close();
+				}
+			}
+		} catch (IOException e) {
+			throw new CompilationDeathException("Cannot output file " + fileName, e);
+		}
+	}
+
 	public void autoSetOptions() {
 		//when no-bodies-for-excluded is enabled, also enable phantom refs
 		if(Options.v().no_bodies_for_excluded())
@@ -115,14 +115,26 @@ public abstract class Pack implements HasPhaseOptions, Iterable<Transform> {
 		Map<String, String> options = PhaseOptions.v().getPhaseOptions(this);
 		if (!PhaseOptions.getBoolean(options, "enabled"))
 			return;
-		internalApply();
+		PhaseMetrics.Probe probe = PhaseMetrics.v().start(name,
+				PhaseEvent.Kind.PACK, null);
+		try {
+			internalApply();
+		} finally {
+			PhaseMetrics.v().end(probe);
+		}
 	}
 
 	public final void apply(Body b) {
 		Map<String, String> options = PhaseOptions.v().getPhaseOptions(this);
 		if (!PhaseOptions.getBoolean(options, "enabled"))
 			return;
-		internalApply(b);
+		PhaseMetrics.Probe probe = PhaseMetrics.v().start(name,
+				PhaseEvent.Kind.PACK, b);
+		try {
+			internalApply(b);
+		} finally {
+			PhaseMetrics.v().end(probe);
+		}
 	}
 
 	public String getDeclaredOptions() {
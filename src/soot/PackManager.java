@@ -18,6 +18,7 @@
  */
 
 package soot;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -27,12 +28,17 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -622,13 +628,11 @@ public class PackManager {
     }
 
     private void runBodyPacks( final Iterator<SootClass> classes ) {
-    	int threadNum = Runtime.getRuntime().availableProcessors();
-        CountingThreadPoolExecutor executor =  new CountingThreadPoolExecutor(threadNum,
-        		threadNum, 30, TimeUnit.SECONDS,
-        		new LinkedBlockingQueue<Runnable>());
+        CountingThreadPoolExecutor executor = getExecutor();
     	
-    	while( classes.hasNext() ) {
-    		final SootClass c = classes.next();
+        // Schedule the largest classes first so that a single huge class
+        // does not end up running alone at the tail of the phase
+    	for (final SootClass c : largestClassesFirst(classes)) {
            	executor.execute(new Runnable() {
 				
 				@Override
@@ -640,18 +644,102 @@ public class PackManager {
         }
     	
         // Wait till all packs have been executed
+        awaitCompletion(executor, "pack");
+    }
+
+    /** The worker threads shared by all phases of a run. */
+    private CountingThreadPoolExecutor executor = null;
+
+    /**
+     * Returns the executor that runs the phases over the classes, one
+     * thread per processor. It is created on first use and shared by all
+     * phases of the run, from loading the bodies to writing the output.
+     * Its threads are daemons that stop when idle, so it is never shut
+     * down explicitly. An executor that shut itself down after a task
+     * failed is replaced.
+     */
+    private synchronized CountingThreadPoolExecutor getExecutor() {
+        if (executor == null || executor.isShutdown()) {
+            int threadNum = Runtime.getRuntime().availableProcessors();
+            executor = new CountingThreadPoolExecutor(threadNum,
+            		threadNum, 30, TimeUnit.SECONDS,
+            		new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            executor.setThreadFactory(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "soot-worker");
+					t.setDaemon(true);
+					return t;
+				}
+
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Waits until the executor has run all tasks of the current phase, and
+     * rethrows the exception of a failed task.
+     */
+    private void awaitCompletion( CountingThreadPoolExecutor executor, String threadKind ) {
         try {
         	executor.awaitCompletion();
-			executor.shutdown();
 		} catch (InterruptedException e) {
 			// Something went horribly wrong
-			throw new RuntimeException("Could not wait for pack threads to "
-					+ "finish: " + e.getMessage(), e);
+			throw new RuntimeException("Could not wait for " + threadKind
+					+ " threads to finish: " + e.getMessage(), e);
 		}
         
         // If something went wrong, we tell the world
-        if (executor.getException() != null)
-        	throw (RuntimeException) executor.getException();
+        Throwable exception = executor.getException();
+        if (exception != null) {
+        	if (exception instanceof RuntimeException)
+        		throw (RuntimeException) exception;
+        	else if (exception instanceof Error)
+        		throw (Error) exception;
+        	else
+        		throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Orders the given classes by decreasing amount of work, estimated as
+     * the total number of units in their active bodies. Classes whose
+     * bodies have not been loaded yet count one unit per concrete method.
+     * Ties keep the original order.
+     */
+    private List<SootClass> largestClassesFirst( Iterator<SootClass> classes ) {
+        List<SootClass> ordered = new ArrayList<SootClass>();
+        final Map<SootClass, Integer> weights = new HashMap<SootClass, Integer>();
+        while( classes.hasNext() ) {
+            SootClass c = classes.next();
+            ordered.add(c);
+            weights.put(c, estimateWork(c));
+        }
+        Collections.sort(ordered, new Comparator<SootClass>() {
+
+			@Override
+			public int compare(SootClass o1, SootClass o2) {
+				return weights.get(o2).compareTo(weights.get(o1));
+			}
+
+        });
+        return ordered;
+    }
+
+    private int estimateWork( SootClass c ) {
+        int work = 0;
+        for (SootMethod m : c.getMethods()) {
+            if (!m.isConcrete())
+                continue;
+            if (m.hasActiveBody())
+                work += m.getActiveBody().getUnits().size();
+            else
+                work++;
+        }
+        return work;
     }
 
     private void handleInnerClasses(){
@@ -660,17 +748,35 @@ public class PackManager {
     }
 
     private void writeOutput( Iterator<SootClass> classes ) {
-    	// If we're writing individual class files, we can write them
-    	// concurrently. Otherwise, we need to synchronize for not destroying
-    	// the shared output stream.
-    	int threadNum = Options.v().output_format() == Options.output_format_class
-    			&& jarFile == null ? Runtime.getRuntime().availableProcessors() : 1;
-        CountingThreadPoolExecutor executor =  new CountingThreadPoolExecutor(threadNum,
-        		threadNum, 30, TimeUnit.SECONDS,
-        		new LinkedBlockingQueue<Runnable>());
-    	
-        while( classes.hasNext() ) {
-        	final SootClass c = classes.next();
+    	final int format = Options.v().output_format();
+    	if (format == Options.output_format_dex
+    			|| format == Options.output_format_force_dex) {
+    		// The dex printer collects the classes and writes them all at once
+    		while (classes.hasNext())
+    			writeClass(classes.next());
+    		return;
+    	}
+
+    	if (!canWriteConcurrently()) {
+    		// Write on the calling thread, in the original class order
+    		if (jarFile != null) {
+    			while (classes.hasNext())
+    				writeJarEntry(convertClass(classes.next()));
+    		} else {
+    			while (classes.hasNext())
+    				writeClass(classes.next());
+    		}
+    		return;
+    	}
+
+        CountingThreadPoolExecutor executor = getExecutor();
+    	if (jarFile != null) {
+    		writeJar(classes, executor);
+    		return;
+    	}
+
+    	// Individual output files can be written concurrently
+        for (final SootClass c : largestClassesFirst(classes)) {
            	executor.execute(new Runnable() {
 				
 				@Override
@@ -682,24 +788,100 @@ public class PackManager {
         }
         
         // Wait till all classes have been written
+        awaitCompletion(executor, "writer");
+    }
+
+    /**
+     * Returns true if classes can be converted to the output format on
+     * several threads at once. The textual printers share a line counter
+     * when XML attributes are requested, the template printer keeps its
+     * output stream in a field, and the XML printer builds its document in
+     * a single shared tree.
+     */
+    private boolean canWriteConcurrently() {
+    	final int format = Options.v().output_format();
+    	if (format == Options.output_format_template
+    			|| format == Options.output_format_xml)
+    		return false;
+    	return format == Options.output_format_class
+    			|| format == Options.output_format_jasmin
+    			|| format == Options.output_format_asm
+    			|| !Options.v().xml_attributes();
+    }
+
+    /**
+     * Converts the given classes into byte buffers on the worker threads of
+     * the given executor, while the calling thread streams the buffers into
+     * the output jar in the order of the iterator. Only a bounded number of
+     * converted classes is buffered at any time.
+     */
+    private void writeJar( Iterator<SootClass> classes, CountingThreadPoolExecutor executor ) {
+        final int maxPending = executor.getMaximumPoolSize() * 16;
+        LinkedList<Future<ClassBuffer>> pending = new LinkedList<Future<ClassBuffer>>();
         try {
-        	executor.awaitCompletion();
-			executor.shutdown();
-		} catch (InterruptedException e) {
-			// Something went horribly wrong
+        	while (classes.hasNext()) {
+        		final SootClass c = classes.next();
+        		pending.add(executor.submit(new Callable<ClassBuffer>() {
+
+					@Override
+					public ClassBuffer call() {
+						return convertClass(c);
+					}
+
+        		}));
+        		if (pending.size() >= maxPending)
+        			writeJarEntry(awaitBuffer(pending.removeFirst()));
+        	}
+        	while (!pending.isEmpty())
+        		writeJarEntry(awaitBuffer(pending.removeFirst()));
+        } finally {
+        	// The executor is shared, so only drop the work of this phase
+        	for (Future<ClassBuffer> future : pending)
+        		future.cancel(true);
+        }
+    }
+
+    private ClassBuffer awaitBuffer( Future<ClassBuffer> future ) {
+    	try {
+    		return future.get();
+    	} catch (InterruptedException e) {
 			throw new RuntimeException("Could not wait for writer threads to "
 					+ "finish: " + e.getMessage(), e);
-		}
-        
-        // If something went wrong, we tell the world
-        if (executor.getException() != null) {
-        	if (executor.getException() instanceof RuntimeException)
-        		throw (RuntimeException) executor.getException();
-        	else
-        		throw new RuntimeException(executor.getException());
+    	} catch (ExecutionException e) {
+    		if (e.getCause() instanceof RuntimeException)
+    			throw (RuntimeException) e.getCause();
+    		if (e.getCause() instanceof Error)
+    			throw (Error) e.getCause();
+    		throw new RuntimeException(e.getCause());
+    	}
+    }
+
+    private void writeJarEntry( ClassBuffer buffer ) {
+    	if (buffer == null)
+    		return;
+        try {
+            JarEntry entry = new JarEntry(buffer.fileName);
+            entry.setMethod(ZipEntry.DEFLATED);
+            jarFile.putNextEntry(entry);
+            G.v().out.println( "Writing to "+buffer.fileName );
+            jarFile.write(buffer.data);
+            jarFile.closeEntry();
+        } catch (IOException e) {
+            throw new CompilationDeathException("Cannot output file " + buffer.fileName,e);
         }
     }
 
+    /** A class converted to the output format, waiting to be written to the output jar. */
+    private static final class ClassBuffer {
+    	final String fileName;
+    	final byte[] data;
+
+    	ClassBuffer(String fileName, byte[] data) {
+    		this.fileName = fileName;
+    		this.data = data;
+    	}
+    }
+
 	private void tearDownJAR() {
 		try {
             if(jarFile != null) jarFile.close();
@@ -1062,52 +1244,86 @@ public class PackManager {
 	}
 
     private void writeClass(SootClass c) {
+        if( jarFile != null ) {
+        	writeJarEntry(convertClass(c));
+        	return;
+        }
+        if( !prepareOutput(c) ) return;
+
+        final int format = Options.v().output_format();
+        String fileName = SourceLocator.v().getFileNameFor(c, format);
+        if( Options.v().gzip() ) fileName = fileName+".gz";
+
+        OutputStream streamOut;
+        try {
+            new File(fileName).getParentFile().mkdirs();
+            streamOut = new FileOutputStream(fileName);
+        } catch (IOException e) {
+            throw new CompilationDeathException("Cannot output file " + fileName,e);
+        }
+        G.v().out.println( "Writing to "+fileName );
+        try {
+            printClass(c, streamOut);
+        } catch (IOException e) {
+            throw new CompilationDeathException("Cannot close output file " + fileName);
+        }
+    }
+
+    /**
+     * Converts the given class to the output format in memory, for writing it
+     * to the output jar. Returns null if nothing is to be written for the class.
+     */
+    private ClassBuffer convertClass(SootClass c) {
+        if( !prepareOutput(c) ) return null;
+
+        String fileName = SourceLocator.v().getFileNameFor(c, Options.v().output_format());
+        if( Options.v().gzip() ) fileName = fileName+".gz";
+        // Fix path delimiters according to ZIP specification
+        fileName = fileName.replace("\\", "/");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            printClass(c, buffer);
+        } catch (IOException e) {
+            throw new CompilationDeathException("Cannot output file " + fileName,e);
+        }
+        return new ClassBuffer(fileName, buffer.toByteArray());
+    }
+
+    /**
+     * Does the work needed before the given class can be written, and
+     * returns false if it is not written by {@link #printClass(SootClass, OutputStream)}.
+     */
+    private boolean prepareOutput(SootClass c) {
         // Create code assignments for those values we only have in code assignments
         if (Options.v().output_format() == Options.output_format_jimple)
         	if (!c.isPhantom)
         		ConstantValueToInitializerTransformer.v().transformClass(c);
         
         final int format = Options.v().output_format();
-        if( format == Options.output_format_none ) return;
-        if( format == Options.output_format_dava ) return;
+        if( format == Options.output_format_none ) return false;
+        if( format == Options.output_format_dava ) return false;
         if (format == Options.output_format_dex
         		|| format == Options.output_format_force_dex) {
         	// just add the class to the dex printer, writing is done after adding all classes
         	dexPrinter.add(c);
-        	return;
+        	return false;
         }
+        return true;
+    }
 
-        OutputStream streamOut = null;
-        PrintWriter writerOut = null;
-
-        String fileName = SourceLocator.v().getFileNameFor(c, format);
-        if( Options.v().gzip() ) fileName = fileName+".gz";
-
-        try {
-            if( jarFile != null ) {
-            	// Fix path delimiters according to ZIP specification
-            	fileName = fileName.replace("\\", "/");
-                JarEntry entry = new JarEntry(fileName);
-                entry.setMethod(ZipEntry.DEFLATED);
-                jarFile.putNextEntry(entry);
-                streamOut = jarFile;
-            } else {
-                new File(fileName).getParentFile().mkdirs();
-                streamOut = new FileOutputStream(fileName);
-            }
-            if( Options.v().gzip() ) {
-                streamOut = new GZIPOutputStream(streamOut);
-            }
-            if(format == Options.output_format_class) {
-            	if(!Options.v().asm_backend()){
-            		streamOut = new JasminOutputStream(streamOut);
-            	}
-            }
-            writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
-            G.v().out.println( "Writing to "+fileName );
-        } catch (IOException e) {
-            throw new CompilationDeathException("Cannot output file " + fileName,e);
+    /** Prints the given class in the output format to the given stream, and closes the stream. */
+    private void printClass(SootClass c, OutputStream streamOut) throws IOException {
+        final int format = Options.v().output_format();
+        if( Options.v().gzip() ) {
+            streamOut = new GZIPOutputStream(streamOut);
         }
+        if(format == Options.output_format_class) {
+        	if(!Options.v().asm_backend()){
+        		streamOut = new JasminOutputStream(streamOut);
+        	}
+        }
+        PrintWriter writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
 
         if (Options.v().xml_attributes()) {
             Printer.v().setOption(Printer.ADD_JIMPLE_LN);
@@ -1162,17 +1378,9 @@ public class PackManager {
                 throw new RuntimeException();
         }
 
-        try {
-            writerOut.flush();
-            if( jarFile == null ) {
-	            streamOut.close();
-	            writerOut.close();
-            }
-            else
-                jarFile.closeEntry();
-        } catch (IOException e) {
-            throw new CompilationDeathException("Cannot close output file " + fileName);
-        }
+        writerOut.flush();
+        streamOut.close();
+        writerOut.close();
     }
 
     private void postProcessXML( Iterator<SootClass> classes ) {
@@ -1216,10 +1424,7 @@ public class PackManager {
 
     private void retrieveAllBodies() {
     	// The old coffi front-end is not thread-safe
-    	int threadNum = Options.v().coffi() ? 1 : Runtime.getRuntime().availableProcessors();
-        CountingThreadPoolExecutor executor =  new CountingThreadPoolExecutor(threadNum,
-        		threadNum, 30, TimeUnit.SECONDS,
-        		new LinkedBlockingQueue<Runnable>());
+        CountingThreadPoolExecutor executor = Options.v().coffi() ? null : getExecutor();
     	
         Iterator<SootClass> clIt = reachableClasses();
         while( clIt.hasNext() ) {
@@ -1230,32 +1435,26 @@ public class PackManager {
             Iterator<SootMethod> methodIt = cl.getMethods().iterator();
             while (methodIt.hasNext()) {
                 final SootMethod m = methodIt.next();
-                if( m.isConcrete() ) {
-                	executor.execute(new Runnable() {
-						
-						@Override
-						public void run() {
-		                    m.retrieveActiveBody();
-						}
-						
-					});
+                if( !m.isConcrete() )
+                	continue;
+                if( executor == null ) {
+                	m.retrieveActiveBody();
+                	continue;
                 }
+                executor.execute(new Runnable() {
+					
+					@Override
+					public void run() {
+	                    m.retrieveActiveBody();
+					}
+					
+				});
             }
         }
         
         // Wait till all method bodies have been loaded
-        try {
-        	executor.awaitCompletion();
-			executor.shutdown();
-		} catch (InterruptedException e) {
-			// Something went horribly wrong
-			throw new RuntimeException("Could not wait for loader threads to "
-					+ "finish: " + e.getMessage(), e);
-		}
-        
-        // If something went wrong, we tell the world
-        if (executor.getException() != null)
-        	throw (RuntimeException) executor.getException();
+        if( executor != null )
+        	awaitCompletion(executor, "loader");
     }
     
 }
@@ -0,0 +1,111 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+/**
+ * One application of a pack or transform, either to the whole scene or to
+ * a single body. Times are in nanoseconds; values that the JVM cannot
+ * measure are -1.
+ */
+public class PhaseEvent {
+	public enum Kind {
+		PACK, TRANSFORM
+	}
+
+	private final String phaseName;
+	private final Kind kind;
+	private final SootMethod method;
+	private final long threadId;
+	private final String threadName;
+	private final long startTime;
+	private final long wallTime;
+	private final long cpuTime;
+	private final long allocatedBytes;
+	private final int items;
+
+	public PhaseEvent(String phaseName, Kind kind, SootMethod method,
+			long threadId, String threadName, long startTime, long wallTime,
+			long cpuTime, long allocatedBytes, int items) {
+		this.phaseName = phaseName;
+		this.kind = kind;
+		this.method = method;
+		this.threadId = threadId;
+		this.threadName = threadName;
+		this.startTime = startTime;
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+		this.allocatedBytes = allocatedBytes;
+		this.items = items;
+	}
+
+	public String getPhaseName() {
+		return phaseName;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/** Returns the method whose body was transformed, or null for scene phases. */
+	public SootMethod getMethod() {
+		return method;
+	}
+
+	public long getThreadId() {
+		return threadId;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	/** Returns the start time, relative to the creation of {@link PhaseMetrics}. */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	/** Returns the CPU time used by the applying thread, or -1. */
+	public long getCpuTime() {
+		return cpuTime;
+	}
+
+	/** Returns the bytes allocated by the applying thread, or -1. */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the number of statements in the body after the phase, or -1
+	 * for scene phases.
+	 */
+	public int getItems() {
+		return items;
+	}
+
+	@Override
+	public String toString() {
+		return phaseName + (method == null ? "" : " on " + method) + ": "
+				+ (wallTime / 1000000L) + "ms";
+	}
+}
@@ -0,0 +1,157 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Measures wall time, CPU time, allocated bytes and statement counts for
+ * every pack and transform that is applied, and hands the results to the
+ * registered {@link PhaseListener}s. Nothing is measured while no listener
+ * is registered.
+ *
+ * Unlike the fixed set of timers in {@link Timers}, this covers all phases,
+ * including user-defined ones, and can tell the cost of a phase on each
+ * method apart. {@link soot.util.PhaseStatistics} and
+ * {@link soot.util.ChromeTraceWriter} are listeners that export the
+ * measurements.
+ */
+public class PhaseMetrics {
+	public PhaseMetrics(Singletons.Global g) {
+	}
+
+	public static PhaseMetrics v() {
+		return G.v().soot_PhaseMetrics();
+	}
+
+	private final long epoch = System.nanoTime();
+	private final List<PhaseListener> listeners = new CopyOnWriteArrayList<PhaseListener>();
+	private volatile boolean enabled = false;
+
+	public void addListener(PhaseListener listener) {
+		listeners.add(listener);
+		enabled = true;
+	}
+
+	public void removeListener(PhaseListener listener) {
+		listeners.remove(listener);
+		enabled = !listeners.isEmpty();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts measuring the given phase on the current thread. Returns null
+	 * if no listener is registered.
+	 */
+	public Probe start(String phaseName, PhaseEvent.Kind kind, Body b) {
+		if (!enabled)
+			return null;
+		Probe p = new Probe();
+		p.phaseName = phaseName;
+		p.kind = kind;
+		p.body = b;
+		p.cpuTime = CpuMeter.cpuTime();
+		p.allocatedBytes = CpuMeter.allocatedBytes();
+		p.startTime = System.nanoTime();
+		return p;
+	}
+
+	/** Ends the measurement started by the given probe, which may be null. */
+	public void end(Probe p) {
+		if (p == null)
+			return;
+		long wallTime = System.nanoTime() - p.startTime;
+		long cpuTime = CpuMeter.cpuTime();
+		long allocatedBytes = CpuMeter.allocatedBytes();
+		Thread thread = Thread.currentThread();
+		PhaseEvent event = new PhaseEvent(p.phaseName, p.kind,
+				p.body == null ? null : p.body.getMethod(), thread.getId(),
+				thread.getName(), p.startTime - epoch, wallTime,
+				cpuTime < 0 ? -1 : cpuTime - p.cpuTime,
+				allocatedBytes < 0 ? -1 : allocatedBytes - p.allocatedBytes,
+				p.body == null ? -1 : p.body.getUnits().size());
+		for (PhaseListener l : listeners)
+			l.phaseFinished(event);
+	}
+
+	/** A measurement in progress. */
+	public static class Probe {
+		private String phaseName;
+		private PhaseEvent.Kind kind;
+		private Body body;
+		private long startTime;
+		private long cpuTime;
+		private long allocatedBytes;
+
+		private Probe() {
+		}
+	}
+
+	/**
+	 * Reads the per-thread counters of the JVM. Allocated bytes are only
+	 * available on HotSpot-derived JVMs.
+	 */
+	private static class CpuMeter {
+		private static final ThreadMXBean threads = ManagementFactory
+				.getThreadMXBean();
+		private static final boolean hasCpuTime;
+		private static final ThreadMXBean allocations;
+
+		static {
+			boolean cpu = false;
+			try {
+				cpu = threads.isCurrentThreadCpuTimeSupported()
+						&& threads.isThreadCpuTimeEnabled();
+			} catch (UnsupportedOperationException e) {
+				// No CPU time on this JVM
+			}
+			hasCpuTime = cpu;
+
+			ThreadMXBean alloc = null;
+			try {
+				if (threads instanceof com.sun.management.ThreadMXBean) {
+					com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+					if (t.isThreadAllocatedMemorySupported()
+							&& t.isThreadAllocatedMemoryEnabled())
+						alloc = threads;
+				}
+			} catch (LinkageError e) {
+				// Not a HotSpot JVM
+			}
+			allocations = alloc;
+		}
+
+		static long cpuTime() {
+			return hasCpuTime ? threads.getCurrentThreadCpuTime() : -1;
+		}
+
+		static long allocatedBytes() {
+			return allocations == null ? -1
+					: ((com.sun.management.ThreadMXBean) allocations)
+							.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+}
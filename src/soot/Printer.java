@@ -304,6 +304,22 @@ public class Printer {
 
     }
 
+    /**
+     *   Prints out the method corresponding to b Body inside a declaration of
+     *   its class that has no other members. The output can be read back
+     *   into a body with {@link soot.jimple.parser.JimpleAST#getBody(SootMethod)}.
+     *
+     *   @param out a PrintWriter instance to print to.
+     */
+    public void printStandaloneTo(Body b, PrintWriter out) {
+        SootClass cl = b.getMethod().getDeclaringClass();
+        out.println("class " + Scene.v().quotedNameOf(cl.getName())
+                + " extends java.lang.Object");
+        out.println("{");
+        printTo(b, out);
+        out.println("}");
+    }
+
     /** Prints the given <code>JimpleBody</code> to the specified <code>PrintWriter</code>. */
     private void printStatementsInBody(Body body, java.io.PrintWriter out, LabeledUnitPrinter up, UnitGraph unitGraph ) {
     	Chain<Unit> units = body.getUnits();
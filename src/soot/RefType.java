@@ -78,10 +78,8 @@ public class RefType extends RefLikeType implements Comparable<RefType> {
 	 */
 	public static RefType v(String className) {
 		RefType rt = Scene.v().getRefTypeUnsafe(className);
-		if (rt == null) {
-			rt = new RefType(className);
-			Scene.v().addRefType(rt);
-		}
+		if (rt == null)
+			rt = Scene.v().getOrAddRefType(new RefType(className));
 		return rt;
 	}
 
@@ -44,6 +44,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -137,7 +140,7 @@ public class Scene  //extends AbstractHost
     Chain<SootClass> libraryClasses = new HashChain<SootClass>();
     Chain<SootClass> phantomClasses = new HashChain<SootClass>();
     
-    private final Map<String,RefType> nameToClass = new HashMap<String,RefType>();
+    private final ConcurrentMap<String,RefType> nameToClass = new ConcurrentHashMap<String,RefType>();
 
     final ArrayNumberer<Kind> kindNumberer;
     ArrayNumberer<Type> typeNumberer = new ArrayNumberer<Type>();
@@ -150,7 +153,7 @@ public class Scene  //extends AbstractHost
     ArrayNumberer<Local> localNumberer = new ArrayNumberer<Local>();
 
     private Hierarchy activeHierarchy;
-    private FastHierarchy activeFastHierarchy;
+    private volatile FastHierarchy activeFastHierarchy;
     private CallGraph activeCallGraph;
     private ReachableMethods reachableMethods;
     private PointsToAnalysis activePointsToAnalysis;
@@ -675,6 +678,7 @@ public class Scene  //extends AbstractHost
     public int getState() { return this.stateCount; }
     private void modifyHierarchy() {
         stateCount++;
+        hierarchyModificationCount.incrementAndGet();
         activeHierarchy = null;
         activeFastHierarchy = null;
         activeSideEffectAnalysis = null;
@@ -961,6 +965,17 @@ public class Scene  //extends AbstractHost
         nameToClass.put(type.getClassName(), type);
     }
 
+    /**
+     * Adds the given RefType unless there already is one with the same class
+     * name, and returns the one that is in the Scene afterwards. Safe to use
+     * from several threads.
+     */
+    public RefType getOrAddRefType(RefType type) 
+    {
+        RefType old = nameToClass.putIfAbsent(type.getClassName(), type);
+        return old == null ? type : old;
+    }
+
     /**
      * Returns the SootClass with the given className. If no class with the
      * given name exists, null is returned
@@ -1145,7 +1160,15 @@ public class Scene  //extends AbstractHost
      * fast hierarchy. */
     public FastHierarchy getOrMakeFastHierarchy() {
 	if(!hasFastHierarchy() ) {
-	    setFastHierarchy( new FastHierarchy() );
+	    synchronized(fastHierarchyLock) {
+		// A hierarchy built from the current classes changes nothing, so
+		// unlike setFastHierarchy() this keeps the modification count
+		if(!hasFastHierarchy() ) {
+		    int count = hierarchyModificationCount.get();
+		    activeFastHierarchy = new FastHierarchy();
+		    fastHierarchyStamp = count;
+		}
+	    }
 	}
 	return getFastHierarchy();
     }
@@ -1155,10 +1178,27 @@ public class Scene  //extends AbstractHost
 
     public FastHierarchy getFastHierarchy() 
     {
-        if(!hasFastHierarchy())
+        // The stamp is read first: it is written after the hierarchy it
+        // belongs to is published
+        int stamp = fastHierarchyStamp;
+        FastHierarchy hierarchy = activeFastHierarchy;
+        if(hierarchy == null)
             throw new RuntimeException("no active FastHierarchy present for scene");
-            
-        return activeFastHierarchy;
+        if(stamp != hierarchyModificationCount.get()) {
+            synchronized(fastHierarchyLock) {
+                // All changes up to now are covered by a single rebuild; changes
+                // made while it runs cause another one on the next call
+                int count = hierarchyModificationCount.get();
+                if(fastHierarchyStamp != count && activeFastHierarchy != null) {
+                    FastHierarchy rebuilt = new FastHierarchy();
+                    activeFastHierarchy = rebuilt;
+                    fastHierarchyStamp = count;
+                }
+                if(activeFastHierarchy != null)
+                    hierarchy = activeFastHierarchy;
+            }
+        }
+        return hierarchy;
     }
     
     /**
@@ -1167,7 +1207,12 @@ public class Scene  //extends AbstractHost
      
     public void setFastHierarchy(FastHierarchy hierarchy)
     {
-        activeFastHierarchy = hierarchy;
+        synchronized(fastHierarchyLock) {
+            // A hierarchy set from outside may differ from the old one
+            int count = hierarchyModificationCount.incrementAndGet();
+            activeFastHierarchy = hierarchy;
+            fastHierarchyStamp = count;
+        }
     }
 
     public boolean hasFastHierarchy()
@@ -1180,6 +1225,55 @@ public class Scene  //extends AbstractHost
         activeFastHierarchy = null;
     }
 
+    /** Guards rebuilding and setting the active FastHierarchy. */
+    private final Object fastHierarchyLock = new Object();
+
+    /** Counts the changes to the class hierarchy. */
+    private final AtomicInteger hierarchyModificationCount = new AtomicInteger();
+
+    /** The hierarchy modification count the active FastHierarchy reflects. */
+    private volatile int fastHierarchyStamp = 0;
+
+    /**
+        Records that classes joined the class hierarchy after the active
+        hierarchies were built, as happens with lazy resolving. The active
+        Hierarchy is released, and the active FastHierarchy is rebuilt when
+        it is next retrieved, once for all changes made until then.
+     */
+    public void hierarchyChanged()
+    {
+        activeHierarchy = null;
+        hierarchyModificationCount.incrementAndGet();
+    }
+
+    /**
+        Returns a counter that changes whenever classes are added to or
+        removed from the Scene, classes join the hierarchy, or a new
+        FastHierarchy is set. Results derived from the class hierarchy can
+        be cached as long as it stays the same.
+     */
+    public int getHierarchyModificationCount()
+    {
+        return hierarchyModificationCount.get();
+    }
+
+    private final AtomicInteger methodsModificationCount = new AtomicInteger();
+
+    /**
+        Records that a method was added to or removed from a class, or that
+        its modifiers changed. Cached method dispatch results, e.g. in the
+        FastHierarchy, are discarded after such a change.
+     */
+    public void methodsChanged()
+    {
+        methodsModificationCount.incrementAndGet();
+    }
+
+    public int getMethodsModificationCount()
+    {
+        return methodsModificationCount.get();
+    }
+
     /****************************************************************************/
     /**
         Retrieves the active hierarchy
@@ -1801,15 +1895,9 @@ public class Scene  //extends AbstractHost
      * even if resolving has actually already finished.
      */
     public SootClass forceResolve(String className, int level) {
-    	boolean tmp = doneResolving;
-    	doneResolving = false;
-    	SootClass c;
-    	try {
-			c = SootResolver.v().resolveClass(className, level);
-    	} finally {
-    		doneResolving = tmp;
-    	}    	    	
-    	return c;
+    	// The resolver does not check resolving levels on its own thread, so
+    	// this is safe while other threads are working on the Scene
+		return SootResolver.v().resolveClass(className, level);
     }
 }
 
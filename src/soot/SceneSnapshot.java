@@ -0,0 +1,483 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.baf.DoubleWordType;
+import soot.baf.WordType;
+import soot.coffi.Double2ndHalfType;
+import soot.coffi.Long2ndHalfType;
+import soot.coffi.UnusuableType;
+import soot.jimple.parser.JimpleAST;
+import soot.jimple.toolkits.typing.fast.BottomType;
+import soot.jimple.toolkits.typing.fast.Integer127Type;
+import soot.jimple.toolkits.typing.fast.Integer1Type;
+import soot.jimple.toolkits.typing.fast.Integer32767Type;
+
+/**
+ * Writes the classes of the current {@link Scene} into a compact binary file
+ * and restores them from there in a later run. A snapshot contains the
+ * class hierarchy together with all field and method signatures and,
+ * optionally, the Jimple bodies of all concrete methods.
+ *
+ * Restoring a snapshot replaces resolving the classes from their sources.
+ * The snapshot file is memory-mapped, and method bodies are only parsed
+ * when they are first retrieved. Tags are not part of the snapshot.
+ *
+ * A snapshot must be loaded into a fresh Scene, i.e., before
+ * {@link Scene#loadNecessaryClasses()} is called. Classes that have already
+ * been resolved in the Scene are left untouched.
+ */
+public class SceneSnapshot {
+
+	private static final int MAGIC = 0x534f4f54;
+
+	/**
+	 * Bump whenever the file format changes. Snapshots with a different
+	 * version are rejected.
+	 */
+	private static final int VERSION = 3;
+
+	private static final int KIND_LIBRARY = 0;
+	private static final int KIND_APPLICATION = 1;
+	private static final int KIND_PHANTOM = 2;
+
+	/**
+	 * Tags of the types that are not singletons, see {@link #singletonTypes()}
+	 * for the others
+	 */
+	private static final int TYPE_REF = -1;
+	private static final int TYPE_ARRAY = -2;
+	private static final int TYPE_ANY_SUB = -3;
+
+	/**
+	 * Offsets into the snapshot are ints, and a file cannot be mapped as a
+	 * whole if it is larger than this
+	 */
+	private static final long MAX_SIZE = Integer.MAX_VALUE;
+
+	private final Map<String, Integer> writtenStrings = new HashMap<String, Integer>();
+	private final List<String> readStrings = new ArrayList<String>();
+
+	/**
+	 * Writes all classes of the current Scene to the given file
+	 * @param file The file to write the snapshot to
+	 * @param includeBodies True if the bodies of all concrete methods shall
+	 * be included. Bodies that have not been loaded yet are retrieved first.
+	 * @throws IOException Thrown if the snapshot file cannot be written
+	 */
+	public void save(File file, boolean includeBodies) throws IOException {
+		writtenStrings.clear();
+		ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+		ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(metadata);
+
+		List<SootClass> classes = new ArrayList<SootClass>(Scene.v().getClasses());
+
+		// Write all class headers first, so that the reader can create
+		// all classes before it resolves references between them
+		out.writeInt(classes.size());
+		for (SootClass sc : classes) {
+			writeString(out, sc.getName());
+			out.writeInt(sc.getModifiers());
+			out.writeByte(sc.resolvingLevel());
+			if (sc.isPhantomClass())
+				out.writeByte(KIND_PHANTOM);
+			else if (sc.isApplicationClass())
+				out.writeByte(KIND_APPLICATION);
+			else
+				out.writeByte(KIND_LIBRARY);
+		}
+
+		for (SootClass sc : classes) {
+			writeClassMembers(out, sc, includeBodies ? bodies : null);
+		}
+		out.close();
+
+		checkSize(13L + metadata.size() + bodies.size());
+		DataOutputStream fileOut = new DataOutputStream(new FileOutputStream(file));
+		try {
+			fileOut.writeInt(MAGIC);
+			fileOut.writeInt(VERSION);
+			fileOut.writeBoolean(includeBodies);
+			fileOut.writeInt(metadata.size());
+			metadata.writeTo(fileOut);
+			bodies.writeTo(fileOut);
+		} finally {
+			fileOut.close();
+		}
+	}
+
+	private void writeClassMembers(DataOutputStream out, SootClass sc,
+			ByteArrayOutputStream bodies) throws IOException {
+		if (sc.resolvingLevel() < SootClass.HIERARCHY)
+			return;
+
+		out.writeBoolean(sc.hasSuperclass());
+		if (sc.hasSuperclass())
+			writeString(out, sc.getSuperclass().getName());
+		out.writeInt(sc.getInterfaceCount());
+		for (SootClass iface : sc.getInterfaces())
+			writeString(out, iface.getName());
+		out.writeBoolean(sc.hasOuterClass());
+		if (sc.hasOuterClass())
+			writeString(out, sc.getOuterClass().getName());
+
+		if (sc.resolvingLevel() < SootClass.SIGNATURES)
+			return;
+
+		out.writeInt(sc.getFieldCount());
+		for (SootField f : sc.getFields()) {
+			writeString(out, f.getName());
+			writeType(out, f.getType());
+			out.writeInt(f.getModifiers());
+			out.writeBoolean(f.isPhantom());
+		}
+
+		boolean withBodies = bodies != null && sc.resolvingLevel() >= SootClass.BODIES;
+		List<SootMethod> methods = new ArrayList<SootMethod>(sc.getMethods());
+		out.writeInt(methods.size());
+		for (SootMethod m : methods) {
+			writeString(out, m.getName());
+			out.writeInt(m.getModifiers());
+			out.writeBoolean(m.isPhantom());
+			writeType(out, m.getReturnType());
+			out.writeInt(m.getParameterCount());
+			for (Type t : m.getParameterTypes())
+				writeType(out, t);
+			out.writeInt(m.getExceptions().size());
+			for (SootClass ex : m.getExceptions())
+				writeString(out, ex.getName());
+
+			if (withBodies && m.isConcrete() && !m.isPhantom()) {
+				int offset = bodies.size();
+				PrintWriter pw = new PrintWriter(new OutputStreamWriter(bodies, "UTF-8"));
+				Printer.v().printStandaloneTo(m.retrieveActiveBody(), pw);
+				pw.flush();
+				checkSize(bodies.size());
+				out.writeInt(offset);
+				out.writeInt(bodies.size() - offset);
+			}
+			else
+				out.writeInt(-1);
+		}
+	}
+
+	/**
+	 * Restores the classes stored in the given snapshot file into the
+	 * current Scene
+	 * @param file The snapshot file to read
+	 * @throws IOException Thrown if the snapshot file cannot be read or
+	 * has not been written by a compatible version of Soot
+	 */
+	public void load(File file) throws IOException {
+		readStrings.clear();
+
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			checkSize(channel.size());
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("Not a Soot scene snapshot: " + file);
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported scene snapshot version " + version
+					+ ", expected " + VERSION);
+		boolean hasBodies = buffer.get() != 0;
+		byte[] metadata = new byte[buffer.getInt()];
+		buffer.get(metadata);
+		ByteBuffer bodies = buffer.slice();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(metadata));
+
+		// Create all classes first
+		int classCount = in.readInt();
+		List<SootClass> classes = new ArrayList<SootClass>(classCount);
+		List<Integer> levels = new ArrayList<Integer>(classCount);
+		for (int i = 0; i < classCount; i++) {
+			String name = readString(in);
+			int modifiers = in.readInt();
+			int level = in.readByte();
+			int kind = in.readByte();
+
+			SootClass sc = Scene.v().containsClass(name)
+					? Scene.v().getSootClass(name) : null;
+			if (sc == null) {
+				sc = new SootClass(name, modifiers);
+				sc.setResolvingLevel(SootClass.DANGLING);
+				Scene.v().addClass(sc);
+			}
+			else if (sc.resolvingLevel() > SootClass.DANGLING) {
+				// This class was resolved before, we must not restore it
+				// again
+				classes.add(null);
+				levels.add(level);
+				continue;
+			}
+			else
+				sc.setModifiers(modifiers);
+
+			if (kind == KIND_PHANTOM)
+				sc.setPhantomClass();
+			else if (kind == KIND_APPLICATION)
+				sc.setApplicationClass();
+			else
+				sc.setLibraryClass();
+			classes.add(sc);
+			levels.add(level);
+		}
+
+		for (int i = 0; i < classCount; i++) {
+			SootClass sc = classes.get(i);
+			int level = levels.get(i);
+			readClassMembers(in, sc, level, hasBodies ? bodies : null);
+			if (sc == null)
+				continue;
+
+			// Without bodies, we can only offer signatures
+			if (level >= SootClass.BODIES && !hasBodies)
+				level = SootClass.SIGNATURES;
+			sc.setResolvingLevel(level);
+		}
+		Scene.v().releaseActiveHierarchy();
+		Scene.v().releaseFastHierarchy();
+	}
+
+	/**
+	 * Reads the members of a single class
+	 * @param sc The class to fill, or null if the data shall only be
+	 * skipped
+	 */
+	private void readClassMembers(DataInputStream in, SootClass sc, int level,
+			ByteBuffer bodies) throws IOException {
+		if (level < SootClass.HIERARCHY)
+			return;
+
+		if (in.readBoolean()) {
+			SootClass superClass = getClass(readString(in));
+			if (sc != null)
+				sc.setSuperclass(superClass);
+		}
+		int ifaceCount = in.readInt();
+		for (int i = 0; i < ifaceCount; i++) {
+			SootClass iface = getClass(readString(in));
+			if (sc != null)
+				sc.addInterface(iface);
+		}
+		if (in.readBoolean()) {
+			SootClass outerClass = getClass(readString(in));
+			if (sc != null)
+				sc.setOuterClass(outerClass);
+		}
+
+		if (level < SootClass.SIGNATURES)
+			return;
+
+		int fieldCount = in.readInt();
+		for (int i = 0; i < fieldCount; i++) {
+			String name = readString(in);
+			Type type = readType(in);
+			int modifiers = in.readInt();
+			boolean phantom = in.readBoolean();
+			if (sc != null) {
+				SootField f = new SootField(name, type, modifiers);
+				sc.addField(f);
+				f.setPhantom(phantom);
+			}
+		}
+
+		int methodCount = in.readInt();
+		for (int i = 0; i < methodCount; i++) {
+			String name = readString(in);
+			int modifiers = in.readInt();
+			boolean phantom = in.readBoolean();
+			Type returnType = readType(in);
+			int paramCount = in.readInt();
+			List<Type> paramTypes = new ArrayList<Type>(paramCount);
+			for (int j = 0; j < paramCount; j++)
+				paramTypes.add(readType(in));
+			int exCount = in.readInt();
+			List<SootClass> exceptions = new ArrayList<SootClass>(exCount);
+			for (int j = 0; j < exCount; j++)
+				exceptions.add(getClass(readString(in)));
+			int bodyOffset = in.readInt();
+			int bodyLength = bodyOffset < 0 ? 0 : in.readInt();
+
+			if (sc != null) {
+				SootMethod m = new SootMethod(name, paramTypes, returnType,
+						modifiers, exceptions);
+				sc.addMethod(m);
+				m.setPhantom(phantom);
+				if (bodyOffset >= 0 && bodies != null)
+					m.setSource(new SnapshotMethodSource(bodies, bodyOffset, bodyLength));
+			}
+		}
+	}
+
+	private SootClass getClass(String name) {
+		return SootResolver.v().makeClassRef(name);
+	}
+
+	private void writeString(DataOutputStream out, String s) throws IOException {
+		Integer id = writtenStrings.get(s);
+		if (id != null)
+			out.writeInt(id);
+		else {
+			writtenStrings.put(s, writtenStrings.size());
+			out.writeInt(-1);
+			out.writeUTF(s);
+		}
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		if (id >= 0)
+			return readStrings.get(id);
+		String s = in.readUTF();
+		readStrings.add(s);
+		return s;
+	}
+
+	/**
+	 * Fails if a snapshot of the given size cannot be written or mapped
+	 */
+	private static void checkSize(long size) throws IOException {
+		if (size > MAX_SIZE)
+			throw new IOException("Scene snapshot exceeds the maximum size of "
+					+ MAX_SIZE + " bytes");
+	}
+
+	/**
+	 * Returns the types of which there is only a single instance. The index
+	 * of a type in this array is its tag in the snapshot.
+	 */
+	private static Type[] singletonTypes() {
+		return new Type[] { BooleanType.v(), ByteType.v(), CharType.v(),
+				ShortType.v(), IntType.v(), LongType.v(), FloatType.v(),
+				DoubleType.v(), VoidType.v(), NullType.v(), UnknownType.v(),
+				ErroneousType.v(), StmtAddressType.v(), WordType.v(),
+				DoubleWordType.v(), BottomType.v(), Integer1Type.v(),
+				Integer127Type.v(), Integer32767Type.v(), Long2ndHalfType.v(),
+				Double2ndHalfType.v(), UnusuableType.v() };
+	}
+
+	private void writeType(DataOutputStream out, Type t) throws IOException {
+		if (t instanceof RefType) {
+			out.writeByte(TYPE_REF);
+			writeString(out, ((RefType) t).getClassName());
+		}
+		else if (t instanceof ArrayType) {
+			ArrayType at = (ArrayType) t;
+			out.writeByte(TYPE_ARRAY);
+			out.writeInt(at.numDimensions);
+			writeType(out, at.baseType);
+		}
+		else if (t instanceof AnySubType) {
+			out.writeByte(TYPE_ANY_SUB);
+			writeString(out, ((AnySubType) t).getBase().getClassName());
+		}
+		else {
+			Type[] types = singletonTypes();
+			for (int i = 0; i < types.length; i++) {
+				if (types[i] == t) {
+					out.writeByte(i);
+					return;
+				}
+			}
+			throw new IOException("Type " + t + " of class " + t.getClass().getName()
+					+ " cannot be stored in a scene snapshot");
+		}
+	}
+
+	private Type readType(DataInputStream in) throws IOException {
+		int tag = in.readByte();
+		switch (tag) {
+		case TYPE_REF:
+			return RefType.v(readString(in));
+		case TYPE_ARRAY:
+			int dims = in.readInt();
+			return ArrayType.v(readType(in), dims);
+		case TYPE_ANY_SUB:
+			return AnySubType.v(RefType.v(readString(in)));
+		default:
+			Type[] types = singletonTypes();
+			if (tag < 0 || tag >= types.length)
+				throw new IOException("Unknown type tag " + tag + " in scene snapshot");
+			return types[tag];
+		}
+	}
+
+	/**
+	 * Method source that parses a method body from the memory-mapped
+	 * snapshot file when it is first requested
+	 */
+	private static class SnapshotMethodSource implements MethodSource {
+
+		private final ByteBuffer bodies;
+		private final int offset;
+		private final int length;
+
+		SnapshotMethodSource(ByteBuffer bodies, int offset, int length) {
+			this.bodies = bodies;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public Body getBody(SootMethod m, String phaseName) {
+			byte[] text = new byte[length];
+			ByteBuffer buf = bodies.duplicate();
+			buf.position(offset);
+			buf.get(text);
+			try {
+				return new JimpleAST(new InputStreamReader(
+						new ByteArrayInputStream(text), "UTF-8")).getBody(m);
+			} catch (Exception e) {
+				throw new RuntimeException("Could not read body of " + m.getSignature()
+						+ " from scene snapshot", e);
+			}
+		}
+
+	}
+
+}
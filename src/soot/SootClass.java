@@ -114,7 +114,7 @@ public class SootClass extends AbstractHost implements Numberable {
 	public final static int HIERARCHY = 1;
 	public final static int SIGNATURES = 2;
 	public final static int BODIES = 3;
-	private int resolvingLevel = DANGLING;
+	private volatile int resolvingLevel = DANGLING;
 
 	private String levelToString(int level) {
 		switch (level) {
@@ -133,7 +133,9 @@ public class SootClass extends AbstractHost implements Numberable {
 
 	/**
 	 * Checks if the class has at lease the resolving level specified. This
-	 * check does nothing is the class resolution process is not completed.
+	 * check does nothing is the class resolution process is not completed,
+	 * or while the current thread is resolving classes. With lazy resolving,
+	 * the class is instead resolved to the given level on demand.
 	 * 
 	 * @param level
 	 *            the resolution level, one of DANGLING, HIERARCHY, SIGNATURES,
@@ -142,8 +144,18 @@ public class SootClass extends AbstractHost implements Numberable {
 	 *             if the resolution is at an insufficient level
 	 */
 	public void checkLevel(int level) {
+		if (resolvingLevel >= level)
+			return;
+		if (Options.v().lazy_resolving() && isInScene) {
+			SootResolver resolver = SootResolver.v();
+			if (!resolver.isResolving())
+				resolver.resolve(this, level);
+			return;
+		}
 		if (!Scene.v().doneResolving() || Options.v().ignore_resolving_levels())
 			return;
+		if (SootResolver.v().isResolving())
+			return;
 		checkLevelIgnoreResolving(level);
 	}
 
@@ -641,6 +653,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		methodList.add(m);
 		m.setDeclared(true);
 		m.setDeclaringClass(this);
+		Scene.v().methodsChanged();
 	}
 
 	synchronized SootMethod getOrAddMethod(SootMethod m) {
@@ -654,6 +667,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		methodList.add(m);
 		m.setDeclared(true);
 		m.setDeclaringClass(this);
+		Scene.v().methodsChanged();
 		return m;
 	}
 
@@ -674,6 +688,7 @@ public class SootClass extends AbstractHost implements Numberable {
 		subSigToMethods.put(m.getNumberedSubSignature(), null);
 		methodList.remove(m);
 		m.setDeclared(false);
+		Scene.v().methodsChanged();
 	}
 
 	/**
@@ -176,7 +176,7 @@ public class SootMethod
         }
         Scene.v().getMethodNumberer().add(this);
         subsignature =
-            Scene.v().getSubSigNumberer().findOrAdd(getSubSignature());
+            getNumberedSubSignature(name, parameterTypes, returnType);
         
         
     }
@@ -251,7 +251,7 @@ public class SootMethod
         if( wasDeclared ) oldDeclaringClass.removeMethod(this);
         this.name = name;
         subsignature =
-            Scene.v().getSubSigNumberer().findOrAdd(getSubSignature());
+            getNumberedSubSignature(name, parameterTypes, returnType);
         if( wasDeclared) oldDeclaringClass.addMethod(this);
     }
 
@@ -267,6 +267,7 @@ public class SootMethod
         if ((declaringClass != null) && (!declaringClass.isApplicationClass()))
             throw new RuntimeException("Cannot set modifiers of a method from a non-app class!");
         this.modifiers = modifiers;
+        Scene.v().methodsChanged();
     }
 
     /** Returns the return type of this method. */
@@ -281,7 +282,7 @@ public class SootMethod
         if( wasDeclared ) oldDeclaringClass.removeMethod(this);
         returnType = t;
         subsignature =
-            Scene.v().getSubSigNumberer().findOrAdd(getSubSignature());
+            getNumberedSubSignature(name, parameterTypes, returnType);
         if( wasDeclared) oldDeclaringClass.addMethod(this);
     }
 
@@ -311,7 +312,7 @@ public class SootMethod
         if( wasDeclared ) oldDeclaringClass.removeMethod(this);
         this.parameterTypes = Collections.unmodifiableList(new ArrayList<Type>(l));
         subsignature =
-            Scene.v().getSubSigNumberer().findOrAdd(getSubSignature());
+            getNumberedSubSignature(name, parameterTypes, returnType);
         if( wasDeclared) oldDeclaringClass.addMethod(this);
     }
 
@@ -603,7 +604,7 @@ public class SootMethod
         buffer.append("<");
         buffer.append(Scene.v().quotedNameOf(cl.getName()));
         buffer.append(": ");
-        buffer.append(getSubSignatureImpl(name, params, returnType));
+        appendSubSignature(buffer, name, params, returnType);
         buffer.append(">");
 
         // Again, memory-usage tweak depending on JDK implementation due
@@ -634,7 +635,29 @@ public class SootMethod
         List<Type> params,
         Type returnType) {
         StringBuilder buffer = new StringBuilder();
-        
+        appendSubSignature(buffer, name, params, returnType);
+        return buffer.toString().intern();
+    }
+
+    /**
+     * Returns the numbered subsignature for the given name, parameter types
+     * and return type. The subsignature is looked up in the scene's
+     * numberer without creating an intermediate String.
+     */
+    public static NumberedString getNumberedSubSignature(
+        String name,
+        List<Type> params,
+        Type returnType) {
+        StringBuilder buffer = new StringBuilder();
+        appendSubSignature(buffer, name, params, returnType);
+        return Scene.v().getSubSigNumberer().findOrAdd(buffer);
+    }
+
+    private static void appendSubSignature(
+        StringBuilder buffer,
+        String name,
+        List<Type> params,
+        Type returnType) {
         buffer.append(returnType.getEscapedName());
         
         buffer.append(" ");
@@ -647,8 +670,6 @@ public class SootMethod
                 buffer.append(",");
         }
         buffer.append(")");
-
-        return buffer.toString().intern();
     }
 
     private NumberedString subsignature;
@@ -76,8 +76,7 @@ class SootMethodRefImpl implements SootMethodRef {
 
     public NumberedString getSubSignature() {
         if( subsig == null ) {
-            subsig = Scene.v().getSubSigNumberer().findOrAdd(
-                SootMethod.getSubSignature( name, parameterTypes, returnType ));
+            subsig = SootMethod.getNumberedSubSignature( name, parameterTypes, returnType );
         }
         return subsig;
     }
@@ -29,12 +29,18 @@ package soot;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import soot.JastAddJ.BytecodeParser;
 import soot.JastAddJ.CompilationUnit;
@@ -44,25 +50,48 @@ import soot.JastAddJ.Program;
 import soot.javaToJimple.IInitialResolver.Dependencies;
 import soot.options.Options;
 
-/** Loads symbols for SootClasses from either class files or jimple files. */
+/**
+ * Loads symbols for SootClasses from either class files or jimple files.
+ * 
+ * The resolver can be used from several threads at once. Every thread works
+ * off its own worklist, and each resolution step of a class holds the lock
+ * of that class, so different classes are resolved concurrently while
+ * threads that need the same class wait for each other. A thread only waits
+ * for a lock while it holds no other one; a class that a class source
+ * resolves while its own class is locked is put off if another thread holds
+ * its lock, so threads cannot deadlock. A class is only
+ * raised to a new resolving level once the step is complete, so other
+ * threads never see a half-resolved class. Changes to the set of classes in
+ * the Scene are serialized.
+ * 
+ * With -lazy-resolving, a class is only resolved as far as requested, and
+ * the classes it refers to are resolved when they are first touched; see
+ * {@link SootClass#checkLevel(int)}.
+ */
 public class SootResolver {
 	/** Maps each resolved class to a list of all references in it. */
-	private final Map<SootClass, Collection<Type>> classToTypesSignature = new HashMap<SootClass, Collection<Type>>();
+	private final Map<SootClass, Collection<Type>> classToTypesSignature = new ConcurrentHashMap<SootClass, Collection<Type>>();
 
 	/** Maps each resolved class to a list of all references in it. */
-	private final Map<SootClass, Collection<Type>> classToTypesHierarchy = new HashMap<SootClass, Collection<Type>>();
+	private final Map<SootClass, Collection<Type>> classToTypesHierarchy = new ConcurrentHashMap<SootClass, Collection<Type>>();
+
+	/** The resolver state of each thread. */
+	private final ThreadLocal<ResolverState> state = new ThreadLocal<ResolverState>() {
+		@Override
+		protected ResolverState initialValue() {
+			return new ResolverState();
+		}
+	};
 
-	/** SootClasses waiting to be resolved. */
-	@SuppressWarnings("unchecked")
-	private final Deque<SootClass>[] worklist = new Deque[4];
+	/** Guards the changes the resolver makes to the classes of the Scene. */
+	private final Object sceneLock = new Object();
+
+	/** Guards raising the resolving level of each class. */
+	private final ConcurrentMap<SootClass, ReentrantLock> classLocks = new ConcurrentHashMap<SootClass, ReentrantLock>();
 
 	private Program program = null;
 
 	public SootResolver(Singletons.Global g) {
-		worklist[SootClass.HIERARCHY] = new ArrayDeque<SootClass>();
-		worklist[SootClass.SIGNATURES] = new ArrayDeque<SootClass>();
-		worklist[SootClass.BODIES] = new ArrayDeque<SootClass>();
-		
 		if (Options.v().src_prec() != Options.src_prec_apk_c_j) {
 			program = new Program();
 			program.state().reset();
@@ -95,7 +124,7 @@ public class SootResolver {
 
 	/** Returns true if we are resolving all class refs recursively. */
 	private boolean resolveEverything() {
-		if (Options.v().on_the_fly())
+		if (Options.v().on_the_fly() || Options.v().lazy_resolving())
 			return false;
 		return (Options.v().whole_program() || Options.v().whole_shimple()
 				|| Options.v().full_resolver() || Options.v().output_format() == Options.output_format_dava);
@@ -110,15 +139,17 @@ public class SootResolver {
 		// If this class name is escaped, we need to un-escape it
 		className = Scene.v().unescapeName(className);
 		
-		if (Scene.v().containsClass(className))
-			return Scene.v().getSootClass(className);
-
-		SootClass newClass;
-		newClass = new SootClass(className);
-		newClass.setResolvingLevel(SootClass.DANGLING);
-		Scene.v().addClass(newClass);
-
-		return newClass;
+		synchronized (sceneLock) {
+			if (Scene.v().containsClass(className))
+				return Scene.v().getSootClass(className);
+	
+			SootClass newClass;
+			newClass = new SootClass(className);
+			newClass.setResolvingLevel(SootClass.DANGLING);
+			Scene.v().addClass(newClass);
+	
+			return newClass;
+		}
 	}
 
 	/**
@@ -128,26 +159,75 @@ public class SootResolver {
 	 * */
 	public SootClass resolveClass(String className, int desiredLevel) {
 		SootClass resolvedClass = null;
+		ResolverState st = state.get();
+		st.depth++;
 		try {
 			resolvedClass = makeClassRef(className);
 			addToResolveWorklist(resolvedClass, desiredLevel);
-			processResolveWorklist();
+			processResolveWorklist(st);
 			return resolvedClass;
 		} catch (SootClassNotFoundException e) {
 			// remove unresolved class and rethrow
 			if (resolvedClass != null) {
-				assert resolvedClass.resolvingLevel() == SootClass.DANGLING;
-				Scene.v().removeClass(resolvedClass);
+				synchronized (sceneLock) {
+					if (resolvedClass.resolvingLevel() == SootClass.DANGLING
+							&& resolvedClass.isInScene())
+						Scene.v().removeClass(resolvedClass);
+				}
 			}
 			throw e;
+		} finally {
+			leave(st);
 		}
 	}
 
-	/** Resolve all classes on toResolveWorklist. */
-	private void processResolveWorklist() {
+	/**
+	 * Resolves the given class, which must already be known to the Scene, to
+	 * at least the given level. This is how classes are resolved on demand
+	 * when they are first touched.
+	 */
+	public void resolve(SootClass sc, int desiredLevel) {
+		if (sc.resolvingLevel() >= desiredLevel)
+			return;
+		ResolverState st = state.get();
+		st.depth++;
+		try {
+			addToResolveWorklist(sc, desiredLevel);
+			processResolveWorklist(st);
+		} finally {
+			leave(st);
+		}
+	}
+
+	/**
+	 * Returns true if the current thread is resolving classes. Resolving
+	 * levels are not checked for such threads, as classes are incomplete
+	 * while they are being built.
+	 */
+	public boolean isResolving() {
+		return state.get().depth > 0;
+	}
+
+	/**
+	 * Ends a resolver call of the current thread. When the outermost call
+	 * ends, the Scene learns about all classes that joined the hierarchy
+	 * during the call at once.
+	 */
+	private void leave(ResolverState st) {
+		if (--st.depth > 0)
+			return;
+		boolean hierarchyChanged = st.hierarchyChanged;
+		st.clear();
+		if (hierarchyChanged)
+			Scene.v().hierarchyChanged();
+	}
+
+	/** Resolve all classes on the worklist of the current thread. */
+	private void processResolveWorklist(ResolverState st) {
+		List<Deque<SootClass>> worklist = st.worklist;
 		for (int i = SootClass.BODIES; i >= SootClass.HIERARCHY; i--) {
-			while (!worklist[i].isEmpty()) {
-				SootClass sc = worklist[i].pop();
+			while (!worklist.get(i).isEmpty()) {
+				SootClass sc = worklist.get(i).pop();
 				if (resolveEverything()) { // Whole program mode
 					boolean onlySignatures = sc.isPhantom()
 							|| (Options.v().no_bodies_for_excluded()
@@ -155,7 +235,9 @@ public class SootResolver {
 									.getBasicClasses().contains(sc.getName()));
 					if (onlySignatures) {
 						bringToSignatures(sc);
-						sc.setPhantomClass();
+						synchronized (sceneLock) {
+							sc.setPhantomClass();
+						}
 						for (SootMethod m : sc.getMethods()) {
 							m.setPhantom(true);
 						}
@@ -179,6 +261,10 @@ public class SootResolver {
 				}
 			}
 		}
+		// Classes that were put off are added again once the last class lock
+		// is released, possibly at a level that was already done
+		if (st.held == 0 && !st.isEmpty())
+			processResolveWorklist(st);
 	}
 
 	private void addToResolveWorklist(Type type, int level) {
@@ -191,22 +277,90 @@ public class SootResolver {
 		// Other types ignored
 	}
 
+	/**
+	 * Returns the lock guarding the resolution of the given class. The
+	 * SootClass monitor itself is public and may be held by client code.
+	 */
+	private ReentrantLock lockFor(SootClass sc) {
+		ReentrantLock lock = classLocks.get(sc);
+		if (lock == null) {
+			ReentrantLock newLock = new ReentrantLock();
+			lock = classLocks.putIfAbsent(sc, newLock);
+			if (lock == null)
+				lock = newLock;
+		}
+		return lock;
+	}
+
+	/**
+	 * Locks the given class for a resolution step towards the given level.
+	 * If the current thread already holds the lock of another class and the
+	 * lock is taken, the class is put off until that lock is released, and
+	 * false is returned.
+	 */
+	private boolean lock(SootClass sc, int level) {
+		ResolverState st = state.get();
+		ReentrantLock lock = lockFor(sc);
+		if (st.held == 0)
+			lock.lock();
+		else if (!lock.tryLock()) {
+			defer(sc, level);
+			return false;
+		}
+		st.held++;
+		return true;
+	}
+
+	private void defer(SootClass sc, int level) {
+		state.get().deferred.get(level).add(sc);
+	}
+
+	private void unlock(SootClass sc) {
+		ResolverState st = state.get();
+		lockFor(sc).unlock();
+		if (--st.held == 0) {
+			for (int i = SootClass.HIERARCHY; i <= SootClass.BODIES; i++) {
+				st.worklist.get(i).addAll(st.deferred.get(i));
+				st.deferred.get(i).clear();
+			}
+		}
+	}
+
 	private void addToResolveWorklist(SootClass sc, int desiredLevel) {
 		if (sc.resolvingLevel() >= desiredLevel)
 			return;
-		worklist[desiredLevel].add(sc);
+		state.get().worklist.get(desiredLevel).add(sc);
 	}
 
 	/**
 	 * Hierarchy - we know the hierarchy of the class and that's it requires at
 	 * least Hierarchy for all supertypes and enclosing types.
 	 * */
-	private void bringToHierarchy(SootClass sc) {
+	private boolean bringToHierarchy(SootClass sc) {
 		if (sc.resolvingLevel() >= SootClass.HIERARCHY)
-			return;
+			return true;
+		Set<SootClass> active = state.get().active;
+		if (!active.add(sc))
+			return true;
+		try {
+			if (!lock(sc, SootClass.HIERARCHY))
+				return false;
+			try {
+				if (sc.resolvingLevel() < SootClass.HIERARCHY)
+					resolveHierarchy(sc);
+			} finally {
+				unlock(sc);
+			}
+		} finally {
+			active.remove(sc);
+		}
+		reResolveHierarchy(sc);
+		return true;
+	}
+
+	private void resolveHierarchy(SootClass sc) {
 		if (Options.v().debug_resolver())
 			G.v().out.println("bringing to HIERARCHY: " + sc);
-		sc.setResolvingLevel(SootClass.HIERARCHY);
 
 		String className = sc.getName();
 		ClassSource is = SourceLocator.v().getClassSource(className);
@@ -235,7 +389,9 @@ public class SootResolver {
 				} else {
 					G.v().out.println("Warning: " + className
 							+ " is a phantom class!");
-					sc.setPhantomClass();
+					synchronized (sceneLock) {
+						sc.setPhantomClass();
+					}
 					classToTypesSignature.put(sc, Collections.<Type> emptyList());
 					classToTypesHierarchy.put(sc, Collections.<Type> emptyList());
 				}
@@ -251,7 +407,14 @@ public class SootResolver {
 			if (is != null)
 				is.close();
 		}
-		reResolveHierarchy(sc);
+		// Some class sources already raise the level themselves
+		if (sc.resolvingLevel() < SootClass.HIERARCHY)
+			sc.setResolvingLevel(SootClass.HIERARCHY);
+
+		// With lazy resolving, classes may join the hierarchy after it has
+		// been built, so the hierarchies computed so far are outdated
+		if (Options.v().lazy_resolving())
+			state.get().hierarchyChanged = true;
 	}
 
 	public void reResolveHierarchy(SootClass sc) {
@@ -269,24 +432,37 @@ public class SootResolver {
 	 * Signatures - we know the signatures of all methods and fields requires at
 	 * least Hierarchy for all referred to types in these signatures.
 	 * */
-	private void bringToSignatures(SootClass sc) {
+	private boolean bringToSignatures(SootClass sc) {
 		if (sc.resolvingLevel() >= SootClass.SIGNATURES)
-			return;
-		bringToHierarchy(sc);
-		if (Options.v().debug_resolver())
-			G.v().out.println("bringing to SIGNATURES: " + sc);
-		sc.setResolvingLevel(SootClass.SIGNATURES);
-
-		for (SootField f : sc.getFields()) {
-			addToResolveWorklist(f.getType(), SootClass.HIERARCHY);
+			return true;
+		if (!bringToHierarchy(sc)) {
+			defer(sc, SootClass.SIGNATURES);
+			return false;
+		}
+		if (!lock(sc, SootClass.SIGNATURES))
+			return false;
+		try {
+			if (sc.resolvingLevel() >= SootClass.SIGNATURES)
+				return true;
+			if (Options.v().debug_resolver())
+				G.v().out.println("bringing to SIGNATURES: " + sc);
+			sc.setResolvingLevel(SootClass.SIGNATURES);
+		} finally {
+			unlock(sc);
 		}
-		for (SootMethod m : sc.getMethods()) {
-			addToResolveWorklist(m.getReturnType(), SootClass.HIERARCHY);
-			for (Type ptype : m.getParameterTypes()) {
-				addToResolveWorklist(ptype, SootClass.HIERARCHY);
+
+		if (!Options.v().lazy_resolving()) {
+			for (SootField f : sc.getFields()) {
+				addToResolveWorklist(f.getType(), SootClass.HIERARCHY);
 			}
-			for (SootClass exception : m.getExceptions()) {
-				addToResolveWorklist(exception, SootClass.HIERARCHY);
+			for (SootMethod m : sc.getMethods()) {
+				addToResolveWorklist(m.getReturnType(), SootClass.HIERARCHY);
+				for (Type ptype : m.getParameterTypes()) {
+					addToResolveWorklist(ptype, SootClass.HIERARCHY);
+				}
+				for (SootClass exception : m.getExceptions()) {
+					addToResolveWorklist(exception, SootClass.HIERARCHY);
+				}
 			}
 		}
 
@@ -296,6 +472,7 @@ public class SootResolver {
 		for (SootClass iface : sc.getInterfaces()) {
 			addToResolveWorklist(iface, SootClass.SIGNATURES);
 		}
+		return true;
 	}
 
 	/**
@@ -310,10 +487,26 @@ public class SootResolver {
 	private void bringToBodies(SootClass sc) {
 		if (sc.resolvingLevel() >= SootClass.BODIES)
 			return;
-		bringToSignatures(sc);
-		if (Options.v().debug_resolver())
-			G.v().out.println("bringing to BODIES: " + sc);
-		sc.setResolvingLevel(SootClass.BODIES);
+		if (!bringToSignatures(sc)) {
+			defer(sc, SootClass.BODIES);
+			return;
+		}
+		if (!lock(sc, SootClass.BODIES))
+			return;
+		try {
+			if (sc.resolvingLevel() >= SootClass.BODIES)
+				return;
+			if (Options.v().debug_resolver())
+				G.v().out.println("bringing to BODIES: " + sc);
+			sc.setResolvingLevel(SootClass.BODIES);
+		} finally {
+			unlock(sc);
+		}
+
+		// With lazy resolving, referenced classes are resolved when the
+		// bodies touch them
+		if (Options.v().lazy_resolving())
+			return;
 
 		{
 			Collection<Type> references = classToTypesHierarchy.get(sc);
@@ -346,10 +539,16 @@ public class SootResolver {
 		int resolvingLevel = cl.resolvingLevel();
 		if (resolvingLevel >= newResolvingLevel)
 			return;
-		reResolveHierarchy(cl);
-		cl.setResolvingLevel(newResolvingLevel);
-		addToResolveWorklist(cl, resolvingLevel);
-		processResolveWorklist();
+		ResolverState st = state.get();
+		st.depth++;
+		try {
+			reResolveHierarchy(cl);
+			cl.setResolvingLevel(newResolvingLevel);
+			addToResolveWorklist(cl, resolvingLevel);
+			processResolveWorklist(st);
+		} finally {
+			leave(st);
+		}
 	}
 
 	public void reResolve(SootClass cl) {
@@ -360,6 +559,51 @@ public class SootResolver {
 		return program;
 	}
 
+	/** The worklists and the classes in progress of one thread. */
+	private static class ResolverState {
+		final List<Deque<SootClass>> worklist = new ArrayList<Deque<SootClass>>();
+
+		/** Classes put off because another thread held their lock. */
+		final List<Deque<SootClass>> deferred = new ArrayList<Deque<SootClass>>();
+
+		/** Classes being brought to HIERARCHY by this thread. */
+		final Set<SootClass> active = new HashSet<SootClass>();
+
+		/** Nesting depth of resolver calls on this thread. */
+		int depth = 0;
+
+		/** Number of class locks held by this thread. */
+		int held = 0;
+
+		/** Whether a class joined the hierarchy during the current call. */
+		boolean hierarchyChanged = false;
+
+		ResolverState() {
+			// Indexed by resolving level, DANGLING is never used
+			for (int i = SootClass.DANGLING; i <= SootClass.BODIES; i++) {
+				worklist.add(new ArrayDeque<SootClass>());
+				deferred.add(new ArrayDeque<SootClass>());
+			}
+		}
+
+		boolean isEmpty() {
+			for (int i = SootClass.HIERARCHY; i <= SootClass.BODIES; i++)
+				if (!worklist.get(i).isEmpty())
+					return false;
+			return true;
+		}
+
+		/** Drops what is left over after an exception. */
+		void clear() {
+			for (int i = SootClass.HIERARCHY; i <= SootClass.BODIES; i++) {
+				worklist.get(i).clear();
+				deferred.get(i).clear();
+			}
+			active.clear();
+			hierarchyChanged = false;
+		}
+	}
+
 	private class SootClassNotFoundException extends RuntimeException {
 		/**
 		 * 
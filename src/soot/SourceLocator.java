@@ -61,20 +61,23 @@ public class SourceLocator
     /** Given a class name, uses the soot-class-path to return a ClassSource for the given class. */
 	public ClassSource getClassSource(String className) 
     {
-		if(classesToLoad==null) {
-			classesToLoad = new HashSet<String>();
-			classesToLoad.addAll(Scene.v().getBasicClasses());
-			for(SootClass c: Scene.v().getApplicationClasses()) {
-				classesToLoad.add(c.getName());
+		// Classes may be resolved on several threads at once
+		synchronized (this) {
+			if(classesToLoad==null) {
+				classesToLoad = new HashSet<String>();
+				classesToLoad.addAll(Scene.v().getBasicClasses());
+				for(SootClass c: Scene.v().getApplicationClasses()) {
+					classesToLoad.add(c.getName());
+				}
 			}
+	    	
+	        if( classPath == null ) {
+	            classPath = explodeClassPath(Scene.v().getSootClassPath());
+	        }
+	        if( classProviders == null ) {
+	            setupClassProviders();
+	        }
 		}
-    	
-        if( classPath == null ) {
-            classPath = explodeClassPath(Scene.v().getSootClassPath());
-        }
-        if( classProviders == null ) {
-            setupClassProviders();
-        }
         JarException ex = null;
         for (ClassProvider cp : classProviders) {
             try {
@@ -546,6 +549,7 @@ public class SourceLocator
         private String entryName;
         private ZipFile zipFile;
         private ZipEntry zipEntry;
+        private ClassPathIndex.ArchiveEntry indexedEntry;
         private List<InputStream> openedInputStreams;
         
         FoundFile(String archivePath, String entryName) {
@@ -556,6 +560,11 @@ public class SourceLocator
         	this.entryName = entryName;
         }
     	
+        FoundFile(ClassPathIndex.ArchiveEntry entry) {
+        	this(entry.getArchivePath(), entry.getName());
+        	this.indexedEntry = entry;
+        }
+    	
         FoundFile(File file) {
         	this();
         	if(file == null)
@@ -590,6 +599,13 @@ public class SourceLocator
         		} catch(Exception e) {
         			throw new RuntimeException("Error: Failed to open a InputStream for the file at path '" + file.getPath() + "'.",e);
         		}
+        	} else if(indexedEntry != null && indexedEntry.isMapped()) {
+        		try {
+        			ret = indexedEntry.open();
+        		} catch(Exception e) {
+        			throw new RuntimeException("Error: Failed to open a InputStream for the entry '" + entryName + 
+        					"' of the archive at path '" + file.getPath() + "'.",e);
+        		}
         	} else {
         		if(zipFile == null) {
         			try {
@@ -699,22 +715,61 @@ public class SourceLocator
     	}
     }
 
-    /** Searches for a file with the given name in the exploded classPath. */
+    /**
+     * Searches for a file with the given name in the exploded classPath. Archives are looked up
+     * in the {@link ClassPathIndex}; directories on the class path before the archive found there
+     * still take precedence.
+     */
     public FoundFile lookupInClassPath( String fileName ) {
-        for (String dir : classPath) {
-            FoundFile ret = null;
-            ClassSourceType cst = getClassSourceType(dir);
-            if(cst == ClassSourceType.zip || cst == ClassSourceType.jar) {
-                ret = lookupInArchive(dir, fileName);
-            }
-            else if (cst == ClassSourceType.directory) {
-                ret = lookupInDir(dir, fileName);
-            }
+        ClassPathIndex index = classPathIndex();
+        ClassPathIndex.ArchiveEntry entry = index.getEntry(fileName);
+        int limit = entry == null ? Integer.MAX_VALUE : entry.getClassPathPosition();
+        for (int pos : index.getDirectoryPositions()) {
+            if( pos >= limit )
+                break;
+            FoundFile ret = lookupInDir(index.getClassPath().get(pos), fileName);
             if( ret != null )
             	return ret;
         }
-        return null;
+        return entry == null ? null : new FoundFile(entry);
     }
+
+    private volatile ClassPathIndex classPathIndex;
+
+    /** Returns the index of the current class path, building it if the class path changed. */
+    public ClassPathIndex classPathIndex() {
+        ClassPathIndex index = classPathIndex;
+        if( index != null && index.getClassPath() == classPath )
+            return index;
+        synchronized (this) {
+            if( classPath == null )
+                classPath = explodeClassPath(Scene.v().getSootClassPath());
+            index = classPathIndex;
+            if( index != null && index.getClassPath() == classPath )
+                return index;
+
+            String cacheName = Options.v().class_path_index();
+            File cacheFile = cacheName.length() > 0 ? new File(cacheName) : null;
+            index = new ClassPathIndex(classPath, cacheFile);
+            for (int i = 0; i < classPath.size(); i++) {
+                ClassSourceType cst = getClassSourceType(classPath.get(i));
+                if(cst == ClassSourceType.zip || cst == ClassSourceType.jar)
+                    index.addArchive(i);
+                else if (cst == ClassSourceType.directory)
+                    index.addDirectory(i);
+            }
+            if( cacheFile != null ) {
+                try {
+                    index.saveCache(cacheFile);
+                } catch( IOException e ) {
+                    G.v().out.println("Warning: Could not write the class path index to " + cacheName + ": " + e);
+                }
+            }
+            classPathIndex = index;
+            return index;
+        }
+    }
+
     private FoundFile lookupInDir(String dir, String fileName) {
         File f = new File( dir+File.separatorChar+fileName );
         if( f.canRead() ) {
@@ -723,45 +778,6 @@ public class SourceLocator
         return null;
     }
     
-    private LoadingCache<String, Set<String>> archivePathsToEntriesCache = CacheBuilder.newBuilder()
-    		.initialCapacity(60)
-    		.maximumSize(500)
-    		.softValues()
-    		.concurrencyLevel(Runtime.getRuntime().availableProcessors())
-    		.build(
-    				new CacheLoader<String, Set<String>>(){
-						@Override
-						public Set<String> load(String archivePath) throws Exception {
-							ZipFile archive = null;
-							try {
-								archive = new ZipFile(archivePath);
-								Set<String> ret = new HashSet<String>();
-								Enumeration<? extends ZipEntry> it = archive.entries();
-								while(it.hasMoreElements()){
-									ret.add(it.nextElement().getName());
-								}
-								return ret;
-							} finally {
-								if(archive != null)
-									archive.close();
-							}
-						}
-    				}
-    );
-    
-    private FoundFile lookupInArchive(String archivePath, String fileName) {
-    	Set<String> entryNames = null;
-    	try {
-    		entryNames = archivePathsToEntriesCache.get(archivePath);
-    	} catch(Exception e) {
-    		throw new RuntimeException("Error: Failed to retrieve the archive entries list for the archive at path '" + archivePath + "'.",e);
-    	}
-    	if(entryNames.contains(fileName)){
-    		return new FoundFile(archivePath, fileName);
-    	}
-    	return null;
-    }
-   
     /** Returns the name of the class in which the (possibly inner) class
      * className appears. */
     public String getSourceForClass(String className) {
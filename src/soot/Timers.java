@@ -29,6 +29,11 @@ import java.text.DecimalFormat;
 
 import soot.options.Options;
 
+/**
+ * A fixed set of timers for some of the older parts of Soot, reported
+ * under -time. Measurements of every pack and transform are taken by
+ * {@link PhaseMetrics}.
+ */
 public class Timers
 {
     public Timers( Singletons.Global g ) {}
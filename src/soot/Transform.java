@@ -79,30 +79,42 @@ public class Transform implements HasPhaseOptions
 
     public void apply() {
         Map<String, String> options = PhaseOptions.v().getPhaseOptions( phaseName );
+        PhaseMetrics.Probe probe = null;
         if( PhaseOptions.getBoolean( options, "enabled" ) ) {
             if( Options.v().verbose()  ) {
                 G.v().out.println( "Applying phase "+phaseName+" to the scene." );
             }
+            probe = PhaseMetrics.v().start( phaseName, PhaseEvent.Kind.TRANSFORM, null );
         }
 	if (DEBUG)
 	    PhaseDumper.v().dumpBefore(getPhaseName());
 
-        ((SceneTransformer) t).transform( phaseName, options );
+        try {
+            ((SceneTransformer) t).transform( phaseName, options );
+        } finally {
+            PhaseMetrics.v().end( probe );
+        }
 
 	if (DEBUG)
 	    PhaseDumper.v().dumpAfter(getPhaseName());
     }
     public void apply(Body b) {
         Map<String, String> options = PhaseOptions.v().getPhaseOptions( phaseName );
+        PhaseMetrics.Probe probe = null;
         if( PhaseOptions.getBoolean( options, "enabled" ) ) {
             if( Options.v().verbose() ) {
                 G.v().out.println( "Applying phase "+phaseName+" to "+b.getMethod()+"." );
             }
+            probe = PhaseMetrics.v().start( phaseName, PhaseEvent.Kind.TRANSFORM, b );
         }
 	if (DEBUG)
 	    PhaseDumper.v().dumpBefore(b, getPhaseName());
 
-        ((BodyTransformer) t).transform( b, phaseName, options );
+        try {
+            ((BodyTransformer) t).transform( b, phaseName, options );
+        } finally {
+            PhaseMetrics.v().end( probe );
+        }
 
 	if (DEBUG)
 	    PhaseDumper.v().dumpAfter(b, getPhaseName());
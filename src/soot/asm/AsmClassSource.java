@@ -23,11 +23,14 @@ import java.io.InputStream;
 
 import org.objectweb.asm.ClassReader;
 
+import soot.CachingMethodSource;
 import soot.ClassSource;
 import soot.SootClass;
 import soot.SourceLocator.FoundFile;
 import soot.javaToJimple.IInitialResolver.Dependencies;
 
+import com.google.common.io.ByteStreams;
+
 /**
  * ASM class source implementation.
  * 
@@ -54,9 +57,18 @@ class AsmClassSource extends ClassSource {
 		InputStream d = null;
 		try {
 			d = foundFile.inputStream();
-			ClassReader clsr = new ClassReader(d);
+			ClassReader clsr;
+			byte[] classBytes = null;
+			if (CachingMethodSource.isCacheEnabled()) {
+				classBytes = ByteStreams.toByteArray(d);
+				clsr = new ClassReader(classBytes);
+			}
+			else
+				clsr = new ClassReader(d);
 			SootClassBuilder scb = new SootClassBuilder(sc);
 			clsr.accept(scb, ClassReader.SKIP_FRAMES);
+			if (classBytes != null)
+				CachingMethodSource.wrapMethodSources(sc, classBytes);
 			Dependencies deps = new Dependencies();
 			deps.typesToSignature.addAll(scb.deps);
 			return deps;
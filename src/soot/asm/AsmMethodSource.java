@@ -155,11 +155,13 @@ final class AsmMethodSource implements MethodSource {
 	
 	/* -state fields- */
 	private int nextLocal;
-	private Map<Integer, Local> locals;
+	/* indexed by local index, stack locals follow the bytecode locals */
+	private ArrayList<Local> locals;
 	private Multimap<LabelNode, UnitBox> labels;
-	private Map<AbstractInsnNode, Unit> units;
+	/* indexed by instruction index, see insnIndex */
+	private Unit[] units;
 	private ArrayList<Operand> stack;
-	private Map<AbstractInsnNode, StackFrame> frames;
+	private StackFrame[] frames;
 	private Multimap<LabelNode, UnitBox> trapHandlers;
 	private JimpleBody body;
 	private int lastLineNumber = -1;
@@ -170,6 +172,7 @@ final class AsmMethodSource implements MethodSource {
 	private final List<TryCatchBlockNode> tryCatchBlocks;
 	
 	private final Set<LabelNode> inlineExceptionLabels = new HashSet<LabelNode>();
+	private Set<LabelNode> branchTargets;
 	private final Map<LabelNode, Unit> inlineExceptionHandlers = new HashMap<LabelNode, Unit>();
 	
 	private final CastAndReturnInliner castAndReturnInliner = new CastAndReturnInliner();
@@ -183,20 +186,32 @@ final class AsmMethodSource implements MethodSource {
 		this.tryCatchBlocks = tryCatchBlocks;
 	}
 	
+	/* InsnList caches the index of every instruction on first use, so
+	 * per-instruction state can live in plain arrays */
+	private int insnIndex(AbstractInsnNode insn) {
+		return instructions.indexOf(insn);
+	}
+	
 	private StackFrame getFrame(AbstractInsnNode insn) {
-		StackFrame frame = frames.get(insn);
+		int idx = insnIndex(insn);
+		StackFrame frame = frames[idx];
 		if (frame == null) {
 			frame = new StackFrame(this);
-			frames.put(insn, frame);
+			frames[idx] = frame;
 		}
 		return frame;
 	}
 	
+	private void putLocal(int idx, Local l) {
+		while (locals.size() <= idx)
+			locals.add(null);
+		locals.set(idx, l);
+	}
+	
 	private Local getLocal(int idx) {
 		if (idx >= maxLocals)
 			throw new IllegalArgumentException("Invalid local index: " + idx);
-		Integer i = idx;
-		Local l = locals.get(i);
+		Local l = locals.get(idx);
 		if (l == null) {
 			String name;
 			if (localVars != null) {
@@ -214,7 +229,7 @@ final class AsmMethodSource implements MethodSource {
 				name = "l" + idx;
 			}
 			l = Jimple.v().newLocal(name, UnknownType.v());
-			locals.put(i, l);
+			locals.set(idx, l);
 		}
 		return l;
 	}
@@ -339,29 +354,33 @@ final class AsmMethodSource implements MethodSource {
 				throw new RuntimeException("Line tag mismatch");
 		}
 		
-		Unit o = units.put(insn, u);
+		int idx = insnIndex(insn);
+		Unit o = units[idx];
+		units[idx] = u;
 		if (o != null)
 			throw new AssertionError(insn.getOpcode() + " already has a unit, " + o);
 	}
 	
 	void mergeUnits(AbstractInsnNode insn, Unit u) {
-		Unit prev = units.put(insn, u);
-		if (prev != null) {
-			Unit merged = new UnitContainer(prev, u);
-			units.put(insn, merged);
-		}
+		int idx = insnIndex(insn);
+		Unit prev = units[idx];
+		units[idx] = prev == null ? u : new UnitContainer(prev, u);
 	}
 	
 	Local newStackLocal() {
-		Integer idx = nextLocal++;
+		int idx = nextLocal++;
 		Local l = Jimple.v().newLocal("$stack" + idx, UnknownType.v());
-		locals.put(idx, l);
+		putLocal(idx, l);
 		return l;
 	}
 	
 	@SuppressWarnings("unchecked")
 	<A extends Unit> A getUnit(AbstractInsnNode insn) {
-		return (A) units.get(insn);
+		return (A) units[insnIndex(insn)];
+	}
+	
+	private boolean hasUnit(AbstractInsnNode insn) {
+		return units[insnIndex(insn)] != null;
 	}
 	
 	private void assignReadOps(Local l) {
@@ -502,7 +521,7 @@ final class AsmMethodSource implements MethodSource {
 	private void convertIincInsn(IincInsnNode insn) {
 		Local local = getLocal(insn.var);
 		assignReadOps(local);
-		if (!units.containsKey(insn)) {
+		if (!hasUnit(insn)) {
 			AddExpr add = Jimple.v().newAddExpr(local, IntConstant.v(insn.incr));
 			setUnit(insn, Jimple.v().newAssignStmt(local, add));
 		}
@@ -570,7 +589,7 @@ final class AsmMethodSource implements MethodSource {
 		int op = insn.getOpcode();
 		boolean dword = op == LASTORE || op == DASTORE;
 		StackFrame frame = getFrame(insn);
-		if (!units.containsKey(insn)) {
+		if (!hasUnit(insn)) {
 			Operand valu = dword ? popImmediateDual() : popImmediate();
 			Operand indx = popImmediate();
 			Operand base = popLocal();
@@ -848,7 +867,7 @@ final class AsmMethodSource implements MethodSource {
 		int op = insn.getOpcode();
 		boolean dword = op == LRETURN || op == DRETURN;
 		StackFrame frame = getFrame(insn);
-		if (!units.containsKey(insn)) {
+		if (!hasUnit(insn)) {
 			Operand val = dword ? popImmediateDual() : popImmediate();
 			ReturnStmt ret = Jimple.v().newReturnStmt(val.stackOrValue());
 			val.addBox(ret.getOpBox());
@@ -867,8 +886,8 @@ final class AsmMethodSource implements MethodSource {
 			 * We can ignore NOP instructions, but
 			 * for completeness, we handle them
 			 */
-			if (!units.containsKey(insn))
-				units.put(insn, Jimple.v().newNopStmt());
+			if (!hasUnit(insn))
+				units[insnIndex(insn)] = Jimple.v().newNopStmt();
 		} else if (op >= ACONST_NULL && op <= DCONST_1) {
 			convertConstInsn(insn);
 		} else if (op >= IALOAD && op <= SALOAD) {
@@ -902,12 +921,12 @@ final class AsmMethodSource implements MethodSource {
 		} else if (op >= IRETURN && op <= ARETURN) {
 			convertReturnInsn(insn);
 		} else if (op == RETURN) {
-			if (!units.containsKey(insn))
+			if (!hasUnit(insn))
 				setUnit(insn, Jimple.v().newReturnVoidStmt());
 		} else if (op == ATHROW) {
 			StackFrame frame = getFrame(insn);
 			Operand opr;
-			if (!units.containsKey(insn)) {
+			if (!hasUnit(insn)) {
 				opr = popImmediate();
 				ThrowStmt ts = Jimple.v().newThrowStmt(opr.stackOrValue());
 				opr.addBox(ts.getOpBox());
@@ -922,7 +941,7 @@ final class AsmMethodSource implements MethodSource {
 			push(opr);
 		} else if (op == MONITORENTER || op == MONITOREXIT) {
 			StackFrame frame = getFrame(insn);
-			if (!units.containsKey(insn)) {
+			if (!hasUnit(insn)) {
 				Operand opr = popStackConst();
 				MonitorStmt ts = op == MONITORENTER ?
 						Jimple.v().newEnterMonitorStmt(opr.stackOrValue()) :
@@ -998,7 +1017,7 @@ final class AsmMethodSource implements MethodSource {
 	private void convertJumpInsn(JumpInsnNode insn) {
 		int op = insn.getOpcode();
 		if (op == GOTO) {
-			if (!units.containsKey(insn)) {
+			if (!hasUnit(insn)) {
 				UnitBox box = Jimple.v().newStmtBox(null);
 				labels.put(insn.label, box);
 				setUnit(insn, Jimple.v().newGotoStmt(box));
@@ -1007,7 +1026,7 @@ final class AsmMethodSource implements MethodSource {
 		}
 		/* must be ifX insn */
 		StackFrame frame = getFrame(insn);
-		if (!units.containsKey(insn)) {
+		if (!hasUnit(insn)) {
 			Operand val = popImmediate();
 			Value v = val.stackOrValue();
 			ConditionExpr cond;
@@ -1112,7 +1131,7 @@ final class AsmMethodSource implements MethodSource {
 	
 	private void convertLookupSwitchInsn(LookupSwitchInsnNode insn) {
 		StackFrame frame = getFrame(insn);
-		if (units.containsKey(insn)) {
+		if (hasUnit(insn)) {
 			frame.mergeIn(pop());
 			return;
 		}
@@ -1229,7 +1248,7 @@ final class AsmMethodSource implements MethodSource {
 			pushDual(opr);
 		else if (!(returnType instanceof VoidType))
 			push(opr);
-		else if (!units.containsKey(insn))
+		else if (!hasUnit(insn))
 			setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
 		/*
 		 * assign all read ops in case the method modifies any of the fields
@@ -1314,7 +1333,7 @@ final class AsmMethodSource implements MethodSource {
 			pushDual(opr);
 		else if (!(returnType instanceof VoidType))
 			push(opr);
-		else if (!units.containsKey(insn))
+		else if (!hasUnit(insn))
 			setUnit(insn, Jimple.v().newInvokeStmt(opr.value));
 		/*
 		 * assign all read ops in case the method modifies any of the fields
@@ -1367,7 +1386,7 @@ final class AsmMethodSource implements MethodSource {
 	
 	private void convertTableSwitchInsn(TableSwitchInsnNode insn) {
 		StackFrame frame = getFrame(insn);
-		if (units.containsKey(insn)) {
+		if (hasUnit(insn)) {
 			frame.mergeIn(pop());
 			return;
 		}
@@ -1455,7 +1474,7 @@ final class AsmMethodSource implements MethodSource {
 		StackFrame frame = getFrame(insn);
 		Operand opr = dword ? popDual() : pop();
 		Local local = getLocal(insn.var);
-		if (!units.containsKey(insn)) {
+		if (!hasUnit(insn)) {
 			DefinitionStmt as = Jimple.v().newAssignStmt(local, opr.stackOrValue());
 			opr.addBox(as.getRightOpBox());
 			frame.boxes(as.getRightOpBox());
@@ -1475,7 +1494,7 @@ final class AsmMethodSource implements MethodSource {
 			convertVarStoreInsn(insn);
 		} else if (op == RET) {
 			/* we handle it, even thought it should be removed */
-			if (!units.containsKey(insn))
+			if (!hasUnit(insn))
 				setUnit(insn, Jimple.v().newRetStmt(getLocal(insn.var)));
 		} else {
 			throw new AssertionError("Unknown var op: " + op);
@@ -1490,7 +1509,7 @@ final class AsmMethodSource implements MethodSource {
 		// somewhere from the real exception handler in case this is inline
 		// code
 		if (inlineExceptionLabels.contains(ln)) {
-			if (!units.containsKey(ln)) {
+			if (!hasUnit(ln)) {
 				NopStmt nop = Jimple.v().newNopStmt();
 				setUnit(ln, nop);
 			}
@@ -1545,7 +1564,7 @@ final class AsmMethodSource implements MethodSource {
 	private void addEdges(AbstractInsnNode cur,
 			AbstractInsnNode tgt1, List<LabelNode> tgts) {
 		int lastIdx = tgts == null ? -1 : tgts.size() - 1;
-		Operand[] stackss = (new ArrayList<Operand>(stack)).toArray(new Operand[stack.size()]);
+		Operand[] stackss = stack.toArray(new Operand[stack.size()]);
 		AbstractInsnNode tgt = tgt1;
 		int i = 0;
 		tgt_loop:
@@ -1687,27 +1706,22 @@ final class AsmMethodSource implements MethodSource {
 		// code, we have to split the exceptional case (with the exception on
 		// the stack) from the normal fall-through case without anything on the
 		// stack.
-		for (Iterator<AbstractInsnNode> it = instructions.iterator(); it.hasNext(); ) {
-			AbstractInsnNode node = it.next();
-			if (node instanceof JumpInsnNode) {
-				if (((JumpInsnNode) node).label == ln) {
-					inlineExceptionLabels.add(ln);
-					return true;
-				}
-			}
-			else if (node instanceof LookupSwitchInsnNode) {
-				if (((LookupSwitchInsnNode) node).labels.contains(ln)) {
-					inlineExceptionLabels.add(ln);
-					return true;
-				}
-			}
-			else if (node instanceof TableSwitchInsnNode) {
-				if (((TableSwitchInsnNode) node).labels.contains(ln)) {
-					inlineExceptionLabels.add(ln);
-					return true;
-				}
+		if (branchTargets == null) {
+			branchTargets = new HashSet<LabelNode>();
+			for (Iterator<AbstractInsnNode> it = instructions.iterator(); it.hasNext(); ) {
+				AbstractInsnNode node = it.next();
+				if (node instanceof JumpInsnNode)
+					branchTargets.add(((JumpInsnNode) node).label);
+				else if (node instanceof LookupSwitchInsnNode)
+					branchTargets.addAll(((LookupSwitchInsnNode) node).labels);
+				else if (node instanceof TableSwitchInsnNode)
+					branchTargets.addAll(((TableSwitchInsnNode) node).labels);
 			}
 		}
+		if (branchTargets.contains(ln)) {
+			inlineExceptionLabels.add(ln);
+			return true;
+		}
 		return false;
 	}
 
@@ -1733,8 +1747,9 @@ final class AsmMethodSource implements MethodSource {
 			else
 				iloc++;
 		}
-		for (Local l : locals.values()){
-			jbl.add(l);
+		for (Local l : locals){
+			if (l != null)
+				jbl.add(l);
 		}
 	}
 	
@@ -1779,7 +1794,7 @@ final class AsmMethodSource implements MethodSource {
 				labls.add((LabelNode) insn);
 			
 			// Get the unit associated with the current instruction
-			Unit u = units.get(insn);
+			Unit u = units[insnIndex(insn)];
 			if (u == null) {
 				insn = insn.getNext();
 				continue;
@@ -1828,7 +1843,7 @@ final class AsmMethodSource implements MethodSource {
 				ub.setUnit(handler);
 			
 			// We need to jump to the original implementation
-			Unit targetUnit = units.get(ln);
+			Unit targetUnit = units[insnIndex(ln)];
 			GotoStmt gotoImpl = Jimple.v().newGotoStmt(targetUnit);
 			body.getUnits().add(gotoImpl);
 		}
@@ -1867,10 +1882,12 @@ final class AsmMethodSource implements MethodSource {
 		/* initialize */
 		int nrInsn = instructions.size();
 		nextLocal = maxLocals;
-		locals = new HashMap<Integer, Local>(maxLocals + (maxLocals / 2));
+		locals = new ArrayList<Local>(maxLocals + (maxLocals / 2));
+		for (int i = 0; i < maxLocals; i++)
+			locals.add(null);
 		labels = ArrayListMultimap.create(4, 1);
-		units = new HashMap<AbstractInsnNode, Unit>(nrInsn);
-		frames = new HashMap<AbstractInsnNode, StackFrame>(nrInsn);
+		units = new Unit[nrInsn];
+		frames = new StackFrame[nrInsn];
 		trapHandlers = ArrayListMultimap.create(tryCatchBlocks.size(),1);
 		body = jb;
 		/* retrieve all trap handlers */
@@ -1894,6 +1911,7 @@ final class AsmMethodSource implements MethodSource {
 		units = null;
 		stack = null;
 		frames = null;
+		branchTargets = null;
 		body = null;
 		
 		// Make sure to inline patterns of the form to enable proper variable
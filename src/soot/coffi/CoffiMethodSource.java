@@ -92,12 +92,8 @@ public class CoffiMethodSource implements MethodSource
              G.v().out.println("[" + m.getName() +
                     "]     Producing naive Jimple...");
 
-         boolean oldPhantomValue = Scene.v().getPhantomRefs();
-
-         Scene.v().setPhantomRefs(true);
          coffiMethod.cfg.jimplify(coffiClass.constant_pool,
              coffiClass.this_class, coffiClass.bootstrap_methods_attribute, jb);
-         Scene.v().setPhantomRefs(oldPhantomValue);
 
         if(Options.v().time())
             Timers.v().conversionTimer.end();
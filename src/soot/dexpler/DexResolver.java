@@ -25,8 +25,11 @@
 package soot.dexpler;
 
 import java.io.File;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import soot.G;
 import soot.Singletons;
@@ -35,7 +38,7 @@ import soot.javaToJimple.IInitialResolver.Dependencies;
 
 public class DexResolver {
 
-	private Map<File,DexlibWrapper> cache = new TreeMap<File, DexlibWrapper>();
+	private final ConcurrentMap<File, FutureTask<DexlibWrapper>> cache = new ConcurrentHashMap<File, FutureTask<DexlibWrapper>>();
 
     public DexResolver(Singletons.Global g) {}
 
@@ -50,19 +53,58 @@ public class DexResolver {
      * @return the dependencies of this class.
      */
     public Dependencies resolveFromFile(File file, String className, SootClass sc) {
-    	DexlibWrapper wrapper = cache.get(file);
-    	if(wrapper==null) {
-    		wrapper = new DexlibWrapper(file);
-    		cache.put(file, wrapper);
-    		wrapper.initialize();
-    	}
-
+    	DexlibWrapper wrapper = getWrapper(file);
         Dependencies deps = wrapper.makeSootClass(sc, className);
         addSourceFileTag(sc, "dalvik_source_" + file.getName());
 
         return deps;
     }
 
+    /**
+     * Returns the loaded wrapper for the given file. Classes may be resolved
+     * on several threads, so the file is loaded only once: the first thread
+     * that asks for it loads it, and the others wait for the result. No lock
+     * is held meanwhile. The types the file refers to are resolved after the
+     * wrapper is published, as this resolves classes from the same file.
+     */
+    private DexlibWrapper getWrapper(final File file) {
+    	FutureTask<DexlibWrapper> task = cache.get(file);
+    	if(task==null) {
+    		FutureTask<DexlibWrapper> newTask = new FutureTask<DexlibWrapper>(new Callable<DexlibWrapper>() {
+    			@Override
+    			public DexlibWrapper call() {
+    				DexlibWrapper wrapper = new DexlibWrapper(file);
+    				wrapper.load();
+    				return wrapper;
+    			}
+    		});
+    		task = cache.putIfAbsent(file, newTask);
+    		if(task==null) {
+    			newTask.run();
+    			DexlibWrapper wrapper = getLoadedWrapper(file, newTask);
+    			wrapper.resolveTypes();
+    			return wrapper;
+    		}
+    	}
+    	return getLoadedWrapper(file, task);
+    }
+
+    private DexlibWrapper getLoadedWrapper(File file, FutureTask<DexlibWrapper> task) {
+    	try {
+    		return task.get();
+    	} catch (InterruptedException e) {
+    		throw new RuntimeException("Interrupted while waiting for " + file + " to be loaded", e);
+    	} catch (ExecutionException e) {
+    		// A failed load is not cached, so a later request tries again
+    		cache.remove(file, task);
+    		if (e.getCause() instanceof RuntimeException)
+    			throw (RuntimeException) e.getCause();
+    		if (e.getCause() instanceof Error)
+    			throw (Error) e.getCause();
+    		throw new RuntimeException(e.getCause());
+    	}
+    }
+
     /**
      *  adds source file tag to each sootclass
      */
@@ -25,17 +25,28 @@
 package soot.dexpler;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import org.jf.dexlib2.DexFileFactory;
 import org.jf.dexlib2.Opcodes;
 import org.jf.dexlib2.dexbacked.DexBackedDexFile;
@@ -77,14 +88,39 @@ public class DexlibWrapper {
 				.unmodifiableSet(systemAnnotationNamesModifiable);
 	}
 
+	/** A class definition together with the dex file that contains it. */
+	private static final class ClassDefEntry {
+		final ClassDef defItem;
+		final DexFile dexFile;
+
+		ClassDefEntry(ClassDef defItem, DexFile dexFile) {
+			this.defItem = defItem;
+			this.dexFile = dexFile;
+		}
+	}
+
+	/** A loaded dex file with its class definitions and referenced types. */
+	private static final class LoadedDex {
+		final DexFile dexFile;
+		final Map<String, ClassDef> classes = new LinkedHashMap<String, ClassDef>();
+		final List<String> types = new ArrayList<String>();
+
+		LoadedDex(DexFile dexFile) {
+			this.dexFile = dexFile;
+		}
+	}
+
 	private List<DexFile> dexFiles;
 	private final DexClassLoader dexLoader = new DexClassLoader();
-	private final Map<String, ClassDef> classesToDefItems = new HashMap<String, ClassDef>();
+	private final Map<String, ClassDefEntry> classesToDefItems = new HashMap<String, ClassDefEntry>();
 	
 	private final static Set<String> systemAnnotationNames;
 
 	private final File inputDexFile;
 
+	/** The types referenced by the loaded dex files, until they are resolved. */
+	private Set<String> types;
+
 	/**
 	 * Construct a DexlibWrapper from a dex file and stores its classes
 	 * referenced by their name. No further process is done here.
@@ -98,79 +134,189 @@ public class DexlibWrapper {
 		this.dexFiles = new ArrayList<DexFile>();
 	}
 
+	/**
+	 * Loads the dex file, or all dex files of a multi-dex archive, and
+	 * resolves the types they refer to. Method bodies are only converted when
+	 * they are first retrieved.
+	 */
 	public void initialize() {
-		ZipFile archive = null;
-		try {
-			int api = 24; // TODO: this matters now so it should be a soot option
-			if(Options.v().process_multiple_dex() && (inputDexFile.getName().endsWith(".apk") || 
-					inputDexFile.getName().endsWith(".zip") || inputDexFile.getName().endsWith(".jar"))){
+		load();
+		resolveTypes();
+	}
+
+	/**
+	 * Loads the dex file, or all dex files of a multi-dex archive. Archives
+	 * are read concurrently with one dex file per worker thread, which also
+	 * indexes its class definitions and collects its types. Nothing is
+	 * resolved in the Scene, and classes can be made from the wrapper
+	 * afterwards.
+	 */
+	void load() {
+		final int api = 24; // TODO: this matters now so it should be a soot option
+		List<String> dexEntries = new ArrayList<String>();
+		if(Options.v().process_multiple_dex() && (inputDexFile.getName().endsWith(".apk") || 
+				inputDexFile.getName().endsWith(".zip") || inputDexFile.getName().endsWith(".jar"))){
+			ZipFile archive = null;
+			try {
 	            archive = new ZipFile(inputDexFile);
 				for (Enumeration<? extends ZipEntry> entries = archive.entries(); entries.hasMoreElements();) {
-					ZipEntry entry = entries.nextElement();
-					String entryName = entry.getName();
+					String entryName = entries.nextElement().getName();
 					// We are dealing with an apk file
-					if (entryName.endsWith(".dex")){
-						this.dexFiles.add(DexFileFactory.loadDexEntry(inputDexFile, entryName, true, Opcodes.forApi(api)));
-					}
+					if (entryName.endsWith(".dex"))
+						dexEntries.add(entryName);
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			} finally {
+				try{
+					if(archive != null)
+						archive.close();
+				}catch(Throwable t) {}
+			}
+    	}
+    	else
+    		dexEntries.add(null);
+
+		// Android looks at classes.dex first, then at classes2.dex,
+		// classes3.dex and so on, whatever their order in the archive
+		Collections.sort(dexEntries, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				if (a == null || b == null)
+					return 0;
+				int ia = multiDexIndex(a), ib = multiDexIndex(b);
+				if (ia != ib)
+					return ia < ib ? -1 : 1;
+				return a.compareTo(b);
+			}
+		});
+
+		List<LoadedDex> loaded = loadConcurrently(dexEntries, api);
+
+		// Index the class definitions. If several dex files define the same
+		// class, the first one wins, as on Android.
+		types = new LinkedHashSet<String>();
+		for (LoadedDex dex : loaded) {
+			this.dexFiles.add(dex.dexFile);
+			for (Map.Entry<String, ClassDef> e : dex.classes.entrySet())
+				if (!classesToDefItems.containsKey(e.getKey()))
+					classesToDefItems.put(e.getKey(), new ClassDefEntry(e.getValue(), dex.dexFile));
+			types.addAll(dex.types);
+		}
+	}
+
+	/**
+	 * Resolves the types referenced by the loaded dex files to signatures.
+	 * This may resolve classes from this wrapper again.
+	 */
+	void resolveTypes() {
+		Set<String> types = this.types;
+		this.types = null;
+		for (String t : types) {
+			Type st = DexType.toSoot(t);
+			if (st instanceof ArrayType) {
+				st = ((ArrayType) st).baseType;
+			}
+			Debug.printDbg("Type: ", t, " soot type:", st);
+			String sootTypeName = st.toString();
+			if (!Scene.v().containsClass(sootTypeName)) {
+				if (st instanceof PrimType || st instanceof VoidType
+						|| systemAnnotationNames.contains(sootTypeName)) {
+					// dex files contain references to the Type IDs of void
+					// / primitive types - we obviously do not want them to
+					// be resolved
+					/*
+					 * dex files contain references to the Type IDs of the
+					 * system annotations. They are only visible to the
+					 * Dalvik VM (for reflection, see
+					 * vm/reflect/Annotations.cpp), and not to the user - so
+					 * we do not want them to be resolved.
+					 */
+					continue;
 				}
-        	}
-        	else{
-        		this.dexFiles.add(DexFileFactory.loadDexFile(inputDexFile, Opcodes.forApi(api)));
-        	}
-		} catch (Exception e) {
-			throw new RuntimeException(e);
-		}finally{
-			try{
-				if(archive != null)
-					archive.close();
-			}catch(Throwable t) {}
+				SootResolver.v().makeClassRef(sootTypeName);
+			}
+			SootResolver.v().resolveClass(sootTypeName,
+					SootClass.SIGNATURES);
 		}
+	}
 
-		for(DexFile dexFile: this.dexFiles){
-			for (ClassDef defItem : dexFile.getClasses()) {
-				String forClassName = Util.dottedClassName(defItem.getType());
-				classesToDefItems.put(forClassName, defItem);
+	/**
+	 * Returns the position of the given archive entry in the multi-dex
+	 * order, in which classes.dex is 1 and classesN.dex is N. Other dex
+	 * files come last.
+	 */
+	private static int multiDexIndex(String entryName) {
+		if (entryName.equals("classes.dex"))
+			return 1;
+		if (entryName.startsWith("classes") && entryName.endsWith(".dex")) {
+			try {
+				return Integer.parseInt(entryName.substring("classes".length(),
+						entryName.length() - ".dex".length()));
+			} catch (NumberFormatException e) {
+				// not a multi-dex name
 			}
 		}
-		
-		for(DexFile dexFile: this.dexFiles){
-			if (dexFile instanceof DexBackedDexFile) {
-				DexBackedDexFile dbdf = (DexBackedDexFile) dexFile;
-				for (int i = 0; i < dbdf.getTypeCount(); i++) {
-					String t = dbdf.getType(i);
-	
-					Type st = DexType.toSoot(t);
-					if (st instanceof ArrayType) {
-						st = ((ArrayType) st).baseType;
-					}
-					Debug.printDbg("Type: ", t, " soot type:", st);
-					String sootTypeName = st.toString();
-					if (!Scene.v().containsClass(sootTypeName)) {
-						if (st instanceof PrimType || st instanceof VoidType
-								|| systemAnnotationNames.contains(sootTypeName)) {
-							// dex files contain references to the Type IDs of void
-							// / primitive types - we obviously do not want them to
-							// be resolved
-							/*
-							 * dex files contain references to the Type IDs of the
-							 * system annotations. They are only visible to the
-							 * Dalvik VM (for reflection, see
-							 * vm/reflect/Annotations.cpp), and not to the user - so
-							 * we do not want them to be resolved.
-							 */
-							continue;
-						}
-						SootResolver.v().makeClassRef(sootTypeName);
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Loads the given dex entries of the input file, or the input file itself
+	 * for a null entry, on one worker thread per entry. Returns the loaded
+	 * files in the order of the entries.
+	 */
+	private List<LoadedDex> loadConcurrently(List<String> dexEntries, final int api) {
+		int threadNum = Math.max(1, Math.min(dexEntries.size(), Runtime.getRuntime().availableProcessors()));
+		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum,
+				threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		try {
+			List<Future<LoadedDex>> futures = new ArrayList<Future<LoadedDex>>();
+			for (final String entryName : dexEntries) {
+				futures.add(executor.submit(new Callable<LoadedDex>() {
+
+					@Override
+					public LoadedDex call() throws Exception {
+						return loadDex(entryName, api);
 					}
-					SootResolver.v().resolveClass(sootTypeName,
-							SootClass.SIGNATURES);
-				}
-			} else {
-				System.out
-						.println("Warning: DexFile not instance of DexBackedDexFile! Not resolving types!");
-				System.out.println("type: " + dexFile.getClass());
+
+				}));
 			}
+			List<LoadedDex> res = new ArrayList<LoadedDex>(futures.size());
+			for (Future<LoadedDex> f : futures)
+				res.add(f.get());
+			return res;
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Could not wait for dex loading threads to "
+					+ "finish: " + e.getMessage(), e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private LoadedDex loadDex(String entryName, int api) throws IOException {
+		DexFile dexFile = entryName == null
+				? DexFileFactory.loadDexFile(inputDexFile, Opcodes.forApi(api))
+				: DexFileFactory.loadDexEntry(inputDexFile, entryName, true, Opcodes.forApi(api));
+		LoadedDex dex = new LoadedDex(dexFile);
+		for (ClassDef defItem : dexFile.getClasses()) {
+			String forClassName = Util.dottedClassName(defItem.getType());
+			if (!dex.classes.containsKey(forClassName))
+				dex.classes.put(forClassName, defItem);
+		}
+		if (dexFile instanceof DexBackedDexFile) {
+			DexBackedDexFile dbdf = (DexBackedDexFile) dexFile;
+			for (int i = 0; i < dbdf.getTypeCount(); i++)
+				dex.types.add(dbdf.getType(i));
+		} else {
+			System.out
+					.println("Warning: DexFile not instance of DexBackedDexFile! Not resolving types!");
+			System.out.println("type: " + dexFile.getClass());
 		}
+		return dex;
 	}
 
 	public Dependencies makeSootClass(SootClass sc, String className) {
@@ -178,10 +324,9 @@ public class DexlibWrapper {
 			className = Util.dottedClassName(className);
 		}
 
-		for(DexFile dexFile: this.dexFiles){
-			ClassDef defItem = classesToDefItems.get(className);			
-			return dexLoader.makeSootClass(sc, defItem, dexFile);
-		}
+		ClassDefEntry entry = classesToDefItems.get(className);
+		if (entry != null)
+			return dexLoader.makeSootClass(sc, entry.defItem, entry.dexFile);
 		
 		throw new RuntimeException("Error: class not found in DEX files: "
 					+ className);
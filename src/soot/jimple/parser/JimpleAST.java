@@ -49,11 +49,19 @@ public class JimpleAST
      * @param aJIS The InputStream to parse.
      */
     public JimpleAST(InputStream aJIS) throws ParserException, LexerException, IOException
+    {
+        this(new InputStreamReader(aJIS));
+    }
+
+    /** Constructs a JimpleAST and generates its parse tree from the given Reader.
+     *
+     * @param aJIR The Reader to parse.
+     */
+    public JimpleAST(Reader aJIR) throws ParserException, LexerException, IOException
     {
         Parser p =
             new Parser(new Lexer(
-                    new PushbackReader(new BufferedReader(
-                    new InputStreamReader(aJIS)), 1024)));
+                    new PushbackReader(new BufferedReader(aJIR), 1024)));
         mTree = p.parse();
     }
 
@@ -121,11 +129,10 @@ public class JimpleAST
 
         Walker w = new BodyExtractorWalker(sc, SootResolver.v(), methodToBodyMap);
 
-        boolean oldPhantomValue = Scene.v().getPhantomRefs();
-
-        Scene.v().setPhantomRefs(true);
+        // Bodies may be parsed on several threads at once (see
+        // CachingMethodSource), so this must not touch global state such as
+        // Scene.setPhantomRefs()
         mTree.apply(w);
-        Scene.v().setPhantomRefs(oldPhantomValue);
         
         methodToParsedBodyMap = methodToBodyMap;
     }    
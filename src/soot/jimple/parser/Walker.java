@@ -460,9 +460,10 @@ public class Walker extends DepthFirstAdapter {
 		if (node.getDeclaration() != null) {
 			int size = node.getDeclaration().size();
 			for (int i = 0; i < size; i++) {
-				List<Local> localList = (List<Local>) mProductions.removeLast();
+				List<?> localList = (List<?>) mProductions.removeLast();
 
-				jBody.getLocals().addAll(localList);
+				for (Object local : localList)
+					jBody.getLocals().add((Local) local);
 			}
 		}
 
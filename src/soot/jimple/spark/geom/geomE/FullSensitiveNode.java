@@ -72,7 +72,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	
 	static {
 		stubManager = new GeometricManager();
-		pres = new RectangleNode(1, 1, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
+		RectangleNode pres = new RectangleNode(1, 1, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
 		stubManager.addNewFigure(GeometricManager.MANY_TO_MANY, pres);
 		deadManager = new GeometricManager();
 	}
@@ -201,6 +201,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2,
 			long L) 
 	{			
+		RectangleNode pres = candidateFigure();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L;
@@ -212,6 +213,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_points_to_4(AllocNode obj, long I1, long I2,
 			long L1, long L2) 
 	{
+		RectangleNode pres = candidateFigure();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L1;
@@ -224,6 +226,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1,
 			long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L;
@@ -235,6 +238,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	public boolean add_simple_constraint_4(IVarAbstraction qv, long I1,
 			long I2, long L1, long L2) 
 	{
+		RectangleNode pres = candidateFigure();
 		pres.I1 = I1;
 		pres.I2 = I2;
 		pres.L = L1;
@@ -687,6 +691,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private boolean addPointsTo(int code, AllocNode obj) 
 	{
+		RectangleNode pres = candidateFigure();
 		GeometricManager gm = pt_objs.get(obj);
 		
 		if ( gm == null ) {
@@ -713,6 +718,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private boolean addFlowsTo(int code, IVarAbstraction qv) 
 	{
+		RectangleNode pres = candidateFigure();
 		GeometricManager gm = flowto.get(qv);
 		
 		if ( gm == null ) {
@@ -756,6 +762,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private static int infer_pts_is_one_to_one( SegmentNode pts, SegmentNode pe, int code )
 	{
+		RectangleNode pres = candidateFigure();
 		long interI, interJ;
 		
 		// The left-end is the larger one
@@ -790,6 +797,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	 */
 	private static int infer_pts_is_many_to_many( RectangleNode pts, SegmentNode pe, int code )
 	{
+		RectangleNode pres = candidateFigure();
 		long interI, interJ;
 		
 		// The left-end is the larger one
@@ -859,6 +867,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	private static boolean instantiateLoadConstraint(FullSensitiveNode objn,
 			FullSensitiveNode qn, SegmentNode pts, int code ) 
 	{
+		RectangleNode pres = candidateFigure();
 		int ret_type = GeometricManager.Undefined_Mapping;
 		
 		if ( (code>>8) == GeometricManager.ONE_TO_ONE ) {
@@ -910,6 +919,7 @@ public class FullSensitiveNode extends IVarAbstraction
 	private static boolean instantiateStoreConstraint(FullSensitiveNode qn,
 			FullSensitiveNode objn, SegmentNode pts, int code) 
 	{
+		RectangleNode pres = candidateFigure();
 		int ret_type = GeometricManager.Undefined_Mapping;
 		
 		if ( (code>>8) == GeometricManager.ONE_TO_ONE ) {
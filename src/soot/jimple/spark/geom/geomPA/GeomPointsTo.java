@@ -24,16 +24,24 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import heros.solver.CountingThreadPoolExecutor;
 
 import soot.Context;
 import soot.G;
@@ -171,6 +179,9 @@ public class GeomPointsTo extends PAG
 	// Prepare necessary structures when first time ddSolve is called
 	private boolean ddPrepared = false;
 	
+	// Set while the regions are solved by several threads, which must not create nodes
+	private volatile boolean solvingConcurrently = false;
+	
 	// -------------------Constructors--------------------
 	public GeomPointsTo( final SparkOptions opts ) {
 		super(opts);
@@ -249,15 +260,7 @@ public class GeomPointsTo extends PAG
     		                                        + " is unavailable for geometric points-to analysis." );
     	
     	// Then, we set the worklist
-    	switch ( opts.geom_worklist() ) {
-    	case SparkOptions.geom_worklist_FIFO:
-    		worklist = new FIFO_Worklist();
-    		break;
-    		
-    	case SparkOptions.geom_worklist_PQ:
-    		worklist = new PQ_Worklist();
-    		break;
-    	}
+    	worklist = createWorklist();
     	
     	// We dump the processing statistics to an external file if needed by the user
     	dump_dir = opts.geom_dump_verbose();
@@ -327,6 +330,9 @@ public class GeomPointsTo extends PAG
 		Parameters.max_pts_budget = Parameters.max_cons_budget * 2;
 		Parameters.cg_refine_times = opts.geom_runs();
 		if ( Parameters.cg_refine_times < 1 ) Parameters.cg_refine_times = 1;
+		Parameters.thread_num = opts.geom_threads();
+		if ( Parameters.thread_num < 1 ) Parameters.thread_num = Runtime.getRuntime().availableProcessors();
+		Parameters.mem_budget = (long)opts.geom_mem_budget() * 1024 * 1024;
 		
 		// Prepare for the containers
 		prepareContainers();
@@ -336,6 +342,22 @@ public class GeomPointsTo extends PAG
 							(dir == null ? "NoName" : dir.getName()) + "> with <" + encoding_name + "> encoding." );
 	}
 	
+	/**
+	 * Create an empty worklist of the type chosen by the user.
+	 */
+	private IWorklist createWorklist()
+	{
+		switch ( opts.geom_worklist() ) {
+		case SparkOptions.geom_worklist_FIFO:
+			return new FIFO_Worklist();
+			
+		case SparkOptions.geom_worklist_PQ:
+			return new PQ_Worklist();
+		}
+		
+		return null;
+	}
+	
 	/**
 	 *	Read in the program facts generated by SPARK.
 	 *  We also construct our own call graph and pointer variables.
@@ -863,16 +885,164 @@ public class GeomPointsTo extends PAG
 	 */
 	private void solveConstraints() 
 	{
-		IWorklist ptaList = worklist;
+		if ( Parameters.thread_num > 1 && offlineProcessor.hasRegions() ) {
+			solveConstraintsConcurrently();
+			return;
+		}
 		
+		solveRegion(worklist, null);
+	}
+	
+	/**
+	 * Run the worklist @param ptaList to its fixed point.
+	 * If @param touched is not null, all the processed pointers are recorded in it.
+	 */
+	private void solveRegion(IWorklist ptaList, Set<IVarAbstraction> touched)
+	{
 		while (ptaList.has_job()) {
 			IVarAbstraction pn = ptaList.next();
 			pn.do_before_propagation();
 			pn.propagate(this, ptaList);
 			pn.do_after_propagation();
+			if ( touched != null )
+				touched.add(pn);
 		}
 	}
 	
+	/**
+	 * The concurrent solver must not create nodes, so before the regions are computed, 
+	 * we create the instance fields that the loads and stores may access.
+	 * The objects are taken from the same points-to sets as in the region splitting, 
+	 * so the new fields are put into the regions of their base pointers.
+	 */
+	private void createInstanceFields()
+	{
+		if ( Parameters.thread_num <= 1 ) return;
+		
+		for ( PlainConstraint cons : constraints ) {
+			final IVarAbstraction base;
+			final SparkField field = cons.f;
+			
+			switch ( cons.type ) {
+			case Constants.LOAD_CONS:
+				base = cons.getLHS();
+				break;
+				
+			case Constants.STORE_CONS:
+				base = cons.getRHS();
+				break;
+				
+			default:
+				continue;
+			}
+			
+			if ( base.getRepresentative().hasPTResult() == false ) {
+				base.getWrappedNode().getP2Set().forall( new P2SetVisitor() {
+					@Override
+					public void visit(Node n) {
+						findAndInsertInstanceField((AllocNode)n, field);
+					}
+				});
+			}
+			else {
+				for ( AllocNode o : base.getRepresentative().get_all_points_to_objects() )
+					findAndInsertInstanceField(o, field);
+			}
+		}
+	}
+	
+	/**
+	 * The pending pointers are distributed to the regions computed by the offline processor.
+	 * The regions never exchange points-to information, 
+	 * so each of them is solved with a private worklist by a different thread.
+	 */
+	private void solveConstraintsConcurrently()
+	{
+		final Map<Integer, List<IVarAbstraction>> regionSeeds = new HashMap<Integer, List<IVarAbstraction>>();
+		
+		while ( worklist.has_job() ) {
+			IVarAbstraction pn = worklist.next();
+			int region = offlineProcessor.getRegion(pn);
+			List<IVarAbstraction> seeds = regionSeeds.get(region);
+			if ( seeds == null ) {
+				seeds = new ArrayList<IVarAbstraction>();
+				regionSeeds.put(region, seeds);
+			}
+			seeds.add(pn);
+		}
+		
+		// We start with the largest regions, they dominate the solving time
+		List<Integer> regions = new ArrayList<Integer>(regionSeeds.keySet());
+		Collections.sort(regions, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer r1, Integer r2) {
+				return offlineProcessor.getRegionSize(r2) - offlineProcessor.getRegionSize(r1);
+			}
+		});
+		
+		ps.printf("[Geom] Solving %d regions (largest: %d pointers) with %d threads\n", regions.size(),
+				regions.isEmpty() ? 0 : offlineProcessor.getRegionSize(regions.get(0)), Parameters.thread_num);
+		
+		// The hierarchy is created lazily, which must not happen in the workers
+		Scene.v().getActiveHierarchy();
+		
+		solvingConcurrently = true;
+		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(Parameters.thread_num,
+				Parameters.thread_num, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		for ( final Integer region : regions ) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					IWorklist ptaList = createWorklist();
+					ptaList.initialize(offlineProcessor.getRegionSize(region) + 1);
+					for ( IVarAbstraction pn : regionSeeds.get(region) )
+						ptaList.push(pn);
+					
+					Set<IVarAbstraction> touched = Parameters.mem_budget > 0 ? new HashSet<IVarAbstraction>() : null;
+					solveRegion(ptaList, touched);
+					if ( touched != null )
+						trimRegion(touched);
+				}
+			});
+		}
+		
+		// Wait till all regions have been solved
+		try {
+			executor.awaitCompletion();
+			executor.shutdown();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Could not wait for the geomPA threads to finish: " + e.getMessage(), e);
+		} finally {
+			solvingConcurrently = false;
+		}
+		
+		if (executor.getException() != null) {
+			if (executor.getException() instanceof RuntimeException)
+				throw (RuntimeException) executor.getException();
+			else
+				throw new RuntimeException(executor.getException());
+		}
+	}
+	
+	/**
+	 * A solved region is not propagated again in this round. 
+	 * If the heap exceeds the memory budget, we release the flow edges and the complex constraints of its pointers. 
+	 * The flow graph is rebuilt from the constraints before the next round.
+	 */
+	private void trimRegion(Set<IVarAbstraction> touched)
+	{
+		Runtime rt = Runtime.getRuntime();
+		if ( rt.totalMemory() - rt.freeMemory() <= Parameters.mem_budget )
+			return;
+		
+		for ( IVarAbstraction pn : touched ) {
+			if ( pn.willUpdate == true )
+				pn.keepPointsToOnly();
+		}
+		
+		IFigureManager.cleanCache();
+	}
+	
 	/**
 	 * Obtain the set of possible call targets at given @param callsite.
 	 */
@@ -1305,6 +1475,7 @@ public class GeomPointsTo extends PAG
 			// Offline processing: 
 			// substantially use the points-to result for redundancy elimination prior to the analysis
 			Date prepare_begin = new Date();
+				createInstanceFields();
 				offlineProcessor.init();
 				offlineProcessor.defaultFeedPtsRoutines();
 				offlineProcessor.runOptimizations();
@@ -1398,6 +1569,7 @@ public class GeomPointsTo extends PAG
 		// We first perform the offline optimizations
 		Date prepare_begin = new Date();
 
+		createInstanceFields();
 		offlineProcessor.init();
 		offlineProcessor.addUserDefPts(qryNodes);
 		offlineProcessor.runOptimizations();
@@ -1683,6 +1855,9 @@ public class GeomPointsTo extends PAG
 			Type baseType = obj.getType();
 			// baseType must be a sub type of decType
 			if ( typeManager.castNeverFails(baseType, decType) ) {
+				if ( solvingConcurrently )
+					throw new IllegalStateException("The instance field " + obj + "." + field 
+							+ " was not created before the concurrent solving");
 				af = makeAllocDotField(obj, field);
 				pn = makeInternalNode(af);
 				pointers.add(pn);
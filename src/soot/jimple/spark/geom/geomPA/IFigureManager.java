@@ -30,8 +30,19 @@ import soot.jimple.spark.geom.dataRep.SegmentNode;
 public abstract class IFigureManager 
 {
 	// We implement an internal memory manager here
-	private static SegmentNode segHeader = null;
-	private static SegmentNode rectHeader = null;
+	// Every solver thread recycles the figures through its own free lists
+	private static class FigureCache
+	{
+		SegmentNode segHeader = null;
+		SegmentNode rectHeader = null;
+	}
+	
+	private static final ThreadLocal<FigureCache> caches = new ThreadLocal<FigureCache>() {
+		@Override
+		protected FigureCache initialValue() {
+			return new FigureCache();
+		}
+	};
 	
 	/**
 	 * Generate a segment node from our own cache.
@@ -39,11 +50,12 @@ public abstract class IFigureManager
 	 */
 	protected static SegmentNode getSegmentNode()
 	{
+		FigureCache cache = caches.get();
 		SegmentNode ret = null;
 		
-		if ( segHeader != null ) {
-			ret = segHeader;
-			segHeader = ret.next;
+		if ( cache.segHeader != null ) {
+			ret = cache.segHeader;
+			cache.segHeader = ret.next;
 			ret.next = null;
 			ret.is_new = true;
 		}
@@ -60,11 +72,12 @@ public abstract class IFigureManager
 	 */
 	protected static RectangleNode getRectangleNode()
 	{
+		FigureCache cache = caches.get();
 		RectangleNode ret = null;
 		
-		if ( rectHeader != null ) {
-			ret = (RectangleNode)rectHeader;
-			rectHeader = ret.next;
+		if ( cache.rectHeader != null ) {
+			ret = (RectangleNode)cache.rectHeader;
+			cache.rectHeader = ret.next;
 			ret.next = null;
 			ret.is_new = true;
 		}
@@ -81,9 +94,10 @@ public abstract class IFigureManager
 	 */
 	protected static SegmentNode reclaimSegmentNode( SegmentNode p )
 	{
+		FigureCache cache = caches.get();
 		SegmentNode q = p.next;
-		p.next = segHeader;
-		segHeader = p;
+		p.next = cache.segHeader;
+		cache.segHeader = p;
 		return q;
 	}
 	
@@ -94,19 +108,20 @@ public abstract class IFigureManager
 	 */
 	protected static SegmentNode reclaimRectangleNode( SegmentNode p )
 	{
+		FigureCache cache = caches.get();
 		SegmentNode q = p.next;
-		p.next = rectHeader;
-		rectHeader = p;
+		p.next = cache.rectHeader;
+		cache.rectHeader = p;
 		return q;
 	}
 	
 	/**
-	 * We return the cached memory to garbage collector.
+	 * We return the cached memory of the calling thread to garbage collector.
+	 * The caches of the worker threads go away with the threads.
 	 */
 	public static void cleanCache()
 	{
-		segHeader = null;
-		rectHeader = null;
+		caches.remove();
 	}
 	
 	
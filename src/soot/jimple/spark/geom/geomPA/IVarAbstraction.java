@@ -44,8 +44,13 @@ public abstract class IVarAbstraction implements Numberable
 	protected static IFigureManager stubManager = null;
 	// This is used to indicate the corresponding object should be removed
 	protected static IFigureManager deadManager = null;
-	// A temporary rectangle holds the candidate figure 
-	protected static RectangleNode pres = null;
+	// A temporary rectangle holds the candidate figure, one per solver thread
+	private static final ThreadLocal<RectangleNode> candidates = new ThreadLocal<RectangleNode>() {
+		@Override
+		protected RectangleNode initialValue() {
+			return new RectangleNode();
+		}
+	};
 	
 	// Corresponding SPARK node
 	public Node me;
@@ -69,6 +74,15 @@ public abstract class IVarAbstraction implements Numberable
 		parent = this;
 	}
 	
+	/**
+	 * The rectangle that holds the candidate figure for the calling thread.
+	 * Figure managers copy the candidate, so it can be reused for the next one.
+	 */
+	protected static RectangleNode candidateFigure()
+	{
+		return candidates.get();
+	}
+	
 	/**
 	 * Used by ordering the nodes in priority worklist.
 	 */
@@ -50,7 +50,8 @@ import soot.jimple.spark.sets.P2SetVisitor;
  * 
  * Currently supported techniques are:
  * 1. Pointer distillation: the library code that does not impact the application code pointers is removed;
- * 2. Pointer ranking for worklist prioritizing.
+ * 2. Pointer ranking for worklist prioritizing;
+ * 3. Region splitting for solving the pointers concurrently.
  * 
  * @author xiao
  * 
@@ -77,6 +78,8 @@ public class OfflineProcessor
 	Deque<Integer> queue;
 	int pre_cnt;
 	int n_var;
+	// Are the union-find arrays holding the regions computed in this round?
+	boolean regionsReady = false;
 	
 	public OfflineProcessor( GeomPointsTo pta ) 
 	{
@@ -87,8 +90,9 @@ public class OfflineProcessor
 		pre = new int[size];
 		low = new int[size];
 		count = new int[size];
-		rep = new int[size];
-		repsize = new int[size];
+		// One more slot collects the pointers that are no longer numbered
+		rep = new int[size + 1];
+		repsize = new int[size + 1];
 		geomPTA = pta;
 		
 		for ( int i = 0; i < size; ++i ) 
@@ -103,6 +107,7 @@ public class OfflineProcessor
 		// We prepare the essential data structures first
 		// The size of the pointers may shrink after each round of analysis
 		n_var = int2var.size();
+		regionsReady = false;
 		
 		for (int i = 0; i < n_var; ++i) {
 			varGraph.set(i, null);
@@ -199,10 +204,42 @@ public class OfflineProcessor
 		 */
 		buildImpactGraph();
 		computeWeightsForPts();
+		
+		/*
+		 * Optimizations for the concurrent solver.
+		 */
+		if ( Parameters.thread_num > 1 )
+			computeRegions();
+	}
+	
+	/**
+	 * Test if the pointers have been split into regions in this round.
+	 */
+	public boolean hasRegions()
+	{
+		return regionsReady;
+	}
+	
+	/**
+	 * Get the region of pointer @param pn.
+	 * Regions are identified by integers in [0, number of pointers].
+	 */
+	public int getRegion( IVarAbstraction pn )
+	{
+		return find_parent( region_index(pn) );
+	}
+	
+	/**
+	 * The number of pointers in the region identified by @param region.
+	 */
+	public int getRegionSize( int region )
+	{
+		return repsize[region];
 	}
 	
 	public void destroy()
 	{
+		regionsReady = false;
 		pre = null;
 		low = null;
 		count = null;
@@ -608,6 +645,86 @@ public class OfflineProcessor
 		}
 	}
 	
+	/**
+	 * Split the pointers into regions that never exchange points-to information.
+	 * The pointers connected by an active constraint fall into the same region. 
+	 * For a load or a store, that also includes the base pointer and the instance fields it may access.
+	 * Therefore, the propagation in one region never reads or writes the pointers of another region.
+	 * Prerequisite: distilled constraints, SCC information is overwritten
+	 */
+	protected void computeRegions()
+	{
+		for ( int i = 0; i <= n_var; ++i ) {
+			rep[i] = i;
+			repsize[i] = 1;
+		}
+		
+		for ( PlainConstraint cons : geomPTA.constraints ) {
+			if ( !cons.isActive ) continue;
+			
+			IVarAbstraction lhs = cons.getLHS();
+			IVarAbstraction rhs = cons.getRHS();
+			final IVarAbstraction base;
+			final SparkField field = cons.f;
+			
+			switch ( cons.type ) {
+			case Constants.ASSIGN_CONS:
+				join_regions( lhs, rhs );
+				continue;
+				
+			case Constants.LOAD_CONS:
+				base = lhs;
+				break;
+				
+			case Constants.STORE_CONS:
+				base = rhs;
+				break;
+				
+			default:
+				continue;
+			}
+			
+			join_regions( lhs, rhs );
+			IVarAbstraction baseRep = base.getRepresentative();
+			
+			if ( baseRep.hasPTResult() == false ) {
+				base.getWrappedNode().getP2Set().forall( new P2SetVisitor() {
+					@Override
+					public void visit(Node n) {
+						IVarAbstraction padf = geomPTA.findInstanceField((AllocNode)n, field);
+						// The propagation skips the fields that will not be updated
+						if ( padf == null || padf.willUpdate == false ) return;
+						join_regions( base, padf );
+					}
+				});
+			}
+			else {
+				// use geomPA
+				for ( AllocNode o : baseRep.get_all_points_to_objects() ) {
+					IVarAbstraction padf = geomPTA.findInstanceField(o, field);
+					if ( padf == null || padf.willUpdate == false ) continue;
+					join_regions( base, padf );
+				}
+			}
+		}
+		
+		regionsReady = true;
+	}
+	
+	private int region_index( IVarAbstraction pn )
+	{
+		return pn.reachable() && pn.id < n_var ? pn.id : n_var;
+	}
+	
+	// Put two pointers and their representatives into the same region
+	private void join_regions( IVarAbstraction p, IVarAbstraction q )
+	{
+		int s = region_index(p);
+		merge_nodes( s, region_index(p.getRepresentative()) );
+		merge_nodes( s, region_index(q) );
+		merge_nodes( s, region_index(q.getRepresentative()) );
+	}
+	
 	private off_graph_edge add_graph_edge( int s, int t )
 	{
 		off_graph_edge e = new off_graph_edge();
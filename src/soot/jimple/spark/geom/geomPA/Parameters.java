@@ -36,4 +36,8 @@ public class Parameters
 	
 	// Querying parameters: budget size for collecting contexts intervals
 	public static int qryBudgetSize = max_pts_budget/2;
+	
+	// Parallel solving: the number of worker threads and the heap budget in MB (0 = unlimited)
+	public static int thread_num = 1;
+	public static long mem_budget = 0;
 }
@@ -59,7 +59,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	static {
 		stubManager = new HeapInsIntervalManager();
-		pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
+		RectangleNode pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
 		stubManager.addNewFigure(HeapInsIntervalManager.ALL_TO_ALL, pres);
 		deadManager = new HeapInsIntervalManager();
 	}
@@ -175,6 +175,7 @@ public class HeapInsNode extends IVarAbstraction
 	@Override
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) 
 	{	
+		RectangleNode pres = candidateFigure();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -199,6 +200,7 @@ public class HeapInsNode extends IVarAbstraction
 	@Override
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -656,6 +658,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	private boolean addPointsTo( int code, AllocNode obj )
 	{
+		RectangleNode pres = candidateFigure();
 		HeapInsIntervalManager im = pt_objs.get(obj);
 		
 		if ( im == null ) {
@@ -678,6 +681,7 @@ public class HeapInsNode extends IVarAbstraction
 	
 	private boolean addFlowsTo( int code, HeapInsNode qv )
 	{
+		RectangleNode pres = candidateFigure();
 		HeapInsIntervalManager im = flowto.get(qv);
 		
 		if ( im == null ) {
@@ -693,6 +697,7 @@ public class HeapInsNode extends IVarAbstraction
 	private static boolean add_new_points_to_tuple( SegmentNode pts, SegmentNode pe, 
 			AllocNode obj, HeapInsNode qn )
 	{
+		RectangleNode pres = candidateFigure();
 		long interI, interJ;
 		int code = 0;
 		
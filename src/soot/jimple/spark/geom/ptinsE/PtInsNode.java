@@ -70,7 +70,7 @@ public class PtInsNode extends IVarAbstraction
 
 	static {
 		stubManager = new PtInsIntervalManager();
-		pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
+		RectangleNode pres = new RectangleNode(0, 0, Constants.MAX_CONTEXTS, Constants.MAX_CONTEXTS);
 		stubManager.addNewFigure(PtInsIntervalManager.ALL_TO_ALL, pres);
 		deadManager = new PtInsIntervalManager();
 	}
@@ -187,6 +187,7 @@ public class PtInsNode extends IVarAbstraction
 	@Override
 	public boolean add_points_to_3(AllocNode obj, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -211,6 +212,7 @@ public class PtInsNode extends IVarAbstraction
 	@Override
 	public boolean add_simple_constraint_3(IVarAbstraction qv, long I1, long I2, long L) 
 	{
+		RectangleNode pres = candidateFigure();
 		int code = 0;
 		
 		pres.I1 = I1;
@@ -668,6 +670,7 @@ public class PtInsNode extends IVarAbstraction
 	
 	private boolean addPointsTo( int code, AllocNode obj )
 	{
+		RectangleNode pres = candidateFigure();
 		PtInsIntervalManager im = pt_objs.get(obj);
 		
 		if ( im == null ) {
@@ -690,6 +693,7 @@ public class PtInsNode extends IVarAbstraction
 	
 	private boolean addFlowsTo( int code, PtInsNode qv )
 	{
+		RectangleNode pres = candidateFigure();
 		PtInsIntervalManager im = flowto.get(qv);
 		
 		if ( im == null ) {
@@ -705,6 +709,7 @@ public class PtInsNode extends IVarAbstraction
 	private static boolean add_new_points_to_tuple( SegmentNode pts, SegmentNode pe, 
 			AllocNode obj, PtInsNode qn )
 	{
+		RectangleNode pres = candidateFigure();
 		long interI, interJ;
 		int code = 0;
 
@@ -79,6 +79,32 @@ public final class TypeManager {
     }
     final public BitVector get( Type type ) {
         if( type == null ) return null;
+        update();
+        BitVector ret = typeMask.get( type );
+        if( ret == null && fh != null ) {
+        	// If we have a phantom class and have no type mask, we assume that
+        	// it is not cast-compatible to anything
+    		SootClass curClass = ((RefType) type).getSootClass();
+        	if (type instanceof RefType && curClass.isPhantom())
+        		return new BitVector();
+        	else {
+        		// Scan through the hierarchy. We might have a phantom class higher up
+        		while (curClass.hasSuperclass()) {
+        			curClass = curClass.getSuperclass();
+                	if (type instanceof RefType && curClass.isPhantom())
+                		return new BitVector();
+        		}
+        		
+        		throw new RuntimeException( "Type mask not found for type "+type );
+        	}
+        }
+        return ret;
+    }
+    /** Adds the allocation nodes created since the last call to the type
+     * masks. Once this has been called, {@link #get(Type)} does not modify
+     * the type manager until new allocation nodes are created, so it can be
+     * called from several threads at once. */
+    final public void update() {
         while(allocNodeListener.hasNext()) {
             AllocNode n = allocNodeListener.next();
             for( final Type t : Scene.v().getTypeNumberer()) {
@@ -100,25 +126,6 @@ public final class TypeManager {
                 }
             }
         }
-        BitVector ret = (BitVector) typeMask.get( type );
-        if( ret == null && fh != null ) {
-        	// If we have a phantom class and have no type mask, we assume that
-        	// it is not cast-compatible to anything
-    		SootClass curClass = ((RefType) type).getSootClass();
-        	if (type instanceof RefType && curClass.isPhantom())
-        		return new BitVector();
-        	else {
-        		// Scan through the hierarchy. We might have a phantom class higher up
-        		while (curClass.hasSuperclass()) {
-        			curClass = curClass.getSuperclass();
-                	if (type instanceof RefType && curClass.isPhantom())
-                		return new BitVector();
-        		}
-        		
-        		throw new RuntimeException( "Type mask not found for type "+type );
-        	}
-        }
-        return ret;
     }
     final public void clearTypeMask() {
         typeMask = null;
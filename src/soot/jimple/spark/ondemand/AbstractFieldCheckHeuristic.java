@@ -0,0 +1,37 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+package soot.jimple.spark.ondemand;
+
+/**
+ * A field check heuristic that can tell when two of its instances validate
+ * the same matches. {@link DemandCSPointsTo} then lets the refinement passes
+ * of different queries share their caches.
+ */
+public abstract class AbstractFieldCheckHeuristic implements FieldCheckHeuristic {
+
+	/**
+	 * @return a value that is equal for two heuristics of the same class
+	 *         exactly if they validate the same matches, or
+	 *         <code>null</code> if this is not known
+	 */
+	public Object getState() {
+		return null;
+	}
+
+}
@@ -24,6 +24,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -101,6 +103,35 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 			HashSetMultiMap<CallSiteAndContext, SootMethod> {
 	}
 
+	/**
+	 * The caches filled by one refinement pass. Their contents only depend on
+	 * the state of the field check heuristic and on whether the call graph is
+	 * refined, so the passes of a query batch that start in the same state
+	 * share one instance.
+	 */
+	protected static final class PassCaches {
+
+		final AllocAndContextCache allocAndContextCache = new AllocAndContextCache();
+
+		final CallSiteToTargetsMap callSiteToResolvedTargets = new CallSiteToTargetsMap();
+
+		final HashMap<List<Object>, Set<SootMethod>> callTargetsArgCache = new HashMap<List<Object>, Set<SootMethod>>();
+
+		final Map<VarAndContext, Pair<PointsToSetInternal, AllocAndContextSet>> contextsForAllocsCache = new HashMap<VarAndContext, Pair<PointsToSetInternal, AllocAndContextSet>>();
+
+		final Set<CallSiteAndContext> queriedCallSites = new HashSet<CallSiteAndContext>();
+
+		final Map<VarContextAndUp, Map<AllocAndContext, CallingContextSet>> upContextCache = new HashMap<VarContextAndUp, Map<AllocAndContext, CallingContextSet>>();
+
+		final OTFMethodSCCManager sccManager = new OTFMethodSCCManager();
+
+		/**
+		 * fields whose matches were not validated while filling the caches, in
+		 * the order they were first seen
+		 */
+		final Set<SparkField> unvalidatedFields = new LinkedHashSet<SparkField>();
+	}
+
 	protected static abstract class IncomingEdgeHandler {
 
 		public abstract void handleAlloc(AllocNode allocNode,
@@ -197,6 +228,11 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 
 	protected static final boolean DEFAULT_LAZY = true;
 
+	/**
+	 * the number of heuristic states whose pass caches are kept for batches
+	 */
+	protected static final int MAX_SHARED_PASS_CACHES = 16;
+
 	/**
 	 * if <code>true</code>, refine the pre-computed call graph
 	 */
@@ -220,17 +256,17 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		return new DemandCSPointsTo(csInfo, pag, maxTraversal, maxPasses, lazy);
 	}
 
-	protected final AllocAndContextCache allocAndContextCache = new AllocAndContextCache();
+	protected AllocAndContextCache allocAndContextCache;
 
 	protected Stack<Pair<Integer, ImmutableStack<Integer>>> callGraphStack = new Stack<Pair<Integer, ImmutableStack<Integer>>>();
 
-	protected final CallSiteToTargetsMap callSiteToResolvedTargets = new CallSiteToTargetsMap();
+	protected CallSiteToTargetsMap callSiteToResolvedTargets;
 
-	protected HashMap<List<Object>, Set<SootMethod>> callTargetsArgCache = new HashMap<List<Object>, Set<SootMethod>>();
+	protected HashMap<List<Object>, Set<SootMethod>> callTargetsArgCache;
 
 	protected final Stack<VarAndContext> contextForAllocsStack = new Stack<VarAndContext>();
 
-	protected Map<VarAndContext, Pair<PointsToSetInternal, AllocAndContextSet>> contextsForAllocsCache = new HashMap<VarAndContext, Pair<PointsToSetInternal, AllocAndContextSet>>();
+	protected Map<VarAndContext, Pair<PointsToSetInternal, AllocAndContextSet>> contextsForAllocsCache;
 
 	protected final ContextSensitiveInfo csInfo;
 
@@ -260,9 +296,31 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 
 	protected final PAG pag;
 
+	protected PassCaches passCaches;
+
+	/**
+	 * if <code>true</code>, passes continue with the caches of earlier passes
+	 * in the same heuristic state
+	 */
+	protected boolean sharePassCaches = false;
+
+	/**
+	 * <code>true</code> if the current pass uses caches that are shared with
+	 * other passes
+	 */
+	protected boolean passShared = false;
+
+	@SuppressWarnings("serial")
+	protected final Map<List<Object>, PassCaches> sharedPassCaches = new LinkedHashMap<List<Object>, PassCaches>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, PassCaches> eldest) {
+			return size() > MAX_SHARED_PASS_CACHES;
+		}
+	};
+
 	protected AllocAndContextSet pointsTo = null;
 
-	protected final Set<CallSiteAndContext> queriedCallSites = new HashSet<CallSiteAndContext>();
+	protected Set<CallSiteAndContext> queriedCallSites;
 
 	protected int recursionDepth = -1;
 
@@ -270,7 +328,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 
 	protected OTFMethodSCCManager sccManager;
 
-	protected Map<VarContextAndUp, Map<AllocAndContext, CallingContextSet>> upContextCache = new HashMap<VarContextAndUp, Map<AllocAndContext, CallingContextSet>>();
+	protected Map<VarContextAndUp, Map<AllocAndContext, CallingContextSet>> upContextCache;
 
 	protected ValidMatches vMatches;
 	
@@ -295,6 +353,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		this.reachingObjectsCache = new HashMap<Local, PointsToSet>();
 		this.reachingObjectsCacheNoCGRefinement = new HashMap<Local, PointsToSet>();
         this.useCache = true;
+		usePassCaches(new PassCaches());
 	}
 
 	private void init() {
@@ -338,6 +397,61 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 	    return result;
 	}
 
+	/**
+	 * Computes the reaching objects of many locals at once. The queries share
+	 * the sub-results of their refinement passes, so queries that traverse the
+	 * same part of the PAG only pay for it once. Queries that exhaust their
+	 * budget are retried after all others, when most of the sub-results they
+	 * need are cached; if they still fail, Spark's points-to set is returned.
+	 */
+	public Map<Local, PointsToSet> doReachingObjects(Collection<Local> locals) {
+		//lazy initialization
+		if(fieldToStores==null) {
+	        init();
+		}
+		Map<Local, PointsToSet> cache = refineCallGraph ? reachingObjectsCache
+				: reachingObjectsCacheNoCGRefinement;
+		Map<Local, PointsToSet> ret = new HashMap<Local, PointsToSet>();
+		List<Local> exhausted = new ArrayList<Local>();
+		sharePassCaches = useCache;
+		try {
+			for (Local l : locals) {
+				if (ret.containsKey(l)) {
+					continue;
+				}
+				PointsToSet result = cache.get(l);
+				if (result == null) {
+					VarNode v = pag.findLocalVarNode(l);
+					if (v == null) {
+						result = EmptyPointsToSet.v();
+					} else {
+						result = computeRefinedReachingObjects(v);
+						if (result == null) {
+							exhausted.add(l);
+							continue;
+						}
+					}
+					if (useCache) {
+						cache.put(l, result);
+					}
+				}
+				ret.put(l, result);
+			}
+			for (Local l : exhausted) {
+				// without shared caches, a retry would exhaust the budget again
+				PointsToSet result = sharePassCaches ? computeReachingObjects(l)
+						: new WrappedPointsToSet(pag.findLocalVarNode(l).getP2Set());
+				if (useCache) {
+					cache.put(l, result);
+				}
+				ret.put(l, result);
+			}
+		} finally {
+			sharePassCaches = false;
+		}
+		return ret;
+	}
+
     /**
      * Returns <code>false</code> if an inconsistent computation occurred, i.e. if result
      * differs from the result computed by {@link #computeReachingObjects(Local)} on l.
@@ -394,13 +508,14 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
         		G.v().out.println("PASS " + numPasses);
         		G.v().out.println(fieldCheckHeuristic);
         	}
-        	clearState();
+        	startPass();
         	pointsTo = new AllocAndContextSet();
         	try {
         		refineP2Set(new VarAndContext(v, EMPTY_CALLSTACK), null);
         		contextSensitiveResult = pointsTo;
         	} catch (TerminateEarlyException e) {
         	}
+        	finishPass();
         	if (!fieldCheckHeuristic.runNewPass()) {
         		break;
         	}
@@ -578,20 +693,80 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 	}
 
 	protected void clearState() {
-		allocAndContextCache.clear();
+		usePassCaches(new PassCaches());
+		resetTraversal();
+	}
+
+	protected void resetTraversal() {
 		callGraphStack.clear();
-		callSiteToResolvedTargets.clear();
-		queriedCallSites.clear();
-		contextsForAllocsCache.clear();
 		contextForAllocsStack.clear();
-		upContextCache.clear();
-		callTargetsArgCache.clear();
-		sccManager = new OTFMethodSCCManager();
 		numNodesTraversed = 0;
 		nesting = 0;
 		recursionDepth = -1;
 	}
 
+	protected void usePassCaches(PassCaches caches) {
+		passCaches = caches;
+		allocAndContextCache = caches.allocAndContextCache;
+		callSiteToResolvedTargets = caches.callSiteToResolvedTargets;
+		callTargetsArgCache = caches.callTargetsArgCache;
+		contextsForAllocsCache = caches.contextsForAllocsCache;
+		queriedCallSites = caches.queriedCallSites;
+		upContextCache = caches.upContextCache;
+		sccManager = caches.sccManager;
+	}
+
+	/**
+	 * Prepares the caches for the next pass. When sharing, the pass continues
+	 * with the caches of the earlier passes that ran in the same heuristic
+	 * state; otherwise, or if the heuristic cannot tell its state, it starts
+	 * from scratch.
+	 */
+	protected void startPass() {
+		Object state = null;
+		if (sharePassCaches && fieldCheckHeuristic instanceof AbstractFieldCheckHeuristic) {
+			state = ((AbstractFieldCheckHeuristic) fieldCheckHeuristic).getState();
+		}
+		passShared = state != null;
+		if (!passShared) {
+			clearState();
+			return;
+		}
+		List<Object> key = Arrays.<Object> asList(Boolean.valueOf(refineCallGraph),
+				fieldCheckHeuristic.getClass(), state);
+		PassCaches caches = sharedPassCaches.get(key);
+		if (caches == null) {
+			caches = new PassCaches();
+			sharedPassCaches.put(key, caches);
+		}
+		usePassCaches(caches);
+		resetTraversal();
+	}
+
+	/**
+	 * Ends a pass. Cache hits skip the matches that the earlier queries could
+	 * not validate, so when sharing, the first of them is reported to the
+	 * heuristic, which then refines it as if this pass had traversed it.
+	 */
+	protected void finishPass() {
+		if (!passShared) {
+			return;
+		}
+		for (SparkField field : passCaches.unvalidatedFields) {
+			if (!fieldCheckHeuristic.validateMatchesForField(field)) {
+				break;
+			}
+		}
+	}
+
+	protected boolean validateMatchesForField(SparkField field) {
+		boolean valid = fieldCheckHeuristic.validateMatchesForField(field);
+		if (!valid && passShared) {
+			passCaches.unvalidatedFields.add(field);
+		}
+		return valid;
+	}
+
 	/**
 	 * compute a flows-to set for an allocation site. for now, we use a simple
 	 * refinement strategy; just refine as much as possible, maintaining the
@@ -936,6 +1111,10 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		} catch (CallSiteException e) {
 			contextsForAllocsCache.remove(varAndContext);
 			throw e;
+		} catch (TerminateEarlyException e) {
+			// the result is incomplete; keep the finished ones for later passes
+			contextsForAllocsCache.remove(varAndContext);
+			throw e;
 		} finally {
 			contextForAllocsStack.pop();
 		}
@@ -1113,6 +1292,9 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		} catch (CallSiteException e) {
 			upContextCache.remove(varContextAndUp);
 			throw e;
+		} catch (TerminateEarlyException e) {
+			upContextCache.remove(varContextAndUp);
+			throw e;
 		}
 	}
 
@@ -1215,8 +1397,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 									.constructIntersection(storeBaseP2Set,
 											loadBaseP2Set, pag);
 
-							boolean checkField = fieldCheckHeuristic
-									.validateMatchesForField(field);
+							boolean checkField = validateMatchesForField(field);
 							if (checkField) {
 								AllocAndContextSet sharedAllocContexts = findContextsForAllocs(
 										new VarAndContext(storeBase, curContext),
@@ -1257,6 +1438,9 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		} catch (CallSiteException e) {
 			allocAndContextCache.remove(allocAndContext);
 			throw e;
+		} catch (TerminateEarlyException e) {
+			allocAndContextCache.remove(allocAndContext);
+			throw e;
 		}
 	}
 
@@ -1400,8 +1584,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 									.constructIntersection(storeBaseP2Set,
 											loadBaseP2Set, pag);
 
-							boolean checkField = fieldCheckHeuristic
-									.validateMatchesForField(field);
+							boolean checkField = validateMatchesForField(field);
 							if (checkField) {
 								AllocAndContextSet sharedAllocContexts = findContextsForAllocs(
 										new VarAndContext(storeBase, curContext),
@@ -1442,6 +1625,9 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 		} catch (CallSiteException e) {
 			allocAndContextCache.remove(allocAndContext);
 			throw e;
+		} catch (TerminateEarlyException e) {
+			allocAndContextCache.remove(allocAndContext);
+			throw e;
 		}
 	}
 
@@ -1629,8 +1815,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 									.constructIntersection(storeBaseP2Set,
 											loadBaseP2Set, pag);
 
-							boolean checkGetfield = fieldCheckHeuristic
-									.validateMatchesForField(field);
+							boolean checkGetfield = validateMatchesForField(field);
 
 							h.handleMatchSrc(matchSrc, intersection, loadBase,
 									storeBase, varAndContext, field,
@@ -2179,6 +2364,7 @@ public final class DemandCSPointsTo implements PointsToAnalysis {
 	public void clearCache() {
 	    reachingObjectsCache.clear();
         reachingObjectsCacheNoCGRefinement.clear();
+        sharedPassCaches.clear();
 	}
 
     public boolean isRefineCallGraph() {
@@ -18,9 +18,11 @@
  */
 package soot.jimple.spark.ondemand;
 
+import java.util.Collections;
+
 import soot.jimple.spark.pag.SparkField;
 
-public class EverythingHeuristic implements FieldCheckHeuristic {
+public class EverythingHeuristic extends AbstractFieldCheckHeuristic {
 
     public boolean runNewPass() {
         return false;
@@ -34,5 +36,8 @@ public class EverythingHeuristic implements FieldCheckHeuristic {
         return false;
     }
 
+    public Object getState() {
+        return Collections.emptySet();
+    }
 
 }
@@ -18,6 +18,7 @@
  */
 package soot.jimple.spark.ondemand;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -30,7 +31,7 @@ import soot.jimple.spark.ondemand.pautil.SootUtil.CallSiteAndContext;
 import soot.jimple.spark.pag.ArrayElement;
 import soot.jimple.spark.pag.SparkField;
 
-public class IncrementalTypesHeuristic implements FieldCheckHeuristic {
+public class IncrementalTypesHeuristic extends AbstractFieldCheckHeuristic {
 
     private final TypeManager manager;
 
@@ -127,6 +128,11 @@ public class IncrementalTypesHeuristic implements FieldCheckHeuristic {
         return true;
     }
 
+    public Object getState() {
+        return Arrays.asList(new HashSet<RefType>(typesToCheck),
+                new HashSet<RefType>(notBothEndsTypes));
+    }
+
     public boolean refineVirtualCall(CallSiteAndContext callSiteAndContext) {
         // TODO make real heuristic
         return true;
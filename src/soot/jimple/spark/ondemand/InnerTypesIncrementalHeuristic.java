@@ -18,6 +18,7 @@
  */
 package soot.jimple.spark.ondemand;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,7 +32,7 @@ import soot.jimple.spark.ondemand.pautil.SootUtil;
 import soot.jimple.spark.pag.ArrayElement;
 import soot.jimple.spark.pag.SparkField;
 
-public class InnerTypesIncrementalHeuristic implements FieldCheckHeuristic {
+public class InnerTypesIncrementalHeuristic extends AbstractFieldCheckHeuristic {
 
     private final TypeManager manager;
 
@@ -138,6 +139,11 @@ public class InnerTypesIncrementalHeuristic implements FieldCheckHeuristic {
         }
     }
 
+    public Object getState() {
+        return Arrays.asList(Boolean.valueOf(allNotBothEnds),
+                new HashSet<RefType>(typesToCheck));
+    }
+
     @Override
     public String toString() {
         return typesToCheck.toString();
@@ -18,10 +18,12 @@
  */
 package soot.jimple.spark.ondemand;
 
+import java.util.Arrays;
+
 import soot.jimple.spark.internal.TypeManager;
 import soot.jimple.spark.pag.SparkField;
 
-public class ManualAndInnerHeuristic implements FieldCheckHeuristic {
+public class ManualAndInnerHeuristic extends AbstractFieldCheckHeuristic {
 
     final ManualFieldCheckHeuristic manual = new ManualFieldCheckHeuristic();
     final InnerTypesIncrementalHeuristic inner;
@@ -41,4 +43,8 @@ public class ManualAndInnerHeuristic implements FieldCheckHeuristic {
         return inner.validFromBothEnds(field);
     }
 
+    public Object getState() {
+        return Arrays.asList(manual.getState(), inner.getState());
+    }
+
 }
@@ -28,7 +28,7 @@ import soot.jimple.spark.pag.SparkField;
  * @author manu
  * 
  */
-public class ManualFieldCheckHeuristic implements FieldCheckHeuristic {
+public class ManualFieldCheckHeuristic extends AbstractFieldCheckHeuristic {
 
     private boolean allNotBothEnds = false;
 
@@ -89,6 +89,10 @@ public class ManualFieldCheckHeuristic implements FieldCheckHeuristic {
         return true;
     }
 
+    public Object getState() {
+        return Boolean.valueOf(allNotBothEnds);
+    }
+
     @Override
     public String toString() {
         return "Manual annotations";
@@ -18,9 +18,11 @@
  */
 package soot.jimple.spark.ondemand;
 
+import java.util.Collections;
+
 import soot.jimple.spark.pag.SparkField;
 
-public class NothingHeuristic implements FieldCheckHeuristic {
+public class NothingHeuristic extends AbstractFieldCheckHeuristic {
 
     public boolean runNewPass() {
         return false;
@@ -34,4 +36,8 @@ public class NothingHeuristic implements FieldCheckHeuristic {
         return false;
     }
 
+    public Object getState() {
+        return Collections.emptySet();
+    }
+
 }
@@ -19,7 +19,9 @@
 
 package soot.jimple.spark.pag;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import soot.ArrayType;
@@ -31,6 +33,7 @@ import soot.RefLikeType;
 import soot.RefType;
 import soot.Scene;
 import soot.SootClass;
+import soot.SootField;
 import soot.SootMethod;
 import soot.Type;
 import soot.Unit;
@@ -38,7 +41,12 @@ import soot.VoidType;
 import soot.jimple.Stmt;
 import soot.jimple.spark.builder.MethodNodeFactory;
 import soot.jimple.spark.internal.SparkLibraryHelper;
+import soot.jimple.toolkits.ide.libsumm.LibrarySummaries;
+import soot.jimple.toolkits.ide.libsumm.MethodSummary;
+import soot.jimple.toolkits.ide.libsumm.SummaryFlow;
+import soot.jimple.toolkits.ide.libsumm.SummaryLocation;
 import soot.options.CGOptions;
+import soot.toolkits.scalar.Pair;
 import soot.util.NumberedString;
 import soot.util.queue.ChunkedQueue;
 import soot.util.queue.QueueReader;
@@ -138,6 +146,13 @@ public final class MethodPAG {
         return ret;
     }
 
+    /** Discards the MethodPAG of m, so that the next call to v() creates
+     * a new one from the current body of m. The edges that the old
+     * MethodPAG added to the main PAG are not removed. */
+    public static void invalidate( SootMethod m ) {
+        G.v().MethodPAG_methodToPag.remove( m );
+    }
+
     public void build() {
         if( hasBeenBuilt ) return;
         hasBeenBuilt = true;
@@ -147,7 +162,11 @@ public final class MethodPAG {
             }
         } else {
             if( method.isConcrete() && !method.isPhantom() ) {
-                buildNormal();
+                MethodSummary summary = LibrarySummaries.v().getSummary( method );
+                if( summary != null )
+                    buildSummary( summary );
+                else
+                    buildNormal();
             }
         }
         addMiscEdges();
@@ -180,6 +199,81 @@ public final class MethodPAG {
         for (Unit u : b.getUnits())
             nodeFactory.handleStmt( (Stmt) u );
     }
+    /** Builds the PAG of a library method from its summary instead of its
+     * body. Values read through an access path get one variable node per
+     * prefix of the path, and objects allocated by the method get one
+     * allocation node per type. */
+    protected void buildSummary( MethodSummary summary ) {
+        Map<SummaryLocation, VarNode> vars = new HashMap<SummaryLocation, VarNode>();
+        for( SummaryFlow flow : summary.getFlows() ) {
+            SummaryLocation target = flow.getTarget();
+            if( target.getKind() == SummaryLocation.Kind.EXCEPTION && !target.hasFields() ) {
+                addOutEdge( summaryVar( flow.getSource(), vars ), pag.nodeFactory().caseThrow() );
+                continue;
+            }
+            Node dst;
+            if( target.hasFields() ) {
+                VarNode base = summaryVar( target.getParent(), vars );
+                if( base == null ) continue;
+                pag.addDereference( base );
+                dst = pag.makeFieldRefNode( base, summaryField( target.getLastField() ) );
+            } else if( target.getKind() == SummaryLocation.Kind.RETURN ) {
+                if( !( method.getReturnType() instanceof RefLikeType ) ) continue;
+                dst = nodeFactory.caseRet();
+            } else {
+                dst = summaryVar( target, vars );
+            }
+            if( dst == null ) continue;
+            addInternalEdge( summaryVar( flow.getSource(), vars ), dst );
+        }
+    }
+
+    /** Returns the node holding the values at a source location of a
+     * summary, or null if the location cannot hold a reference. */
+    private VarNode summaryVar( SummaryLocation loc, Map<SummaryLocation, VarNode> vars ) {
+        VarNode ret = vars.get( loc );
+        if( ret != null ) return ret;
+        if( loc.hasFields() ) {
+            VarNode base = summaryVar( loc.getParent(), vars );
+            if( base == null ) return null;
+            SparkField field = summaryField( loc.getLastField() );
+            Type type = field instanceof SootField ? ( (SootField) field ).getType()
+                    : Scene.v().getObjectType();
+            ret = pag.makeLocalVarNode( new Pair<SootMethod, SummaryLocation>( method, loc ), type, method );
+            pag.addDereference( base );
+            addInternalEdge( pag.makeFieldRefNode( base, field ), ret );
+        } else {
+            switch( loc.getKind() ) {
+            case THIS:
+                if( method.isStatic() ) return null;
+                ret = (VarNode) nodeFactory.caseThis();
+                break;
+            case PARAMETER:
+                if( !( method.getParameterType( loc.getIndex() ) instanceof RefLikeType ) ) return null;
+                ret = (VarNode) nodeFactory.caseParm( loc.getIndex() );
+                break;
+            case STATIC:
+                SootField f = Scene.v().getField( loc.getName() );
+                ret = pag.makeGlobalVarNode( f, f.getType() );
+                break;
+            case ALLOC:
+                Type type = Scene.v().getType( loc.getName() );
+                ret = pag.makeLocalVarNode( new Pair<SootMethod, SummaryLocation>( method, loc ), type, method );
+                addInternalEdge( pag.makeAllocNode( new Pair<SootMethod, SummaryLocation>( method, loc ), type, method ), ret );
+                break;
+            default:
+                return null;
+            }
+        }
+        vars.put( loc, ret );
+        return ret;
+    }
+
+    private static SparkField summaryField( String field ) {
+        if( field.equals( SummaryLocation.ARRAY_ELEMENT ) ) return ArrayElement.v();
+        return Scene.v().getField( field );
+    }
+
     protected void buildNative() {
         ValNode thisNode = null;
         ValNode retNode = null;
@@ -66,6 +66,7 @@ import soot.jimple.spark.sets.HybridPointsToSet;
 import soot.jimple.spark.sets.P2SetFactory;
 import soot.jimple.spark.sets.P2SetVisitor;
 import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.jimple.spark.sets.RoaringPointsToSet;
 import soot.jimple.spark.sets.SharedHybridSet;
 import soot.jimple.spark.sets.SharedListSet;
 import soot.jimple.spark.sets.SortedArraySet;
@@ -123,6 +124,9 @@ public class PAG implements PointsToAnalysis {
 		case SparkOptions.set_impl_bit:
 			setFactory = BitPointsToSet.getFactory();
 			break;
+		case SparkOptions.set_impl_roaring:
+			setFactory = RoaringPointsToSet.getFactory();
+			break;
 		case SparkOptions.set_impl_double:
 			P2SetFactory oldF;
 			P2SetFactory newF;
@@ -145,6 +149,9 @@ public class PAG implements PointsToAnalysis {
 			case SparkOptions.double_set_old_bit:
 				oldF = BitPointsToSet.getFactory();
 				break;
+			case SparkOptions.double_set_old_roaring:
+				oldF = RoaringPointsToSet.getFactory();
+				break;
 			default:
 				throw new RuntimeException();
 			}
@@ -167,6 +174,9 @@ public class PAG implements PointsToAnalysis {
 			case SparkOptions.double_set_new_bit:
 				newF = BitPointsToSet.getFactory();
 				break;
+			case SparkOptions.double_set_new_roaring:
+				newF = RoaringPointsToSet.getFactory();
+				break;
 			default:
 				throw new RuntimeException();
 			}
@@ -304,6 +314,30 @@ public class PAG implements PointsToAnalysis {
 		return addToMap(assignInstance, from, to) | addToMap(assignInstanceInv, to, from);
 	}
 
+	public boolean doRemoveSimpleEdge(VarNode from, VarNode to) {
+		return removeFromMap(simple, from, to) | removeFromMap(simpleInv, to, from);
+	}
+
+	public boolean doRemoveStoreEdge(VarNode from, FieldRefNode to) {
+		return removeFromMap(store, from, to) | removeFromMap(storeInv, to, from);
+	}
+
+	public boolean doRemoveLoadEdge(FieldRefNode from, VarNode to) {
+		return removeFromMap(load, from, to) | removeFromMap(loadInv, to, from);
+	}
+
+	public boolean doRemoveAllocEdge(AllocNode from, VarNode to) {
+		return removeFromMap(alloc, from, to) | removeFromMap(allocInv, to, from);
+	}
+
+	public boolean doRemoveNewInstanceEdge(VarNode from, NewInstanceNode to) {
+		return removeFromMap(newInstance, from, to) | removeFromMap(newInstanceInv, to, from);
+	}
+
+	public boolean doRemoveAssignInstanceEdge(NewInstanceNode from, VarNode to) {
+		return removeFromMap(assignInstance, from, to) | removeFromMap(assignInstanceInv, to, from);
+	}
+
 	/** Node uses this to notify PAG that n2 has been merged into n1. */
 	void mergedWith(Node n1, Node n2) {
 		if (n1.equals(n2))
@@ -462,6 +496,10 @@ public class PAG implements PointsToAnalysis {
 		return lookup(assignInstance, key);
 	}
 
+	public Node[] assignInstanceInvLookup(VarNode key) {
+		return lookup(assignInstanceInv, key);
+	}
+
 	public Node[] storeInvLookup(FieldRefNode key) {
 		return lookup(storeInv, key);
 	}
@@ -957,6 +995,37 @@ public class PAG implements PointsToAnalysis {
 		}
 	}
 
+	/**
+	 * Removes an edge from the graph, returning false if it was not there.
+	 * Points-to sets that were computed along the edge are left unchanged.
+	 */
+	public final boolean removeEdge(Node from, Node to) {
+		from = from.getReplacement();
+		to = to.getReplacement();
+		if (from instanceof VarNode) {
+			if (to instanceof VarNode) {
+				boolean ret = doRemoveSimpleEdge((VarNode) from, (VarNode) to);
+				if (opts.simple_edges_bidirectional()) {
+					ret = doRemoveSimpleEdge((VarNode) to, (VarNode) from) | ret;
+				}
+				return ret;
+			} else if (to instanceof FieldRefNode) {
+				return doRemoveStoreEdge((VarNode) from, (FieldRefNode) to);
+			} else if (to instanceof NewInstanceNode) {
+				return doRemoveNewInstanceEdge((VarNode) from, (NewInstanceNode) to);
+			}
+			else
+				throw new RuntimeException("Invalid node type");
+		} else if (from instanceof FieldRefNode) {
+			return doRemoveLoadEdge((FieldRefNode) from, (VarNode) to);
+
+		} else if (from instanceof NewInstanceNode) {
+			return doRemoveAssignInstanceEdge((NewInstanceNode) from, (VarNode) to);
+		} else {
+			return doRemoveAllocEdge((AllocNode) from, (VarNode) to);
+		}
+	}
+
 	protected ChunkedQueue<Node> edgeQueue = new ChunkedQueue<Node>();
 
 	public QueueReader<Node> edgeReader() {
@@ -1425,6 +1494,32 @@ public class PAG implements PointsToAnalysis {
 		return ((Set<Node>) valueList).add(value);
 	}
 
+	protected <K extends Node> boolean removeFromMap(Map<K, Object> m, K key, Node value) {
+		Object valueList = m.get(key);
+
+		if (valueList == null)
+			return false;
+		Set<?> vl;
+		if (valueList instanceof Set) {
+			vl = (Set<?>) valueList;
+		} else {
+			Node[] ar = (Node[]) valueList;
+			HashSet<Node> set = new HashSet<Node>(ar.length);
+			for (Node element : ar)
+				set.add(element);
+			vl = set;
+		}
+		if (!vl.remove(value)) {
+			return false;
+		}
+		if (vl.isEmpty()) {
+			m.remove(key);
+		} else {
+			m.put(key, vl);
+		}
+		return true;
+	}
+
 	private boolean runGeomPTA = false;
 	protected Map<Pair<Node, Node>, Set<Edge>> assign2edges = new HashMap<Pair<Node, Node>, Set<Edge>>();
 	private final Map<Object, LocalVarNode> valToLocalVarNode = new HashMap<Object, LocalVarNode>(1000);
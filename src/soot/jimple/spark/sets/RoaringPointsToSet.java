@@ -0,0 +1,715 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.sets;
+import java.util.Arrays;
+
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.internal.*;
+import soot.util.*;
+import soot.Type;
+
+/** Implementation of points-to set as a compressed bitmap. The node
+ * numbers are split into chunks of 65536 by their upper 16 bits. Each
+ * non-empty chunk is stored as a sorted array of its lower 16 bits while
+ * it holds at most ARRAY_MAX elements, and otherwise as a bit vector of
+ * 65536 bits or as a sorted list of runs of consecutive elements,
+ * whichever is smaller. Allocation nodes created together get consecutive
+ * numbers, so the elements of a set tend to fall into a few chunks.
+ */
+public final class RoaringPointsToSet extends PointsToSetInternal {
+    public RoaringPointsToSet( Type type, PAG pag ) {
+        super( type );
+        this.pag = pag;
+    }
+    /** Returns true if this set contains no run-time objects. */
+    public final boolean isEmpty() {
+        return numChunks == 0;
+    }
+    /** Returns the number of run-time objects in this set. */
+    public final int size() {
+        int ret = 0;
+        for( int i = 0; i < numChunks; i++ ) ret += cards[i];
+        return ret;
+    }
+
+    private final boolean superAddAll( PointsToSetInternal other, PointsToSetInternal exclude ) {
+        return super.addAll( other, exclude );
+    }
+
+    private final boolean nativeAddAll( RoaringPointsToSet other, RoaringPointsToSet exclude ) {
+        BitVector mask = null;
+        TypeManager typeManager = pag.getTypeManager();
+        if( !typeManager.castNeverFails( other.getType(), this.getType() ) ) {
+            mask = typeManager.get( this.getType() );
+        }
+        boolean ret = false;
+        int j = 0;
+        for( int i = 0; i < other.numChunks; i++ ) {
+            char key = other.keys[i];
+            while( j < numChunks && keys[j] < key ) j++;
+            int ex = exclude == null ? -1 : exclude.findChunk( key );
+
+            if( other.cards[i] > ARRAY_MAX ) {
+                long[] words = filterWords( other.wordsOf( i ), key, exclude, ex, mask );
+                int card = cardinality( words );
+                if( card == 0 ) continue;
+                if( j == numChunks || keys[j] != key ) {
+                    insertChunk( j, key );
+                }
+                ret = orWords( j, words, card ) | ret;
+            } else {
+                char[] values = other.valuesOf( i );
+                char[] filtered = filterValues( values, other.cards[i], key,
+                        exclude, ex, mask );
+                int card = filtered == values ? other.cards[i] : filtered.length;
+                if( card == 0 ) continue;
+                if( j == numChunks || keys[j] != key ) {
+                    insertChunk( j, key );
+                }
+                ret = orValues( j, filtered, card ) | ret;
+            }
+        }
+        return ret;
+    }
+
+    /** Adds contents of other into this set, returns true if this set
+     * changed. */
+    public final boolean addAll( PointsToSetInternal other,
+            PointsToSetInternal exclude ) {
+        if( other != null && !(other instanceof RoaringPointsToSet) )
+            return superAddAll( other, exclude );
+        if( exclude != null && !(exclude instanceof RoaringPointsToSet) )
+            return superAddAll( other, exclude );
+        if( other == null ) return false;
+        return nativeAddAll( (RoaringPointsToSet) other, (RoaringPointsToSet) exclude );
+    }
+    /** Removes the contents of other from this set, returns true if this
+     * set changed. */
+    public final boolean removeAll( PointsToSetInternal other ) {
+        if( other == null ) return false;
+        if( !(other instanceof RoaringPointsToSet) ) {
+            return other.forall( new P2SetVisitor() {
+                public final void visit( Node n ) {
+                    if( remove( n ) ) returnValue = true;
+                }
+            } );
+        }
+        RoaringPointsToSet o = (RoaringPointsToSet) other;
+        boolean ret = false;
+        int j = 0;
+        for( int i = 0; i < o.numChunks && j < numChunks; i++ ) {
+            char key = o.keys[i];
+            while( j < numChunks && keys[j] < key ) j++;
+            if( j == numChunks || keys[j] != key ) continue;
+            long[] words = wordsOf( j ).clone();
+            if( o.bitmaps[i] != null || o.runs[i] != null ) {
+                long[] other_ = o.wordsOf( i );
+                for( int w = 0; w < BITMAP_WORDS; w++ ) words[w] &= ~other_[w];
+            } else {
+                char[] values = o.arrays[i];
+                for( int k = 0; k < o.cards[i]; k++ ) {
+                    char low = values[k];
+                    words[low >>> 6] &= ~( 1L << low );
+                }
+            }
+            int card = cardinality( words );
+            if( card == cards[j] ) continue;
+            ret = true;
+            if( card == 0 ) {
+                removeChunk( j );
+                continue;
+            }
+            setBitmap( j, words, card );
+            optimize( j );
+        }
+        return ret;
+    }
+    /** Calls v's visit method on all nodes in this set. */
+    public final boolean forall( P2SetVisitor v ) {
+        ArrayNumberer<? extends Node> numberer = pag.getAllocNodeNumberer();
+        for( int i = 0; i < numChunks; i++ ) {
+            int high = keys[i] << 16;
+            if( bitmaps[i] != null ) {
+                long[] words = bitmaps[i];
+                for( int w = 0; w < words.length; w++ ) {
+                    long word = words[w];
+                    while( word != 0 ) {
+                        int bit = Long.numberOfTrailingZeros( word );
+                        word &= word - 1;
+                        v.visit( numberer.get( high | ( w << 6 ) | bit ) );
+                    }
+                }
+            } else if( runs[i] != null ) {
+                char[] r = runs[i];
+                for( int k = 0; k < runCounts[i]; k++ ) {
+                    for( int low = r[2 * k]; low <= r[2 * k + 1]; low++ ) {
+                        v.visit( numberer.get( high | low ) );
+                    }
+                }
+            } else {
+                char[] values = arrays[i];
+                for( int k = 0; k < cards[i]; k++ ) {
+                    v.visit( numberer.get( high | values[k] ) );
+                }
+            }
+        }
+        return v.getReturnValue();
+    }
+    /** Adds n to this set, returns true if n was not already in this set. */
+    public final boolean add( Node n ) {
+        if( pag.getTypeManager().castNeverFails( n.getType(), type ) ) {
+            return fastAdd( n.getNumber() );
+        }
+        return false;
+    }
+    /** Removes n from this set, returns true if n was in this set. */
+    public final boolean remove( Node n ) {
+        return remove( n.getNumber() );
+    }
+    /** Returns true iff the set contains n. */
+    public final boolean contains( Node n ) {
+        return contains( n.getNumber() );
+    }
+    /** Stores every chunk in its smallest representation, which may turn
+     * arrays of consecutive numbers into runs. Chunks are otherwise only
+     * reconsidered when they outgrow or drop back to ARRAY_MAX elements. */
+    public final void runOptimize() {
+        for( int i = 0; i < numChunks; i++ ) optimize( i );
+    }
+    public static P2SetFactory getFactory() {
+        return new P2SetFactory() {
+            public PointsToSetInternal newSet( Type type, PAG pag ) {
+                return new RoaringPointsToSet( type, pag );
+            }
+        };
+    }
+
+    /* End of public methods. */
+
+    /** Kinds of chunks, as returned by chunkKind. Package-private for
+     * testing. */
+    static final int ARRAY = 0, BITMAP = 1, RUN = 2;
+
+    /** Returns the kind of chunk that holds number, or -1 if there is
+     * none. */
+    int chunkKind( int number ) {
+        int i = findChunk( (char) ( number >>> 16 ) );
+        if( i < 0 ) return -1;
+        return bitmaps[i] != null ? BITMAP : runs[i] != null ? RUN : ARRAY;
+    }
+
+    /* End of package methods. */
+
+    private boolean contains( int number ) {
+        int i = findChunk( (char) ( number >>> 16 ) );
+        if( i < 0 ) return false;
+        return chunkContains( i, (char) number );
+    }
+
+    private boolean chunkContains( int i, char low ) {
+        if( bitmaps[i] != null ) {
+            return ( bitmaps[i][low >>> 6] & ( 1L << low ) ) != 0;
+        }
+        if( runs[i] != null ) {
+            int k = findRun( runs[i], runCounts[i], low );
+            return k >= 0 && low <= runs[i][2 * k + 1];
+        }
+        return Arrays.binarySearch( arrays[i], 0, cards[i], low ) >= 0;
+    }
+
+    private boolean fastAdd( int number ) {
+        char key = (char) ( number >>> 16 );
+        char low = (char) number;
+        int i = findChunk( key );
+        if( i < 0 ) {
+            i = -i - 1;
+            insertChunk( i, key );
+        }
+        if( bitmaps[i] != null ) {
+            long[] words = bitmaps[i];
+            long bit = 1L << low;
+            if( ( words[low >>> 6] & bit ) != 0 ) return false;
+            words[low >>> 6] |= bit;
+            cards[i]++;
+            return true;
+        }
+        if( runs[i] != null ) {
+            if( !addToRuns( i, low ) ) return false;
+            if( 4 * runCounts[i] > BITMAP_BYTES ) toBitmap( i );
+            return true;
+        }
+        char[] values = arrays[i];
+        int pos = Arrays.binarySearch( values, 0, cards[i], low );
+        if( pos >= 0 ) return false;
+        pos = -pos - 1;
+        if( cards[i] == ARRAY_MAX ) {
+            toBitmap( i );
+            bitmaps[i][low >>> 6] |= 1L << low;
+            cards[i]++;
+            optimize( i );
+            return true;
+        }
+        if( cards[i] == values.length ) {
+            arrays[i] = values = Arrays.copyOf( values,
+                    Math.min( ARRAY_MAX, values.length * 2 ) );
+        }
+        System.arraycopy( values, pos, values, pos + 1, cards[i] - pos );
+        values[pos] = low;
+        cards[i]++;
+        return true;
+    }
+
+    private boolean remove( int number ) {
+        int i = findChunk( (char) ( number >>> 16 ) );
+        if( i < 0 ) return false;
+        char low = (char) number;
+        if( bitmaps[i] != null ) {
+            long[] words = bitmaps[i];
+            long bit = 1L << low;
+            if( ( words[low >>> 6] & bit ) == 0 ) return false;
+            words[low >>> 6] &= ~bit;
+            cards[i]--;
+        } else if( runs[i] != null ) {
+            if( !removeFromRuns( i, low ) ) return false;
+        } else {
+            char[] values = arrays[i];
+            int pos = Arrays.binarySearch( values, 0, cards[i], low );
+            if( pos < 0 ) return false;
+            System.arraycopy( values, pos + 1, values, pos, cards[i] - pos - 1 );
+            cards[i]--;
+        }
+        if( cards[i] == 0 ) {
+            removeChunk( i );
+        } else if( bitmaps[i] != null && cards[i] <= ARRAY_MAX ) {
+            optimize( i );
+        }
+        return true;
+    }
+
+    /** Returns the index of the chunk with the given key, or
+     * (-(insertion point) - 1) if there is none. */
+    private int findChunk( char key ) {
+        return Arrays.binarySearch( keys, 0, numChunks, key );
+    }
+
+    /** Inserts an empty array chunk with the given key at position i. */
+    private void insertChunk( int i, char key ) {
+        if( numChunks == keys.length ) {
+            int newLength = Math.max( 2, keys.length * 2 );
+            keys = Arrays.copyOf( keys, newLength );
+            arrays = Arrays.copyOf( arrays, newLength );
+            bitmaps = Arrays.copyOf( bitmaps, newLength );
+            runs = Arrays.copyOf( runs, newLength );
+            runCounts = Arrays.copyOf( runCounts, newLength );
+            cards = Arrays.copyOf( cards, newLength );
+        }
+        System.arraycopy( keys, i, keys, i + 1, numChunks - i );
+        System.arraycopy( arrays, i, arrays, i + 1, numChunks - i );
+        System.arraycopy( bitmaps, i, bitmaps, i + 1, numChunks - i );
+        System.arraycopy( runs, i, runs, i + 1, numChunks - i );
+        System.arraycopy( runCounts, i, runCounts, i + 1, numChunks - i );
+        System.arraycopy( cards, i, cards, i + 1, numChunks - i );
+        keys[i] = key;
+        arrays[i] = new char[4];
+        bitmaps[i] = null;
+        runs[i] = null;
+        runCounts[i] = 0;
+        cards[i] = 0;
+        numChunks++;
+    }
+
+    private void removeChunk( int i ) {
+        int n = numChunks - i - 1;
+        System.arraycopy( keys, i + 1, keys, i, n );
+        System.arraycopy( arrays, i + 1, arrays, i, n );
+        System.arraycopy( bitmaps, i + 1, bitmaps, i, n );
+        System.arraycopy( runs, i + 1, runs, i, n );
+        System.arraycopy( runCounts, i + 1, runCounts, i, n );
+        System.arraycopy( cards, i + 1, cards, i, n );
+        numChunks--;
+        arrays[numChunks] = null;
+        bitmaps[numChunks] = null;
+        runs[numChunks] = null;
+    }
+
+    /** Returns the words of chunk i. The result is the chunk's own bitmap
+     * if it has one, so it must not be modified. */
+    private long[] wordsOf( int i ) {
+        if( bitmaps[i] != null ) return bitmaps[i];
+        long[] words = new long[BITMAP_WORDS];
+        if( runs[i] != null ) {
+            char[] r = runs[i];
+            for( int k = 0; k < runCounts[i]; k++ ) setRange( words, r[2 * k], r[2 * k + 1] );
+        } else {
+            char[] values = arrays[i];
+            for( int k = 0; k < cards[i]; k++ ) {
+                char low = values[k];
+                words[low >>> 6] |= 1L << low;
+            }
+        }
+        return words;
+    }
+
+    /** Returns the sorted values of chunk i, of which the first cards[i]
+     * are valid. The result is the chunk's own array if it has one, so it
+     * must not be modified. */
+    private char[] valuesOf( int i ) {
+        if( bitmaps[i] == null && runs[i] == null ) return arrays[i];
+        if( bitmaps[i] != null ) return toValues( bitmaps[i], cards[i] );
+        char[] ret = new char[cards[i]];
+        char[] r = runs[i];
+        int n = 0;
+        for( int k = 0; k < runCounts[i]; k++ ) {
+            for( int low = r[2 * k]; low <= r[2 * k + 1]; low++ ) ret[n++] = (char) low;
+        }
+        return ret;
+    }
+
+    private void setBitmap( int i, long[] words, int card ) {
+        bitmaps[i] = words;
+        arrays[i] = null;
+        runs[i] = null;
+        runCounts[i] = 0;
+        cards[i] = card;
+    }
+
+    private void toBitmap( int i ) {
+        if( bitmaps[i] != null ) return;
+        setBitmap( i, wordsOf( i ), cards[i] );
+    }
+
+    /** Converts chunk i to the smallest of the array, bitmap and run
+     * representations. */
+    private void optimize( int i ) {
+        int card = cards[i];
+        int runBytes = 4 * ( runs[i] != null ? runCounts[i] : countRuns( i ) );
+        int arrayBytes = card <= ARRAY_MAX ? 2 * card : Integer.MAX_VALUE;
+        if( arrayBytes <= runBytes && arrayBytes <= BITMAP_BYTES ) {
+            if( bitmaps[i] == null && runs[i] == null ) return;
+            char[] values = valuesOf( i );
+            arrays[i] = values.length == card ? values : Arrays.copyOf( values, card );
+            bitmaps[i] = null;
+            runs[i] = null;
+            runCounts[i] = 0;
+        } else if( runBytes < BITMAP_BYTES ) {
+            if( runs[i] != null ) return;
+            char[] r = new char[runBytes / 2];
+            int n = 0;
+            if( bitmaps[i] != null ) {
+                long[] words = bitmaps[i];
+                int start = -1;
+                for( int low = 0; low < 65536; low++ ) {
+                    boolean set = ( words[low >>> 6] & ( 1L << low ) ) != 0;
+                    if( set && start < 0 ) start = low;
+                    if( !set && start >= 0 ) {
+                        r[n++] = (char) start;
+                        r[n++] = (char) ( low - 1 );
+                        start = -1;
+                    }
+                }
+                if( start >= 0 ) {
+                    r[n++] = (char) start;
+                    r[n++] = (char) 65535;
+                }
+            } else {
+                char[] values = arrays[i];
+                for( int k = 0; k < card; k++ ) {
+                    if( n > 0 && r[n - 1] + 1 == values[k] ) {
+                        r[n - 1] = values[k];
+                    } else {
+                        r[n++] = values[k];
+                        r[n++] = values[k];
+                    }
+                }
+            }
+            runs[i] = r;
+            runCounts[i] = n / 2;
+            arrays[i] = null;
+            bitmaps[i] = null;
+        } else {
+            toBitmap( i );
+        }
+    }
+
+    /** Returns the number of runs of consecutive elements in chunk i. */
+    private int countRuns( int i ) {
+        if( runs[i] != null ) return runCounts[i];
+        int ret = 0;
+        if( bitmaps[i] != null ) {
+            long carry = 0;
+            for( long word : bitmaps[i] ) {
+                // count the bits whose lower neighbour is not set
+                ret += Long.bitCount( word & ~( ( word << 1 ) | carry ) );
+                carry = word >>> 63;
+            }
+        } else {
+            char[] values = arrays[i];
+            for( int k = 0; k < cards[i]; k++ ) {
+                if( k == 0 || values[k - 1] + 1 != values[k] ) ret++;
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the index of the last of the first n runs in r that starts
+     * at or before low, or -1 if there is none. */
+    private static int findRun( char[] r, int n, char low ) {
+        int lo = 0, hi = n - 1;
+        while( lo <= hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if( r[2 * mid] <= low ) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return hi;
+    }
+
+    private boolean addToRuns( int i, char low ) {
+        char[] r = runs[i];
+        int n = runCounts[i];
+        int k = findRun( r, n, low );
+        if( k >= 0 && low <= r[2 * k + 1] ) return false;
+        boolean joinPrev = k >= 0 && r[2 * k + 1] + 1 == low;
+        boolean joinNext = k + 1 < n && r[2 * k + 2] == low + 1;
+        if( joinPrev && joinNext ) {
+            r[2 * k + 1] = r[2 * k + 3];
+            System.arraycopy( r, 2 * k + 4, r, 2 * k + 2, 2 * ( n - k - 2 ) );
+            runCounts[i]--;
+        } else if( joinPrev ) {
+            r[2 * k + 1] = low;
+        } else if( joinNext ) {
+            r[2 * k + 2] = low;
+        } else {
+            insertRun( i, k + 1, low, low );
+        }
+        cards[i]++;
+        return true;
+    }
+
+    private boolean removeFromRuns( int i, char low ) {
+        char[] r = runs[i];
+        int k = findRun( r, runCounts[i], low );
+        if( k < 0 || low > r[2 * k + 1] ) return false;
+        char start = r[2 * k], last = r[2 * k + 1];
+        if( start == last ) {
+            System.arraycopy( r, 2 * k + 2, r, 2 * k, 2 * ( runCounts[i] - k - 1 ) );
+            runCounts[i]--;
+        } else if( low == start ) {
+            r[2 * k] = (char) ( low + 1 );
+        } else if( low == last ) {
+            r[2 * k + 1] = (char) ( low - 1 );
+        } else {
+            r[2 * k + 1] = (char) ( low - 1 );
+            insertRun( i, k + 1, (char) ( low + 1 ), last );
+        }
+        cards[i]--;
+        return true;
+    }
+
+    private void insertRun( int i, int k, char start, char last ) {
+        char[] r = runs[i];
+        int n = runCounts[i];
+        if( 2 * n == r.length ) {
+            runs[i] = r = Arrays.copyOf( r, Math.max( 4, 2 * r.length ) );
+        }
+        System.arraycopy( r, 2 * k, r, 2 * k + 2, 2 * ( n - k ) );
+        r[2 * k] = start;
+        r[2 * k + 1] = last;
+        runCounts[i]++;
+    }
+
+    private static void setRange( long[] words, int start, int last ) {
+        for( int low = start; low <= last; ) {
+            if( ( low & 63 ) == 0 && last - low >= 63 ) {
+                words[low >>> 6] = -1L;
+                low += 64;
+            } else {
+                words[low >>> 6] |= 1L << low;
+                low++;
+            }
+        }
+    }
+
+    /** Adds the given words, which hold card elements, to chunk i. */
+    private boolean orWords( int i, long[] words, int card ) {
+        if( bitmaps[i] == null ) {
+            if( runs[i] == null && cards[i] + card <= ARRAY_MAX ) {
+                return orValues( i, toValues( words, card ), card );
+            }
+            toBitmap( i );
+        }
+        long[] mine = bitmaps[i];
+        int newCard = 0;
+        for( int w = 0; w < BITMAP_WORDS; w++ ) {
+            mine[w] |= words[w];
+            newCard += Long.bitCount( mine[w] );
+        }
+        boolean ret = newCard != cards[i];
+        cards[i] = newCard;
+        if( ret ) optimize( i );
+        return ret;
+    }
+
+    /** Adds the first card sorted values to chunk i. */
+    private boolean orValues( int i, char[] values, int card ) {
+        if( runs[i] != null ) {
+            if( card > SMALL_RUN_UPDATE ) {
+                toBitmap( i );
+            } else {
+                boolean ret = false;
+                for( int k = 0; k < card; k++ ) {
+                    ret = addToRuns( i, values[k] ) | ret;
+                }
+                if( 4 * runCounts[i] > BITMAP_BYTES ) toBitmap( i );
+                return ret;
+            }
+        }
+        if( bitmaps[i] != null ) {
+            long[] words = bitmaps[i];
+            int added = 0;
+            for( int k = 0; k < card; k++ ) {
+                char low = values[k];
+                long bit = 1L << low;
+                if( ( words[low >>> 6] & bit ) == 0 ) {
+                    words[low >>> 6] |= bit;
+                    added++;
+                }
+            }
+            cards[i] += added;
+            if( added > 0 ) optimize( i );
+            return added > 0;
+        }
+        char[] mine = arrays[i];
+        int myCard = cards[i];
+        char[] merged = new char[myCard + card];
+        int a = 0, b = 0, n = 0;
+        while( a < myCard && b < card ) {
+            char x = mine[a], y = values[b];
+            if( x < y ) { merged[n++] = x; a++; }
+            else if( y < x ) { merged[n++] = y; b++; }
+            else { merged[n++] = x; a++; b++; }
+        }
+        while( a < myCard ) merged[n++] = mine[a++];
+        while( b < card ) merged[n++] = values[b++];
+        if( n == myCard ) return false;
+        arrays[i] = merged;
+        cards[i] = n;
+        if( n > ARRAY_MAX ) optimize( i );
+        return true;
+    }
+
+    /** Returns the words of a chunk without the elements in chunk ex of
+     * exclude and without the nodes not in mask. Returns words itself if
+     * nothing is filtered out. */
+    private static long[] filterWords( long[] words, char key,
+            RoaringPointsToSet exclude, int ex, BitVector mask ) {
+        if( ex < 0 && mask == null ) return words;
+        long[] ret = words.clone();
+        if( ex >= 0 ) {
+            if( exclude.bitmaps[ex] == null && exclude.runs[ex] == null ) {
+                char[] exValues = exclude.arrays[ex];
+                for( int k = 0; k < exclude.cards[ex]; k++ ) {
+                    char low = exValues[k];
+                    ret[low >>> 6] &= ~( 1L << low );
+                }
+            } else {
+                long[] exWords = exclude.wordsOf( ex );
+                for( int w = 0; w < BITMAP_WORDS; w++ ) ret[w] &= ~exWords[w];
+            }
+        }
+        if( mask != null ) {
+            int high = key << 16;
+            for( int w = 0; w < BITMAP_WORDS; w++ ) {
+                long word = ret[w];
+                while( word != 0 ) {
+                    int bit = Long.numberOfTrailingZeros( word );
+                    word &= word - 1;
+                    if( !mask.get( high | ( w << 6 ) | bit ) ) {
+                        ret[w] &= ~( 1L << bit );
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the first card values of a chunk without the elements in
+     * chunk ex of exclude and without the nodes not in mask. Returns
+     * values itself if nothing is filtered out; otherwise the returned
+     * array is exactly as long as the number of remaining values. */
+    private static char[] filterValues( char[] values, int card, char key,
+            RoaringPointsToSet exclude, int ex, BitVector mask ) {
+        if( ex < 0 && mask == null ) return values;
+        int high = key << 16;
+        char[] ret = new char[card];
+        int n = 0;
+        for( int k = 0; k < card; k++ ) {
+            char low = values[k];
+            if( ex >= 0 && exclude.chunkContains( ex, low ) ) continue;
+            if( mask != null && !mask.get( high | low ) ) continue;
+            ret[n++] = low;
+        }
+        return n == card ? ret : Arrays.copyOf( ret, n );
+    }
+
+    private static int cardinality( long[] words ) {
+        int ret = 0;
+        for( long word : words ) ret += Long.bitCount( word );
+        return ret;
+    }
+
+    private static char[] toValues( long[] words, int card ) {
+        char[] ret = new char[card];
+        int n = 0;
+        for( int w = 0; w < words.length; w++ ) {
+            long word = words[w];
+            while( word != 0 ) {
+                int bit = Long.numberOfTrailingZeros( word );
+                word &= word - 1;
+                ret[n++] = (char) ( ( w << 6 ) | bit );
+            }
+        }
+        return ret;
+    }
+
+    /** Largest number of elements stored in an array chunk. Above this, a
+     * bitmap chunk (8 kB) takes less space than the array. */
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 65536 / 64;
+    private static final int BITMAP_BYTES = 8 * BITMAP_WORDS;
+    /** Largest number of values added to a run chunk one by one; larger
+     * updates go through a bitmap. */
+    private static final int SMALL_RUN_UPDATE = 64;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final char[][] NO_ARRAYS = new char[0][];
+    private static final long[][] NO_BITMAPS = new long[0][];
+    private static final int[] NO_CARDS = new int[0];
+
+    private char[] keys = NO_KEYS;
+    private char[][] arrays = NO_ARRAYS;
+    private long[][] bitmaps = NO_BITMAPS;
+    /** Runs of chunks, as pairs of first and last element. */
+    private char[][] runs = NO_ARRAYS;
+    private int[] runCounts = NO_CARDS;
+    private int[] cards = NO_CARDS;
+    private int numChunks = 0;
+    private PAG pag = null;
+}
@@ -0,0 +1,306 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.SootMethod;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.LocalVarNode;
+import soot.jimple.spark.pag.MethodPAG;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.Parm;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.scalar.Pair;
+import soot.util.queue.QueueReader;
+
+/**
+ * Updates a finished SPARK solution after the bodies of some methods have
+ * changed, without rebuilding the whole pointer assignment graph.
+ *
+ * The nodes created for the old bodies are disconnected from the graph,
+ * and the points-to sets of all nodes that are reachable from them are
+ * cleared. The new bodies are then added to the graph and the call graph,
+ * and the cleared region is propagated again, starting from the unchanged
+ * nodes around it. Parameter, this and return nodes are shared between the
+ * old and the new body, so edges from and to callers are kept.
+ *
+ * Call edges are only ever added: methods and edges that are no longer
+ * reachable after the change stay in the call graph, and points-to sets
+ * of nodes that are only fed through reflective newInstance() calls are
+ * not cleared. The result is therefore sound but may be less precise than
+ * a run from scratch. Updates need the on-the-fly call graph and a graph
+ * in which no nodes were merged.
+ */
+
+public class IncrementalUpdater {
+	public IncrementalUpdater(PAG pag) {
+		if (pag.getOnFlyCallGraph() == null)
+			throw new RuntimeException(
+					"Incremental updates need cg.spark on-fly-cg:true");
+		if (pag.getOpts().vta())
+			throw new RuntimeException(
+					"Incremental updates are not supported with cg.spark vta:true");
+		this.pag = pag;
+	}
+
+	/**
+	 * Updates the call graph and points-to sets after the bodies of the
+	 * given methods have changed.
+	 */
+	public void update(Collection<SootMethod> changedMethods) {
+		final Set<SootMethod> changed = new HashSet<SootMethod>(changedMethods);
+		final OnFlyCallGraph ofcg = pag.getOnFlyCallGraph();
+		boolean verbose = pag.getOpts().verbose();
+
+		List<VarNode> oldNodes = new ArrayList<VarNode>();
+		for (VarNode vn : pag.getVarNodeNumberer()) {
+			if (vn instanceof LocalVarNode && isBodyNode((LocalVarNode) vn)
+					&& changed.contains(((LocalVarNode) vn).getMethod())) {
+				oldNodes.add(vn);
+			}
+		}
+
+		affectedVars.clear();
+		affectedFields.clear();
+		findAffected(oldNodes);
+		if (verbose) {
+			G.v().out.println("[Spark] Incremental update: "
+					+ oldNodes.size() + " retracted nodes, "
+					+ affectedVars.size() + " affected variables, "
+					+ affectedFields.size() + " affected fields");
+		}
+
+		// Disconnect the old bodies from the PAG and the call graph
+		for (VarNode vn : oldNodes) {
+			removeEdges(vn);
+		}
+		List<MethodOrMethodContext> contexts = new ArrayList<MethodOrMethodContext>();
+		for (QueueReader<MethodOrMethodContext> reader = ofcg
+				.reachableMethods().listener(); reader.hasNext();) {
+			MethodOrMethodContext momc = reader.next();
+			if (changed.contains(momc.method()))
+				contexts.add(momc);
+		}
+		CallGraph cg = ofcg.callGraph();
+		for (MethodOrMethodContext momc : contexts) {
+			List<Edge> edges = new ArrayList<Edge>();
+			for (Iterator<Edge> it = cg.edgesOutOf(momc); it.hasNext();)
+				edges.add(it.next());
+			for (Edge e : edges)
+				cg.removeEdge(e);
+		}
+		for (SootMethod m : changed) {
+			ofcg.ofcgb().retractMethod(m);
+			MethodPAG.invalidate(m);
+		}
+
+		for (VarNode vn : affectedVars) {
+			vn.discardP2Set();
+		}
+		for (AllocDotField adf : affectedFields) {
+			adf.discardP2Set();
+		}
+
+		// Add the new bodies
+		int firstNewNode = pag.getVarNodeNumberer().size() + 1;
+		for (MethodOrMethodContext momc : contexts) {
+			MethodPAG mpag = MethodPAG.v(pag, momc.method());
+			mpag.build();
+			mpag.addToPAG(momc.context());
+			ofcg.ofcgb().reprocessMethod(momc);
+		}
+		ofcg.build();
+
+		// Propagate into the cleared region from its unchanged neighbours
+		PropWorklist propagator = new PropWorklist(pag);
+		List<VarNode> seeds = new ArrayList<VarNode>(affectedVars);
+		for (int i = firstNewNode; i <= pag.getVarNodeNumberer().size(); i++) {
+			seeds.add(pag.getVarNodeNumberer().get(i));
+		}
+		for (VarNode vn : seeds) {
+			if (vn.getReplacement() != vn)
+				continue;
+			if (seed(vn))
+				propagator.varNodeWorkList.add(vn);
+		}
+		propagator.propagate();
+
+		affectedVars.clear();
+		affectedFields.clear();
+	}
+
+	/* End of public methods. */
+	/* End of package methods. */
+
+	/**
+	 * Returns true if vn stands for a value of the body of its method
+	 * rather than for its this, parameter or return value.
+	 */
+	private static boolean isBodyNode(LocalVarNode vn) {
+		Object variable = vn.getVariable();
+		if (variable instanceof Parm)
+			return false;
+		return !(variable instanceof Pair && ((Pair<?, ?>) variable).getO1() == vn
+				.getMethod());
+	}
+
+	/**
+	 * Collects all nodes whose points-to sets may depend on the given ones.
+	 */
+	private void findAffected(Collection<VarNode> roots) {
+		final Map<SparkField, List<FieldRefNode>> loadsByField = new HashMap<SparkField, List<FieldRefNode>>();
+		for (FieldRefNode fr : pag.loadSources()) {
+			List<FieldRefNode> loads = loadsByField.get(fr.getField());
+			if (loads == null)
+				loadsByField.put(fr.getField(), loads = new ArrayList<FieldRefNode>());
+			loads.add(fr);
+		}
+
+		final LinkedList<Node> worklist = new LinkedList<Node>();
+		for (VarNode root : roots) {
+			if (affectedVars.add(root))
+				worklist.add(root);
+		}
+		while (!worklist.isEmpty()) {
+			Node n = worklist.removeFirst();
+			if (n instanceof VarNode) {
+				final VarNode src = (VarNode) n;
+				for (Node target : pag.simpleLookup(src)) {
+					if (affectedVars.add((VarNode) target))
+						worklist.add(target);
+				}
+				for (Node target : pag.storeLookup(src)) {
+					final FieldRefNode fr = (FieldRefNode) target;
+					fr.getBase().getP2Set().forall(new P2SetVisitor() {
+						public final void visit(Node an) {
+							AllocDotField adf = pag.makeAllocDotField(
+									(AllocNode) an, fr.getField());
+							if (affectedFields.add(adf))
+								worklist.add(adf);
+						}
+					});
+				}
+				// A smaller base set affects all loads and stores through it
+				for (final FieldRefNode fr : src.getAllFieldRefs()) {
+					for (Node target : pag.loadLookup(fr)) {
+						if (affectedVars.add((VarNode) target))
+							worklist.add(target);
+					}
+					if (pag.storeInvLookup(fr).length > 0) {
+						src.getP2Set().forall(new P2SetVisitor() {
+							public final void visit(Node an) {
+								AllocDotField adf = pag.makeAllocDotField(
+										(AllocNode) an, fr.getField());
+								if (affectedFields.add(adf))
+									worklist.add(adf);
+							}
+						});
+					}
+				}
+			} else {
+				AllocDotField adf = (AllocDotField) n;
+				List<FieldRefNode> loads = loadsByField.get(adf.getField());
+				if (loads == null)
+					continue;
+				for (FieldRefNode fr : loads) {
+					if (!fr.getBase().getP2Set().contains(adf.getBase()))
+						continue;
+					for (Node target : pag.loadLookup(fr)) {
+						if (affectedVars.add((VarNode) target))
+							worklist.add(target);
+					}
+				}
+			}
+		}
+	}
+
+	/** Removes all edges from and to vn and its field references. */
+	private void removeEdges(VarNode vn) {
+		for (Node n : pag.simpleLookup(vn))
+			pag.removeEdge(vn, n);
+		for (Node n : pag.simpleInvLookup(vn))
+			pag.removeEdge(n, vn);
+		for (Node n : pag.allocInvLookup(vn))
+			pag.removeEdge(n, vn);
+		for (Node n : pag.storeLookup(vn))
+			pag.removeEdge(vn, n);
+		for (Node n : pag.loadInvLookup(vn))
+			pag.removeEdge(n, vn);
+		for (Node n : pag.newInstanceLookup(vn))
+			pag.removeEdge(vn, n);
+		for (Node n : pag.assignInstanceInvLookup(vn))
+			pag.removeEdge(n, vn);
+		for (FieldRefNode fr : vn.getAllFieldRefs()) {
+			for (Node n : pag.loadLookup(fr))
+				pag.removeEdge(fr, n);
+			for (Node n : pag.storeInvLookup(fr))
+				pag.removeEdge(n, fr);
+		}
+	}
+
+	/**
+	 * Adds to the points-to set of vn everything that flows into it from
+	 * nodes outside the cleared region, except from allocation sites and
+	 * field stores, which the propagator handles itself. Returns true if
+	 * the set is not empty.
+	 */
+	private boolean seed(final VarNode vn) {
+		for (Node src : pag.simpleInvLookup(vn)) {
+			if (!affectedVars.contains(src))
+				vn.makeP2Set().addAll(src.getP2Set(), null);
+		}
+		for (Node src : pag.loadInvLookup(vn)) {
+			final FieldRefNode fr = (FieldRefNode) src;
+			fr.getBase().getP2Set().forall(new P2SetVisitor() {
+				public final void visit(Node an) {
+					AllocDotField adf = ((AllocNode) an).dot(fr.getField());
+					if (adf != null && !affectedFields.contains(adf))
+						vn.makeP2Set().addAll(adf.getP2Set(), null);
+				}
+			});
+		}
+		for (Node src : pag.assignInstanceInvLookup(vn)) {
+			vn.makeP2Set().addAll(src.getP2Set(), null);
+		}
+		return !vn.getP2Set().isEmpty();
+	}
+
+	protected final PAG pag;
+	private final Set<VarNode> affectedVars = new HashSet<VarNode>();
+	private final Set<AllocDotField> affectedFields = new HashSet<AllocDotField>();
+}
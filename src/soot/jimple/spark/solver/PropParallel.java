@@ -0,0 +1,486 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.spark.solver;
+
+import heros.solver.CountingThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import soot.G;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.Type;
+import soot.jimple.spark.pag.AllocDotField;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ClassConstantNode;
+import soot.jimple.spark.pag.FieldRefNode;
+import soot.jimple.spark.pag.NewInstanceNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.spark.sets.PointsToSetInternal;
+import soot.options.SparkOptions;
+import soot.util.queue.QueueReader;
+
+/**
+ * Propagates points-to sets along pointer assignment graph using a worklist
+ * that is processed in rounds by several threads.
+ *
+ * In each round, every node on the worklist is first handled sequentially,
+ * as in {@link PropWorklist}, except that the new part of its points-to set
+ * is not yet pushed along simple assignment edges. Instead, a private copy
+ * of it is recorded for each target of such an edge. The targets are then
+ * split among the worker threads, so every points-to set is only ever
+ * written by one thread, and each thread merges the recorded copies into
+ * its targets. Targets that changed form the worklist of the next round.
+ * Since all sets only grow and the next worklist is sorted, the final
+ * result does not depend on the number of threads.
+ */
+
+public final class PropParallel extends Propagator {
+	protected final Set<VarNode> varNodeWorkList = new TreeSet<VarNode>();
+
+	public PropParallel(PAG pag) {
+		this(pag, Runtime.getRuntime().availableProcessors());
+	}
+
+	public PropParallel(PAG pag, int threadNum) {
+		this.pag = pag;
+		this.threadNum = hasSharedSets(pag.getOpts()) ? 1 : Math.max(1, threadNum);
+	}
+
+	/** Actually does the propagation. */
+	public final void propagate() {
+		ofcg = pag.getOnFlyCallGraph();
+		new TopoSorter(pag, false).sort();
+		for (AllocNode object : pag.allocSources()) {
+			handleAllocNode(object);
+		}
+
+		if (threadNum > 1) {
+			// Workers only read the type masks and the FastHierarchy, whose
+			// subclass and implementer closures are all computed when it is
+			// constructed, so complete the masks before any thread starts
+			pag.getTypeManager().update();
+			executor = new CountingThreadPoolExecutor(threadNum, threadNum,
+					30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		}
+		try {
+			propagateRounds();
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+		}
+	}
+
+	/* End of public methods. */
+	/* End of package methods. */
+
+	private void propagateRounds() {
+		boolean verbose = pag.getOpts().verbose();
+		do {
+			if (verbose) {
+				G.v().out.println("Worklist has " + varNodeWorkList.size()
+						+ " nodes.");
+			}
+			while (!varNodeWorkList.isEmpty()) {
+				handleRound();
+			}
+			if (verbose) {
+				G.v().out.println("Now handling field references");
+			}
+			for (Object object : pag.storeSources()) {
+				final VarNode src = (VarNode) object;
+				Node[] targets = pag.storeLookup(src);
+				for (Node element0 : targets) {
+					final FieldRefNode target = (FieldRefNode) element0;
+					target.getBase().makeP2Set().forall(new P2SetVisitor() {
+						public final void visit(Node n) {
+							AllocDotField nDotF = pag.makeAllocDotField(
+									(AllocNode) n, target.getField());
+                            if(ofcg != null) {
+                            	ofcg.updatedFieldRef(nDotF, src.getP2Set());
+                            }
+							nDotF.makeP2Set().addAll(src.getP2Set(), null);
+						}
+					});
+				}
+			}
+			HashSet<Object[]> edgesToPropagate = new HashSet<Object[]>();
+			for (Object object : pag.loadSources()) {
+				handleFieldRefNode((FieldRefNode) object, edgesToPropagate);
+			}
+			Set<PointsToSetInternal> nodesToFlush = Collections
+					.newSetFromMap(new IdentityHashMap<PointsToSetInternal, Boolean>());
+			for (Object[] pair : edgesToPropagate) {
+				PointsToSetInternal nDotF = (PointsToSetInternal) pair[0];
+				PointsToSetInternal newP2Set = nDotF.getNewSet();
+				VarNode loadTarget = (VarNode) pair[1];
+				if (loadTarget.makeP2Set().addAll(newP2Set, null)) {
+					varNodeWorkList.add(loadTarget);
+				}
+				nodesToFlush.add(nDotF);
+			}
+			for (PointsToSetInternal nDotF : nodesToFlush) {
+				nDotF.flushNew();
+			}
+		} while (!varNodeWorkList.isEmpty());
+	}
+
+	/**
+	 * Handles all nodes currently on the worklist. The simple assignment
+	 * edges are propagated concurrently once all other edges are done.
+	 */
+	private void handleRound() {
+		List<VarNode> round = new ArrayList<VarNode>(varNodeWorkList);
+		varNodeWorkList.clear();
+
+		Map<VarNode, List<PointsToSetInternal>> simpleUpdates =
+				new LinkedHashMap<VarNode, List<PointsToSetInternal>>();
+		for (VarNode src : round) {
+			handleVarNode(src, simpleUpdates);
+		}
+
+		// Add the allocation nodes created by the on-the-fly call graph in
+		// this round to the type masks. No nodes are created below, so once
+		// the allocation node queue is drained, TypeManager.get() leaves the
+		// type manager alone and can be called by all threads.
+		pag.getTypeManager().update();
+
+		final List<VarNode> targets = new ArrayList<VarNode>(simpleUpdates.keySet());
+		final List<List<PointsToSetInternal>> sources =
+				new ArrayList<List<PointsToSetInternal>>(simpleUpdates.values());
+		if (executor == null || targets.size() < 2 * threadNum) {
+			varNodeWorkList.addAll(propagateSimple(targets, sources, 0,
+					targets.size()));
+			return;
+		}
+
+		// Use a few more chunks than threads to even out the load
+		int chunkNum = 4 * threadNum;
+		int chunkSize = (targets.size() + chunkNum - 1) / chunkNum;
+		final List<List<VarNode>> changed = new ArrayList<List<VarNode>>();
+		for (int start = 0; start < targets.size(); start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(start + chunkSize, targets.size());
+			final int chunk = changed.size();
+			changed.add(null);
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					changed.set(chunk, propagateSimple(targets, sources, from, to));
+				}
+
+			});
+		}
+
+		try {
+			executor.awaitCompletion();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Could not wait for propagation "
+					+ "threads to finish: " + e.getMessage(), e);
+		}
+		if (executor.getException() != null)
+			throw (RuntimeException) executor.getException();
+
+		for (List<VarNode> c : changed) {
+			varNodeWorkList.addAll(c);
+		}
+	}
+
+	/**
+	 * Merges the recorded points-to sets into the targets between from
+	 * (inclusive) and to (exclusive), and returns the targets that changed.
+	 */
+	private static List<VarNode> propagateSimple(List<VarNode> targets,
+			List<List<PointsToSetInternal>> sources, int from, int to) {
+		List<VarNode> ret = new ArrayList<VarNode>();
+		for (int i = from; i < to; i++) {
+			VarNode target = targets.get(i);
+			boolean changed = false;
+			for (PointsToSetInternal p2set : sources.get(i)) {
+				changed = target.getP2Set().addAll(p2set, null) | changed;
+			}
+			if (changed)
+				ret.add(target);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns true if the selected points-to set implementation shares data
+	 * between different sets, which rules out updating sets concurrently.
+	 */
+	private static boolean hasSharedSets(SparkOptions opts) {
+		switch (opts.set_impl()) {
+		case SparkOptions.set_impl_heintze:
+		case SparkOptions.set_impl_sharedlist:
+			return true;
+		case SparkOptions.set_impl_double:
+			return opts.double_set_old() == SparkOptions.double_set_old_heintze
+					|| opts.double_set_old() == SparkOptions.double_set_old_sharedlist
+					|| opts.double_set_new() == SparkOptions.double_set_new_heintze
+					|| opts.double_set_new() == SparkOptions.double_set_new_sharedlist;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Propagates new points-to information of node src to all its successors.
+	 */
+	protected final boolean handleAllocNode(AllocNode src) {
+		boolean ret = false;
+		Node[] targets = pag.allocLookup(src);
+		for (Node element : targets) {
+			if (element.makeP2Set().add(src)) {
+				varNodeWorkList.add((VarNode) element);
+				ret = true;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Propagates new points-to information of node src to all its successors,
+	 * except along simple assignment edges. For those, a copy of the new
+	 * points-to information is recorded in simpleUpdates under each target.
+	 */
+	protected final boolean handleVarNode(final VarNode src,
+			Map<VarNode, List<PointsToSetInternal>> simpleUpdates) {
+		boolean ret = false;
+		boolean flush = true;
+
+		if (src.getReplacement() != src)
+			throw new RuntimeException("Got bad node " + src + " with rep "
+					+ src.getReplacement());
+
+		final PointsToSetInternal newP2Set = src.getP2Set().getNewSet();
+		if (newP2Set.isEmpty())
+			return false;
+
+		// The targets may be updated while src is, so they get their own copy
+		Node[] simpleTargets = pag.simpleLookup(src);
+		if (simpleTargets.length > 0) {
+			PointsToSetInternal copy = pag.getSetFactory().newSet(
+					src.getType(), pag);
+			copy.addAll(newP2Set, null);
+			for (Node element : simpleTargets) {
+				VarNode target = (VarNode) element;
+				target.makeP2Set();
+				List<PointsToSetInternal> sources = simpleUpdates.get(target);
+				if (sources == null) {
+					simpleUpdates.put(target,
+							sources = new ArrayList<PointsToSetInternal>());
+				}
+				sources.add(copy);
+				ret = true;
+			}
+		}
+
+		if (ofcg != null) {
+			QueueReader<Node> addedEdges = pag.edgeReader();
+			ofcg.updatedNode(src);
+			ofcg.build();
+
+			while (addedEdges.hasNext()) {
+				Node addedSrc = addedEdges.next();
+				Node addedTgt = addedEdges.next();
+				ret = true;
+				if (addedSrc instanceof VarNode) {
+					VarNode edgeSrc = (VarNode) addedSrc.getReplacement();
+					if (addedTgt instanceof VarNode) {
+						VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+
+						if (edgeTgt.makeP2Set()
+								.addAll(edgeSrc.getP2Set(), null)) {
+							varNodeWorkList.add(edgeTgt);
+							if (edgeTgt == src)
+								flush = false;
+						}
+					} else if (addedTgt instanceof NewInstanceNode) {
+						NewInstanceNode edgeTgt = (NewInstanceNode) addedTgt.getReplacement();
+						if (edgeTgt.makeP2Set().addAll(edgeSrc.getP2Set(), null)) {
+							for (Node element : pag.assignInstanceLookup(edgeTgt)) {
+								varNodeWorkList.add((VarNode) element);
+								if (element == src)
+									flush = false;
+							}
+						}
+					}
+				} else if (addedSrc instanceof AllocNode) {
+					VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+					if (edgeTgt.makeP2Set().add(addedSrc)) {
+						varNodeWorkList.add(edgeTgt);
+						if (edgeTgt == src)
+							flush = false;
+					}
+				} else if (addedSrc instanceof NewInstanceNode
+						&& addedTgt instanceof VarNode) {
+					final NewInstanceNode edgeSrc = (NewInstanceNode) addedSrc.getReplacement();
+					final VarNode edgeTgt = (VarNode) addedTgt.getReplacement();
+					addedSrc.getP2Set().forall(new P2SetVisitor() {
+
+						@Override
+						public void visit(Node n) {
+							if (n instanceof ClassConstantNode) {
+								ClassConstantNode ccn = (ClassConstantNode) n;
+								Type ccnType = RefType.v(ccn.getClassConstant().getValue().replaceAll("/", "."));
+
+								// If the referenced class has not been loaded, we do this now
+								SootClass targetClass = ((RefType) ccnType).getSootClass();
+								if (targetClass.resolvingLevel() == SootClass.DANGLING)
+									Scene.v().forceResolve(targetClass.getName(), SootClass.SIGNATURES);
+
+								// We can only create alloc nodes for types that we know
+								edgeTgt.makeP2Set().add(pag.makeAllocNode(edgeSrc.getValue(),
+										ccnType, ccn.getMethod()));
+								varNodeWorkList.add(edgeTgt);
+							}
+						}
+
+					});
+					if (edgeTgt.makeP2Set().add(addedSrc)) {
+						if (edgeTgt == src)
+							flush = false;
+					}
+				}
+			}
+		}
+
+		Node[] storeTargets = pag.storeLookup(src);
+		for (Node element : storeTargets) {
+			final FieldRefNode fr = (FieldRefNode) element;
+			final SparkField f = fr.getField();
+			ret = fr.getBase().getP2Set().forall(new P2SetVisitor() {
+				public final void visit(Node n) {
+					AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n,
+							f);
+					if (nDotF.makeP2Set().addAll(newP2Set, null)) {
+						returnValue = true;
+					}
+				}
+			})
+					| ret;
+		}
+
+		final HashSet<Node[]> storesToPropagate = new HashSet<Node[]>();
+		final HashSet<Node[]> loadsToPropagate = new HashSet<Node[]>();
+		for (final FieldRefNode fr : src.getAllFieldRefs()) {
+			final SparkField field = fr.getField();
+			final Node[] storeSources = pag.storeInvLookup(fr);
+			if (storeSources.length > 0) {
+				newP2Set.forall(new P2SetVisitor() {
+					public final void visit(Node n) {
+						AllocDotField nDotF = pag.makeAllocDotField(
+								(AllocNode) n, field);
+						for (Node element : storeSources) {
+							Node[] pair = { element, nDotF.getReplacement() };
+							storesToPropagate.add(pair);
+						}
+					}
+				});
+			}
+
+			final Node[] loadTargets = pag.loadLookup(fr);
+			if (loadTargets.length > 0) {
+				newP2Set.forall(new P2SetVisitor() {
+					public final void visit(Node n) {
+						AllocDotField nDotF = pag.makeAllocDotField(
+								(AllocNode) n, field);
+						if (nDotF != null) {
+							for (Node element : loadTargets) {
+								Node[] pair = { nDotF.getReplacement(), element };
+								loadsToPropagate.add(pair);
+							}
+						}
+					}
+				});
+			}
+		}
+		if (flush)
+			src.getP2Set().flushNew();
+		for (Node[] p : storesToPropagate) {
+			VarNode storeSource = (VarNode) p[0];
+			AllocDotField nDotF = (AllocDotField) p[1];
+			if (nDotF.makeP2Set().addAll(storeSource.getP2Set(), null)) {
+				ret = true;
+			}
+		}
+		for (Node[] p : loadsToPropagate) {
+			AllocDotField nDotF = (AllocDotField) p[0];
+			VarNode loadTarget = (VarNode) p[1];
+			if (loadTarget.makeP2Set().addAll(nDotF.getP2Set(), null)) {
+				varNodeWorkList.add(loadTarget);
+				ret = true;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Propagates new points-to information of node src to all its successors.
+	 */
+	protected final void handleFieldRefNode(FieldRefNode src,
+			final HashSet<Object[]> edgesToPropagate) {
+		final Node[] loadTargets = pag.loadLookup(src);
+		if (loadTargets.length == 0)
+			return;
+		final SparkField field = src.getField();
+
+		src.getBase().getP2Set().forall(new P2SetVisitor() {
+
+			public final void visit(Node n) {
+				AllocDotField nDotF = pag.makeAllocDotField((AllocNode) n,
+						field);
+				if (nDotF != null) {
+					PointsToSetInternal p2Set = nDotF.getP2Set();
+					if (!p2Set.getNewSet().isEmpty()) {
+						for (Node element : loadTargets) {
+							Object[] pair = { p2Set, element };
+							edgesToPropagate.add(pair);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	protected PAG pag;
+	protected OnFlyCallGraph ofcg;
+	protected final int threadNum;
+	private CountingThreadPoolExecutor executor;
+}
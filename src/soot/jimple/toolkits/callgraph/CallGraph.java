@@ -30,6 +30,8 @@ import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.Stmt;
 import soot.util.queue.ChunkedQueue;
+import soot.util.queue.ConcurrentChunkedQueue;
+import soot.util.queue.ConcurrentQueueReader;
 import soot.util.queue.QueueReader;
 
 /** Represents the edges in a call graph. This class is meant to act as
@@ -42,6 +44,9 @@ public class CallGraph implements Iterable<Edge>
     protected Set<Edge> edges = new HashSet<Edge>();
     protected ChunkedQueue<Edge> stream = new ChunkedQueue<Edge>();
     protected QueueReader<Edge> reader = stream.reader();
+    /** Mirrors stream for readers on other threads; created on demand. */
+    protected ConcurrentChunkedQueue<Edge> concurrentStream = null;
+    protected ConcurrentQueueReader<Edge> concurrentReader = null;
     protected Map<MethodOrMethodContext,Edge> srcMethodToEdge = new HashMap<MethodOrMethodContext, Edge>();
     protected Map<Unit, Edge> srcUnitToEdge = new HashMap<Unit, Edge>();
     protected Map<MethodOrMethodContext, Edge> tgtToEdge = new HashMap<MethodOrMethodContext, Edge>();
@@ -52,6 +57,7 @@ public class CallGraph implements Iterable<Edge>
     public boolean addEdge( Edge e ) {
         if( !edges.add( e ) ) return false;
         stream.add( e );
+        if( concurrentStream != null ) concurrentStream.add( e );
         Edge position = null;
 
         position = srcUnitToEdge.get( e.srcUnit() );
@@ -277,6 +283,21 @@ public class CallGraph implements Iterable<Edge>
     public QueueReader<Edge> newListener() {
         return stream.reader();
     }
+    /** Returns a reader containing all edges added so far, and which will
+     * be informed of any new edges that are later added to the graph.
+     * Unlike {@link #listener()}, the reader may be used on another thread
+     * while edges are being added. This method must be called on the
+     * thread that adds the edges. */
+    public ConcurrentQueueReader<Edge> concurrentListener() {
+        if( concurrentStream == null ) {
+            ConcurrentChunkedQueue<Edge> s = new ConcurrentChunkedQueue<Edge>();
+            concurrentReader = s.reader();
+            for( QueueReader<Edge> r = listener(); r.hasNext(); )
+                s.add( r.next() );
+            concurrentStream = s;
+        }
+        return concurrentReader.clone();
+    }
     public String toString() {
         QueueReader<Edge> reader = listener();
         StringBuffer out = new StringBuffer();
@@ -0,0 +1,414 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.callgraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.util.ArrayNumberer;
+import soot.util.queue.ChunkedQueue;
+import soot.util.queue.QueueReader;
+
+/**
+ * An immutable, memory-efficient call graph. It is created from a finished
+ * context-insensitive {@link CallGraph} and stores its edges in primitive
+ * arrays indexed by method number, similar to the compressed sparse row
+ * format. No {@link Edge} objects are kept; the iterators create them on
+ * demand. Such edges are equal to the ones of the original call graph, but
+ * not identical.
+ *
+ * The call graph cannot be modified, all methods that would add or remove
+ * edges throw an {@link UnsupportedOperationException}.
+ */
+public class CompactCallGraph extends CallGraph {
+
+	private final ArrayNumberer<SootMethod> methodNumberer;
+
+	// Edge arrays, sorted by source method and by call site within each
+	// source method. A method number of zero stands for a null method.
+	private final int[] srcs;
+	private final int[] tgts;
+	private final byte[] kinds;
+	private final Kind[] kindTable;
+	private final Unit[] units;
+
+	// For method number n, the edges out of n are the ones in
+	// [outStart[n], outStart[n+1])
+	private final int[] outStart;
+
+	// Indices of all edges sorted by target method. For method number n,
+	// the edges into n are inEdges[inStart[n]] to inEdges[inStart[n+1]-1]
+	private final int[] inEdges;
+	private final int[] inStart;
+
+	// Index of the first edge out of each call site
+	private final Map<Unit, Integer> unitStart;
+
+	/**
+	 * Creates a compact copy of the given call graph
+	 * @param cg The call graph to copy. All of its edges must be context
+	 * insensitive.
+	 */
+	public CompactCallGraph(CallGraph cg) {
+		methodNumberer = Scene.v().getMethodNumberer();
+
+		// Collect the edges in the order in which they were added
+		Set<Edge> present = new HashSet<Edge>(cg.size() * 2);
+		for (Edge e : cg)
+			present.add(e);
+		int numEdges = present.size();
+		Edge[] edgeArray = new Edge[numEdges];
+		{
+			int i = 0;
+			for (QueueReader<Edge> rdr = cg.listener(); rdr.hasNext(); ) {
+				Edge e = rdr.next();
+				// The stream also contains edges that have been removed
+				// from the call graph, and edges that have been added again
+				// after being removed
+				if (present.remove(e))
+					edgeArray[i++] = e;
+			}
+		}
+		present = null;
+
+		int numMethods = methodNumberer.size() + 1;
+		int[] unsortedSrcs = new int[numEdges];
+		int[] unsortedTgts = new int[numEdges];
+		int[] unitIds = new int[numEdges];
+		Map<Unit, Integer> unitToId = new HashMap<Unit, Integer>();
+		for (int i = 0; i < numEdges; i++) {
+			Edge e = edgeArray[i];
+			unsortedSrcs[i] = numberOf(e.getSrc());
+			unsortedTgts[i] = numberOf(e.getTgt());
+			Unit u = e.srcUnit();
+			if (u == null)
+				unitIds[i] = 0;
+			else {
+				Integer id = unitToId.get(u);
+				if (id == null) {
+					id = unitToId.size() + 1;
+					unitToId.put(u, id);
+				}
+				unitIds[i] = id;
+			}
+		}
+
+		// Two stable counting sorts group the edges by source method and,
+		// within each source method, by call site
+		int[] order = identity(numEdges);
+		order = countingSort(order, unitIds, unitToId.size() + 1, null);
+		int[] byUnitCount = new int[numMethods + 1];
+		order = countingSort(order, unsortedSrcs, numMethods, byUnitCount);
+		unitToId = null;
+
+		srcs = new int[numEdges];
+		tgts = new int[numEdges];
+		kinds = new byte[numEdges];
+		units = new Unit[numEdges];
+		unitStart = new HashMap<Unit, Integer>();
+		List<Kind> kindList = new ArrayList<Kind>();
+		for (int i = 0; i < numEdges; i++) {
+			Edge e = edgeArray[order[i]];
+			srcs[i] = unsortedSrcs[order[i]];
+			tgts[i] = unsortedTgts[order[i]];
+			int kind = kindList.indexOf(e.kind());
+			if (kind < 0) {
+				kind = kindList.size();
+				kindList.add(e.kind());
+			}
+			kinds[i] = (byte) kind;
+			units[i] = e.srcUnit();
+			if (units[i] != null && (i == 0 || units[i - 1] != units[i]))
+				unitStart.put(units[i], i);
+		}
+		outStart = byUnitCount;
+		kindTable = kindList.toArray(new Kind[kindList.size()]);
+
+		inStart = new int[numMethods + 1];
+		inEdges = countingSort(identity(numEdges), tgts, numMethods, inStart);
+	}
+
+	private int numberOf(MethodOrMethodContext m) {
+		if (m == null)
+			return 0;
+		if (!(m instanceof SootMethod))
+			throw new RuntimeException("CompactCallGraph only supports "
+					+ "context-insensitive edges, got " + m);
+		int num = ((SootMethod) m).getNumber();
+		if (num == 0)
+			throw new RuntimeException("Method " + m + " has not been numbered");
+		return num;
+	}
+
+	private static int[] identity(int size) {
+		int[] res = new int[size];
+		for (int i = 0; i < size; i++)
+			res[i] = i;
+		return res;
+	}
+
+	/**
+	 * Stably sorts the given indices by their keys
+	 * @param order The indices to sort
+	 * @param keys The keys of all indices
+	 * @param range The upper bound (exclusive) of all keys
+	 * @param start If not null, receives the start position of every key in
+	 * the sorted order. Must have room for range+1 elements.
+	 * @return The sorted indices
+	 */
+	private static int[] countingSort(int[] order, int[] keys, int range, int[] start) {
+		int[] pos = start == null ? new int[range + 1] : start;
+		for (int idx : order)
+			pos[keys[idx] + 1]++;
+		for (int k = 0; k < range; k++)
+			pos[k + 1] += pos[k];
+
+		int[] next = new int[range];
+		System.arraycopy(pos, 0, next, 0, range);
+		int[] sorted = new int[order.length];
+		for (int idx : order)
+			sorted[next[keys[idx]]++] = idx;
+		return sorted;
+	}
+
+	private SootMethod methodOf(int num) {
+		return num == 0 ? null : methodNumberer.get(num);
+	}
+
+	private Edge edgeAt(int i) {
+		return new Edge(methodOf(srcs[i]), units[i], methodOf(tgts[i]),
+				kindTable[kinds[i]]);
+	}
+
+	/**
+	 * Gets the number of the given method if it is a method of this call
+	 * graph, otherwise -1
+	 */
+	private int lookup(MethodOrMethodContext m) {
+		if (!(m instanceof SootMethod))
+			return -1;
+		int num = ((SootMethod) m).getNumber();
+		if (num <= 0 || num + 1 >= outStart.length)
+			return -1;
+		return num;
+	}
+
+	@Override
+	public boolean addEdge(Edge e) {
+		throw new UnsupportedOperationException("CompactCallGraph is immutable");
+	}
+
+	@Override
+	public boolean removeEdge(Edge e) {
+		throw new UnsupportedOperationException("CompactCallGraph is immutable");
+	}
+
+	@Override
+	public boolean removeAllEdgesOutOf(Unit u) {
+		throw new UnsupportedOperationException("CompactCallGraph is immutable");
+	}
+
+	@Override
+	public boolean swapEdgesOutOf(Stmt out, Stmt in) {
+		throw new UnsupportedOperationException("CompactCallGraph is immutable");
+	}
+
+	@Override
+	public boolean isEntryMethod(SootMethod method) {
+		int num = lookup(method);
+		return num < 0 || inStart[num] == inStart[num + 1];
+	}
+
+	@Override
+	public Edge findEdge(Unit u, SootMethod callee) {
+		Integer start = unitStart.get(u);
+		if (start == null)
+			return null;
+		int tgt = lookup(callee);
+		for (int i = start; i < units.length && units[i] == u; i++)
+			if (tgts[i] == tgt)
+				return edgeAt(i);
+		return null;
+	}
+
+	@Override
+	public Iterator<MethodOrMethodContext> sourceMethods() {
+		return new Iterator<MethodOrMethodContext>() {
+			private int num = advance(0);
+
+			private int advance(int from) {
+				while (from + 1 < outStart.length && outStart[from] == outStart[from + 1])
+					from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return num + 1 < outStart.length;
+			}
+
+			@Override
+			public MethodOrMethodContext next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				MethodOrMethodContext m = methodOf(num);
+				num = advance(num + 1);
+				return m;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<Edge> edgesOutOf(final Unit u) {
+		if (u == null)
+			throw new RuntimeException();
+		Integer start = unitStart.get(u);
+		if (start == null)
+			return new EdgeRangeIterator(0, 0);
+		int end = start;
+		while (end < units.length && units[end] == u)
+			end++;
+		return new EdgeRangeIterator(start, end);
+	}
+
+	@Override
+	public Iterator<Edge> edgesOutOf(MethodOrMethodContext m) {
+		if (m == null)
+			throw new RuntimeException();
+		int num = lookup(m);
+		if (num < 0)
+			return new EdgeRangeIterator(0, 0);
+		return new EdgeRangeIterator(outStart[num], outStart[num + 1]);
+	}
+
+	@Override
+	public Iterator<Edge> edgesInto(MethodOrMethodContext m) {
+		if (m == null)
+			throw new RuntimeException();
+		int num = lookup(m);
+		if (num < 0)
+			return new EdgeRangeIterator(0, 0);
+		return new IncomingEdgeIterator(inStart[num], inStart[num + 1]);
+	}
+
+	/**
+	 * Returns a QueueReader object containing all edges of this call graph.
+	 * Since the call graph is immutable, no further edges will be added.
+	 */
+	@Override
+	public QueueReader<Edge> listener() {
+		ChunkedQueue<Edge> queue = new ChunkedQueue<Edge>();
+		QueueReader<Edge> reader = queue.reader();
+		for (int i = 0; i < srcs.length; i++)
+			queue.add(edgeAt(i));
+		return reader;
+	}
+
+	/**
+	 * Returns an empty QueueReader object, since no edges can be added to
+	 * this call graph
+	 */
+	@Override
+	public QueueReader<Edge> newListener() {
+		return new ChunkedQueue<Edge>().reader();
+	}
+
+	@Override
+	public int size() {
+		return srcs.length;
+	}
+
+	@Override
+	public Iterator<Edge> iterator() {
+		return new EdgeRangeIterator(0, srcs.length);
+	}
+
+	private class EdgeRangeIterator implements Iterator<Edge> {
+		private int pos;
+		private final int end;
+
+		EdgeRangeIterator(int start, int end) {
+			this.pos = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < end;
+		}
+
+		@Override
+		public Edge next() {
+			if (pos >= end)
+				throw new NoSuchElementException();
+			return edgeAt(pos++);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private class IncomingEdgeIterator implements Iterator<Edge> {
+		private int pos;
+		private final int end;
+
+		IncomingEdgeIterator(int start, int end) {
+			this.pos = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < end;
+		}
+
+		@Override
+		public Edge next() {
+			if (pos >= end)
+				throw new NoSuchElementException();
+			return edgeAt(inEdges[pos++]);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -84,6 +84,7 @@ import soot.jimple.spark.pag.AllocDotField;
 import soot.jimple.spark.pag.PAG;
 import soot.jimple.toolkits.annotation.nullcheck.NullnessAnalysis;
 import soot.jimple.toolkits.callgraph.ConstantArrayAnalysis.ArrayTypes;
+import soot.jimple.toolkits.ide.libsumm.LibrarySummaries;
 import soot.jimple.toolkits.reflection.ReflectionTraceInfo;
 import soot.options.CGOptions;
 import soot.options.Options;
@@ -534,6 +535,50 @@ public final class OnFlyCallGraphBuilder
             processNewMethodContext( momc );
         }
     }
+    /** Forgets the call sites found in the body of m and removes the edges
+     * out of m from the context-insensitive call graph kept by this
+     * builder, so that m can be processed again with
+     * {@link #reprocessMethod(MethodOrMethodContext)} after its body has
+     * changed. The edges out of m in the call graph being built, one per
+     * context of m, are left to the caller to remove. */
+    public void retractMethod( SootMethod m ) {
+        if( !analyzedMethods.remove( m ) ) return;
+        List<Local> receivers = methodToReceivers.get(m);
+        if( receivers != null ) {
+            for( Local receiver : receivers ) receiverToSites.put( receiver, null );
+            methodToReceivers.put( m, null );
+        }
+        List<Local> stringConstants = methodToStringConstants.get(m);
+        if( stringConstants != null ) {
+            for( Local constant : stringConstants ) stringConstToSites.put( constant, null );
+            methodToStringConstants.put( m, null );
+        }
+        retractInvokeCallSites( baseToInvokeSite, m );
+        retractInvokeCallSites( invokeArgsToInvokeSite, m );
+        if( analysisKey == m ) analysisKey = null;
+
+        List<Edge> edges = new ArrayList<Edge>();
+        for( Iterator<Edge> it = cicg.edgesOutOf(m); it.hasNext(); ) edges.add( it.next() );
+        for( Edge e : edges ) cicg.removeEdge( e );
+    }
+    /** Processes the current body of m again after
+     * {@link #retractMethod(SootMethod)}, adding its static edges to the
+     * call graph for the given context. */
+    public void reprocessMethod( MethodOrMethodContext momc ) {
+        SootMethod m = momc.method();
+        if( appOnly && !m.getDeclaringClass().isApplicationClass() ) return;
+        if( analyzedMethods.add( m ) ) processNewMethod( m );
+        processNewMethodContext( momc );
+    }
+    private void retractInvokeCallSites( Map<Local, List<InvokeCallSite>> sites, SootMethod m ) {
+        for( Iterator<List<InvokeCallSite>> it = sites.values().iterator(); it.hasNext(); ) {
+            List<InvokeCallSite> list = it.next();
+            for( Iterator<InvokeCallSite> siteIt = list.iterator(); siteIt.hasNext(); ) {
+                if( siteIt.next().container() == m ) siteIt.remove();
+            }
+            if( list.isEmpty() ) it.remove();
+        }
+    }
     public boolean wantTypes( Local receiver ) {
         return receiverToSites.get(receiver) != null || baseToInvokeSite.get(receiver) != null;
     }
@@ -1055,6 +1100,11 @@ public final class OnFlyCallGraphBuilder
         if( m.isNative() || m.isPhantom() ) {
             return;
         }
+        // summarized library methods only call other summarized methods,
+        // so there are no call sites to look at
+        if( LibrarySummaries.v().hasSummary( m ) ) {
+            return;
+        }
         Body b = m.retrieveActiveBody();
         getImplicitTargets( m );
         findReceivers(m, b);
@@ -35,6 +35,8 @@ public class ReachableMethods
     private final Set<MethodOrMethodContext> set = new HashSet<MethodOrMethodContext>();
     private QueueReader<MethodOrMethodContext> unprocessedMethods;
     private final QueueReader<MethodOrMethodContext> allReachables = reachables.reader();
+    private ConcurrentChunkedQueue<MethodOrMethodContext> concurrentReachables = null;
+    private ConcurrentQueueReader<MethodOrMethodContext> allConcurrentReachables = null;
     private Filter filter;
     public ReachableMethods( CallGraph graph, Iterator<MethodOrMethodContext> entryPoints ) {
         this( graph, entryPoints, null );
@@ -57,6 +59,7 @@ public class ReachableMethods
     private void addMethod( MethodOrMethodContext m ) {
             if( set.add( m ) ) {
                 reachables.add( m );
+                if( concurrentReachables != null ) concurrentReachables.add( m );
             }
     }
     /** Causes the QueueReader objects to be filled up with any methods
@@ -86,6 +89,22 @@ public class ReachableMethods
     public QueueReader<MethodOrMethodContext> newListener() {
         return reachables.reader();
     }
+    /** Returns a reader containing all methods found reachable so far, and
+     * which will be informed of any new methods that are later found to be
+     * reachable. Unlike {@link #listener()}, the reader may be used on
+     * another thread, e.g. to process reachable methods while the call
+     * graph is still being built. This method must be called on the thread
+     * that calls {@link #update()}. */
+    public ConcurrentQueueReader<MethodOrMethodContext> concurrentListener() {
+        if( concurrentReachables == null ) {
+            ConcurrentChunkedQueue<MethodOrMethodContext> q = new ConcurrentChunkedQueue<MethodOrMethodContext>();
+            allConcurrentReachables = q.reader();
+            for( QueueReader<MethodOrMethodContext> r = listener(); r.hasNext(); )
+                q.add( r.next() );
+            concurrentReachables = q;
+        }
+        return allConcurrentReachables.clone();
+    }
     /** Returns true iff method is reachable. */
     public boolean contains( MethodOrMethodContext m ) {
         return set.contains( m );
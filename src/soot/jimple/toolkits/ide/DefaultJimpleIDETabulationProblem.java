@@ -29,8 +29,27 @@ import soot.Unit;
 public abstract class DefaultJimpleIDETabulationProblem<D,V,I extends InterproceduralCFG<Unit,SootMethod>>
   extends DefaultIDETabulationProblem<Unit,D,SootMethod,V,I> {
 
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
 	public DefaultJimpleIDETabulationProblem(I icfg) {
 		super(icfg);
 	}
+
+	/**
+	 * Sets the number of threads the solver uses for this problem. Defaults to the
+	 * number of available processors. Use an ICFG that can be read without locking,
+	 * such as {@link soot.jimple.toolkits.ide.icfg.ConcurrentJimpleBasedICFG}, when
+	 * solving with many threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1)
+			throw new IllegalArgumentException("Need at least one thread: " + numThreads);
+		this.numThreads = numThreads;
+	}
+
+	@Override
+	public int numThreads() {
+		return numThreads;
+	}
 	
 }
@@ -0,0 +1,285 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+package soot.jimple.toolkits.ide.icfg;
+
+import heros.DontSynchronize;
+import heros.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import soot.Body;
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.graph.DirectedGraph;
+import soot.toolkits.graph.UnitIndex;
+
+/**
+ * A {@link JimpleBasedInterproceduralCFG} that computes everything a
+ * solver asks for up front, so that it can be queried from many threads
+ * without any locking.
+ *
+ * The constructor numbers all statements of all reachable methods with a
+ * {@link UnitIndex} and stores successors, predecessors, callees and
+ * start/exit/call flags in arrays indexed by that number. Per-method data
+ * (unit graph, start and end points, calls from within, callers and
+ * parameter references) is stored in an array indexed by
+ * {@link SootMethod#getNumber()}. All tables are written once by the
+ * constructing thread and only read afterwards, so lookups are plain
+ * array accesses instead of {@link com.google.common.cache.LoadingCache}
+ * lookups, which contend on segment locks once many solver threads are
+ * running.
+ *
+ * Statements and methods that were not reachable when the ICFG was built
+ * fall back to the lazily computed caches of the superclass.
+ */
+@ThreadSafe
+public class ConcurrentJimpleBasedICFG extends JimpleBasedInterproceduralCFG {
+
+	private static final byte START = 1, EXIT = 2, CALL = 4;
+
+	/** The successors, predecessors and callees of a reachable statement. */
+	protected static class UnitInfo {
+		List<Unit> succs;
+		List<Unit> preds;
+		Collection<SootMethod> callees;
+	}
+
+	/** Everything we precompute for a single reachable method. */
+	protected static class MethodInfo {
+		Body body;
+		DirectedGraph<Unit> graph;
+		Collection<Unit> startPoints;
+		Collection<Unit> endPoints;
+		Set<Unit> callsFromWithin;
+		Collection<Unit> callers;
+		List<Value> parameterRefs;
+	}
+
+	@DontSynchronize("written by constructor; read afterwards")
+	protected final UnitIndex unitIndex;
+
+	@DontSynchronize("written by constructor; read afterwards")
+	protected final SootMethod[] unitToMethod;
+
+	@DontSynchronize("written by constructor; read afterwards")
+	protected final UnitInfo[] unitInfos;
+
+	@DontSynchronize("written by constructor; read afterwards")
+	protected final byte[] unitFlags;
+
+	@DontSynchronize("written by constructor; read afterwards")
+	protected final MethodInfo[] methodInfos;
+
+	public ConcurrentJimpleBasedICFG() {
+		this(true);
+	}
+
+	public ConcurrentJimpleBasedICFG(boolean enableExceptions) {
+		this(enableExceptions, false);
+	}
+
+	public ConcurrentJimpleBasedICFG(boolean enableExceptions,
+			boolean includeReflectiveCalls) {
+		super(enableExceptions, includeReflectiveCalls);
+
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		List<Unit> allUnits = new ArrayList<Unit>();
+		for (Iterator<MethodOrMethodContext> iter = Scene.v().getReachableMethods().listener(); iter.hasNext(); ) {
+			SootMethod m = iter.next().method();
+			if (m.hasActiveBody()) {
+				methods.add(m);
+				allUnits.addAll(m.getActiveBody().getUnits());
+			}
+		}
+
+		unitIndex = new UnitIndex(allUnits);
+		int unitCount = unitIndex.size();
+		unitToMethod = new SootMethod[unitCount];
+		unitInfos = new UnitInfo[unitCount];
+		unitFlags = new byte[unitCount];
+		methodInfos = new MethodInfo[Scene.v().getMethodNumberer().size() + 1];
+
+		for (SootMethod m : methods) {
+			Body body = m.getActiveBody();
+			DirectedGraph<Unit> graph = makeGraph(body);
+
+			MethodInfo info = new MethodInfo();
+			info.body = body;
+			info.graph = graph;
+			info.startPoints = graph.getHeads();
+			info.endPoints = graph.getTails();
+			info.parameterRefs = body.getParameterRefs();
+			info.callers = computeCallers(m);
+
+			Set<Unit> calls = null;
+			for (Unit u : body.getUnits()) {
+				int i = unitIndex.indexOf(u);
+				unitToMethod[i] = m;
+				UnitInfo unitInfo = new UnitInfo();
+				unitInfo.succs = graph.getSuccsOf(u);
+				unitInfo.preds = graph.getPredsOf(u);
+				unitInfos[i] = unitInfo;
+				if (super.isCallStmt(u)) {
+					unitFlags[i] |= CALL;
+					unitInfo.callees = super.getCalleesOfCallAt(u);
+					if (calls == null)
+						calls = new LinkedHashSet<Unit>();
+					calls.add(u);
+				} else {
+					unitInfo.callees = Collections.emptySet();
+				}
+			}
+			for (Unit u : info.startPoints)
+				unitFlags[unitIndex.indexOf(u)] |= START;
+			for (Unit u : info.endPoints)
+				unitFlags[unitIndex.indexOf(u)] |= EXIT;
+			info.callsFromWithin = calls == null ? Collections.<Unit>emptySet()
+					: Collections.unmodifiableSet(calls);
+
+			methodInfos[m.getNumber()] = info;
+		}
+	}
+
+	private Collection<Unit> computeCallers(SootMethod m) {
+		ArrayList<Unit> res = new ArrayList<Unit>();
+		Iterator<Edge> edgeIter = new EdgeFilter().wrap(cg.edgesInto(m));
+		while (edgeIter.hasNext())
+			res.add(edgeIter.next().srcUnit());
+		res.trimToSize();
+		return res;
+	}
+
+	private MethodInfo infoOf(SootMethod m) {
+		int n = m.getNumber();
+		return n < methodInfos.length ? methodInfos[n] : null;
+	}
+
+	/**
+	 * Returns the number of the given statement within this ICFG, or -1 if
+	 * the statement was not reachable when the ICFG was built. Numbers are
+	 * dense, starting at 0, so clients may use them to index their own
+	 * per-statement arrays.
+	 */
+	public int getNumberOf(Unit u) {
+		return unitIndex.indexOf(u);
+	}
+
+	/**
+	 * Returns the number of statements in this ICFG.
+	 */
+	public int size() {
+		return unitIndex.size();
+	}
+
+	@Override
+	public SootMethod getMethodOf(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? unitToMethod[i] : super.getMethodOf(u);
+	}
+
+	@Override
+	public List<Unit> getSuccsOf(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? unitInfos[i].succs : super.getSuccsOf(u);
+	}
+
+	@Override
+	public List<Unit> getPredsOf(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? unitInfos[i].preds : super.getPredsOf(u);
+	}
+
+	@Override
+	public boolean isCallStmt(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? (unitFlags[i] & CALL) != 0 : super.isCallStmt(u);
+	}
+
+	@Override
+	public boolean isExitStmt(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? (unitFlags[i] & EXIT) != 0 : super.isExitStmt(u);
+	}
+
+	@Override
+	public boolean isStartPoint(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? (unitFlags[i] & START) != 0 : super.isStartPoint(u);
+	}
+
+	@Override
+	public boolean isReachable(Unit u) {
+		return unitIndex.indexOf(u) >= 0 || super.isReachable(u);
+	}
+
+	@Override
+	public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+		int i = unitIndex.indexOf(u);
+		return i >= 0 ? unitInfos[i].callees : super.getCalleesOfCallAt(u);
+	}
+
+	@Override
+	public Collection<Unit> getCallersOf(SootMethod m) {
+		MethodInfo info = infoOf(m);
+		return info != null ? info.callers : super.getCallersOf(m);
+	}
+
+	@Override
+	public Set<Unit> getCallsFromWithin(SootMethod m) {
+		MethodInfo info = infoOf(m);
+		return info != null ? info.callsFromWithin : super.getCallsFromWithin(m);
+	}
+
+	@Override
+	public Collection<Unit> getStartPointsOf(SootMethod m) {
+		MethodInfo info = infoOf(m);
+		return info != null ? info.startPoints : super.getStartPointsOf(m);
+	}
+
+	@Override
+	public Collection<Unit> getEndPointsOf(SootMethod m) {
+		MethodInfo info = infoOf(m);
+		return info != null ? info.endPoints : super.getEndPointsOf(m);
+	}
+
+	@Override
+	public List<Value> getParameterRefs(SootMethod m) {
+		MethodInfo info = infoOf(m);
+		return info != null ? info.parameterRefs : super.getParameterRefs(m);
+	}
+
+	@Override
+	public DirectedGraph<Unit> getOrCreateUnitGraph(Body body) {
+		MethodInfo info = infoOf(body.getMethod());
+		if (info != null && info.body == body)
+			return info.graph;
+		return super.getOrCreateUnitGraph(body);
+	}
+
+}
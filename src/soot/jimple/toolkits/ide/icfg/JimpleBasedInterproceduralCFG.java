@@ -39,6 +39,8 @@ import soot.jimple.toolkits.callgraph.CallGraph;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.callgraph.EdgePredicate;
 import soot.jimple.toolkits.callgraph.Filter;
+import soot.jimple.toolkits.ide.libsumm.LibrarySummaries;
+import soot.jimple.toolkits.ide.libsumm.MethodSummary;
 
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -57,6 +59,8 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
 	
 	protected boolean includeReflectiveCalls = false;
 	
+	protected boolean useLibrarySummaries = false;
+	
 	//retains only callers that are explicit call sites or Thread.start()
 	public class EdgeFilter extends Filter {		
 		protected EdgeFilter() {
@@ -85,6 +89,10 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
 					while(edgeIter.hasNext()) {
 						Edge edge = edgeIter.next();
 						SootMethod m = edge.getTgt().method();
+						//summarized library methods are applied at the call site instead,
+						//if the client asked for that
+						if(useLibrarySummaries && LibrarySummaries.v().hasSummary(m))
+							continue;
 						if(m.hasActiveBody()) {
 							if (res == null)
 								res = new ArrayList<SootMethod>();
@@ -130,8 +138,22 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
 	
 	public JimpleBasedInterproceduralCFG(boolean enableExceptions,
 			boolean includeReflectiveCalls) {
+		this(enableExceptions, includeReflectiveCalls, false);
+	}
+	
+	/**
+	 * @param useLibrarySummaries If true, library methods that have a summary
+	 * (see {@link LibrarySummaries}) are left out of {@link #getCalleesOfCallAt(Unit)}
+	 * and returned by {@link #getCalleeSummariesOfCallAt(Unit)} instead. Only
+	 * tabulation problems that apply these summaries in their call-to-return
+	 * flow functions may set this, all others would miss the flows through the
+	 * summarized methods.
+	 */
+	public JimpleBasedInterproceduralCFG(boolean enableExceptions,
+			boolean includeReflectiveCalls, boolean useLibrarySummaries) {
 		super(enableExceptions);
 		this.includeReflectiveCalls = includeReflectiveCalls;
+		this.useLibrarySummaries = useLibrarySummaries;
 		
 		cg = Scene.v().getCallGraph();
 		initializeUnitToOwner();
@@ -159,6 +181,27 @@ public class JimpleBasedInterproceduralCFG extends AbstractJimpleBasedICFG {
 		return unitToCallees.getUnchecked(u);
 	}
 
+	/**
+	 * Returns the summaries of the callees of the given call that are left out of
+	 * {@link #getCalleesOfCallAt(Unit)} because they are summarized library methods.
+	 * Tabulation problems apply them in their call-to-return flow functions.
+	 * This is always empty unless this ICFG was created with
+	 * <code>useLibrarySummaries</code>.
+	 * @see LibrarySummaries
+	 */
+	public Collection<MethodSummary> getCalleeSummariesOfCallAt(Unit u) {
+		if(!useLibrarySummaries || !LibrarySummaries.v().isEnabled())
+			return Collections.emptySet();
+		ArrayList<MethodSummary> res = new ArrayList<MethodSummary>();
+		Iterator<Edge> edgeIter = new EdgeFilter().wrap(cg.edgesOutOf(u));
+		while(edgeIter.hasNext()) {
+			MethodSummary summary = LibrarySummaries.v().getSummary(edgeIter.next().tgt());
+			if(summary != null)
+				res.add(summary);
+		}
+		return res;
+	}
+
 	@Override
 	public Collection<Unit> getCallersOf(SootMethod m) {
 		return methodToCallers.getUnchecked(m);
@@ -0,0 +1,376 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soot.G;
+import soot.Scene;
+import soot.Singletons;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.SourceLocator.FoundFile;
+import soot.options.Options;
+
+/**
+ * The library method summaries available to the current analysis run.
+ *
+ * Summaries are read lazily from the file given with <code>-library-summaries</code> the first
+ * time they are asked for, and may also be added directly. {@link #getSummary(SootMethod)} only
+ * returns summaries for methods of library classes, so application code is always analyzed from
+ * its bodies. It also skips summaries that do not fit the current class path: if fingerprints of
+ * the summarized libraries are known, the class of the method must come from a jar or directory
+ * with one of these fingerprints, and all fields and types named by the summary must resolve.
+ * The map is safe to query from many threads once loaded.
+ *
+ * Summary files are plain text and start with the line {@link #HEADER}. It is followed by one
+ * line <code>library &lt;fingerprint&gt;</code> per summarized library (see
+ * {@link #fingerprint(File)}). Every summarized method starts with a line
+ * <code>method &lt;signature&gt;</code>, followed by one line
+ * <code>flow&lt;TAB&gt;source&lt;TAB&gt;target</code> per {@link SummaryFlow}, with locations in
+ * the form of {@link SummaryLocation#toString()}. Other lines starting with <code>#</code> are
+ * comments.
+ */
+public class LibrarySummaries {
+	public LibrarySummaries(Singletons.Global g) {
+	}
+
+	public static LibrarySummaries v() {
+		return G.v().soot_jimple_toolkits_ide_libsumm_LibrarySummaries();
+	}
+
+	/** The first line of every summary file; the number changes with the file format. */
+	public final static String HEADER = "# Soot library summaries, version 2";
+
+	private final Map<String, MethodSummary> summaries = new ConcurrentHashMap<String, MethodSummary>();
+	private final Set<String> libraryFingerprints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	/** Whether the summary of a method fits the current class path, by method signature */
+	private final Map<String, Boolean> usable = new ConcurrentHashMap<String, Boolean>();
+	/** Whether a class comes from a summarized library, by class name */
+	private final Map<String, Boolean> summarizedClasses = new ConcurrentHashMap<String, Boolean>();
+	/** The fingerprints of the class path entries checked so far */
+	private final Map<File, String> classPathFingerprints = new ConcurrentHashMap<File, String>();
+	private volatile boolean loaded = false;
+
+	/**
+	 * Returns the summary of the given method, or null if the method is not a library method, has
+	 * no summary, or its summary does not fit the current class path.
+	 */
+	public MethodSummary getSummary(SootMethod m) {
+		ensureLoaded();
+		if (summaries.isEmpty() || m.getDeclaringClass().isApplicationClass())
+			return null;
+		MethodSummary summary = summaries.get(m.getSignature());
+		if (summary == null)
+			return null;
+		Boolean ok = usable.get(summary.getMethodSignature());
+		if (ok == null) {
+			ok = isFromSummarizedLibrary(m.getDeclaringClass().getName()) && resolves(summary);
+			usable.put(summary.getMethodSignature(), ok);
+		}
+		return ok ? summary : null;
+	}
+
+	public boolean hasSummary(SootMethod m) {
+		return getSummary(m) != null;
+	}
+
+	/** Returns true if any summaries are available. */
+	public boolean isEnabled() {
+		ensureLoaded();
+		return !summaries.isEmpty();
+	}
+
+	public void addSummary(MethodSummary summary) {
+		summaries.put(summary.getMethodSignature(), summary);
+		usable.remove(summary.getMethodSignature());
+	}
+
+	/**
+	 * Records the fingerprint of a summarized library. Once any fingerprint is known, only the
+	 * summaries of classes loaded from a library with a known fingerprint are used.
+	 */
+	public void addLibraryFingerprint(String fingerprint) {
+		libraryFingerprints.add(fingerprint);
+		usable.clear();
+		summarizedClasses.clear();
+	}
+
+	public Set<String> getLibraryFingerprints() {
+		ensureLoaded();
+		return Collections.unmodifiableSet(libraryFingerprints);
+	}
+
+	/**
+	 * Computes the fingerprint of a library, i.e., the SHA-1 digest of a jar file or of the names
+	 * and contents of all files below a directory.
+	 */
+	public static String fingerprint(File library) throws IOException {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 is not supported by this JVM", e);
+		}
+		if (library.isDirectory())
+			digestDirectory(md, library, "");
+		else
+			digestFile(md, library);
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest())
+			sb.append(String.format("%02x", b & 0xff));
+		return sb.toString();
+	}
+
+	private static void digestDirectory(MessageDigest md, File dir, String path) throws IOException {
+		String[] names = dir.list();
+		if (names == null)
+			throw new IOException("Could not list " + dir);
+		Arrays.sort(names);
+		for (String name : names) {
+			File f = new File(dir, name);
+			String relative = path + "/" + name;
+			md.update(relative.getBytes("UTF-8"));
+			if (f.isDirectory())
+				digestDirectory(md, f, relative);
+			else
+				digestFile(md, f);
+		}
+	}
+
+	private static void digestFile(MessageDigest md, File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			byte[] buf = new byte[8192];
+			int len;
+			while ((len = is.read(buf)) > 0)
+				md.update(buf, 0, len);
+		} finally {
+			is.close();
+		}
+	}
+
+	/** Checks whether the given class is loaded from a library with a known fingerprint. */
+	private boolean isFromSummarizedLibrary(String className) {
+		if (libraryFingerprints.isEmpty())
+			return true;
+		Boolean ret = summarizedClasses.get(className);
+		if (ret == null) {
+			File root = classPathEntryOf(className);
+			String fingerprint = null;
+			if (root != null) {
+				fingerprint = classPathFingerprints.get(root);
+				if (fingerprint == null) {
+					try {
+						fingerprint = fingerprint(root);
+					} catch (IOException e) {
+						fingerprint = "";
+					}
+					classPathFingerprints.put(root, fingerprint);
+					if (!libraryFingerprints.contains(fingerprint) && Options.v().verbose())
+						G.v().out.println("[libsumm] No summaries were generated for " + root);
+				}
+			}
+			ret = fingerprint != null && libraryFingerprints.contains(fingerprint);
+			summarizedClasses.put(className, ret);
+		}
+		return ret;
+	}
+
+	/** Returns the jar file or directory on the class path that contains the given class. */
+	private static File classPathEntryOf(String className) {
+		String fileName = className.replace('.', '/') + ".class";
+		FoundFile file = SourceLocator.v().lookupInClassPath(fileName);
+		if (file == null)
+			return null;
+		if (file.isZipFile())
+			return file.getFile();
+		File root = file.getFile();
+		for (int i = fileName.split("/").length; i > 0 && root != null; i--)
+			root = root.getParentFile();
+		return root;
+	}
+
+	/** Checks whether all fields and types that the given summary refers to exist. */
+	private static boolean resolves(MethodSummary summary) {
+		for (SummaryFlow flow : summary.getFlows())
+			if (!resolves(flow.getSource()) || !resolves(flow.getTarget()))
+				return false;
+		return true;
+	}
+
+	private static boolean resolves(SummaryLocation loc) {
+		switch (loc.getKind()) {
+		case STATIC:
+			if (!Scene.v().containsField(loc.getName()))
+				return false;
+			break;
+		case ALLOC:
+			String baseType = loc.getName().replaceAll("(\\[\\])+$", "");
+			if (!isPrimitive(baseType) && !Scene.v().containsClass(baseType))
+				return false;
+			break;
+		default:
+			break;
+		}
+		for (String field : loc.getFields())
+			if (!field.equals(SummaryLocation.ARRAY_ELEMENT) && !Scene.v().containsField(field))
+				return false;
+		return true;
+	}
+
+	private static boolean isPrimitive(String type) {
+		return type.equals("boolean") || type.equals("byte") || type.equals("char")
+				|| type.equals("short") || type.equals("int") || type.equals("long")
+				|| type.equals("float") || type.equals("double");
+	}
+
+	public Collection<MethodSummary> getSummaries() {
+		ensureLoaded();
+		return Collections.unmodifiableCollection(summaries.values());
+	}
+
+	private void ensureLoaded() {
+		if (loaded)
+			return;
+		synchronized (this) {
+			if (loaded)
+				return;
+			String file = Options.v().library_summaries();
+			if (file.length() > 0) {
+				try {
+					load(new File(file));
+				} catch (IOException e) {
+					throw new RuntimeException("Could not read library summaries from " + file, e);
+				}
+				if (Options.v().verbose())
+					G.v().out.println("[libsumm] Loaded " + summaries.size() + " library summaries from " + file);
+			}
+			loaded = true;
+		}
+	}
+
+	/** Adds all summaries from the given file. */
+	public void load(File file) throws IOException {
+		Reader r = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			read(r);
+		} finally {
+			r.close();
+		}
+	}
+
+	/** Writes all summaries to the given file. */
+	public void save(File file) throws IOException {
+		Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			write(w);
+		} finally {
+			w.close();
+		}
+	}
+
+	/** Adds all summaries read from the given reader. */
+	public void read(Reader reader) throws IOException {
+		BufferedReader r = new BufferedReader(reader);
+		String line = r.readLine();
+		if (line == null || !line.equals(HEADER))
+			throw new IOException("Not a library summary file of the version supported by this Soot, "
+					+ "expected the first line to be \"" + HEADER + "\"");
+		String method = null;
+		Set<SummaryFlow> flows = null;
+		int lineNo = 1;
+		while ((line = r.readLine()) != null) {
+			lineNo++;
+			if (line.length() == 0 || line.startsWith("#"))
+				continue;
+			if (line.startsWith("library ")) {
+				addLibraryFingerprint(line.substring("library ".length()).trim());
+			} else if (line.startsWith("method ")) {
+				if (method != null)
+					addSummary(new MethodSummary(method, flows));
+				method = line.substring("method ".length());
+				flows = new LinkedHashSet<SummaryFlow>();
+			} else if (line.startsWith("flow\t") && method != null) {
+				String[] parts = line.split("\t");
+				if (parts.length != 3)
+					throw new IOException("Malformed flow in line " + lineNo + ": " + line);
+				try {
+					flows.add(new SummaryFlow(SummaryLocation.parse(parts[1]), SummaryLocation.parse(parts[2])));
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Malformed flow in line " + lineNo + ": " + line, e);
+				}
+			} else
+				throw new IOException("Unexpected line " + lineNo + ": " + line);
+		}
+		if (method != null)
+			addSummary(new MethodSummary(method, flows));
+	}
+
+	/** Writes all summaries, sorted by method signature. */
+	public void write(Writer writer) throws IOException {
+		BufferedWriter w = new BufferedWriter(writer);
+		w.write(HEADER);
+		w.newLine();
+		for (String fingerprint : new TreeSet<String>(libraryFingerprints)) {
+			w.write("library ");
+			w.write(fingerprint);
+			w.newLine();
+		}
+		for (MethodSummary summary : new TreeMap<String, MethodSummary>(summaries).values()) {
+			w.write("method ");
+			w.write(summary.getMethodSignature());
+			w.newLine();
+			List<String> lines = new ArrayList<String>();
+			for (SummaryFlow flow : summary.getFlows())
+				lines.add("flow\t" + flow.getSource() + "\t" + flow.getTarget());
+			Collections.sort(lines);
+			for (String line : lines) {
+				w.write(line);
+				w.newLine();
+			}
+		}
+		w.flush();
+	}
+
+}
@@ -1,45 +1,59 @@
 package soot.jimple.toolkits.ide.libsumm;
 
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
-import soot.Body;
-import soot.BodyTransformer;
-import soot.PackManager;
-import soot.Transform;
-import soot.Unit;
-import soot.jimple.InvokeExpr;
-import soot.jimple.Stmt;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
 
+/**
+ * Computes the summaries of all methods of the application classes, i.e., of the library given
+ * with <code>-process-dir</code>, and writes them to a file that later runs can use through
+ * <code>-library-summaries</code>.
+ *
+ * Usage: <code>soot.jimple.toolkits.ide.libsumm.Main OUTPUT-FILE [soot options]</code>
+ */
 public class Main {
-	static int yes=0, no=0;
 
 	/**
 	 * @param args
 	 */
-	public static void main(String[] args) {
-		PackManager.v().getPack("jtp").add(new Transform("jtp.fixedie", new BodyTransformer() {
-
-			@Override
-			protected void internalTransform(Body b, String phaseName, Map<String, String> options) {
-				for(Unit u: b.getUnits()) {
-					Stmt s = (Stmt) u;
-					if(s.containsInvokeExpr()) {
-						InvokeExpr ie = s.getInvokeExpr();						
-						if(FixedMethods.isFixed(ie)) {
-							System.err.println("+++ "+ie);
-							yes++;
-						} else {
-							System.err.println(" -  "+ie);
-							no++;
-						}
-					}
-				}
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			G.v().out.println("Usage: java soot.jimple.toolkits.ide.libsumm.Main OUTPUT-FILE [soot options]");
+			return;
+		}
+		if (!Options.v().parse(Arrays.copyOfRange(args, 1, args.length)))
+			return;
+		Scene.v().loadNecessaryClasses();
+
+		SummaryGenerator generator = new SummaryGenerator();
+		int summarized = 0, failed = 0;
+		for (SootClass c : new ArrayList<SootClass>(Scene.v().getApplicationClasses())) {
+			for (SootMethod m : new ArrayList<SootMethod>(c.getMethods())) {
+				if (!m.isConcrete())
+					continue;
+				if (generator.summarize(m) != null)
+					summarized++;
+				else
+					failed++;
 			}
-			
-		}));
-		soot.Main.main(args);
-		System.err.println("+++ "+yes);
-		System.err.println(" -  "+no);
+		}
+
+		for (MethodSummary summary : generator.getSummaries())
+			LibrarySummaries.v().addSummary(summary);
+		for (String library : Options.v().process_dir())
+			LibrarySummaries.v().addLibraryFingerprint(LibrarySummaries.fingerprint(new File(library)));
+		LibrarySummaries.v().save(new File(args[0]));
+
+		G.v().out.println("Summarized " + summarized + " methods, " + failed
+				+ " methods need their bodies; wrote " + generator.getSummaries().size()
+				+ " summaries to " + args[0]);
 	}
 
 }
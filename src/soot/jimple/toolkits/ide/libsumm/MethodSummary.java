@@ -0,0 +1,73 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The effect of a library method on the objects reachable from its parameters, its receiver and
+ * static fields, given as a set of {@link SummaryFlow}s. A summary stands for the method and
+ * everything it transitively calls, so analyses can use it instead of the method body.
+ *
+ * Summaries are flow-insensitive and may-approximations: every flow that can happen is
+ * contained, but not every contained flow needs to happen.
+ */
+public class MethodSummary {
+
+	private final String methodSignature;
+	private final Set<SummaryFlow> flows;
+
+	public MethodSummary(String methodSignature, Set<SummaryFlow> flows) {
+		this.methodSignature = methodSignature;
+		this.flows = Collections.unmodifiableSet(new LinkedHashSet<SummaryFlow>(flows));
+	}
+
+	public String getMethodSignature() {
+		return methodSignature;
+	}
+
+	public Set<SummaryFlow> getFlows() {
+		return flows;
+	}
+
+	/** Returns the flows whose source is the given location or lies below it. */
+	public List<SummaryFlow> getFlowsFrom(SummaryLocation root) {
+		List<SummaryFlow> res = new ArrayList<SummaryFlow>();
+		for (SummaryFlow flow : flows)
+			if (flow.getSource().getRoot().equals(root.getRoot())
+					&& startsWith(flow.getSource().getFields(), root.getFields()))
+				res.add(flow);
+		return res;
+	}
+
+	private static boolean startsWith(List<String> path, List<String> prefix) {
+		return path.size() >= prefix.size() && path.subList(0, prefix.size()).equals(prefix);
+	}
+
+	@Override
+	public String toString() {
+		return methodSignature + " " + flows;
+	}
+
+}
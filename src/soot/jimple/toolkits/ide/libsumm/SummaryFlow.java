@@ -0,0 +1,64 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.ide.libsumm;
+
+/**
+ * States that the values at the source location of a library method may flow to its target
+ * location when the method is called.
+ */
+public final class SummaryFlow {
+
+	private final SummaryLocation source;
+	private final SummaryLocation target;
+
+	public SummaryFlow(SummaryLocation source, SummaryLocation target) {
+		this.source = source;
+		this.target = target;
+	}
+
+	public SummaryLocation getSource() {
+		return source;
+	}
+
+	public SummaryLocation getTarget() {
+		return target;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * source.hashCode() + target.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SummaryFlow))
+			return false;
+		SummaryFlow other = (SummaryFlow) obj;
+		return source.equals(other.source) && target.equals(other.target);
+	}
+
+	@Override
+	public String toString() {
+		return source + " -> " + target;
+	}
+
+}
@@ -0,0 +1,393 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Local;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AnyNewExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.ClassConstant;
+import soot.jimple.DynamicInvokeExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.ReturnStmt;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.ThisRef;
+import soot.jimple.ThrowStmt;
+
+/**
+ * Computes {@link MethodSummary}s for library methods from their bodies.
+ *
+ * The analysis is flow-insensitive. Every reference local is mapped to the set of symbolic
+ * locations its value may come from, e.g. <code>param0|f</code> for a value loaded from field
+ * <code>f</code> of the first parameter, and stores are recorded per symbolic base object until
+ * the body reaches a fixed point. Calls are folded in through the summaries of their callees,
+ * which are computed on demand.
+ *
+ * A method cannot be summarized, and {@link #summarize(SootMethod)} returns null, if it has no
+ * body, if it contains a call that client code could override (see {@link FixedMethods}), if it
+ * is part of a recursive cycle, or if it accesses paths longer than {@link #MAX_ACCESS_PATH}.
+ * Analyses then fall back to the body of such a method.
+ */
+public class SummaryGenerator {
+
+	/** The longest access path, in fields, a summary may read from. */
+	public final static int MAX_ACCESS_PATH = 3;
+
+	private static class CannotSummarizeException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		CannotSummarizeException(String reason) {
+			super(reason);
+		}
+	}
+
+	private final Map<SootMethod, MethodSummary> summaries = new LinkedHashMap<SootMethod, MethodSummary>();
+	private final Set<SootMethod> unsummarizable = new HashSet<SootMethod>();
+	private final Set<SootMethod> inProgress = new HashSet<SootMethod>();
+
+	/**
+	 * Returns the summary of the given method, computing it and the summaries of its callees if
+	 * necessary, or null if the method cannot be summarized.
+	 */
+	public MethodSummary summarize(SootMethod m) {
+		MethodSummary summary = summaries.get(m);
+		if (summary != null)
+			return summary;
+		if (unsummarizable.contains(m) || !inProgress.add(m))
+			return null;
+		try {
+			summary = new MethodAnalysis(m).run();
+		} catch (RuntimeException e) {
+			// CannotSummarizeException, or e.g. a body or field that cannot be resolved
+			summary = null;
+		} finally {
+			inProgress.remove(m);
+		}
+		if (summary == null)
+			unsummarizable.add(m);
+		else
+			summaries.put(m, summary);
+		return summary;
+	}
+
+	/** Returns all summaries computed so far. */
+	public Collection<MethodSummary> getSummaries() {
+		return Collections.unmodifiableCollection(summaries.values());
+	}
+
+	/** The fixed-point computation for a single method body. */
+	private class MethodAnalysis {
+		private final SootMethod method;
+		private final Map<Local, Set<SummaryLocation>> localValues = new HashMap<Local, Set<SummaryLocation>>();
+		private final Map<SummaryLocation, Map<String, Set<SummaryLocation>>> heap = new LinkedHashMap<SummaryLocation, Map<String, Set<SummaryLocation>>>();
+		private final Map<String, Set<SummaryLocation>> staticValues = new LinkedHashMap<String, Set<SummaryLocation>>();
+		private final Set<SummaryLocation> returned = new LinkedHashSet<SummaryLocation>();
+		private final Set<SummaryLocation> thrown = new LinkedHashSet<SummaryLocation>();
+		private boolean changed;
+
+		MethodAnalysis(SootMethod method) {
+			this.method = method;
+		}
+
+		MethodSummary run() {
+			if (!method.isConcrete())
+				throw new CannotSummarizeException("no body");
+			Body b = method.retrieveActiveBody();
+			do {
+				changed = false;
+				for (Unit u : b.getUnits())
+					handleStmt((Stmt) u);
+			} while (changed);
+			return new MethodSummary(method.getSignature(), collectFlows());
+		}
+
+		private void handleStmt(Stmt s) {
+			if (s instanceof IdentityStmt) {
+				IdentityStmt is = (IdentityStmt) s;
+				Value rhs = is.getRightOp();
+				Local l = (Local) is.getLeftOp();
+				if (rhs instanceof ThisRef)
+					addAll(valuesOf(l), Collections.singleton(SummaryLocation.thisLocation()));
+				else if (rhs instanceof ParameterRef)
+					addAll(valuesOf(l), Collections.singleton(SummaryLocation.parameter(((ParameterRef) rhs).getIndex())));
+				else if (rhs instanceof CaughtExceptionRef)
+					addAll(valuesOf(l), thrown);
+			} else if (s instanceof AssignStmt) {
+				AssignStmt as = (AssignStmt) s;
+				Value lhs = as.getLeftOp();
+				Value rhs = as.getRightOp();
+				Set<SummaryLocation> values = rhs instanceof InvokeExpr ? handleInvoke((InvokeExpr) rhs)
+						: valuesOf(rhs);
+				if (!(lhs.getType() instanceof RefLikeType))
+					return;
+				if (lhs instanceof Local)
+					addAll(valuesOf((Local) lhs), values);
+				else if (lhs instanceof InstanceFieldRef) {
+					InstanceFieldRef ifr = (InstanceFieldRef) lhs;
+					store(valuesOf(ifr.getBase()), ifr.getField().getSignature(), values);
+				} else if (lhs instanceof ArrayRef)
+					store(valuesOf(((ArrayRef) lhs).getBase()), SummaryLocation.ARRAY_ELEMENT, values);
+				else if (lhs instanceof StaticFieldRef)
+					addAll(staticValuesOf(((StaticFieldRef) lhs).getField().getSignature()), values);
+			} else if (s.containsInvokeExpr()) {
+				handleInvoke(s.getInvokeExpr());
+			} else if (s instanceof ReturnStmt) {
+				addAll(returned, valuesOf(((ReturnStmt) s).getOp()));
+			} else if (s instanceof ThrowStmt) {
+				addAll(thrown, valuesOf(((ThrowStmt) s).getOp()));
+			}
+		}
+
+		private Set<SummaryLocation> valuesOf(Local l) {
+			Set<SummaryLocation> values = localValues.get(l);
+			if (values == null) {
+				values = new LinkedHashSet<SummaryLocation>();
+				localValues.put(l, values);
+			}
+			return values;
+		}
+
+		private Set<SummaryLocation> staticValuesOf(String field) {
+			Set<SummaryLocation> values = staticValues.get(field);
+			if (values == null) {
+				values = new LinkedHashSet<SummaryLocation>();
+				values.add(SummaryLocation.staticField(field));
+				staticValues.put(field, values);
+			}
+			return values;
+		}
+
+		/** Returns the locations the given right-hand side may evaluate to. */
+		private Set<SummaryLocation> valuesOf(Value v) {
+			if (!(v.getType() instanceof RefLikeType))
+				return Collections.emptySet();
+			if (v instanceof Local)
+				return valuesOf((Local) v);
+			if (v instanceof CastExpr)
+				return valuesOf(((CastExpr) v).getOp());
+			if (v instanceof AnyNewExpr)
+				return Collections.singleton(SummaryLocation.alloc(v.getType().toString()));
+			if (v instanceof StringConstant)
+				return Collections.singleton(SummaryLocation.alloc("java.lang.String"));
+			if (v instanceof ClassConstant)
+				return Collections.singleton(SummaryLocation.alloc("java.lang.Class"));
+			if (v instanceof InstanceFieldRef) {
+				InstanceFieldRef ifr = (InstanceFieldRef) v;
+				return load(valuesOf(ifr.getBase()), ifr.getField().getSignature());
+			}
+			if (v instanceof ArrayRef)
+				return load(valuesOf(((ArrayRef) v).getBase()), SummaryLocation.ARRAY_ELEMENT);
+			if (v instanceof StaticFieldRef)
+				return staticValuesOf(((StaticFieldRef) v).getField().getSignature());
+			return Collections.emptySet();
+		}
+
+		private Set<SummaryLocation> load(Set<SummaryLocation> bases, String field) {
+			Set<SummaryLocation> res = new LinkedHashSet<SummaryLocation>();
+			for (SummaryLocation base : bases) {
+				Map<String, Set<SummaryLocation>> fields = heap.get(base);
+				if (fields != null && fields.containsKey(field))
+					res.addAll(fields.get(field));
+				// objects allocated here only hold what was stored into them
+				if (base.getKind() != SummaryLocation.Kind.ALLOC) {
+					if (base.getFields().size() >= MAX_ACCESS_PATH)
+						throw new CannotSummarizeException("access path too long");
+					res.add(base.append(field));
+				}
+			}
+			return res;
+		}
+
+		private Set<SummaryLocation> load(Set<SummaryLocation> bases, List<String> path) {
+			Set<SummaryLocation> res = bases;
+			for (String field : path)
+				res = load(res, field);
+			return res;
+		}
+
+		private void store(Set<SummaryLocation> bases, String field, Set<SummaryLocation> values) {
+			if (values.isEmpty())
+				return;
+			for (SummaryLocation base : new ArrayList<SummaryLocation>(bases)) {
+				Map<String, Set<SummaryLocation>> fields = heap.get(base);
+				if (fields == null) {
+					fields = new LinkedHashMap<String, Set<SummaryLocation>>();
+					heap.put(base, fields);
+				}
+				Set<SummaryLocation> stored = fields.get(field);
+				if (stored == null) {
+					stored = new LinkedHashSet<SummaryLocation>();
+					fields.put(field, stored);
+				}
+				addAll(stored, values);
+			}
+		}
+
+		private void addAll(Set<SummaryLocation> to, Set<SummaryLocation> from) {
+			if (to != from && to.addAll(from))
+				changed = true;
+		}
+
+		private Collection<SootMethod> targetsOf(InvokeExpr ie) {
+			if (ie instanceof DynamicInvokeExpr)
+				throw new CannotSummarizeException("dynamic invoke");
+			if (!FixedMethods.isFixed(ie))
+				throw new CannotSummarizeException("call may be overridden by client code");
+			if (ie instanceof StaticInvokeExpr)
+				return Collections.singleton(ie.getMethod());
+			if (ie instanceof SpecialInvokeExpr)
+				return Collections.singleton(Scene.v().getFastHierarchy()
+						.resolveSpecialDispatch((SpecialInvokeExpr) ie, method));
+			SootMethod callee = ie.getMethod();
+			return Scene.v().getFastHierarchy().resolveAbstractDispatch(callee.getDeclaringClass(), callee);
+		}
+
+		/** Applies the summaries of all possible callees and returns the values they may return. */
+		private Set<SummaryLocation> handleInvoke(InvokeExpr ie) {
+			Set<SummaryLocation> ret = new LinkedHashSet<SummaryLocation>();
+			for (SootMethod callee : targetsOf(ie)) {
+				MethodSummary summary = summarize(callee);
+				if (summary == null)
+					throw new CannotSummarizeException("callee " + callee + " cannot be summarized");
+				// apply flows with shorter targets first, so that stores to returned objects
+				// find those objects
+				List<SummaryFlow> flows = new ArrayList<SummaryFlow>(summary.getFlows());
+				Collections.sort(flows, new Comparator<SummaryFlow>() {
+					@Override
+					public int compare(SummaryFlow f1, SummaryFlow f2) {
+						return f1.getTarget().getFields().size() - f2.getTarget().getFields().size();
+					}
+				});
+				for (SummaryFlow flow : flows) {
+					Set<SummaryLocation> sources = load(bind(ie, flow.getSource().getRoot()),
+							flow.getSource().getFields());
+					SummaryLocation target = flow.getTarget();
+					if (!target.hasFields()) {
+						switch (target.getKind()) {
+						case RETURN:
+							ret.addAll(sources);
+							break;
+						case EXCEPTION:
+							addAll(thrown, sources);
+							break;
+						case STATIC:
+							addAll(staticValuesOf(target.getName()), sources);
+							break;
+						default:
+							break;
+						}
+					} else {
+						Set<SummaryLocation> roots = target.getKind() == SummaryLocation.Kind.RETURN ? ret
+								: bind(ie, target.getRoot());
+						SummaryLocation parent = target.getParent();
+						store(load(roots, parent.getFields()), target.getLastField(), sources);
+					}
+				}
+			}
+			return ret;
+		}
+
+		/** Maps a root location of a callee summary to the values it stands for at the call. */
+		private Set<SummaryLocation> bind(InvokeExpr ie, SummaryLocation root) {
+			switch (root.getKind()) {
+			case THIS:
+				return ie instanceof InstanceInvokeExpr ? valuesOf(((InstanceInvokeExpr) ie).getBase())
+						: Collections.<SummaryLocation>emptySet();
+			case PARAMETER:
+				return valuesOf(ie.getArg(root.getIndex()));
+			case STATIC:
+				return staticValuesOf(root.getName());
+			case ALLOC:
+				return Collections.singleton(root);
+			default:
+				return Collections.emptySet();
+			}
+		}
+
+		private Set<SummaryFlow> collectFlows() {
+			Set<SummaryFlow> flows = new LinkedHashSet<SummaryFlow>();
+			for (SummaryLocation v : returned)
+				flows.add(new SummaryFlow(v, SummaryLocation.returnLocation()));
+			for (SummaryLocation v : thrown)
+				flows.add(new SummaryFlow(v, SummaryLocation.exception()));
+			for (Map.Entry<String, Set<SummaryLocation>> e : staticValues.entrySet()) {
+				SummaryLocation target = SummaryLocation.staticField(e.getKey());
+				for (SummaryLocation v : e.getValue())
+					if (!v.equals(target))
+						flows.add(new SummaryFlow(v, target));
+			}
+			// stores into objects the caller can see
+			for (Map.Entry<SummaryLocation, Map<String, Set<SummaryLocation>>> e : heap.entrySet()) {
+				if (e.getKey().getKind() == SummaryLocation.Kind.ALLOC)
+					continue;
+				for (Map.Entry<String, Set<SummaryLocation>> f : e.getValue().entrySet())
+					for (SummaryLocation v : f.getValue())
+						flows.add(new SummaryFlow(v, e.getKey().append(f.getKey())));
+			}
+			// stores into objects allocated here, for every place these objects escape to
+			boolean added = true;
+			while (added) {
+				added = false;
+				for (SummaryFlow flow : new ArrayList<SummaryFlow>(flows)) {
+					Map<String, Set<SummaryLocation>> fields = heap.get(flow.getSource());
+					if (flow.getSource().getKind() != SummaryLocation.Kind.ALLOC || fields == null)
+						continue;
+					for (Map.Entry<String, Set<SummaryLocation>> f : fields.entrySet()) {
+						if (flow.getTarget().getFields().size() > MAX_ACCESS_PATH)
+							throw new CannotSummarizeException("access path too long");
+						SummaryLocation target = flow.getTarget().append(f.getKey());
+						for (SummaryLocation v : f.getValue())
+							added |= flows.add(new SummaryFlow(v, target));
+					}
+				}
+			}
+			return flows;
+		}
+	}
+
+}
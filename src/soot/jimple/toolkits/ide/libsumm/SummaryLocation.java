@@ -0,0 +1,211 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A location a library method may read from or write to, as seen by its callers: the receiver,
+ * a parameter, the return value, the thrown exception, a static field or an object allocated by
+ * the method, optionally followed by an access path of fields.
+ *
+ * Fields are identified by their signature, array elements by {@link #ARRAY_ELEMENT}. Locations
+ * are immutable and compare by value.
+ */
+public final class SummaryLocation {
+
+	public enum Kind { THIS, PARAMETER, RETURN, EXCEPTION, STATIC, ALLOC }
+
+	/** The pseudo field that stands for the elements of an array. */
+	public final static String ARRAY_ELEMENT = "[]";
+
+	private final Kind kind;
+	private final int index;
+	private final String name;
+	private final List<String> fields;
+
+	private SummaryLocation(Kind kind, int index, String name, List<String> fields) {
+		this.kind = kind;
+		this.index = index;
+		this.name = name;
+		this.fields = fields;
+	}
+
+	public static SummaryLocation thisLocation() {
+		return new SummaryLocation(Kind.THIS, -1, null, Collections.<String>emptyList());
+	}
+
+	public static SummaryLocation parameter(int index) {
+		return new SummaryLocation(Kind.PARAMETER, index, null, Collections.<String>emptyList());
+	}
+
+	public static SummaryLocation returnLocation() {
+		return new SummaryLocation(Kind.RETURN, -1, null, Collections.<String>emptyList());
+	}
+
+	public static SummaryLocation exception() {
+		return new SummaryLocation(Kind.EXCEPTION, -1, null, Collections.<String>emptyList());
+	}
+
+	/** A static field, given by its signature. */
+	public static SummaryLocation staticField(String fieldSignature) {
+		return new SummaryLocation(Kind.STATIC, -1, fieldSignature, Collections.<String>emptyList());
+	}
+
+	/** The objects of the given type allocated by the method or its callees. */
+	public static SummaryLocation alloc(String type) {
+		return new SummaryLocation(Kind.ALLOC, -1, type, Collections.<String>emptyList());
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/** Returns the parameter index, or -1 if this is not a parameter location. */
+	public int getIndex() {
+		return index;
+	}
+
+	/** Returns the static field signature or allocated type, or null for other kinds. */
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the access path, from the root outwards. */
+	public List<String> getFields() {
+		return fields;
+	}
+
+	public boolean hasFields() {
+		return !fields.isEmpty();
+	}
+
+	/** Returns the location reached by following the given field from this location. */
+	public SummaryLocation append(String field) {
+		List<String> newFields = new ArrayList<String>(fields.size() + 1);
+		newFields.addAll(fields);
+		newFields.add(field);
+		return new SummaryLocation(kind, index, name, Collections.unmodifiableList(newFields));
+	}
+
+	/** Returns this location with the given access path appended. */
+	public SummaryLocation append(List<String> path) {
+		SummaryLocation loc = this;
+		for (String f : path)
+			loc = loc.append(f);
+		return loc;
+	}
+
+	/** Returns the location without the last field; must only be called if {@link #hasFields()}. */
+	public SummaryLocation getParent() {
+		return new SummaryLocation(kind, index, name, fields.subList(0, fields.size() - 1));
+	}
+
+	/** Returns the last field of the access path; must only be called if {@link #hasFields()}. */
+	public String getLastField() {
+		return fields.get(fields.size() - 1);
+	}
+
+	/** Returns this location without any access path. */
+	public SummaryLocation getRoot() {
+		return fields.isEmpty() ? this : new SummaryLocation(kind, index, name, Collections.<String>emptyList());
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = kind.hashCode();
+		result = prime * result + index;
+		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + fields.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SummaryLocation))
+			return false;
+		SummaryLocation other = (SummaryLocation) obj;
+		return kind == other.kind && index == other.index
+				&& (name == null ? other.name == null : name.equals(other.name))
+				&& fields.equals(other.fields);
+	}
+
+	/**
+	 * Returns the textual form used in summary files, e.g. <code>param0|&lt;a.B: c.D f&gt;|[]</code>
+	 * or <code>alloc:java.lang.String</code>.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		switch (kind) {
+		case THIS:
+			sb.append("this");
+			break;
+		case PARAMETER:
+			sb.append("param").append(index);
+			break;
+		case RETURN:
+			sb.append("return");
+			break;
+		case EXCEPTION:
+			sb.append("exception");
+			break;
+		case STATIC:
+			sb.append("static:").append(name);
+			break;
+		case ALLOC:
+			sb.append("alloc:").append(name);
+			break;
+		}
+		for (String f : fields)
+			sb.append('|').append(f);
+		return sb.toString();
+	}
+
+	/** Parses the textual form produced by {@link #toString()}. */
+	public static SummaryLocation parse(String s) {
+		String[] parts = s.split("\\|");
+		String root = parts[0];
+		SummaryLocation loc;
+		if (root.equals("this"))
+			loc = thisLocation();
+		else if (root.equals("return"))
+			loc = returnLocation();
+		else if (root.equals("exception"))
+			loc = exception();
+		else if (root.startsWith("param"))
+			loc = parameter(Integer.parseInt(root.substring("param".length())));
+		else if (root.startsWith("static:"))
+			loc = staticField(root.substring("static:".length()));
+		else if (root.startsWith("alloc:"))
+			loc = alloc(root.substring("alloc:".length()));
+		else
+			throw new IllegalArgumentException("Invalid summary location: " + s);
+		for (int i = 1; i < parts.length; i++)
+			loc = loc.append(parts[i]);
+		return loc;
+	}
+
+}
@@ -24,7 +24,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import soot.ArrayType;
 import soot.FloatType;
@@ -36,12 +39,46 @@ import soot.RefType;
 import soot.Scene;
 import soot.SootClass;
 import soot.Type;
+import soot.toolkits.scalar.Pair;
 
 /**
  * @author Ben Bellamy
  */
 public class BytecodeHierarchy implements IHierarchy
 {
+	/* Least common ancestors of pairs of reference types. These only depend
+	on the class hierarchy, so they are shared by all method bodies and
+	dropped whenever the class hierarchy of the scene changes. */
+	private static volatile LcaCache lcaCache = null;
+	
+	private static class LcaCache
+	{
+		final Scene scene;
+		final int hierarchyModificationCount;
+		final Map<Pair<RefType, RefType>, Collection<Type>> lcas
+			= new ConcurrentHashMap<Pair<RefType, RefType>, Collection<Type>>();
+		
+		LcaCache(Scene scene, int hierarchyModificationCount)
+		{
+			this.scene = scene;
+			this.hierarchyModificationCount = hierarchyModificationCount;
+		}
+	}
+	
+	private static Map<Pair<RefType, RefType>, Collection<Type>> lcaCache()
+	{
+		Scene scene = Scene.v();
+		int count = scene.getHierarchyModificationCount();
+		LcaCache cache = lcaCache;
+		if ( cache == null || cache.scene != scene
+			|| cache.hierarchyModificationCount != count )
+		{
+			cache = new LcaCache(scene, count);
+			lcaCache = cache;
+		}
+		return cache.lcas;
+	}
+	
 	private static class AncestryTreeNode
 	{
 		public final AncestryTreeNode next;
@@ -190,42 +227,57 @@ public class BytecodeHierarchy implements IHierarchy
 		// a and b are both RefType
 		else
 		{
-			Collection<AncestryTreeNode> treea = buildAncestryTree((RefType)a),
-				treeb = buildAncestryTree((RefType)b);
-			
-			LinkedList<Type> r = new LinkedList<Type>();
-			for ( AncestryTreeNode nodea : treea )
-				for ( AncestryTreeNode nodeb : treeb )
+			Map<Pair<RefType, RefType>, Collection<Type>> cache = lcaCache();
+			Pair<RefType, RefType> key
+				= new Pair<RefType, RefType>((RefType)a, (RefType)b);
+			Collection<Type> r = cache.get(key);
+			if ( r == null )
+			{
+				r = Collections.unmodifiableList(
+					lcasRefTypes((RefType)a, (RefType)b));
+				cache.put(key, r);
+			}
+			return r;
+		}
+	}
+	
+	private static List<Type> lcasRefTypes(RefType a, RefType b)
+	{
+		Collection<AncestryTreeNode> treea = buildAncestryTree(a),
+			treeb = buildAncestryTree(b);
+		
+		LinkedList<Type> r = new LinkedList<Type>();
+		for ( AncestryTreeNode nodea : treea )
+			for ( AncestryTreeNode nodeb : treeb )
+			{
+				RefType t = leastCommonNode(nodea, nodeb);
+				
+				boolean least = true;
+				for ( ListIterator<Type> i = r.listIterator(); i.hasNext(); )
 				{
-					RefType t = leastCommonNode(nodea, nodeb);
+					Type t_ = i.next();
 					
-					boolean least = true;
-					for ( ListIterator<Type> i = r.listIterator(); i.hasNext(); )
+					if ( ancestor_(t, t_) )
 					{
-						Type t_ = i.next();
-						
-						if ( ancestor_(t, t_) )
-						{
-							least = false;
-							break;
-						}
-						
-						if ( ancestor_(t_, t) )
-							i.remove();
+						least = false;
+						break;
 					}
 					
-					if ( least )
-						r.add(t);
+					if ( ancestor_(t_, t) )
+						i.remove();
 				}
-			
-			//in case of phantom classes that screw up type resolution here,
-			//default to only possible common reftype, java.lang.Object
-			//kludge on a kludge on a kludge...
-			//syed - 05/06/2009
-			if ( r.isEmpty() )
-				r.add(RefType.v("java.lang.Object"));
-			return r;
-		}
+				
+				if ( least )
+					r.add(t);
+			}
+		
+		//in case of phantom classes that screw up type resolution here,
+		//default to only possible common reftype, java.lang.Object
+		//kludge on a kludge on a kludge...
+		//syed - 05/06/2009
+		if ( r.isEmpty() )
+			r.add(RefType.v("java.lang.Object"));
+		return r;
 	}
 	
 	public boolean ancestor(Type ancestor, Type child)
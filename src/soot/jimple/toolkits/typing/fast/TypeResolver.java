@@ -24,7 +24,6 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -78,14 +77,18 @@ public class TypeResolver
 	private JimpleBody jb;
 	
 	private final List<DefinitionStmt> assignments;
-	private final HashMap<Local, BitSet> depends;
+	private final Typing.LocalNumbering numbering;
+	/* Indexed by local number, the assignments that use each local. */
+	private final ArrayList<BitSet> depends;
 	
 	public TypeResolver(JimpleBody jb)
 	{
 		this.jb = jb;
 
 		this.assignments = new ArrayList<DefinitionStmt>();
-		this.depends = new HashMap<Local, BitSet>();
+		this.numbering = new Typing.LocalNumbering(
+			Collections.<Local>emptyList());
+		this.depends = new ArrayList<BitSet>();
 		for ( Local v : this.jb.getLocals() )
 			this.addLocal(v);
 		this.initAssignments();
@@ -135,12 +138,20 @@ public class TypeResolver
 	
 	private void addLocal(Local v)
 	{
-		this.depends.put(v, new BitSet());
+		int n = this.numbering.add(v);
+		while ( this.depends.size() <= n )
+			this.depends.add(new BitSet());
 	}
 	
 	private void addDepend(Local v, int stmtIndex)
 	{
-		this.depends.get(v).set(stmtIndex);
+		this.depends.get(this.numbering.get(v)).set(stmtIndex);
+	}
+	
+	private BitSet getDepends(Local v)
+	{
+		int n = this.numbering.get(v);
+		return n < 0 || n >= this.depends.size() ? null : this.depends.get(n);
 	}
 	
 	public void inferTypes()
@@ -148,7 +159,7 @@ public class TypeResolver
 		AugEvalFunction ef = new AugEvalFunction(this.jb);
 		BytecodeHierarchy bh = new BytecodeHierarchy();
 		Collection<Typing> sigma = this.applyAssignmentConstraints(
-			new Typing(this.jb.getLocals()), ef, bh);
+			new Typing(this.numbering), ef, bh);
 		
 		// If there is nothing to type, we can quit
 		if (sigma.isEmpty())
@@ -160,7 +171,7 @@ public class TypeResolver
 		{
 			this.split_new();
 			sigma = this.applyAssignmentConstraints(
-				new Typing(this.jb.getLocals()), ef, bh);
+				new Typing(this.numbering), ef, bh);
 			tg = this.minCasts(sigma, bh, castCount);
 		}
 		this.insertCasts(tg, bh, false);
@@ -443,22 +454,23 @@ public class TypeResolver
 		if (numAssignments == 0)
 			return sigma;
 		
-		HashMap<Typing, BitSet> worklists = new HashMap<Typing, BitSet>();
+		// The worklist of each typing in sigma, kept in the same order
+		LinkedList<BitSet> worklists = new LinkedList<BitSet>();
 		
 		sigma.add(tg);
 		BitSet wl = new BitSet(numAssignments - 1);
 		wl.set(0, numAssignments);
-		worklists.put(tg, wl);
+		worklists.add(wl);
 		
 		while ( !sigma.isEmpty() )
 		{
 			tg = sigma.element();
-			wl = worklists.get(tg);
+			wl = worklists.element();
 			if ( wl.isEmpty() )
 			{
 				r.add(tg);
 				sigma.remove();
-				worklists.remove(tg);
+				worklists.remove();
 			}
 			else
 			{
@@ -527,11 +539,11 @@ public class TypeResolver
 								wl_ = new BitSet(numAssignments - 1);
 								wl_.or(wl);
 								sigma.add(tg_);
-								worklists.put(tg_, wl_);
+								worklists.add(wl_);
 							}
 							tg_.set(v, t);
 							
-							BitSet dependsV = this.depends.get(v);
+							BitSet dependsV = this.getDepends(v);
 							if (dependsV != null)
 								wl_.or(dependsV);
 						}
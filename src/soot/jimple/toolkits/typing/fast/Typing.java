@@ -24,37 +24,121 @@ import java.util.*;
 import soot.*;
 
 /**
+ * A typing maps each local of a body to a type. The locals are numbered once
+ * per body by a shared {@link LocalNumbering}, so a typing is just an array of
+ * types indexed by local number. Copies share that array until one of them is
+ * written to, which keeps branching in the type resolver cheap.
+ * 
  * @author Ben Bellamy
  */
 public class Typing
 {
-	private HashMap<Local, Type> map;
+	/**
+	 * Dense numbering of the locals of one body. Locals that are created
+	 * while typing (casts, split allocations) are numbered on first use.
+	 */
+	static final class LocalNumbering
+	{
+		private final HashMap<Local, Integer> numbers
+			= new HashMap<Local, Integer>();
+		private final ArrayList<Local> locals = new ArrayList<Local>();
+		
+		LocalNumbering(Collection<Local> vs)
+		{
+			for ( Local v : vs )
+				this.add(v);
+		}
+		
+		int add(Local v)
+		{
+			Integer n = this.numbers.get(v);
+			if ( n == null )
+			{
+				n = this.locals.size();
+				this.numbers.put(v, n);
+				this.locals.add(v);
+			}
+			return n;
+		}
+		
+		int get(Local v)
+		{
+			Integer n = this.numbers.get(v);
+			return n == null ? -1 : n;
+		}
+		
+		Local local(int n) { return this.locals.get(n); }
+		
+		int size() { return this.locals.size(); }
+	}
+	
+	private final LocalNumbering numbering;
+	private Type[] types;
+	/* Whether this typing is the only one referring to its types array. */
+	private boolean owned;
 	
 	public Typing(Collection<Local> vs)
 	{
-		this.map = new HashMap<Local, Type>();
-		for ( Local v : vs )
-			this.map.put(v, BottomType.v());
+		this(new LocalNumbering(vs));
+	}
+	
+	Typing(LocalNumbering numbering)
+	{
+		this.numbering = numbering;
+		this.types = new Type[numbering.size()];
+		Arrays.fill(this.types, BottomType.v());
+		this.owned = true;
 	}
 	
 	public Typing(Typing tg)
 	{
-		this.map = new HashMap<Local, Type>(tg.map);
+		this.numbering = tg.numbering;
+		this.types = tg.types;
+		this.owned = false;
+		tg.owned = false;
 	}
 	
-	public Type get(Local v) { return this.map.get(v); }
+	LocalNumbering getNumbering() { return this.numbering; }
+	
+	public Type get(Local v)
+	{
+		int n = this.numbering.get(v);
+		return n < 0 || n >= this.types.length ? null : this.types[n];
+	}
 	
-	public Type set(Local v, Type t) { return this.map.put(v, t); }
+	public Type set(Local v, Type t)
+	{
+		int n = this.numbering.add(v);
+		if ( n >= this.types.length )
+		{
+			this.types = Arrays.copyOf(this.types,
+				Math.max(n + 1, this.numbering.size()));
+			this.owned = true;
+		}
+		Type told = this.types[n];
+		if ( told != t )
+		{
+			if ( !this.owned )
+			{
+				this.types = this.types.clone();
+				this.owned = true;
+			}
+			this.types[n] = t;
+		}
+		return told;
+	}
 	
 	public String toString()
 	{
 		StringBuffer sb = new StringBuffer();
 		sb.append('{');
-		for ( Local v : this.map.keySet() )
+		for ( int n = 0; n < this.types.length; n++ )
 		{
-			sb.append(v);
+			if ( this.types[n] == null )
+				continue;
+			sb.append(this.numbering.local(n));
 			sb.append(':');
-			sb.append(this.get(v));
+			sb.append(this.types[n]);
 			sb.append(',');
 		}
 		sb.append('}');
@@ -84,9 +168,12 @@ public class Typing
 	public static int compare(Typing a, Typing b, IHierarchy h)
 	{
 		int r = 0;
-		for ( Local v : a.map.keySet() )
+		for ( int n = 0; n < a.types.length; n++ )
 		{
-			Type ta = a.get(v), tb = b.get(v);
+			Type ta = a.types[n];
+			if ( ta == null )
+				continue;
+			Type tb = n < b.types.length ? b.types[n] : null;
 			
 			int cmp;
 			if ( TypeResolver.typesEqual(ta, tb) )
@@ -105,4 +192,4 @@ public class Typing
 		}
 		return r;
 	}
-}
\ No newline at end of file
+}
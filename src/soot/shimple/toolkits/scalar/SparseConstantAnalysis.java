@@ -0,0 +1,114 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.shimple.toolkits.scalar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.Constant;
+import soot.shimple.ShimpleBody;
+import soot.shimple.toolkits.scalar.SEvaluator.BottomConstant;
+import soot.shimple.toolkits.scalar.SEvaluator.TopConstant;
+import soot.toolkits.scalar.SparseLocalAnalysis;
+
+/**
+ * A sparse constant analysis over the def-use chains of a body. Each
+ * definition of a local is mapped to a constant, to
+ * {@link SEvaluator.TopConstant} (no value seen yet) or to
+ * {@link SEvaluator.BottomConstant} (not a constant), using the same
+ * lattice and folding rules as {@link SConstantPropagatorAndFolder}.
+ *
+ * <p>Unlike {@link SConstantPropagatorAndFolder} this analysis does not
+ * take branch conditions into account, but it only re-evaluates a
+ * statement when one of its operands has changed instead of iterating over
+ * the whole control flow graph. On a {@link ShimpleBody} in SSA form it
+ * uses the Shimple def-use chains and merges at Phi nodes; on any other
+ * body it merges all reaching definitions at each use.
+ *
+ * <p>{@link SConstantPropagatorAndFolder} uses this analysis instead of
+ * the conditional one when the sop.cpf phase option <code>sparse</code>
+ * is set.
+ **/
+public class SparseConstantAnalysis extends SparseLocalAnalysis<Constant>
+{
+    public SparseConstantAnalysis(ShimpleBody sb)
+    {
+        super(sb, new ShimpleLocalDefs(sb), new ShimpleLocalUses(sb));
+        doAnalysis();
+    }
+
+    public SparseConstantAnalysis(Body b)
+    {
+        super(b);
+        doAnalysis();
+    }
+
+    protected Constant initialValue()
+    {
+        return TopConstant.v();
+    }
+
+    protected Constant merge(Constant in1, Constant in2)
+    {
+        if(in1 instanceof TopConstant)
+            return in2;
+        if(in2 instanceof TopConstant)
+            return in1;
+        if(in1.equals(in2))
+            return in1;
+        return BottomConstant.v();
+    }
+
+    protected Constant evaluate(Unit def, Local l)
+    {
+        // identity statements, i.e. parameters and this, are not constant
+        if(!(def instanceof AssignStmt))
+            return BottomConstant.v();
+
+        Value rhs = ((AssignStmt) def).getRightOp();
+        Map<Local, Constant> operands = new HashMap<Local, Constant>();
+        if(rhs instanceof Local)
+            operands.put((Local) rhs, getValueAt((Local) rhs, def));
+        for(ValueBox box : rhs.getUseBoxes()){
+            Value use = box.getValue();
+            if(use instanceof Local)
+                operands.put((Local) use, getValueAt((Local) use, def));
+        }
+
+        return SEvaluator.getFuzzyConstantValueOf(rhs, operands);
+    }
+
+    /**
+     * Returns the merged constant of every local in the body.
+     **/
+    public Map<Local, Constant> getResults()
+    {
+        Map<Local, Constant> results = new HashMap<Local, Constant>();
+        for(Local local : body.getLocals())
+            results.put(local, getValueOf(local));
+        return results;
+    }
+}
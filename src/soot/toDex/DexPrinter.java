@@ -15,10 +15,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import heros.solver.CountingThreadPoolExecutor;
+
 import org.jf.dexlib2.AnnotationVisibility;
 import org.jf.dexlib2.Opcode;
 import org.jf.dexlib2.Opcodes;
@@ -77,23 +82,30 @@ import soot.G;
 import soot.IntType;
 import soot.Local;
 import soot.PackManager;
+import soot.RefLikeType;
 import soot.Scene;
 import soot.ShortType;
 import soot.SootClass;
 import soot.SootField;
+import soot.SootFieldRef;
 import soot.SootMethod;
 import soot.SootMethodRef;
 import soot.SourceLocator;
 import soot.Trap;
 import soot.Type;
 import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
 import soot.dexpler.DexInnerClassParser;
 import soot.dexpler.DexType;
 import soot.dexpler.Util;
+import soot.jimple.CastExpr;
 import soot.jimple.ClassConstant;
 import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceOfExpr;
 import soot.jimple.Jimple;
 import soot.jimple.MonitorStmt;
+import soot.jimple.NewExpr;
 import soot.jimple.NopStmt;
 import soot.jimple.Stmt;
 import soot.jimple.toolkits.scalar.EmptySwitchEliminator;
@@ -117,6 +129,7 @@ import soot.tagkit.ConstantValueTag;
 import soot.tagkit.DoubleConstantValueTag;
 import soot.tagkit.EnclosingMethodTag;
 import soot.tagkit.FloatConstantValueTag;
+import soot.tagkit.Host;
 import soot.tagkit.InnerClassAttribute;
 import soot.tagkit.InnerClassTag;
 import soot.tagkit.IntegerConstantValueTag;
@@ -150,16 +163,46 @@ public class DexPrinter {
 	
 	private static final String CLASSES_DEX = "classes.dex";
 	
+	/**
+	 * The number of method, field or type references a single dex file can
+	 * hold, as they are addressed by 16-bit indices.
+	 */
+	private static final int MAX_REFERENCES = 0x10000;
+	
+	/**
+	 * The references a dex file is filled up to. The references are counted
+	 * on the Jimple classes, which misses the few the translation adds itself,
+	 * such as the types of the system annotations, so some room is left.
+	 */
+	private static final int REFERENCE_LIMIT = MAX_REFERENCES - 0x800;
+	
+	private final Opcodes opcodes;
+	
+	private final List<SootClass> classes = new ArrayList<SootClass>();
+	
 	private DexBuilder dexFile;
 	
 	private File originalApk;
 	
 	public DexPrinter() {
 		int api = Scene.v().getAndroidAPIVersion();
-		dexFile = new DexBuilder(Opcodes.forApi(api));
+		opcodes = Opcodes.forApi(api);
+		dexFile = new DexBuilder(opcodes);
+	}
+	
+	/**
+	 * Returns the name of the dex file with the given index, following the
+	 * multi-dex convention classes.dex, classes2.dex, classes3.dex and so on.
+	 */
+	private static String dexFileName(int index) {
+		return index == 0 ? CLASSES_DEX : "classes" + (index + 1) + ".dex";
+	}
+	
+	private static boolean isDexFile(String fileName) {
+		return fileName.matches("classes\\d*\\.dex");
 	}
 	
-	private void printApk(String outputDir, File originalApk) throws IOException {
+	private void printApk(String outputDir, File originalApk, List<List<SootClass>> dexFiles) throws IOException {
 		ZipOutputStream outputApk = null;
 		if(Options.v().output_jar()) {
 			outputApk = PackManager.v().getJarFile();
@@ -176,35 +219,44 @@ public class DexPrinter {
 		}
 		G.v().out.println("do not forget to sign the .apk file with jarsigner and to align it with zipalign");
 		
-		// Copy over additional resources from original APK
-		ZipFile original = null;
 		try {
-			original = new ZipFile(originalApk);
-			copyAllButClassesDexAndSigFiles(original, outputApk);
-		}
-		finally {
-			if (original != null)
-				original.close();
-		}
-		
-		// put our classes.dex into the zip archive
-		File tmpFile = File.createTempFile("toDex", null);
-		FileInputStream fis = new FileInputStream(tmpFile);
-		try {
-			outputApk.putNextEntry(new ZipEntry(CLASSES_DEX));
-			writeTo(tmpFile.getAbsolutePath());
-			while (fis.available() > 0) {
-				byte[] data = new byte[fis.available()];
-				fis.read(data);
-				outputApk.write(data);
+			// Copy over additional resources from original APK
+			ZipFile original = null;
+			try {
+				original = new ZipFile(originalApk);
+				copyAllButClassesDexAndSigFiles(original, outputApk);
+			}
+			finally {
+				if (original != null)
+					original.close();
+			}
+			
+			// put our dex files into the zip archive, each as soon as it is built
+			for (int i = 0; i < dexFiles.size(); i++) {
+				translate(dexFiles.get(i));
+				File tmpFile = File.createTempFile("toDex", null);
+				try {
+					writeTo(tmpFile.getAbsolutePath());
+					outputApk.putNextEntry(new ZipEntry(dexFileName(i)));
+					FileInputStream fis = new FileInputStream(tmpFile);
+					try {
+						byte[] data = new byte[8192];
+						int read;
+						while ((read = fis.read(data)) > 0)
+							outputApk.write(data, 0, read);
+					}
+					finally {
+						fis.close();
+					}
+					outputApk.closeEntry();
+				}
+				finally {
+					tmpFile.delete();
+				}
 			}
-			outputApk.closeEntry();
 		}
 		finally {
-			fis.close();
-			tmpFile.delete();
-			if (outputApk != null)
-				outputApk.close();
+			outputApk.close();
 		}
 	}
 
@@ -213,7 +265,7 @@ public class DexPrinter {
 		while (sourceEntries.hasMoreElements()) {
 			ZipEntry sourceEntry = sourceEntries.nextElement();
 			String sourceEntryName = sourceEntry.getName();
-			if (sourceEntryName.equals(CLASSES_DEX) || isSignatureFile(sourceEntryName)) {
+			if (isDexFile(sourceEntryName) || isSignatureFile(sourceEntryName)) {
 				continue;
 			}
 			// separate ZipEntry avoids compression problems due to encodings
@@ -1535,11 +1587,15 @@ public class DexPrinter {
 		}
 	}
 	
+	/**
+	 * Adds the given class to the dex output. Classes are translated when
+	 * the output is printed.
+	 */
 	public void add(SootClass c) {
 		if (c.isPhantom())
 			return;
-				
-		addAsClassDefItem(c);
+		classes.add(c);
+
 		// save original APK for this class, needed to copy all the other files inside
 		Map<String, File> dexClassIndex = SourceLocator.v().dexClassIndex();
     	if (dexClassIndex == null) {
@@ -1555,20 +1611,285 @@ public class DexPrinter {
     	originalApk = sourceForClass;
 	}
 
+	/**
+	 * Translates and writes all added classes. Classes are split into as many
+	 * dex files as needed to stay within the reference limits of the dex
+	 * format, and each dex file is written as soon as its classes have been
+	 * translated.
+	 */
 	public void print() {
 		String outputDir = SourceLocator.v().getOutputDir();
+		List<List<SootClass>> dexFiles = splitIntoDexFiles();
+		if (dexFiles.size() > 1)
+			G.v().out.println("Splitting dex output into " + dexFiles.size() + " files");
 		try {
 			if (originalApk != null
 					&& Options.v().output_format() != Options.output_format_force_dex) {
-				printApk(outputDir, originalApk);
+				printApk(outputDir, originalApk, dexFiles);
 			} else {
-				String fileName = outputDir + File.separatorChar + CLASSES_DEX;
-				G.v().out.println("Writing dex to: " + fileName);
-				writeTo(fileName);
+				for (int i = 0; i < dexFiles.size(); i++) {
+					translate(dexFiles.get(i));
+					String fileName = outputDir + File.separatorChar + dexFileName(i);
+					G.v().out.println("Writing dex to: " + fileName);
+					writeTo(fileName);
+				}
 			}
 		} catch (IOException e) {
 			throw new CompilationDeathException("I/O exception while printing dex", e);
 		}
 	}
 
+	/**
+	 * Translates the given classes into a fresh dex builder, using one worker
+	 * thread per processor. The dexlib2 builder pools are concurrent, so the
+	 * classes can share a single builder.
+	 */
+	private void translate(List<SootClass> dexClasses) {
+		dexFile = new DexBuilder(opcodes);
+		runConcurrently(dexClasses, new ClassTask() {
+
+			@Override
+			public void run(SootClass c) {
+				addAsClassDefItem(c);
+			}
+
+		});
+	}
+
+	/**
+	 * Assigns the added classes, in order, to dex files such that no dex file
+	 * exceeds {@link #REFERENCE_LIMIT} method, field or type references.
+	 */
+	private List<List<SootClass>> splitIntoDexFiles() {
+		final Map<SootClass, References> referencesOf = new ConcurrentHashMap<SootClass, References>();
+		runConcurrently(classes, new ClassTask() {
+
+			@Override
+			public void run(SootClass c) {
+				References refs = new References();
+				refs.collect(c);
+				referencesOf.put(c, refs);
+			}
+
+		});
+
+		List<List<SootClass>> dexFiles = new ArrayList<List<SootClass>>();
+		List<SootClass> current = new ArrayList<SootClass>();
+		References refs = new References();
+		for (SootClass c : classes) {
+			References classRefs = referencesOf.get(c);
+			if (!current.isEmpty() && !refs.canAdd(classRefs)) {
+				dexFiles.add(current);
+				current = new ArrayList<SootClass>();
+				refs = new References();
+			}
+			current.add(c);
+			refs.addAll(classRefs);
+		}
+		dexFiles.add(current);
+		return dexFiles;
+	}
+
+	/**
+	 * The methods, fields and types the dex translation of one or more
+	 * classes refers to. Each of them takes an entry in the 16-bit indexed
+	 * tables of a dex file. A reference may be recorded under more than one
+	 * name, which only overestimates the size of a dex file.
+	 */
+	private static class References {
+
+		final Set<String> methods = new HashSet<String>();
+		final Set<String> fields = new HashSet<String>();
+		final Set<String> types = new HashSet<String>();
+
+		boolean canAdd(References other) {
+			return countNew(methods, other.methods) + methods.size() <= REFERENCE_LIMIT
+					&& countNew(fields, other.fields) + fields.size() <= REFERENCE_LIMIT
+					&& countNew(types, other.types) + types.size() <= REFERENCE_LIMIT;
+		}
+
+		void addAll(References other) {
+			methods.addAll(other.methods);
+			fields.addAll(other.fields);
+			types.addAll(other.types);
+		}
+
+		private static int countNew(Set<String> existing, Set<String> added) {
+			int n = 0;
+			for (String s : added)
+				if (!existing.contains(s))
+					n++;
+			return n;
+		}
+
+		/**
+		 * Collects the references of the given class, i.e., its own members,
+		 * all members and types used in its bodies, and the ones in its
+		 * annotations.
+		 */
+		void collect(SootClass c) {
+			type(c.getType());
+			if (c.hasSuperclass())
+				type(c.getSuperclass().getType());
+			for (SootClass i : c.getInterfaces())
+				type(i.getType());
+			annotations(c);
+			for (SootField f : c.getFields()) {
+				fields.add(f.getSignature());
+				type(f.getType());
+				annotations(f);
+			}
+			for (SootMethod m : c.getMethods()) {
+				if (m.isPhantom())
+					continue;
+				method(m.makeRef());
+				for (SootClass e : m.getExceptions())
+					type(e.getType());
+				annotations(m);
+				if (!m.isConcrete())
+					continue;
+				Body body = m.retrieveActiveBody();
+				for (Local l : body.getLocals())
+					type(l.getType());
+				for (Trap t : body.getTraps())
+					type(t.getException().getType());
+				for (Unit u : body.getUnits()) {
+					Stmt s = (Stmt) u;
+					if (s.containsInvokeExpr())
+						method(s.getInvokeExpr().getMethodRef());
+					if (s.containsFieldRef()) {
+						SootFieldRef ref = s.getFieldRef().getFieldRef();
+						fields.add(ref.getSignature());
+						type(ref.declaringClass().getType());
+						type(ref.type());
+					}
+					for (ValueBox vb : s.getUseAndDefBoxes()) {
+						Value v = vb.getValue();
+						type(v.getType());
+						if (v instanceof NewExpr)
+							type(((NewExpr) v).getBaseType());
+						else if (v instanceof CastExpr)
+							type(((CastExpr) v).getCastType());
+						else if (v instanceof InstanceOfExpr)
+							type(((InstanceOfExpr) v).getCheckType());
+						else if (v instanceof ClassConstant)
+							types.add(((ClassConstant) v).getValue());
+					}
+				}
+			}
+		}
+
+		private void type(Type t) {
+			if (t instanceof RefLikeType)
+				types.add(t.toString());
+		}
+
+		private void method(SootMethodRef ref) {
+			methods.add(ref.declaringClass().getName() + "." + ref.getSubSignature());
+			type(ref.declaringClass().getType());
+			type(ref.returnType());
+			for (Type t : ref.parameterTypes())
+				type(t);
+		}
+
+		private void annotations(Host h) {
+			for (Tag t : h.getTags()) {
+				if (t instanceof VisibilityAnnotationTag)
+					annotations((VisibilityAnnotationTag) t);
+				else if (t instanceof VisibilityParameterAnnotationTag)
+					for (VisibilityAnnotationTag vat : ((VisibilityParameterAnnotationTag) t).getVisibilityAnnotations())
+						annotations(vat);
+				else if (t instanceof AnnotationDefaultTag)
+					element(((AnnotationDefaultTag) t).getDefaultVal());
+				else if (t instanceof EnclosingMethodTag) {
+					EnclosingMethodTag emt = (EnclosingMethodTag) t;
+					if (emt.getEnclosingMethod() != null)
+						methods.add(emt.getEnclosingClass() + "." + emt.getEnclosingMethod()
+								+ emt.getEnclosingMethodSig());
+				}
+			}
+		}
+
+		private void annotations(VisibilityAnnotationTag t) {
+			if (t == null || t.getAnnotations() == null)
+				return;
+			for (AnnotationTag a : t.getAnnotations())
+				annotation(a);
+		}
+
+		private void annotation(AnnotationTag a) {
+			types.add(a.getType());
+			for (AnnotationElem e : a.getElems())
+				element(e);
+		}
+
+		private void element(AnnotationElem e) {
+			switch (e.getKind()) {
+			case 'e': {
+				AnnotationEnumElem ee = (AnnotationEnumElem) e;
+				fields.add(ee.getTypeName() + "." + ee.getConstantName());
+				types.add(ee.getTypeName());
+				break;
+			}
+			case 'c':
+				types.add(((AnnotationClassElem) e).getDesc());
+				break;
+			case '[': {
+				AnnotationArrayElem ae = (AnnotationArrayElem) e;
+				for (int i = 0; i < ae.getNumValues(); i++)
+					element(ae.getValueAt(i));
+				break;
+			}
+			case '@':
+				annotation(((AnnotationAnnotationElem) e).getValue());
+				break;
+			case 'f':
+				fields.add(((AnnotationStringElem) e).getValue());
+				break;
+			case 'M':
+				methods.add(((AnnotationStringElem) e).getValue());
+				break;
+			default:
+				break;
+			}
+		}
+
+	}
+
+	private interface ClassTask {
+		void run(SootClass c);
+	}
+
+	private static void runConcurrently(Collection<SootClass> classes, final ClassTask task) {
+		int threadNum = Runtime.getRuntime().availableProcessors();
+		CountingThreadPoolExecutor executor = new CountingThreadPoolExecutor(threadNum,
+				threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		for (final SootClass c : classes) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					task.run(c);
+				}
+
+			});
+		}
+
+		// Wait till all classes have been processed
+		try {
+			executor.awaitCompletion();
+			executor.shutdown();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Could not wait for dex translation threads to "
+					+ "finish: " + e.getMessage(), e);
+		}
+
+		if (executor.getException() != null) {
+			if (executor.getException() instanceof RuntimeException)
+				throw (RuntimeException) executor.getException();
+			else
+				throw new RuntimeException(executor.getException());
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.toolkits.graph;
+
+import java.util.Collection;
+
+import soot.Unit;
+
+/**
+ * Numbers the units of a body from 0 in the order of its unit chain. Lookups
+ * hash on object identity into a primitive table, so no entry objects are
+ * allocated.
+ */
+public final class UnitIndex {
+	private final Unit[] units;
+	/** Open addressing table holding index + 1 of each unit, 0 if free. */
+	private final int[] table;
+	private final int mask;
+
+	public UnitIndex(Collection<Unit> units) {
+		this.units = units.toArray(new Unit[units.size()]);
+		int capacity = 4;
+		while (capacity < this.units.length * 2)
+			capacity <<= 1;
+		table = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < this.units.length; i++) {
+			int slot = hash(this.units[i]) & mask;
+			while (table[slot] != 0) {
+				if (this.units[table[slot] - 1] == this.units[i])
+					throw new IllegalArgumentException("Duplicate unit "
+							+ this.units[i]);
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	private static int hash(Object o) {
+		int h = System.identityHashCode(o);
+		return h ^ (h >>> 16);
+	}
+
+	/** Returns the number of the given unit, or -1 if it is not indexed. */
+	public int indexOf(Object u) {
+		if (u == null)
+			return -1;
+		int slot = hash(u) & mask;
+		int i;
+		while ((i = table[slot]) != 0) {
+			if (units[i - 1] == u)
+				return i - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/** Returns the unit with the given number. */
+	public Unit get(int index) {
+		return units[index];
+	}
+
+	public int size() {
+		return units.length;
+	}
+}
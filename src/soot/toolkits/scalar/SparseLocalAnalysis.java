@@ -0,0 +1,228 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.toolkits.scalar;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.ValueBox;
+
+/**
+ * A sparse solver for analyses that attach a lattice value to every
+ * definition of a local.
+ *
+ * <p>Where {@link FlowAnalysis} keeps a flow set before and after every
+ * unit and re-evaluates whole units until the sets stabilise, this solver
+ * only stores one value per defining unit and propagates changes along the
+ * def-use chains given by a {@link LocalDefs} / {@link LocalUses} pair.
+ * A definition is re-evaluated only when the value of one of the locals it
+ * reads has changed, so statements that do not define a local, or whose
+ * operands never change, are touched at most once.
+ *
+ * <p>Any pair of def-use analyses may be used. On plain Jimple the
+ * {@link SimpleLocalDefs} / {@link SimpleLocalUses} chains give a solver
+ * that merges the values of all reaching definitions at each use. On a
+ * {@link soot.shimple.ShimpleBody} in SSA form the
+ * {@link soot.shimple.toolkits.scalar.ShimpleLocalDefs} /
+ * {@link soot.shimple.toolkits.scalar.ShimpleLocalUses} chains have
+ * exactly one definition per local, and merges happen at Phi nodes, which
+ * subclasses evaluate like any other definition.
+ *
+ * <p>Subclasses provide the lattice through {@link #initialValue()} and
+ * {@link #merge(Object, Object)} and the transfer function through
+ * {@link #evaluate(Unit, Local)}, which may query the current value of
+ * any operand with {@link #getValueAt(Local, Unit)}. The solver merges each
+ * newly computed value into the previous one, so the value of a definition
+ * only moves up the lattice; the analysis terminates whenever the lattice
+ * has finite height.
+ *
+ * @param <V> the lattice value type; values are compared with
+ *            {@link Object#equals(Object)}
+ */
+public abstract class SparseLocalAnalysis<V>
+{
+    protected final Body body;
+    protected final LocalDefs localDefs;
+    protected final LocalUses localUses;
+
+    private final Map<Unit, V> defToValue = new HashMap<Unit, V>();
+    private int evaluations;
+
+    /**
+     * Constructs the analysis with {@link SimpleLocalDefs} /
+     * {@link SimpleLocalUses} chains computed for the given body.
+     */
+    public SparseLocalAnalysis(Body body)
+    {
+        this(body, LocalDefs.Factory.newLocalDefs(body));
+    }
+
+    private SparseLocalAnalysis(Body body, LocalDefs localDefs)
+    {
+        this(body, localDefs, LocalUses.Factory.newLocalUses(body, localDefs));
+    }
+
+    /**
+     * Constructs the analysis over precomputed def-use chains.
+     */
+    public SparseLocalAnalysis(Body body, LocalDefs localDefs, LocalUses localUses)
+    {
+        this.body = body;
+        this.localDefs = localDefs;
+        this.localUses = localUses;
+    }
+
+    /**
+     * Returns the value a definition starts with before it is first
+     * evaluated. This must be the identity of {@link #merge(Object, Object)},
+     * usually the "nothing known yet" element of the lattice.
+     */
+    protected abstract V initialValue();
+
+    /**
+     * Merges two lattice values. Must be commutative, associative and
+     * idempotent, and must not modify its arguments.
+     */
+    protected abstract V merge(V in1, V in2);
+
+    /**
+     * Computes the value the given unit assigns to <code>l</code>, typically
+     * by looking at the right-hand side of the statement and querying the
+     * values of its operands with {@link #getValueAt(Local, Unit)}.
+     */
+    protected abstract V evaluate(Unit def, Local l);
+
+    /**
+     * Returns the value a local used at (or defined by) a unit has been
+     * given by the definitions that reach that unit. Locals that have no
+     * reaching definition get {@link #initialValue()}.
+     */
+    public V getValueAt(Local l, Unit u)
+    {
+        V value = initialValue();
+        for (Unit def : localDefs.getDefsOfAt(l, u)) {
+            V defValue = defToValue.get(def);
+            if (defValue != null)
+                value = merge(value, defValue);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the merged value of all definitions of a local. In SSA form
+     * this is simply the value of its single definition.
+     */
+    public V getValueOf(Local l)
+    {
+        V value = initialValue();
+        for (Unit def : localDefs.getDefsOf(l)) {
+            V defValue = defToValue.get(def);
+            if (defValue != null)
+                value = merge(value, defValue);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value computed for a defining unit, or
+     * {@link #initialValue()} if the unit does not define a local.
+     */
+    public V getValueOfDef(Unit def)
+    {
+        V value = defToValue.get(def);
+        return value == null ? initialValue() : value;
+    }
+
+    /**
+     * Returns an unmodifiable view of the value of every defining unit.
+     */
+    public Map<Unit, V> getDefValues()
+    {
+        return Collections.unmodifiableMap(defToValue);
+    }
+
+    /**
+     * Returns how many times {@link #evaluate(Unit, Local)} was called
+     * during {@link #doAnalysis()}.
+     */
+    public int getEvaluationCount()
+    {
+        return evaluations;
+    }
+
+    /**
+     * Runs the solver to a fixed point. Every definition is evaluated once
+     * in body order; afterwards a definition is only re-evaluated when the
+     * value of one of the definitions it uses has changed.
+     */
+    protected void doAnalysis()
+    {
+        ArrayDeque<Unit> worklist = new ArrayDeque<Unit>();
+        Set<Unit> queued = new HashSet<Unit>();
+
+        for (Unit u : body.getUnits()) {
+            if (definedLocal(u) != null) {
+                defToValue.put(u, initialValue());
+                worklist.add(u);
+                queued.add(u);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            Unit def = worklist.poll();
+            queued.remove(def);
+
+            V oldValue = defToValue.get(def);
+            evaluations++;
+            V newValue = merge(oldValue, evaluate(def, definedLocal(def)));
+            if (newValue.equals(oldValue))
+                continue;
+            defToValue.put(def, newValue);
+
+            List<UnitValueBoxPair> uses = localUses.getUsesOf(def);
+            for (UnitValueBoxPair use : uses) {
+                Unit user = use.getUnit();
+                if (defToValue.containsKey(user) && queued.add(user))
+                    worklist.add(user);
+            }
+        }
+    }
+
+    /**
+     * Returns the local a unit defines, or <code>null</code> if it does not
+     * define one.
+     */
+    protected static Local definedLocal(Unit u)
+    {
+        for (ValueBox box : u.getDefBoxes()) {
+            if (box.getValue() instanceof Local)
+                return (Local) box.getValue();
+        }
+        return null;
+    }
+}
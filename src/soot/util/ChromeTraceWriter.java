@@ -0,0 +1,82 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import soot.PhaseEvent;
+import soot.PhaseListener;
+
+/**
+ * Records every phase reported by {@link soot.PhaseMetrics} and writes
+ * them in the Chrome trace event format, which chrome://tracing and
+ * similar viewers display as a timeline per thread.
+ */
+public class ChromeTraceWriter implements PhaseListener {
+	private final ConcurrentLinkedQueue<PhaseEvent> events = new ConcurrentLinkedQueue<PhaseEvent>();
+
+	public void phaseFinished(PhaseEvent e) {
+		events.add(e);
+	}
+
+	/** Writes all events recorded so far. */
+	public void write(Writer out) throws IOException {
+		List<PhaseEvent> list = new ArrayList<PhaseEvent>(events);
+		Map<Long, String> threads = new TreeMap<Long, String>();
+		out.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [");
+		boolean first = true;
+		for (PhaseEvent e : list) {
+			threads.put(e.getThreadId(), e.getThreadName());
+			out.write(first ? "\n" : ",\n");
+			first = false;
+			String name = e.getPhaseName();
+			if (e.getMethod() != null)
+				name += " " + e.getMethod().getSignature();
+			out.write("{\"name\": " + PhaseStatistics.jsonString(name)
+					+ ", \"cat\": \""
+					+ (e.getKind() == PhaseEvent.Kind.PACK ? "pack" : "transform")
+					+ "\", \"ph\": \"X\", \"pid\": 1, \"tid\": " + e.getThreadId()
+					+ ", \"ts\": " + micros(e.getStartTime()) + ", \"dur\": "
+					+ micros(e.getWallTime()) + ", \"args\": {\"cpuTime\": "
+					+ e.getCpuTime() + ", \"allocatedBytes\": "
+					+ e.getAllocatedBytes() + ", \"items\": " + e.getItems()
+					+ "}}");
+		}
+		for (Map.Entry<Long, String> t : threads.entrySet()) {
+			out.write(first ? "\n" : ",\n");
+			first = false;
+			out.write("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": "
+					+ t.getKey() + ", \"args\": {\"name\": "
+					+ PhaseStatistics.jsonString(t.getValue()) + "}}");
+		}
+		out.write("\n]}\n");
+		out.flush();
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%d.%03d", nanos / 1000, nanos % 1000);
+	}
+}
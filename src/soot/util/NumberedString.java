@@ -20,26 +20,113 @@
 package soot.util;
 
 /** A class that assigns integers to java.lang.Strings.
+ *
+ * The characters are not kept as a java.lang.String, but encoded as UTF-8
+ * in a byte array that is usually shared with many other strings of the
+ * same {@link StringNumberer}. {@link #getString()} decodes them on
+ * every call.
  *
  * @author Ondrej Lhotak
  */
 
 public final class NumberedString implements Numberable {
     public NumberedString( String s ) {
-        this.s = s;
+        this.data = new byte[encodedLength(s)];
+        this.offset = 0;
+        this.length = data.length;
+        encode(s, data, 0);
+    }
+    NumberedString( byte[] data, int offset, int length ) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
     }
     public final String toString() {
         return getString();
     }
     public final String getString() {
         if( number == 0 ) throw new RuntimeException( "oops" );
-        return s;
+        return decode(data, offset, length);
     }
     public final void setNumber( int number ) { 
         this.number = number;
     }
     public final int getNumber() { return number; }
 
-    final private String s;
+    /** Returns true if this string is encoded by the given bytes. */
+    final boolean contentEquals( byte[] bytes, int len ) {
+        if( len != length ) return false;
+        for( int i = 0; i < len; i++ )
+            if( bytes[i] != data[offset + i] ) return false;
+        return true;
+    }
+
+    final int hashBytes() {
+        return hash(data, offset, length);
+    }
+
+    static int hash( byte[] bytes, int off, int len ) {
+        int h = 0;
+        for( int i = off; i < off + len; i++ )
+            h = 31 * h + bytes[i];
+        // spread the bits for power-of-two tables
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /** Returns the number of bytes needed to encode the given characters. */
+    static int encodedLength( CharSequence s ) {
+        int len = 0;
+        for( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt(i);
+            len += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return len;
+    }
+
+    /**
+     * Encodes the given characters into the given array, one to three bytes
+     * per UTF-16 char. Surrogates are encoded separately, so any char
+     * sequence can be stored.
+     */
+    static int encode( CharSequence s, byte[] out, int pos ) {
+        for( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt(i);
+            if( c < 0x80 ) {
+                out[pos++] = (byte) c;
+            } else if( c < 0x800 ) {
+                out[pos++] = (byte) (0xc0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                out[pos++] = (byte) (0xe0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return pos;
+    }
+
+    static String decode( byte[] in, int off, int len ) {
+        char[] chars = new char[len];
+        int n = 0;
+        int end = off + len;
+        for( int i = off; i < end; ) {
+            int b = in[i++] & 0xff;
+            if( b < 0x80 ) {
+                chars[n++] = (char) b;
+            } else if( b < 0xe0 ) {
+                chars[n++] = (char) (((b & 0x1f) << 6) | (in[i++] & 0x3f));
+            } else {
+                chars[n++] = (char) (((b & 0x0f) << 12) | ((in[i++] & 0x3f) << 6) | (in[i++] & 0x3f));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    final private byte[] data;
+    final private int offset;
+    final private int length;
     private int number;
 }
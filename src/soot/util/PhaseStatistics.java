@@ -0,0 +1,270 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import soot.PhaseEvent;
+import soot.PhaseListener;
+import soot.SootMethod;
+
+/**
+ * Sums up the measurements of {@link soot.PhaseMetrics} per phase, per
+ * method, and per phase and method. The per-phase figures of a pack
+ * include its transforms, and those of a transform include any phases it
+ * triggers, such as jb when it retrieves a body. Method totals only count
+ * body transforms.
+ *
+ * Events may be reported by several threads at once. They are only added
+ * to counters kept by phase name and method; the names shown in the
+ * output are built when the statistics are read.
+ */
+public class PhaseStatistics implements PhaseListener {
+	/** The summed measurements of a number of events. */
+	public static class Stats {
+		private final String phaseName;
+		private final SootMethod method;
+		private int count;
+		private long wallTime;
+		private long cpuTime;
+		private long allocatedBytes;
+		private long items;
+
+		Stats(String phaseName, SootMethod method) {
+			this.phaseName = phaseName;
+			this.method = method;
+		}
+
+		synchronized void add(PhaseEvent e) {
+			count++;
+			wallTime += e.getWallTime();
+			cpuTime = e.getCpuTime() < 0 || cpuTime < 0 ? -1 : cpuTime
+					+ e.getCpuTime();
+			allocatedBytes = e.getAllocatedBytes() < 0 || allocatedBytes < 0 ? -1
+					: allocatedBytes + e.getAllocatedBytes();
+			if (e.getItems() > 0)
+				items += e.getItems();
+		}
+
+		/**
+		 * Returns the phase name, the method signature, or both separated by
+		 * a space.
+		 */
+		public String getName() {
+			if (method == null)
+				return phaseName;
+			if (phaseName == null)
+				return method.getSignature();
+			return phaseName + " " + method.getSignature();
+		}
+
+		/** Returns the phase name, or null for method totals. */
+		public String getPhaseName() {
+			return phaseName;
+		}
+
+		/** Returns the method, or null for phase totals. */
+		public SootMethod getMethod() {
+			return method;
+		}
+
+		public synchronized int getCount() {
+			return count;
+		}
+
+		public synchronized long getWallTime() {
+			return wallTime;
+		}
+
+		public synchronized long getCpuTime() {
+			return cpuTime;
+		}
+
+		public synchronized long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		public synchronized long getItems() {
+			return items;
+		}
+	}
+
+	private static final Comparator<Stats> BY_WALL_TIME = new Comparator<Stats>() {
+		public int compare(Stats a, Stats b) {
+			long ta = a.getWallTime(), tb = b.getWallTime();
+			return ta < tb ? 1 : ta > tb ? -1 : a.getName().compareTo(b.getName());
+		}
+	};
+
+	private final ConcurrentMap<String, Stats> phases = new ConcurrentHashMap<String, Stats>();
+	private final ConcurrentMap<SootMethod, Stats> methods = new ConcurrentHashMap<SootMethod, Stats>();
+	/** The statistics of each method, by phase name */
+	private final ConcurrentMap<SootMethod, ConcurrentMap<String, Stats>> methodPhases = new ConcurrentHashMap<SootMethod, ConcurrentMap<String, Stats>>();
+
+	public void phaseFinished(PhaseEvent e) {
+		String phaseName = e.getPhaseName();
+		get(phases, phaseName, phaseName, null).add(e);
+		SootMethod m = e.getMethod();
+		if (m != null && e.getKind() == PhaseEvent.Kind.TRANSFORM) {
+			get(methods, m, null, m).add(e);
+			ConcurrentMap<String, Stats> byPhase = methodPhases.get(m);
+			if (byPhase == null) {
+				ConcurrentMap<String, Stats> newMap = new ConcurrentHashMap<String, Stats>(4);
+				byPhase = methodPhases.putIfAbsent(m, newMap);
+				if (byPhase == null)
+					byPhase = newMap;
+			}
+			get(byPhase, phaseName, phaseName, m).add(e);
+		}
+	}
+
+	private static <K> Stats get(ConcurrentMap<K, Stats> map, K key,
+			String phaseName, SootMethod method) {
+		Stats s = map.get(key);
+		if (s == null) {
+			Stats newStats = new Stats(phaseName, method);
+			s = map.putIfAbsent(key, newStats);
+			if (s == null)
+				s = newStats;
+		}
+		return s;
+	}
+
+	/** Returns the statistics of all phases, most expensive first. */
+	public List<Stats> getPhases() {
+		return sorted(phases.values(), Integer.MAX_VALUE);
+	}
+
+	/** Returns the statistics of the n most expensive methods. */
+	public List<Stats> getMethods(int n) {
+		return sorted(methods.values(), n);
+	}
+
+	/**
+	 * Returns the statistics of the n most expensive combinations of a
+	 * transform and a method. Their names are the phase name and the method
+	 * signature, separated by a space.
+	 */
+	public List<Stats> getHotspots(int n) {
+		List<Stats> stats = new ArrayList<Stats>();
+		for (Map<String, Stats> byPhase : methodPhases.values())
+			stats.addAll(byPhase.values());
+		return sorted(stats, n);
+	}
+
+	private static List<Stats> sorted(Collection<Stats> stats, int n) {
+		List<Stats> ret = new ArrayList<Stats>(stats);
+		Collections.sort(ret, BY_WALL_TIME);
+		return ret.size() > n ? ret.subList(0, n) : ret;
+	}
+
+	/** Prints a table of all phases, most expensive first. */
+	public void printSummary(PrintStream out) {
+		out.println("Time measurements per phase");
+		out.println();
+		out.println("   wall(ms)    cpu(ms)  alloc(MB)    count  phase");
+		for (Stats s : getPhases()) {
+			long cpuTime = s.getCpuTime(), allocatedBytes = s.getAllocatedBytes();
+			out.println(String.format("%11d%11s%11s%9d  %s",
+					s.getWallTime() / 1000000L,
+					cpuTime < 0 ? "-" : Long.toString(cpuTime / 1000000L),
+					allocatedBytes < 0 ? "-" : Long
+							.toString(allocatedBytes >> 20), s.getCount(), s.getName()));
+		}
+	}
+
+	/**
+	 * Writes all phases and the maxMethods most expensive methods and
+	 * hotspots as JSON. Times are in nanoseconds.
+	 */
+	public void writeJSON(Writer out, int maxMethods) throws IOException {
+		out.write("{\n  \"phases\": [");
+		writeStats(out, getPhases(), "phase");
+		out.write("],\n  \"methods\": [");
+		writeStats(out, getMethods(maxMethods), "method");
+		out.write("],\n  \"hotspots\": [");
+		writeStats(out, getHotspots(maxMethods), null);
+		out.write("]\n}\n");
+		out.flush();
+	}
+
+	private static void writeStats(Writer out, List<Stats> stats, String key)
+			throws IOException {
+		boolean first = true;
+		for (Stats s : stats) {
+			out.write(first ? "\n    {" : ",\n    {");
+			first = false;
+			if (key != null) {
+				out.write(jsonString(key) + ": " + jsonString(s.getName()));
+			} else {
+				out.write("\"phase\": " + jsonString(s.getPhaseName())
+						+ ", \"method\": " + jsonString(s.getMethod().getSignature()));
+			}
+			out.write(", \"count\": " + s.getCount() + ", \"wallTime\": "
+					+ s.getWallTime() + ", \"cpuTime\": " + s.getCpuTime()
+					+ ", \"allocatedBytes\": " + s.getAllocatedBytes()
+					+ ", \"items\": " + s.getItems() + "}");
+		}
+		if (!first)
+			out.write("\n  ");
+	}
+
+	/** Returns s as a quoted JSON string. */
+	static String jsonString(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					sb.append(String.format("\\u%04x", (int) c));
+				else
+					sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -18,28 +18,97 @@
  */
 
 package soot.util;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import heros.ThreadSafe;
 
 /** A class that numbers strings, so they can be placed in bitsets.
+ *
+ * The numbered strings are stored in a compact arena: their characters are
+ * encoded into large shared byte arrays, and an open-addressing table of
+ * string numbers replaces a map from java.lang.String keys. Strings can be
+ * looked up from any CharSequence, e.g. a StringBuilder, without first
+ * creating a java.lang.String.
  *
  * @author Ondrej Lhotak
  */
 
 @ThreadSafe
 public class StringNumberer extends ArrayNumberer<NumberedString> {
-    private Map<String, NumberedString> stringToNumbered =
-    		new HashMap<String, NumberedString>(1024);
-    
-    public synchronized NumberedString findOrAdd( String s ) {
-    	NumberedString numStr = new NumberedString(s);
-        NumberedString ret = stringToNumbered.putIfAbsent(s, numStr);
-        if( ret == null ) {
-            add(numStr);
-            return numStr;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** The arena chunk new strings are appended to. */
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkPos = 0;
+
+    /** Open-addressing hash table of string numbers; 0 marks a free slot. */
+    private int[] table = new int[2048];
+    /** The hash of every string, indexed by its number. */
+    private int[] hashes = new int[1024];
+
+    private byte[] scratch = new byte[256];
+
+    public NumberedString findOrAdd( String s ) {
+        return findOrAdd((CharSequence) s);
+    }
+
+    public synchronized NumberedString findOrAdd( CharSequence s ) {
+        int len = NumberedString.encodedLength(s);
+        if( len > scratch.length )
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        NumberedString.encode(s, scratch, 0);
+        int hash = NumberedString.hash(scratch, 0, len);
+
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for( int n; (n = table[slot]) != 0; slot = (slot + 1) & mask ) {
+            if( hashes[n] == hash ) {
+                NumberedString ret = get((long) n);
+                if( ret.contentEquals(scratch, len) )
+                    return ret;
+            }
         }
+
+        NumberedString numStr = store(scratch, len);
+        add(numStr);
+        int number = numStr.getNumber();
+        if( number >= hashes.length )
+            hashes = Arrays.copyOf(hashes, Math.max(number + 1, hashes.length * 2));
+        hashes[number] = hash;
+        table[slot] = number;
+        if( size() * 2 > table.length )
+            rehash(table.length * 2);
+        return numStr;
+    }
+
+    /** Copies the given bytes into the arena and returns a string for them. */
+    private NumberedString store( byte[] bytes, int len ) {
+        if( len > CHUNK_SIZE / 4 ) {
+            // large strings get their own array, so that chunks are not wasted
+            byte[] own = Arrays.copyOf(bytes, len);
+            return new NumberedString(own, 0, len);
+        }
+        if( chunkPos + len > CHUNK_SIZE ) {
+            chunk = new byte[CHUNK_SIZE];
+            chunkPos = 0;
+        }
+        System.arraycopy(bytes, 0, chunk, chunkPos, len);
+        NumberedString ret = new NumberedString(chunk, chunkPos, len);
+        chunkPos += len;
         return ret;
     }
+
+    private void rehash( int newSize ) {
+        int[] newTable = new int[newSize];
+        int mask = newSize - 1;
+        for( int i = 0; i < table.length; i++ ) {
+            int n = table[i];
+            if( n == 0 ) continue;
+            int slot = hashes[n] & mask;
+            while( newTable[slot] != 0 )
+                slot = (slot + 1) & mask;
+            newTable[slot] = n;
+        }
+        table = newTable;
+    }
 }
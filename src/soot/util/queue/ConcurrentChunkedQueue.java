@@ -0,0 +1,70 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.util.queue;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** A variant of {@link ChunkedQueue} that can be read while it is being
+ * written. Any number of threads may add objects, and adding never waits
+ * for readers, as the queue is unbounded. Each
+ * {@link ConcurrentQueueReader} must only be used by one thread at a
+ * time, but different readers of the same queue may run on different
+ * threads, concurrently with the writers.
+ *
+ * As with {@link ChunkedQueue}, every reader receives all objects added
+ * after it was created, and only objects not yet read by all readers are
+ * kept.
+ */
+public final class ConcurrentChunkedQueue<E>
+{ 
+    private static final int LENGTH = 60;
+    private AtomicReferenceArray<Object> q;
+    private int index;
+    public ConcurrentChunkedQueue() {
+        q = new AtomicReferenceArray<Object>(LENGTH);
+        index = 0;
+    }
+    /** Add an object to the queue. */
+    public synchronized void add( E o ) {
+        append( o );
+    }
+    /** Add all given objects to the queue, in the order of the collection. */
+    public synchronized void addAll( Collection<? extends E> c ) {
+        for( E o : c )
+            append( o );
+    }
+    private void append( Object o ) {
+        if( o == null ) o = ChunkedQueue.NULL_CONST;
+        if( index == LENGTH - 1 ) {
+            AtomicReferenceArray<Object> temp = new AtomicReferenceArray<Object>(LENGTH);
+            q.set(index, temp);
+            q = temp;
+            index = 0;
+        }
+        // Publishing the slot last makes the object visible to readers
+        // only once it is complete.
+        q.set(index++, o);
+    }
+    /** Create reader which will read objects from the queue. */
+    public synchronized ConcurrentQueueReader<E> reader() {
+        return new ConcurrentQueueReader<E>( q, index );
+    }
+}
@@ -0,0 +1,82 @@
+/* Soot - a J*va Optimization Framework
+ * Copyright (C) 1997-2016 Raja Vallee-Rai and others
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place - Suite 330,
+ * Boston, MA 02111-1307, USA.
+ */
+
+package soot.util.queue;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Reads the objects of a {@link ConcurrentChunkedQueue}. A reader must
+ * only be used by one thread at a time; use {@link #clone()} to hand out
+ * further readers to other threads.
+ */
+public class ConcurrentQueueReader<E> implements java.util.Iterator<E>
+{ 
+    private AtomicReferenceArray<Object> q;
+    private int index;
+    ConcurrentQueueReader( AtomicReferenceArray<Object> q, int index ) {
+        this.q = q;
+        this.index = index;
+    }
+    /** Returns (and removes) the next object in the queue. Throws
+     * NoSuchElementException if there is none at the moment. */
+    @SuppressWarnings("unchecked")
+	public final E next() {
+        if( !hasNext() ) throw new NoSuchElementException();
+        Object ret = q.get(index++);
+        if( ret == ChunkedQueue.NULL_CONST ) ret = null;
+        return (E) ret;
+    }
+
+    /** Returns true iff there is currently another object in the queue. */
+    @SuppressWarnings("unchecked")
+	public final boolean hasNext() {
+        Object o = q.get(index);
+        if( o == null ) return false;
+        if( index == q.length() - 1 ) {
+            q = (AtomicReferenceArray<Object>) o;
+            index = 0;
+            if( q.get(index) == null ) return false;
+        }
+        return true;
+    }
+
+    /** Moves up to length objects that are currently in the queue into
+     * buffer, starting at offset, and returns how many were moved. */
+    public final int drainTo( E[] buffer, int offset, int length ) {
+        int n = 0;
+        while( n < length && hasNext() )
+            buffer[offset + n++] = next();
+        return n;
+    }
+
+    /** Moves as many objects as fit and are currently in the queue into
+     * buffer, and returns how many were moved. */
+    public final int drainTo( E[] buffer ) {
+        return drainTo( buffer, 0, buffer.length );
+    }
+
+    public final void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public final ConcurrentQueueReader<E> clone() {
+        return new ConcurrentQueueReader<E>( q, index );
+    }
+}
@@ -64,6 +64,21 @@ public class QueueReader<E> implements java.util.Iterator<E>
         return true;
     }
 
+    /** Moves up to length objects that are currently in the queue into
+     * buffer, starting at offset, and returns how many were moved. */
+    public final int drainTo( E[] buffer, int offset, int length ) {
+        int n = 0;
+        while( n < length && hasNext() )
+            buffer[offset + n++] = next();
+        return n;
+    }
+
+    /** Moves as many objects as fit and are currently in the queue into
+     * buffer, and returns how many were moved. */
+    public final int drainTo( E[] buffer ) {
+        return drainTo( buffer, 0, buffer.length );
+    }
+
     public final void remove() {
         throw new UnsupportedOperationException();
     }
@@ -0,0 +1,145 @@
+package soot;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.options.Options;
+
+public class CachingMethodSourceTest {
+
+	private File cacheDir;
+	private SootMethod method;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		cacheDir = File.createTempFile("bodycache", "");
+		cacheDir.delete();
+		Options.v().set_body_cache_dir(cacheDir.getPath());
+		Options.v().set_allow_phantom_refs(true);
+		// Everything the body refers to is in the scene already
+		Options.v().set_soot_classpath(cacheDir.getParent());
+
+		SootClass object = new SootClass("java.lang.Object");
+		Scene.v().addClass(object);
+		object.setResolvingLevel(SootClass.HIERARCHY);
+		SootClass string = new SootClass("java.lang.String");
+		string.setSuperclass(object);
+		Scene.v().addClass(string);
+		string.setResolvingLevel(SootClass.HIERARCHY);
+		SootClass sc = new SootClass("Foo", Modifier.PUBLIC);
+		sc.setSuperclass(object);
+		Scene.v().addClass(sc);
+		sc.setResolvingLevel(SootClass.BODIES);
+		method = new SootMethod("m", Collections.<Type> singletonList(IntType.v()),
+				IntType.v(), Modifier.PUBLIC | Modifier.STATIC);
+		sc.addMethod(method);
+	}
+
+	@After
+	public void tearDown() {
+		deleteRecursively(cacheDir);
+	}
+
+	private static void deleteRecursively(File f) {
+		File[] children = f.listFiles();
+		if (children != null)
+			for (File c : children)
+				deleteRecursively(c);
+		f.delete();
+	}
+
+	/** Builds a body with a branch and a non-ASCII string constant. */
+	private static JimpleBody newBody(SootMethod m) {
+		Jimple j = Jimple.v();
+		JimpleBody b = j.newBody(m);
+		Local p = j.newLocal("i0", IntType.v());
+		Local s = j.newLocal("r0", RefType.v("java.lang.String"));
+		Local t = j.newLocal("i1", IntType.v());
+		b.getLocals().add(p);
+		b.getLocals().add(s);
+		b.getLocals().add(t);
+		Stmt ret = j.newReturnStmt(p);
+		b.getUnits().add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+		b.getUnits().add(j.newAssignStmt(s, StringConstant.v("gr\u00fc\u00dfe \u4e16\u754c")));
+		b.getUnits().add(j.newIfStmt(j.newGtExpr(p, IntConstant.v(10)), ret));
+		b.getUnits().add(j.newAssignStmt(t, j.newAddExpr(p, IntConstant.v(1))));
+		b.getUnits().add(j.newAssignStmt(p, t));
+		b.getUnits().add(ret);
+		return b;
+	}
+
+	private static String print(Body b) {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		Printer.v().printTo(b, pw);
+		pw.flush();
+		return sw.toString();
+	}
+
+	private static List<String> localNames(Body b) {
+		List<String> names = new ArrayList<String>();
+		for (Local l : b.getLocals())
+			names.add(l.getName());
+		return names;
+	}
+
+	@Test
+	public void testCachedBodyEqualsFreshBody() {
+		final JimpleBody fresh = newBody(method);
+		File classCacheDir = CachingMethodSource.getClassCacheDir(new byte[] { 1, 2, 3 });
+
+		// The first request builds the body and stores it
+		Body built = new CachingMethodSource(new MethodSource() {
+			public Body getBody(SootMethod m, String phaseName) {
+				return fresh;
+			}
+		}, classCacheDir).getBody(method, "jb");
+		Assert.assertSame(fresh, built);
+		Assert.assertEquals(1, classCacheDir.list().length);
+
+		// The second one must not consult the wrapped source
+		Body cached = new CachingMethodSource(new MethodSource() {
+			public Body getBody(SootMethod m, String phaseName) {
+				throw new AssertionError("Body was not taken from the cache");
+			}
+		}, classCacheDir).getBody(method, "jb");
+		Assert.assertNotSame(fresh, cached);
+		Assert.assertSame(method, cached.getMethod());
+		Assert.assertEquals(print(fresh), print(cached));
+		// The printer groups the locals by type, but the order is kept
+		Assert.assertEquals(localNames(fresh), localNames(cached));
+	}
+
+	@Test
+	public void testConfigurationKey() {
+		byte[] classBytes = new byte[] { 1, 2, 3 };
+		File dir = CachingMethodSource.getClassCacheDir(classBytes);
+		Assert.assertEquals(dir, CachingMethodSource.getClassCacheDir(classBytes));
+
+		Options.v().set_omit_excepting_unit_edges(true);
+		File omitDir = CachingMethodSource.getClassCacheDir(classBytes);
+		Assert.assertFalse(dir.equals(omitDir));
+
+		Options.v().set_throw_analysis(Options.throw_analysis_pedantic);
+		Assert.assertFalse(omitDir.equals(CachingMethodSource.getClassCacheDir(classBytes)));
+
+		File pedanticDir = CachingMethodSource.getClassCacheDir(classBytes);
+		PhaseOptions.v().setPhaseOption("jop.cpf", "enabled:false");
+		Assert.assertFalse(pedanticDir.equals(CachingMethodSource.getClassCacheDir(classBytes)));
+	}
+}
@@ -0,0 +1,225 @@
+package soot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassPathIndexTest {
+
+	private final List<File> files = new ArrayList<File>();
+
+	@Before
+	public void setUp() {
+		files.clear();
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : files)
+			f.delete();
+	}
+
+	private File newTempFile(String suffix) throws IOException {
+		File f = File.createTempFile("index", suffix);
+		files.add(f);
+		return f;
+	}
+
+	private static byte[] contents(String name) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			sb.append(name).append(' ').append(i).append('\n');
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void putStored(ZipOutputStream out, String name, byte[] data) throws IOException {
+		ZipEntry e = new ZipEntry(name);
+		e.setMethod(ZipEntry.STORED);
+		e.setSize(data.length);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		e.setCrc(crc.getValue());
+		out.putNextEntry(e);
+		out.write(data);
+		out.closeEntry();
+	}
+
+	private static void putDeflated(ZipOutputStream out, String name, byte[] data) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		out.write(data);
+		out.closeEntry();
+	}
+
+	/** Writes an archive with stored and deflated entries and a directory. */
+	private File writeArchive(String prefix) throws IOException {
+		File f = newTempFile(".jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f));
+		try {
+			out.putNextEntry(new ZipEntry("a/"));
+			out.closeEntry();
+			putStored(out, "a/Stored.class", contents(prefix + "stored"));
+			putDeflated(out, "a/Deflated.class", contents(prefix + "deflated"));
+			putDeflated(out, "a/Gr\u00fc\u00dfe.class", contents(prefix + "utf8"));
+			putStored(out, "a/Empty.class", new byte[0]);
+		} finally {
+			out.close();
+		}
+		return f;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try {
+			byte[] buf = new byte[1024];
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int n;
+			while ((n = in.read(buf)) > 0)
+				out.write(buf, 0, n);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testStoredAndDeflated() throws Exception {
+		File jar = writeArchive("");
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(jar.getPath()), null);
+		index.addArchive(0);
+
+		Assert.assertNull(index.getEntry("a/"));
+		Assert.assertNull(index.getEntry("a/Missing.class"));
+		String[][] expected = { { "a/Stored.class", "stored" },
+				{ "a/Deflated.class", "deflated" }, { "a/Gr\u00fc\u00dfe.class", "utf8" } };
+		for (String[] pair : expected) {
+			ClassPathIndex.ArchiveEntry e = index.getEntry(pair[0]);
+			Assert.assertNotNull(pair[0], e);
+			Assert.assertTrue(e.isMapped());
+			Assert.assertEquals(jar.getPath(), e.getArchivePath());
+			Assert.assertEquals(0, e.getClassPathPosition());
+			Assert.assertArrayEquals(contents(pair[1]), e.read());
+			Assert.assertArrayEquals(contents(pair[1]), readAll(e.open()));
+		}
+		Assert.assertEquals(0, index.getEntry("a/Empty.class").read().length);
+	}
+
+	@Test
+	public void testClassPathOrder() throws Exception {
+		File first = writeArchive("first");
+		File second = writeArchive("second");
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(dir.getPath(), first.getPath(),
+				second.getPath()), null);
+		index.addDirectory(0);
+		index.addArchive(1);
+		index.addArchive(2);
+		Assert.assertEquals(Arrays.asList(0), index.getDirectoryPositions());
+		ClassPathIndex.ArchiveEntry e = index.getEntry("a/Deflated.class");
+		Assert.assertEquals(1, e.getClassPathPosition());
+		Assert.assertArrayEquals(contents("firstdeflated"), e.read());
+	}
+
+	@Test
+	public void testZip64FallsBackToZipFile() throws Exception {
+		// More than 65535 entries need a Zip64 end of central directory
+		File jar = newTempFile(".jar");
+		int count = 0x10000 + 10;
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			for (int i = 0; i < count; i++)
+				putStored(out, "p/C" + i + ".class", new byte[] { (byte) i });
+		} finally {
+			out.close();
+		}
+
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(jar.getPath()), null);
+		index.addArchive(0);
+		for (int i : new int[] { 0, 0xffff, count - 1 }) {
+			ClassPathIndex.ArchiveEntry e = index.getEntry("p/C" + i + ".class");
+			Assert.assertNotNull(e);
+			Assert.assertFalse(e.isMapped());
+			Assert.assertEquals(jar.getPath(), e.getArchivePath());
+			ZipFile zf = new ZipFile(e.getArchivePath());
+			try {
+				Assert.assertArrayEquals(new byte[] { (byte) i },
+						readAll(zf.getInputStream(zf.getEntry(e.getName()))));
+			} finally {
+				zf.close();
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnmappedEntryCannotBeRead() throws Exception {
+		File jar = newTempFile(".jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			for (int i = 0; i < 0x10000; i++)
+				putStored(out, "p/C" + i + ".class", new byte[0]);
+		} finally {
+			out.close();
+		}
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(jar.getPath()), null);
+		index.addArchive(0);
+		index.getEntry("p/C0.class").read();
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		File jar = writeArchive("");
+		File cache = newTempFile(".cache");
+		cache.delete();
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(jar.getPath()), cache);
+		index.addArchive(0);
+		index.saveCache(cache);
+		Assert.assertTrue(cache.length() > 0);
+
+		// The cached entries are used while the archive is unchanged
+		long cached = cache.lastModified();
+		index = new ClassPathIndex(Arrays.asList(jar.getPath()), cache);
+		index.addArchive(0);
+		Assert.assertArrayEquals(contents("deflated"), index.getEntry("a/Deflated.class").read());
+		Assert.assertArrayEquals(contents("stored"), index.getEntry("a/Stored.class").read());
+		cache.setLastModified(cached - 10000);
+		index.saveCache(cache);
+		Assert.assertEquals(cached - 10000, cache.lastModified());
+
+		// A changed archive is read again
+		File other = writeArchive("other");
+		Assert.assertTrue(jar.delete());
+		Assert.assertTrue(other.renameTo(jar));
+		jar.setLastModified(jar.lastModified() + 10000);
+		index = new ClassPathIndex(Arrays.asList(jar.getPath()), cache);
+		index.addArchive(0);
+		Assert.assertArrayEquals(contents("otherdeflated"), index.getEntry("a/Deflated.class").read());
+	}
+
+	@Test
+	public void testBrokenCacheIsIgnored() throws Exception {
+		File jar = writeArchive("");
+		File cache = newTempFile(".cache");
+		FileOutputStream out = new FileOutputStream(cache);
+		try {
+			out.write(new byte[] { 1, 2, 3 });
+		} finally {
+			out.close();
+		}
+		ClassPathIndex index = new ClassPathIndex(Arrays.asList(jar.getPath()), cache);
+		index.addArchive(0);
+		Assert.assertArrayEquals(contents("stored"), index.getEntry("a/Stored.class").read());
+	}
+}
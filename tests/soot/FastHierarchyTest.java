@@ -0,0 +1,128 @@
+package soot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FastHierarchyTest {
+
+	private List<SootClass> classes;
+	private List<SootClass> interfaces;
+
+	private static SootClass newClass(String name, int modifiers) {
+		SootClass c = new SootClass(name, modifiers);
+		Scene.v().addClass(c);
+		c.setResolvingLevel(SootClass.HIERARCHY);
+		return c;
+	}
+
+	/**
+	 * Builds a random hierarchy of classes below java.lang.Object and below
+	 * two phantom roots, and of interfaces that extend each other and are
+	 * implemented by some of the classes.
+	 */
+	@Before
+	public void setUp() {
+		G.reset();
+		Random rnd = new Random(11);
+		SootClass object = newClass("java.lang.Object", Modifier.PUBLIC);
+		classes = new ArrayList<SootClass>();
+		classes.add(object);
+		for (int i = 0; i < 2; i++) {
+			SootClass root = newClass("Root" + i, Modifier.PUBLIC);
+			root.setPhantomClass();
+			classes.add(root);
+		}
+		interfaces = new ArrayList<SootClass>();
+		for (int i = 0; i < 30; i++) {
+			SootClass iface = newClass("I" + i, Modifier.PUBLIC | Modifier.INTERFACE | Modifier.ABSTRACT);
+			iface.setSuperclass(object);
+			for (int j = 0; j < i && j < 3; j++) {
+				SootClass superIface = interfaces.get(rnd.nextInt(i));
+				if (!iface.implementsInterface(superIface.getName()))
+					iface.addInterface(superIface);
+			}
+			interfaces.add(iface);
+		}
+		for (int i = 0; i < 200; i++) {
+			SootClass c = newClass("C" + i, Modifier.PUBLIC);
+			c.setSuperclass(classes.get(rnd.nextInt(classes.size())));
+			if (rnd.nextInt(3) == 0)
+				c.addInterface(interfaces.get(rnd.nextInt(interfaces.size())));
+			classes.add(c);
+		}
+	}
+
+	/** The implementation of canStoreClass for an interface parent before the interval search. */
+	private static boolean canStoreByImplementerWalk(FastHierarchy fh, SootClass child, SootClass parent) {
+		for (SootClass impl : fh.getAllImplementersOfInterface(parent))
+			if (impl == child || fh.isSubclass(child, impl))
+				return true;
+		return false;
+	}
+
+	/** Checks the superclass chain and the superinterfaces directly. */
+	private static boolean implementsTransitively(SootClass child, SootClass iface) {
+		for (SootClass c = child; c != null; c = c.hasSuperclass() ? c.getSuperclass() : null)
+			for (SootClass i : c.getInterfaces())
+				if (extendsTransitively(i, iface))
+					return true;
+		return false;
+	}
+
+	private static boolean extendsTransitively(SootClass i, SootClass iface) {
+		if (i == iface)
+			return true;
+		for (SootClass si : i.getInterfaces())
+			if (extendsTransitively(si, iface))
+				return true;
+		return false;
+	}
+
+	@Test
+	public void testInterfaceParentMatchesImplementerWalk() {
+		FastHierarchy fh = new FastHierarchy();
+		int stored = 0;
+		for (SootClass child : classes) {
+			for (SootClass iface : interfaces) {
+				boolean expected = canStoreByImplementerWalk(fh, child, iface);
+				Assert.assertEquals(child + " in " + iface, expected, fh.canStoreClass(child, iface));
+				Assert.assertEquals(child + " in " + iface, implementsTransitively(child, iface), expected);
+				Assert.assertEquals(expected, fh.canStoreType(child.getType(), iface.getType()));
+				if (expected)
+					stored++;
+			}
+		}
+		// The hierarchy is neither trivially empty nor complete
+		Assert.assertTrue(stored > 0);
+		Assert.assertTrue(stored < classes.size() * interfaces.size());
+	}
+
+	@Test
+	public void testPhantomRootsDoNotOverlap() {
+		FastHierarchy fh = new FastHierarchy();
+		for (SootClass child : classes)
+			for (SootClass parent : classes) {
+				boolean expected = false;
+				for (SootClass c = child; c != null; c = c.hasSuperclass() ? c.getSuperclass() : null)
+					if (c == parent)
+						expected = true;
+				Assert.assertEquals(child + " in " + parent, expected, fh.canStoreClass(child, parent));
+			}
+	}
+
+	@Test
+	public void testInterfaceChild() {
+		FastHierarchy fh = new FastHierarchy();
+		SootClass object = Scene.v().getSootClass("java.lang.Object");
+		for (SootClass child : interfaces) {
+			Assert.assertTrue(fh.canStoreClass(child, object));
+			for (SootClass parent : interfaces)
+				Assert.assertEquals(extendsTransitively(child, parent), fh.canStoreClass(child, parent));
+		}
+	}
+}
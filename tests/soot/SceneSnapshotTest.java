@@ -0,0 +1,225 @@
+package soot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.jimple.ReturnStmt;
+import soot.jimple.StringConstant;
+import soot.options.Options;
+import soot.util.StringTools;
+
+public class SceneSnapshotTest {
+
+	/** Needs more than one byte per character in UTF-8, and a surrogate pair. */
+	private static final String TEXT = "gr\u00fc\u00dfe \u4e16\u754c \ud83d\ude00";
+
+	private File dir;
+	private File emptyDir;
+	private File outDir;
+	private File snapshot;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		dir = newTempDir("snapshot");
+		emptyDir = newTempDir("empty");
+		outDir = newTempDir("out");
+		snapshot = File.createTempFile("scene", ".snapshot");
+
+		write(dir, "java.lang.Object", "public class java.lang.Object\n{\n"
+				+ "    public void <init>()\n    {\n"
+				+ "        java.lang.Object r0;\n\n"
+				+ "        r0 := @this: java.lang.Object;\n"
+				+ "        return;\n    }\n}\n");
+		write(dir, "java.lang.String", "public final class java.lang.String extends java.lang.Object\n{\n}\n");
+		write(dir, "I", "public interface I extends java.lang.Object\n{\n"
+				+ "    public abstract java.lang.String text();\n}\n");
+		writeA(TEXT);
+	}
+
+	@After
+	public void tearDown() {
+		deleteRecursively(dir);
+		deleteRecursively(emptyDir);
+		deleteRecursively(outDir);
+		snapshot.delete();
+	}
+
+	private static File newTempDir(String prefix) throws Exception {
+		File f = File.createTempFile(prefix, "");
+		f.delete();
+		f.mkdirs();
+		return f;
+	}
+
+	private static void deleteRecursively(File f) {
+		File[] children = f.listFiles();
+		if (children != null)
+			for (File c : children)
+				deleteRecursively(c);
+		f.delete();
+	}
+
+	private void writeA(String text) throws Exception {
+		write(dir, "A", "public class A extends java.lang.Object implements I\n{\n"
+				+ "    private int[][] counts;\n\n"
+				+ "    public java.lang.String text()\n    {\n"
+				+ "        A r0;\n\n"
+				+ "        r0 := @this: A;\n"
+				+ "        return " + StringTools.getQuotedStringOf(text) + ";\n    }\n}\n");
+	}
+
+	private static void write(File dir, String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	private static String read(File f) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		Reader r = new InputStreamReader(new FileInputStream(f), "UTF-8");
+		try {
+			char[] buf = new char[4096];
+			int len;
+			while ((len = r.read(buf)) > 0)
+				sb.append(buf, 0, len);
+		} finally {
+			r.close();
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Prints all classes of the Scene with the bodies of their concrete
+	 * methods, as far as they are resolved.
+	 */
+	private static Map<String, String> printScene() {
+		Map<String, String> classes = new TreeMap<String, String>();
+		for (SootClass sc : Scene.v().getClasses()) {
+			String key = sc.getName() + " " + sc.resolvingLevel();
+			if (sc.resolvingLevel() < SootClass.SIGNATURES) {
+				classes.put(key, sc.isPhantom() ? "phantom" : "");
+				continue;
+			}
+			if (sc.resolvingLevel() < SootClass.BODIES) {
+				classes.put(key, sc.getFields() + " " + sc.getMethods());
+				continue;
+			}
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			Printer.v().printTo(sc, pw);
+			pw.flush();
+			classes.put(key, sw.toString());
+		}
+		return classes;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		// The basic classes other than Object and String are phantoms
+		Options.v().set_allow_phantom_refs(true);
+		Scene.v().loadNecessaryClasses();
+		Scene.v().loadClassAndSupport("A");
+		Map<String, String> expected = printScene();
+		Assert.assertTrue(expected.get("A 3").contains(StringTools.getQuotedStringOf(TEXT)));
+		new SceneSnapshot().save(snapshot, true);
+
+		// Nothing can be resolved from source anymore
+		G.reset();
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(emptyDir.getPath());
+		Options.v().set_allow_phantom_refs(true);
+		new SceneSnapshot().load(snapshot);
+		Scene.v().loadNecessaryClasses();
+		SootClass a = Scene.v().getSootClass("A");
+		Assert.assertEquals(SootClass.BODIES, a.resolvingLevel());
+		Assert.assertTrue(a.implementsInterface("I"));
+		Assert.assertEquals(expected, printScene());
+		ReturnStmt ret = (ReturnStmt) a.getMethodByName("text").retrieveActiveBody().getUnits().getLast();
+		Assert.assertEquals(StringConstant.v(TEXT), ret.getOp());
+	}
+
+	@Test
+	public void testTypeRoundTrip() throws Exception {
+		SootClass object = new SootClass("java.lang.Object", Modifier.PUBLIC);
+		Scene.v().addClass(object);
+		object.setResolvingLevel(SootClass.HIERARCHY);
+		SootClass c = new SootClass("C", Modifier.PUBLIC);
+		c.setSuperclass(object);
+		Scene.v().addClass(c);
+		c.setResolvingLevel(SootClass.SIGNATURES);
+		List<Type> types = Arrays.<Type> asList(IntType.v(), LongType.v(), BooleanType.v(),
+				NullType.v(), UnknownType.v(), RefType.v("C"),
+				ArrayType.v(IntType.v(), 2), ArrayType.v(RefType.v("C"), 3),
+				ArrayType.v(DoubleType.v(), 1), ArrayType.v(NullType.v(), 1),
+				AnySubType.v(RefType.v("C")));
+		for (int i = 0; i < types.size(); i++)
+			c.addField(new SootField("f" + i, types.get(i)));
+		c.addMethod(new SootMethod("m", Arrays.<Type> asList(ArrayType.v(CharType.v(), 1),
+				ArrayType.v(RefType.v("java.lang.Object"), 2)), ArrayType.v(ByteType.v(), 4),
+				Modifier.PUBLIC | Modifier.ABSTRACT));
+		c.addMethod(new SootMethod("n", Collections.<Type> emptyList(), VoidType.v(),
+				Modifier.PUBLIC | Modifier.ABSTRACT));
+		new SceneSnapshot().save(snapshot, false);
+
+		G.reset();
+		Options.v().set_soot_classpath(emptyDir.getPath());
+		new SceneSnapshot().load(snapshot);
+		SootClass read = Scene.v().getSootClass("C");
+		List<Type> readTypes = new ArrayList<Type>();
+		for (SootField f : read.getFields())
+			readTypes.add(f.getType());
+		Assert.assertEquals(types.toString(), readTypes.toString());
+		for (int i = 0; i < types.size(); i++)
+			Assert.assertEquals(types.get(i).getClass(), readTypes.get(i).getClass());
+		Assert.assertSame(NullType.v(), read.getFieldByName("f3").getType());
+		Assert.assertSame(ArrayType.v(NullType.v(), 1), read.getFieldByName("f9").getType());
+		SootMethod m = read.getMethodByName("m");
+		Assert.assertSame(ArrayType.v(ByteType.v(), 4), m.getReturnType());
+		Assert.assertEquals(Arrays.<Type> asList(ArrayType.v(CharType.v(), 1),
+				ArrayType.v(RefType.v("java.lang.Object"), 2)), m.getParameterTypes());
+		Assert.assertSame(VoidType.v(), read.getMethodByName("n").getReturnType());
+	}
+
+	@Test
+	public void testMainOptions() throws Exception {
+		Main.v().run(new String[] { "-src-prec", "jimple", "-cp", dir.getPath(), "-allow-phantom-refs",
+				"-process-dir", dir.getPath(), "-save-snapshot", snapshot.getPath(),
+				"-f", "n" });
+		Assert.assertTrue(snapshot.length() > 0);
+
+		// The classes come from the snapshot, not from the changed source
+		writeA("changed");
+		G.reset();
+		Main.v().run(new String[] { "-src-prec", "jimple", "-cp", dir.getPath(), "-allow-phantom-refs",
+				"-process-dir", dir.getPath(), "-load-snapshot", snapshot.getPath(),
+				"-f", "J", "-d", outDir.getPath() });
+		String output = read(new File(outDir, "A.jimple"));
+		Assert.assertTrue(output.contains(StringTools.getQuotedStringOf(TEXT)));
+		Assert.assertFalse(output.contains("changed"));
+	}
+}
@@ -0,0 +1,161 @@
+package soot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.options.Options;
+
+public class SootResolverTest {
+
+	private static final int CLASS_COUNT = 40;
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		dir = File.createTempFile("resolver", "");
+		dir.delete();
+		dir.mkdirs();
+
+		write("java.lang.Object", "public class java.lang.Object\n{\n"
+				+ "    public void <init>()\n    {\n"
+				+ "        java.lang.Object r0;\n\n"
+				+ "        r0 := @this: java.lang.Object;\n"
+				+ "        return;\n    }\n}\n");
+		write("A", "public class A extends java.lang.Object\n{\n"
+				+ "    public B make()\n    {\n"
+				+ "        A r0;\n        B r1;\n\n"
+				+ "        r0 := @this: A;\n"
+				+ "        r1 = new B;\n"
+				+ "        return r1;\n    }\n}\n");
+		write("B", "public class B extends A\n{\n}\n");
+		write("D", "public class D extends A\n{\n}\n");
+		for (int i = 0; i < CLASS_COUNT; i++)
+			write("C" + i, "public class C" + i + " extends A\n{\n"
+					+ "    public int f;\n\n"
+					+ "    public int m(int)\n    {\n"
+					+ "        C" + i + " r0;\n        int i0;\n\n"
+					+ "        r0 := @this: C" + i + ";\n"
+					+ "        i0 := @parameter0: int;\n"
+					+ "        return i0;\n    }\n}\n");
+
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		Options.v().set_lazy_resolving(true);
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	private void write(String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	@Test
+	public void testLazyResolution() {
+		SootClass a = SootResolver.v().resolveClass("A", SootClass.BODIES);
+		Assert.assertEquals(SootClass.BODIES, a.resolvingLevel());
+		Assert.assertTrue(a.getSuperclass().resolvingLevel() >= SootClass.HIERARCHY);
+
+		// B is referenced from the body of A but not resolved yet
+		SootClass b = Scene.v().getSootClass("B");
+		Assert.assertEquals(SootClass.DANGLING, b.resolvingLevel());
+
+		// Touching B resolves it as far as needed
+		Assert.assertSame(a, b.getSuperclass());
+		Assert.assertEquals(SootClass.HIERARCHY, b.resolvingLevel());
+		Assert.assertTrue(b.getMethods().isEmpty());
+		Assert.assertEquals(SootClass.SIGNATURES, b.resolvingLevel());
+	}
+
+	@Test
+	public void testHierarchiesSeeLateClasses() {
+		SootClass a = SootResolver.v().resolveClass("A", SootClass.SIGNATURES);
+		// Adding a class to the Scene releases the hierarchies, but D is
+		// known before they are built
+		SootClass d = SootResolver.v().makeClassRef("D");
+		FastHierarchy fh = Scene.v().getOrMakeFastHierarchy();
+		Hierarchy h = Scene.v().getActiveHierarchy();
+		Assert.assertFalse(fh.getSubclassesOf(a).contains(d));
+		Assert.assertFalse(h.getDirectSubclassesOf(a).contains(d));
+
+		Assert.assertEquals(SootClass.DANGLING, d.resolvingLevel());
+		Assert.assertSame(a, d.getSuperclass());
+		Assert.assertFalse(Scene.v().hasActiveHierarchy());
+		Assert.assertTrue(Scene.v().hasFastHierarchy());
+
+		FastHierarchy newFh = Scene.v().getFastHierarchy();
+		Assert.assertNotSame(fh, newFh);
+		Assert.assertTrue(newFh.getSubclassesOf(a).contains(d));
+		Assert.assertTrue(newFh.canStoreType(d.getType(), a.getType()));
+		Assert.assertTrue(Scene.v().getActiveHierarchy().getDirectSubclassesOf(a).contains(d));
+
+		// Nothing joined the hierarchy since, so it is kept
+		Assert.assertSame(newFh, Scene.v().getFastHierarchy());
+	}
+
+	@Test
+	public void testConcurrentResolution() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 8; t++) {
+				final List<Integer> order = new ArrayList<Integer>();
+				for (int i = 0; i < CLASS_COUNT; i++)
+					order.add(i);
+				Collections.shuffle(order, new java.util.Random(t));
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() {
+						for (int i : order) {
+							SootClass c = Scene.v().loadClass("C" + i, SootClass.HIERARCHY);
+							// Resolves the signatures on demand
+							Assert.assertEquals(1, c.getFields().size());
+							Assert.assertEquals(1, c.getMethods().size());
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> f : futures)
+				f.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		SootClass a = Scene.v().getSootClass("A");
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			SootClass c = Scene.v().getSootClass("C" + i);
+			Assert.assertEquals(SootClass.SIGNATURES, c.resolvingLevel());
+			Assert.assertSame(a, c.getSuperclass());
+			Assert.assertTrue(c.declaresMethod("int m(int)"));
+			Assert.assertEquals(1, Collections.frequency(Scene.v().getClasses(), c));
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package soot.asm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import soot.G;
+import soot.PhaseOptions;
+import soot.Printer;
+import soot.Scene;
+import soot.SootClass;
+import soot.options.Options;
+
+public class AsmMethodSourceTest {
+
+	/*
+	 * The bodies of the target methods, as they were converted before the
+	 * per-instruction state of AsmMethodSource moved into arrays. Blank lines
+	 * and the indentation of the class are left out.
+	 */
+	private static final String TRY_CATCH = "public int tryCatch(java.lang.Object)\n"
+			+ "{\n"
+			+ "    Target r0;\n"
+			+ "    boolean z0;\n"
+			+ "    byte b0;\n"
+			+ "    java.lang.NullPointerException $r1, r2;\n"
+			+ "    java.lang.Object r3;\n"
+			+ "    java.lang.Throwable $r4, r5;\n"
+			+ "    r0 := @this: Target;\n"
+			+ "    r3 := @parameter0: java.lang.Object;\n"
+			+ "    z0 = 0;\n"
+			+ " label1:\n"
+			+ "    virtualinvoke r3.<java.lang.Object: void notify()>();\n"
+			+ "    b0 = 1;\n"
+			+ " label2:\n"
+			+ "    goto label5;\n"
+			+ " label3:\n"
+			+ "    $r1 := @caughtexception;\n"
+			+ "    r2 = $r1;\n"
+			+ "    b0 = -1;\n"
+			+ "    goto label5;\n"
+			+ " label4:\n"
+			+ "    $r4 := @caughtexception;\n"
+			+ "    r5 = $r4;\n"
+			+ "    throw r5;\n"
+			+ " label5:\n"
+			+ "    return b0;\n"
+			+ "    catch java.lang.NullPointerException from label1 to label2 with label3;\n"
+			+ "    catch java.lang.Throwable from label1 to label2 with label4;\n"
+			+ "}\n";
+
+	private static final String SWITCHES = "public static int switches(int)\n"
+			+ "{\n"
+			+ "    int i0;\n"
+			+ "    short $s1;\n"
+			+ "    i0 := @parameter0: int;\n"
+			+ "    tableswitch(i0)\n"
+			+ "    {\n"
+			+ "        case 0: goto label1;\n"
+			+ "        case 1: goto label2;\n"
+			+ "        case 2: goto label3;\n"
+			+ "        default: goto label4;\n"
+			+ "    };\n"
+			+ " label1:\n"
+			+ "    $s1 = 10;\n"
+			+ "    goto label9;\n"
+			+ " label2:\n"
+			+ "    $s1 = 20;\n"
+			+ "    goto label9;\n"
+			+ " label3:\n"
+			+ "    $s1 = 30;\n"
+			+ "    goto label9;\n"
+			+ " label4:\n"
+			+ "    lookupswitch(i0)\n"
+			+ "    {\n"
+			+ "        case -5: goto label5;\n"
+			+ "        case 100: goto label6;\n"
+			+ "        case 1000: goto label7;\n"
+			+ "        default: goto label8;\n"
+			+ "    };\n"
+			+ " label5:\n"
+			+ "    $s1 = 1000;\n"
+			+ "    goto label9;\n"
+			+ " label6:\n"
+			+ "    $s1 = 1001;\n"
+			+ "    goto label9;\n"
+			+ " label7:\n"
+			+ "    $s1 = 1002;\n"
+			+ "    goto label9;\n"
+			+ " label8:\n"
+			+ "    $s1 = -1;\n"
+			+ " label9:\n"
+			+ "    return $s1;\n"
+			+ "}\n";
+
+	private static final String WIDE = "public static double wide(long, double, int)\n"
+			+ "{\n"
+			+ "    double d0, $d1, d2, $d3, $d4;\n"
+			+ "    int i0;\n"
+			+ "    long l1, $l2, l3;\n"
+			+ "    l1 := @parameter0: long;\n"
+			+ "    d0 := @parameter1: double;\n"
+			+ "    i0 := @parameter2: int;\n"
+			+ "    $l2 = (long) 2;\n"
+			+ "    l3 = l1 * $l2;\n"
+			+ "    $d1 = (double) l3;\n"
+			+ "    d2 = d0 + $d1;\n"
+			+ "    if i0 <= 0 goto label1;\n"
+			+ "    $d3 = d2;\n"
+			+ "    goto label2;\n"
+			+ " label1:\n"
+			+ "    $d3 = (double) l3;\n"
+			+ " label2:\n"
+			+ "    $d4 = $d3 + $d3;\n"
+			+ "    return $d4;\n"
+			+ "}\n";
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("asm", "");
+		dir.delete();
+		dir.mkdirs();
+		FileOutputStream out = new FileOutputStream(new File(dir, "Target.class"));
+		try {
+			out.write(targetClass());
+		} finally {
+			out.close();
+		}
+
+		G.reset();
+		Options.v().set_src_prec(Options.src_prec_only_class);
+		Options.v().set_soot_classpath(dir.getPath());
+		// The throw analysis of jb needs the basic classes, phantom ones will do
+		Options.v().set_allow_phantom_refs(true);
+		// Local names would otherwise depend on identity hash codes
+		PhaseOptions.v().setPhaseOption("jb", "stabilize-local-names:true");
+		Scene.v().addBasicClass("Target", SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	/**
+	 * Writes the bytecode of the target class directly, so it does not depend
+	 * on the compiler the tests are built with.
+	 */
+	private static byte[] targetClass() {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "Target", null,
+				"java/lang/Object", null);
+
+		// A try block with a typed handler and a catch-all handler
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "tryCatch", "(Ljava/lang/Object;)I",
+				null, null);
+		mv.visitCode();
+		Label start = new Label(), end = new Label(), npe = new Label(), any = new Label(),
+				ret = new Label();
+		mv.visitTryCatchBlock(start, end, npe, "java/lang/NullPointerException");
+		mv.visitTryCatchBlock(start, end, any, null);
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitVarInsn(Opcodes.ISTORE, 2);
+		mv.visitLabel(start);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "notify", "()V", false);
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitVarInsn(Opcodes.ISTORE, 2);
+		mv.visitLabel(end);
+		mv.visitJumpInsn(Opcodes.GOTO, ret);
+		mv.visitLabel(npe);
+		mv.visitVarInsn(Opcodes.ASTORE, 3);
+		mv.visitInsn(Opcodes.ICONST_M1);
+		mv.visitVarInsn(Opcodes.ISTORE, 2);
+		mv.visitJumpInsn(Opcodes.GOTO, ret);
+		mv.visitLabel(any);
+		mv.visitVarInsn(Opcodes.ASTORE, 3);
+		mv.visitVarInsn(Opcodes.ALOAD, 3);
+		mv.visitInsn(Opcodes.ATHROW);
+		mv.visitLabel(ret);
+		mv.visitVarInsn(Opcodes.ILOAD, 2);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// A table switch and a lookup switch, whose cases leave their
+		// results on the stack for a shared return
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "switches", "(I)I", null, null);
+		mv.visitCode();
+		Label[] table = { new Label(), new Label(), new Label() };
+		Label lookup = new Label(), join = new Label();
+		Label[] keys = { new Label(), new Label(), new Label() };
+		Label none = new Label();
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitTableSwitchInsn(0, 2, lookup, table);
+		for (int i = 0; i < table.length; i++) {
+			mv.visitLabel(table[i]);
+			mv.visitIntInsn(Opcodes.BIPUSH, 10 * (i + 1));
+			mv.visitJumpInsn(Opcodes.GOTO, join);
+		}
+		mv.visitLabel(lookup);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitLookupSwitchInsn(none, new int[] { -5, 100, 1000 }, keys);
+		for (int i = 0; i < keys.length; i++) {
+			mv.visitLabel(keys[i]);
+			mv.visitIntInsn(Opcodes.SIPUSH, 1000 + i);
+			mv.visitJumpInsn(Opcodes.GOTO, join);
+		}
+		mv.visitLabel(none);
+		mv.visitInsn(Opcodes.ICONST_M1);
+		mv.visitLabel(join);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// Longs and doubles in locals and on the stack, merged at a join
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "wide", "(JDI)D", null, null);
+		mv.visitCode();
+		Label otherwise = new Label(), merged = new Label();
+		mv.visitVarInsn(Opcodes.LLOAD, 0);
+		mv.visitInsn(Opcodes.ICONST_2);
+		mv.visitInsn(Opcodes.I2L);
+		mv.visitInsn(Opcodes.LMUL);
+		mv.visitVarInsn(Opcodes.LSTORE, 5);
+		mv.visitVarInsn(Opcodes.DLOAD, 2);
+		mv.visitVarInsn(Opcodes.LLOAD, 5);
+		mv.visitInsn(Opcodes.L2D);
+		mv.visitInsn(Opcodes.DADD);
+		mv.visitVarInsn(Opcodes.DSTORE, 7);
+		mv.visitVarInsn(Opcodes.ILOAD, 4);
+		mv.visitJumpInsn(Opcodes.IFLE, otherwise);
+		mv.visitVarInsn(Opcodes.DLOAD, 7);
+		mv.visitJumpInsn(Opcodes.GOTO, merged);
+		mv.visitLabel(otherwise);
+		mv.visitVarInsn(Opcodes.LLOAD, 5);
+		mv.visitInsn(Opcodes.L2D);
+		mv.visitLabel(merged);
+		mv.visitInsn(Opcodes.DUP2);
+		mv.visitInsn(Opcodes.DADD);
+		mv.visitInsn(Opcodes.DRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/** Prints the body of the given method without blank lines. */
+	private static String jimple(SootClass c, String method) {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		Printer.v().printTo(c.getMethodByName(method).retrieveActiveBody(), pw);
+		pw.flush();
+		StringBuilder sb = new StringBuilder();
+		for (String line : sw.toString().split("\n")) {
+			if (line.trim().isEmpty())
+				continue;
+			sb.append(line.startsWith("    ") ? line.substring(4) : line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testBodiesMatchBaseline() {
+		SootClass c = Scene.v().getSootClass("Target");
+		Assert.assertEquals(TRY_CATCH, jimple(c, "tryCatch"));
+		Assert.assertEquals(SWITCHES, jimple(c, "switches"));
+		Assert.assertEquals(WIDE, jimple(c, "wide"));
+	}
+}
@@ -0,0 +1,140 @@
+package soot.dexpler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.iface.Annotation;
+import org.jf.dexlib2.immutable.ImmutableClassDef;
+import org.jf.dexlib2.immutable.ImmutableField;
+import org.jf.dexlib2.immutable.ImmutableMethod;
+import org.jf.dexlib2.writer.io.FileDataStore;
+import org.jf.dexlib2.writer.pool.DexPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.SootClass;
+import soot.options.Options;
+
+public class DexResolverTest {
+
+	private final List<File> files = new ArrayList<File>();
+
+	private File apk;
+
+	@Before
+	public void setUp() throws IOException {
+		// p.A is defined in both dex files, with a different field in each,
+		// and p.B only in the second one
+		File first = writeDex(classDef("p.A", "first"));
+		File second = writeDex(classDef("p.A", "second"), classDef("p.B", "b"));
+		apk = newTempFile(".apk");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk));
+		try {
+			// The archive order must not matter
+			putFile(out, "classes2.dex", second);
+			putFile(out, "classes.dex", first);
+		} finally {
+			out.close();
+		}
+
+		G.reset();
+		Options.v().set_src_prec(Options.src_prec_apk);
+		Options.v().set_process_multiple_dex(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_soot_classpath(apk.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : files)
+			f.delete();
+	}
+
+	private File newTempFile(String suffix) throws IOException {
+		File f = File.createTempFile("dex", suffix);
+		files.add(f);
+		return f;
+	}
+
+	private static ImmutableClassDef classDef(String name, String field) {
+		String type = "L" + name.replace('.', '/') + ";";
+		return new ImmutableClassDef(type, 1, "Ljava/lang/Object;", Collections.<String> emptyList(),
+				null, Collections.<Annotation> emptySet(),
+				Collections.singletonList(new ImmutableField(type, field, "I", 1, null,
+						Collections.<Annotation> emptySet())),
+				Collections.<ImmutableMethod> emptyList());
+	}
+
+	private File writeDex(ImmutableClassDef... classes) throws IOException {
+		DexPool pool = new DexPool(Opcodes.forApi(24));
+		for (ImmutableClassDef c : classes)
+			pool.internClass(c);
+		File f = newTempFile(".dex");
+		pool.writeTo(new FileDataStore(f));
+		return f;
+	}
+
+	private static void putFile(ZipOutputStream out, String name, File f) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		InputStream in = new FileInputStream(f);
+		try {
+			byte[] buf = new byte[1024];
+			int n;
+			while ((n = in.read(buf)) > 0)
+				out.write(buf, 0, n);
+		} finally {
+			in.close();
+		}
+		out.closeEntry();
+	}
+
+	private SootClass resolve(String name) {
+		SootClass sc = new SootClass(name);
+		DexResolver.v().resolveFromFile(apk, name, sc);
+		return sc;
+	}
+
+	@Test
+	public void testFirstDexWins() {
+		SootClass a = resolve("p.A");
+		Assert.assertTrue(a.declaresFieldByName("first"));
+		Assert.assertFalse(a.declaresFieldByName("second"));
+		Assert.assertTrue(resolve("p.B").declaresFieldByName("b"));
+	}
+
+	@Test
+	public void testConcurrentResolution() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return resolve("p.A").declaresFieldByName("first");
+					}
+				}));
+			}
+			for (Future<Boolean> f : results)
+				Assert.assertTrue(f.get(60, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
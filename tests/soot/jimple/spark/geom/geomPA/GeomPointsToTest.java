@@ -0,0 +1,201 @@
+package soot.jimple.spark.geom.geomPA;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+public class GeomPointsToTest {
+
+	/** The number of independent data flows in the main method. */
+	private static final int CHAINS = 6;
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("geom", "");
+		dir.delete();
+		dir.mkdirs();
+
+		write("java.lang.Object", "public class java.lang.Object\n{\n"
+				+ constructor("java.lang.Object", null) + "}\n");
+		write("Base", "public class Base extends java.lang.Object\n{\n"
+				+ constructor("Base", "java.lang.Object")
+				+ "    public java.lang.Object get()\n    {\n"
+				+ "        Base r0;\n\n"
+				+ "        r0 := @this: Base;\n"
+				+ "        return r0;\n    }\n}\n");
+		write("Box", "public class Box extends java.lang.Object\n{\n"
+				+ "    public java.lang.Object f;\n\n"
+				+ constructor("Box", "java.lang.Object")
+				+ "    public void set(java.lang.Object)\n    {\n"
+				+ "        Box r0;\n        java.lang.Object r1;\n\n"
+				+ "        r0 := @this: Box;\n"
+				+ "        r1 := @parameter0: java.lang.Object;\n"
+				+ "        r0.<Box: java.lang.Object f> = r1;\n"
+				+ "        return;\n    }\n\n"
+				+ "    public java.lang.Object get()\n    {\n"
+				+ "        Box r0;\n        java.lang.Object r1;\n\n"
+				+ "        r0 := @this: Box;\n"
+				+ "        r1 = r0.<Box: java.lang.Object f>;\n"
+				+ "        return r1;\n    }\n}\n");
+
+		StringBuilder main = new StringBuilder("public class Main extends java.lang.Object\n{\n"
+				+ "    public static void main(java.lang.String[])\n    {\n"
+				+ "        java.lang.String[] r0;\n");
+		StringBuilder body = new StringBuilder("        r0 := @parameter0: java.lang.String[];\n");
+		StringBuilder methods = new StringBuilder();
+		for (int k = 0; k < CHAINS; k++) {
+			String a = "A" + k;
+			// Odd classes override get() and return a fresh object
+			write(a, "public class " + a + " extends Base\n{\n"
+					+ constructor(a, "Base")
+					+ (k % 2 == 0 ? "" : "    public java.lang.Object get()\n    {\n"
+							+ "        " + a + " r0, r1;\n\n"
+							+ "        r0 := @this: " + a + ";\n"
+							+ "        r1 = new " + a + ";\n"
+							+ "        specialinvoke r1.<" + a + ": void <init>()>();\n"
+							+ "        return r1;\n    }\n")
+					+ "}\n");
+			main.append("        " + a + " a" + k + ";\n        Box b" + k + ";\n"
+					+ "        java.lang.Object x" + k + ", y" + k + ", z" + k + ", w" + k + ";\n"
+					+ "        Base c" + k + ";\n");
+			body.append("        a" + k + " = new " + a + ";\n"
+					+ "        specialinvoke a" + k + ".<" + a + ": void <init>()>();\n"
+					+ "        b" + k + " = new Box;\n"
+					+ "        specialinvoke b" + k + ".<Box: void <init>()>();\n"
+					+ "        virtualinvoke b" + k + ".<Box: void set(java.lang.Object)>(a" + k + ");\n"
+					+ "        x" + k + " = virtualinvoke b" + k + ".<Box: java.lang.Object get()>();\n"
+					+ "        c" + k + " = (Base) x" + k + ";\n"
+					+ "        y" + k + " = virtualinvoke c" + k + ".<Base: java.lang.Object get()>();\n"
+					+ "        z" + k + " = staticinvoke <Main: java.lang.Object id(java.lang.Object)>(y" + k + ");\n"
+					+ "        w" + k + " = staticinvoke <Main: java.lang.Object id" + k + "(java.lang.Object)>(a" + k + ");\n");
+			methods.append(identity("id" + k));
+		}
+		write("Main", main + "\n" + body + "        return;\n    }\n\n"
+				+ identity("id") + methods + "}\n");
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	private static String constructor(String className, String superName) {
+		return "    public void <init>()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ (superName == null ? "" : "        specialinvoke r0.<"
+						+ superName + ": void <init>()>();\n")
+				+ "        return;\n    }\n\n";
+	}
+
+	private static String identity(String name) {
+		return "    public static java.lang.Object " + name + "(java.lang.Object)\n    {\n"
+				+ "        java.lang.Object r0;\n\n"
+				+ "        r0 := @parameter0: java.lang.Object;\n"
+				+ "        return r0;\n    }\n\n";
+	}
+
+	private void write(String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Runs the geometric points-to analysis with the given number of threads
+	 * and returns the types each local points to, and the call graph.
+	 */
+	private Map<String, Set<String>> runGeom(int threads) {
+		G.reset();
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_main_class("Main");
+		Scene.v().addBasicClass("Main", SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+		SootClass main = Scene.v().getSootClass("Main");
+		Scene.v().setEntryPoints(Collections.singletonList(main.getMethodByName("main")));
+		PhaseOptions.v().setPhaseOption("cg.spark", "enabled:true");
+		PhaseOptions.v().setPhaseOption("cg.spark", "geom-pta:true");
+		PhaseOptions.v().setPhaseOption("cg.spark", "geom-threads:" + threads);
+		SparkTransformer.v().transform("cg.spark", PhaseOptions.v().getPhaseOptions("cg.spark"));
+		GeomPointsTo geom = (GeomPointsTo) Scene.v().getPointsToAnalysis();
+		Assert.assertTrue(geom.hasGeomExecuted());
+
+		Map<String, Set<String>> result = new TreeMap<String, Set<String>>();
+		List<String> classes = new ArrayList<String>(Arrays.asList("Main", "Base", "Box"));
+		for (int k = 0; k < CHAINS; k++)
+			classes.add("A" + k);
+		for (String c : classes) {
+			for (SootMethod m : Scene.v().getSootClass(c).getMethods()) {
+				for (Local l : m.retrieveActiveBody().getLocals()) {
+					Set<String> types = new TreeSet<String>();
+					for (Type t : geom.reachingObjects(l).possibleTypes())
+						types.add(t.toString());
+					result.put(m.getSignature() + " " + l.getName(), types);
+				}
+			}
+		}
+		Set<String> edges = new TreeSet<String>();
+		for (Iterator<Edge> it = Scene.v().getCallGraph().iterator(); it.hasNext();) {
+			Edge e = it.next();
+			edges.add(e.src() + " " + e.srcStmt() + " -> " + e.tgt());
+		}
+		result.put("call graph", edges);
+		return result;
+	}
+
+	@Test
+	public void testThreadsDoNotChangeResult() {
+		Map<String, Set<String>> sequential = runGeom(1);
+		Map<String, Set<String>> concurrent = runGeom(4);
+		Assert.assertEquals(sequential, concurrent);
+
+		// Every chain has a local that only sees its own object. The locals
+		// are renamed on loading, so they are found by their sets.
+		Set<Set<String>> mainSets = new HashSet<Set<String>>();
+		for (Map.Entry<String, Set<String>> e : sequential.entrySet())
+			if (e.getKey().startsWith("<Main: void main(java.lang.String[])> "))
+				mainSets.add(e.getValue());
+		for (int k = 0; k < CHAINS; k++)
+			Assert.assertTrue(mainSets.contains(Collections.singleton("A" + k)));
+	}
+}
@@ -0,0 +1,179 @@
+package soot.jimple.spark.ondemand;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.PointsToSet;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.jimple.spark.SparkTransformer;
+import soot.options.Options;
+
+public class DemandCSPointsToTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		dir = File.createTempFile("demand", "");
+		dir.delete();
+		dir.mkdirs();
+
+		write("java.lang.Object", "public class java.lang.Object\n{\n"
+				+ constructor("java.lang.Object", null) + "}\n");
+		write("A", "public class A extends java.lang.Object\n{\n"
+				+ constructor("A", "java.lang.Object") + "}\n");
+		write("B", "public class B extends java.lang.Object\n{\n"
+				+ constructor("B", "java.lang.Object") + "}\n");
+		write("Box", "public class Box extends java.lang.Object\n{\n"
+				+ "    public java.lang.Object f;\n\n"
+				+ constructor("Box", "java.lang.Object")
+				+ "    public void set(java.lang.Object)\n    {\n"
+				+ "        Box r0;\n        java.lang.Object r1;\n\n"
+				+ "        r0 := @this: Box;\n"
+				+ "        r1 := @parameter0: java.lang.Object;\n"
+				+ "        r0.<Box: java.lang.Object f> = r1;\n"
+				+ "        return;\n    }\n\n"
+				+ "    public java.lang.Object get()\n    {\n"
+				+ "        Box r0;\n        java.lang.Object r1;\n\n"
+				+ "        r0 := @this: Box;\n"
+				+ "        r1 = r0.<Box: java.lang.Object f>;\n"
+				+ "        return r1;\n    }\n}\n");
+		// Two boxes and two calls of id(), which a context-insensitive
+		// analysis cannot tell apart
+		write("Main", "public class Main extends java.lang.Object\n{\n"
+				+ "    public static void main(java.lang.String[])\n    {\n"
+				+ "        java.lang.String[] r0;\n"
+				+ "        A a;\n        B b;\n        Box box1, box2;\n"
+				+ "        java.lang.Object x, y, u, v;\n\n"
+				+ "        r0 := @parameter0: java.lang.String[];\n"
+				+ "        a = new A;\n"
+				+ "        specialinvoke a.<A: void <init>()>();\n"
+				+ "        b = new B;\n"
+				+ "        specialinvoke b.<B: void <init>()>();\n"
+				+ "        x = staticinvoke <Main: java.lang.Object id(java.lang.Object)>(a);\n"
+				+ "        y = staticinvoke <Main: java.lang.Object id(java.lang.Object)>(b);\n"
+				+ "        box1 = new Box;\n"
+				+ "        specialinvoke box1.<Box: void <init>()>();\n"
+				+ "        box2 = new Box;\n"
+				+ "        specialinvoke box2.<Box: void <init>()>();\n"
+				+ "        virtualinvoke box1.<Box: void set(java.lang.Object)>(x);\n"
+				+ "        virtualinvoke box2.<Box: void set(java.lang.Object)>(y);\n"
+				+ "        u = virtualinvoke box1.<Box: java.lang.Object get()>();\n"
+				+ "        v = virtualinvoke box2.<Box: java.lang.Object get()>();\n"
+				+ "        return;\n    }\n\n"
+				+ "    public static java.lang.Object id(java.lang.Object)\n    {\n"
+				+ "        java.lang.Object r0;\n\n"
+				+ "        r0 := @parameter0: java.lang.Object;\n"
+				+ "        return r0;\n    }\n}\n");
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	private static String constructor(String className, String superName) {
+		return "    public void <init>()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ (superName == null ? "" : "        specialinvoke r0.<"
+						+ superName + ": void <init>()>();\n")
+				+ "        return;\n    }\n\n";
+	}
+
+	private void write(String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	private void runSpark() {
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_main_class("Main");
+		Scene.v().addBasicClass("Main", SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+		SootClass main = Scene.v().getSootClass("Main");
+		Scene.v().setEntryPoints(Collections.singletonList(main.getMethodByName("main")));
+		PhaseOptions.v().setPhaseOption("cg.spark", "enabled:true");
+		SparkTransformer.v().transform("cg.spark", PhaseOptions.v().getPhaseOptions("cg.spark"));
+	}
+
+	private static Set<String> types(PointsToSet pts) {
+		Set<String> types = new TreeSet<String>();
+		for (Type t : pts.possibleTypes())
+			types.add(t.toString());
+		return types;
+	}
+
+	/** Returns the locals of all methods that take part in the program. */
+	private static List<Local> locals() {
+		List<Local> locals = new ArrayList<Local>();
+		for (String c : new String[] { "Main", "Box" })
+			for (SootMethod m : Scene.v().getSootClass(c).getMethods())
+				locals.addAll(m.getActiveBody().getLocals());
+		return locals;
+	}
+
+	@Test
+	public void testBatchMatchesSingleQueries() {
+		runSpark();
+		List<Local> locals = locals();
+		DemandCSPointsTo single = DemandCSPointsTo.makeWithBudget(75000, 10, false);
+		List<Set<String>> expected = new ArrayList<Set<String>>();
+		for (Local l : locals)
+			expected.add(types(single.reachingObjects(l)));
+
+		// The batch in both orders, each time with fresh caches
+		for (boolean reversed : new boolean[] { false, true }) {
+			List<Local> batch = new ArrayList<Local>(locals);
+			if (reversed)
+				Collections.reverse(batch);
+			Map<Local, PointsToSet> results = DemandCSPointsTo.makeWithBudget(75000, 10, false)
+					.doReachingObjects(batch);
+			Assert.assertEquals(locals.size(), results.size());
+			for (int i = 0; i < locals.size(); i++)
+				Assert.assertEquals(locals.get(i).toString(), expected.get(i),
+						types(results.get(locals.get(i))));
+		}
+
+		// The queries are refined beyond what Spark knows
+		for (int i = 0; i < locals.size(); i++) {
+			String name = locals.get(i).getName();
+			if (name.equals("x") || name.equals("u"))
+				Assert.assertEquals(Collections.singleton("A"), expected.get(i));
+			if (name.equals("y") || name.equals("v"))
+				Assert.assertEquals(Collections.singleton("B"), expected.get(i));
+		}
+	}
+}
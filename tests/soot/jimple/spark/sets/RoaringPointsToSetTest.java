@@ -0,0 +1,182 @@
+package soot.jimple.spark.sets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.options.SparkOptions;
+
+public class RoaringPointsToSetTest {
+
+	private PAG pag;
+	/* nodes.get(n) is the allocation node numbered n */
+	private List<AllocNode> nodes;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		Map<String, String> opts = new HashMap<String, String>();
+		opts.put("ignore-types", "true");
+		opts.put("set-impl", "roaring");
+		pag = new PAG(new SparkOptions(opts));
+		SootClass a = new SootClass("A");
+		Scene.v().addClass(a);
+		a.setResolvingLevel(SootClass.HIERARCHY);
+		nodes = new ArrayList<AllocNode>();
+		nodes.add(null);
+		RefType type = a.getType();
+		for (int n = 1; n < 3 * 65536; n++) {
+			AllocNode node = pag.makeAllocNode(new Object(), type, null);
+			Assert.assertEquals(n, node.getNumber());
+			nodes.add(node);
+		}
+	}
+
+	private RoaringPointsToSet newSet() {
+		return new RoaringPointsToSet(RefType.v("A"), pag);
+	}
+
+	private static Set<Integer> contents(PointsToSetInternal set) {
+		final Set<Integer> ret = new TreeSet<Integer>();
+		set.forall(new P2SetVisitor() {
+			public void visit(Node n) {
+				Assert.assertTrue(ret.add(n.getNumber()));
+			}
+		});
+		return ret;
+	}
+
+	private void add(RoaringPointsToSet set, Set<Integer> expected, int from,
+			int to, int step) {
+		for (int n = from; n < to; n += step) {
+			Assert.assertEquals(expected.add(n), set.add(nodes.get(n)));
+		}
+	}
+
+	@Test
+	public void testArrayToBitmap() {
+		RoaringPointsToSet set = newSet();
+		Set<Integer> expected = new TreeSet<Integer>();
+		add(set, expected, 2, 2 * 4096 + 2, 2);
+		Assert.assertEquals(RoaringPointsToSet.ARRAY, set.chunkKind(2));
+		Assert.assertEquals(4096, set.size());
+
+		add(set, expected, 2 * 4096 + 2, 2 * 4096 + 4, 2);
+		Assert.assertEquals(RoaringPointsToSet.BITMAP, set.chunkKind(2));
+		Assert.assertEquals(4097, set.size());
+		Assert.assertEquals(expected, contents(set));
+		Assert.assertFalse(set.add(nodes.get(4)));
+		Assert.assertFalse(set.contains(nodes.get(3)));
+	}
+
+	@Test
+	public void testRunContainers() {
+		RoaringPointsToSet set = newSet();
+		Set<Integer> expected = new TreeSet<Integer>();
+		add(set, expected, 65536, 65536 + 5000, 1);
+		Assert.assertEquals(RoaringPointsToSet.RUN, set.chunkKind(65536));
+		Assert.assertEquals(expected, contents(set));
+
+		// adding next to a run extends it, adding elsewhere starts a new one
+		add(set, expected, 65536 + 5000, 65536 + 5001, 1);
+		add(set, expected, 65536 + 6000, 65536 + 6001, 1);
+		Assert.assertEquals(RoaringPointsToSet.RUN, set.chunkKind(65536));
+		Assert.assertTrue(set.contains(nodes.get(65536 + 6000)));
+		Assert.assertFalse(set.contains(nodes.get(65536 + 5500)));
+
+		// removing from the middle of a run splits it
+		Assert.assertTrue(set.remove(nodes.get(65536 + 100)));
+		Assert.assertFalse(set.remove(nodes.get(65536 + 100)));
+		expected.remove(65536 + 100);
+		Assert.assertEquals(RoaringPointsToSet.RUN, set.chunkKind(65536));
+		Assert.assertEquals(expected, contents(set));
+		Assert.assertEquals(expected.size(), set.size());
+
+		// many short runs take more space than a bitmap
+		add(set, expected, 65536 + 8000, 65536 + 65536, 2);
+		Assert.assertEquals(RoaringPointsToSet.BITMAP, set.chunkKind(65536));
+		Assert.assertEquals(expected, contents(set));
+	}
+
+	@Test
+	public void testRunOptimize() {
+		RoaringPointsToSet set = newSet();
+		Set<Integer> expected = new TreeSet<Integer>();
+		add(set, expected, 10, 1010, 1);
+		Assert.assertEquals(RoaringPointsToSet.ARRAY, set.chunkKind(10));
+		set.runOptimize();
+		Assert.assertEquals(RoaringPointsToSet.RUN, set.chunkKind(10));
+		Assert.assertEquals(expected, contents(set));
+	}
+
+	@Test
+	public void testRemoval() {
+		RoaringPointsToSet set = newSet();
+		Set<Integer> expected = new TreeSet<Integer>();
+		add(set, expected, 1, 1 + 2 * 4100, 2);
+		add(set, expected, 2 * 65536, 2 * 65536 + 3, 1);
+		Assert.assertEquals(RoaringPointsToSet.BITMAP, set.chunkKind(1));
+
+		// a bitmap that shrinks to ARRAY_MAX elements becomes an array again
+		for (int n = 1; n < 1 + 2 * 4; n += 2) {
+			Assert.assertTrue(set.remove(nodes.get(n)));
+			expected.remove(n);
+		}
+		Assert.assertEquals(RoaringPointsToSet.ARRAY, set.chunkKind(1));
+		Assert.assertEquals(expected, contents(set));
+
+		// an empty chunk is dropped
+		for (int n = 2 * 65536; n < 2 * 65536 + 3; n++) {
+			Assert.assertTrue(set.remove(nodes.get(n)));
+			expected.remove(n);
+		}
+		Assert.assertEquals(-1, set.chunkKind(2 * 65536));
+		Assert.assertEquals(expected, contents(set));
+		Assert.assertEquals(expected.size(), set.size());
+	}
+
+	@Test
+	public void testAddAllAndRemoveAll() {
+		// one chunk of each kind in each set, overlapping in parts
+		RoaringPointsToSet a = newSet(), b = newSet(), exclude = newSet();
+		Set<Integer> ea = new TreeSet<Integer>(), eb = new TreeSet<Integer>(),
+				eExclude = new TreeSet<Integer>();
+		add(a, ea, 1, 3000, 3);
+		add(a, ea, 65536, 65536 + 6000, 1);
+		add(a, ea, 2 * 65536, 2 * 65536 + 12000, 2);
+		add(b, eb, 2, 12000, 2);
+		add(b, eb, 65536 + 3000, 65536 + 9000, 1);
+		add(b, eb, 2 * 65536 + 100, 2 * 65536 + 200, 1);
+		add(exclude, eExclude, 65536 + 5000, 65536 + 8000, 1);
+		add(exclude, eExclude, 4, 40, 4);
+
+		Set<Integer> expected = new TreeSet<Integer>(ea);
+		for (int n : eb)
+			if (!eExclude.contains(n))
+				expected.add(n);
+		Assert.assertTrue(a.addAll(b, exclude));
+		Assert.assertEquals(expected, contents(a));
+		Assert.assertEquals(expected.size(), a.size());
+		Assert.assertFalse(a.addAll(b, exclude));
+
+		expected.removeAll(eb);
+		Assert.assertTrue(a.removeAll(b));
+		Assert.assertEquals(expected, contents(a));
+		Assert.assertEquals(expected.size(), a.size());
+		Assert.assertFalse(a.removeAll(b));
+	}
+}
@@ -0,0 +1,212 @@
+package soot.jimple.spark.solver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.PhaseOptions;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.spark.SparkTransformer;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.options.Options;
+
+public class IncrementalUpdaterTest {
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		dir = File.createTempFile("incremental", "");
+		dir.delete();
+		dir.mkdirs();
+
+		write("java.lang.Object", "public class java.lang.Object\n{\n"
+				+ constructor("java.lang.Object", null) + "}\n");
+		write("A", "public class A extends java.lang.Object\n{\n"
+				+ constructor("A", "java.lang.Object") + emptyMethod("A", "m")
+				+ "}\n");
+		write("B", "public class B extends A\n{\n"
+				+ constructor("B", "A") + emptyMethod("B", "m") + "}\n");
+		write("Holder", "public class Holder extends java.lang.Object\n{\n"
+				+ "    public A f;\n\n"
+				+ constructor("Holder", "java.lang.Object") + "}\n");
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	private static String constructor(String className, String superName) {
+		return "    public void <init>()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ (superName == null ? "" : "        specialinvoke r0.<"
+						+ superName + ": void <init>()>();\n")
+				+ "        return;\n    }\n\n";
+	}
+
+	private static String emptyMethod(String className, String name) {
+		return "    public void " + name + "()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ "        return;\n    }\n\n";
+	}
+
+	/** Writes the main class, whose make() returns a new object of the given class. */
+	private void writeMain(String madeClass) throws Exception {
+		write("Main", "public class Main extends java.lang.Object\n{\n"
+				+ "    public static void main(java.lang.String[])\n    {\n"
+				+ "        java.lang.String[] r0;\n        A r1, r2;\n        Holder r3;\n\n"
+				+ "        r0 := @parameter0: java.lang.String[];\n"
+				+ "        r1 = staticinvoke <Main: A make()>();\n"
+				+ "        virtualinvoke r1.<A: void m()>();\n"
+				+ "        r3 = new Holder;\n"
+				+ "        specialinvoke r3.<Holder: void <init>()>();\n"
+				+ "        r3.<Holder: A f> = r1;\n"
+				+ "        r2 = r3.<Holder: A f>;\n"
+				+ "        virtualinvoke r2.<A: void m()>();\n"
+				+ "        return;\n    }\n\n"
+				+ "    public static A make()\n    {\n"
+				+ "        " + madeClass + " r0;\n\n"
+				+ "        r0 = new " + madeClass + ";\n"
+				+ "        specialinvoke r0.<" + madeClass + ": void <init>()>();\n"
+				+ "        return r0;\n    }\n}\n");
+	}
+
+	private void write(String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	/** Runs SPARK with the on-the-fly call graph on the classes in dir. */
+	private PAG runSpark() {
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_main_class("Main");
+		Scene.v().addBasicClass("Main", SootClass.BODIES);
+		// The old program does not refer to B yet
+		Scene.v().addBasicClass("B", SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+		SootClass main = Scene.v().getSootClass("Main");
+		Scene.v().setEntryPoints(Collections.singletonList(main.getMethodByName("main")));
+		PhaseOptions.v().setPhaseOption("cg.spark", "enabled:true");
+		PhaseOptions.v().setPhaseOption("cg.spark", "on-fly-cg:true");
+		PhaseOptions.v().setPhaseOption("cg.spark", "propagator:worklist");
+		SparkTransformer.v().transform("cg.spark", PhaseOptions.v().getPhaseOptions("cg.spark"));
+		return (PAG) Scene.v().getPointsToAnalysis();
+	}
+
+	/** Returns the types of the objects each local of the Main methods points to. */
+	private static Map<String, Set<String>> pointsToSets(PAG pag) {
+		Map<String, Set<String>> result = new TreeMap<String, Set<String>>();
+		for (SootMethod m : Scene.v().getSootClass("Main").getMethods()) {
+			for (Local l : m.getActiveBody().getLocals()) {
+				Set<String> types = new TreeSet<String>();
+				for (soot.Type t : pag.reachingObjects(l).possibleTypes())
+					types.add(t.toString());
+				result.put(m.getName() + "." + l.getName(), types);
+			}
+		}
+		return result;
+	}
+
+	/** Returns the call edges out of the given method. */
+	private static Set<String> edgesOutOf(String methodName) {
+		Set<String> result = new TreeSet<String>();
+		SootMethod m = Scene.v().getSootClass("Main").getMethodByName(methodName);
+		for (Iterator<Edge> it = Scene.v().getCallGraph().edgesOutOf(m); it.hasNext();)
+			result.add(it.next().tgt().getSignature());
+		return result;
+	}
+
+	/** Returns the objects stored in the field Holder.f. */
+	private static Set<String> fieldContents(PAG pag) {
+		final Set<String> types = new TreeSet<String>();
+		for (Node n : pag.getAllocNodeNumberer()) {
+			if (!n.getType().toString().equals("Holder"))
+				continue;
+			soot.jimple.spark.pag.AllocDotField adf = ((soot.jimple.spark.pag.AllocNode) n)
+					.dot(Scene.v().getSootClass("Holder").getFieldByName("f"));
+			if (adf != null && adf.getP2Set() != null)
+				adf.getP2Set().forall(new P2SetVisitor() {
+					public final void visit(Node an) {
+						types.add(an.getType().toString());
+					}
+				});
+		}
+		return types;
+	}
+
+	@Test
+	public void testUpdateMatchesRunFromScratch() throws Exception {
+		// A run from scratch on the changed program
+		writeMain("B");
+		PAG pag = runSpark();
+		Map<String, Set<String>> expectedSets = pointsToSets(pag);
+		Set<String> expectedFields = fieldContents(pag);
+		Set<String> expectedMakeEdges = edgesOutOf("make");
+		Set<String> expectedMainEdges = edgesOutOf("main");
+		Assert.assertEquals(Collections.singleton("B"), expectedSets.get("main.r2"));
+
+		// A run on the old program, then an update to the new body of make()
+		G.reset();
+		writeMain("A");
+		pag = runSpark();
+		Assert.assertEquals(Collections.singleton("A"), pointsToSets(pag).get("main.r2"));
+		SootMethod make = Scene.v().getSootClass("Main").getMethodByName("make");
+		Jimple j = Jimple.v();
+		JimpleBody b = j.newBody(make);
+		Local r0 = j.newLocal("r0", RefType.v("B"));
+		b.getLocals().add(r0);
+		b.getUnits().add(j.newAssignStmt(r0, j.newNewExpr(RefType.v("B"))));
+		b.getUnits().add(j.newInvokeStmt(j.newSpecialInvokeExpr(r0,
+				Scene.v().getSootClass("B").getMethodByName("<init>").makeRef())));
+		b.getUnits().add(j.newReturnStmt(r0));
+		make.setActiveBody(b);
+		new IncrementalUpdater(pag).update(Collections.singleton(make));
+
+		Assert.assertEquals(expectedSets, pointsToSets(pag));
+		Assert.assertEquals(expectedFields, fieldContents(pag));
+		Assert.assertEquals(expectedMakeEdges, edgesOutOf("make"));
+		// Edges out of unchanged methods are never retracted, so the update
+		// may keep call targets that a run from scratch does not find
+		Set<String> mainEdges = edgesOutOf("main");
+		Assert.assertTrue(mainEdges.containsAll(expectedMainEdges));
+		Assert.assertTrue(mainEdges.contains("<A: void m()>"));
+	}
+}
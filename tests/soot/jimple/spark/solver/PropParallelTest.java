@@ -0,0 +1,169 @@
+package soot.jimple.spark.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.Type;
+import soot.jimple.spark.pag.AllocNode;
+import soot.jimple.spark.pag.ArrayElement;
+import soot.jimple.spark.pag.Node;
+import soot.jimple.spark.pag.PAG;
+import soot.jimple.spark.pag.SparkField;
+import soot.jimple.spark.pag.VarNode;
+import soot.jimple.spark.sets.P2SetVisitor;
+import soot.options.SparkOptions;
+
+public class PropParallelTest {
+
+	private static List<Type> varTypes;
+	private static List<Type> allocTypes;
+	private static List<SparkField> fields;
+
+	@BeforeClass
+	public static void setUpHierarchy() {
+		G.reset();
+		SootClass object = makeClass("java.lang.Object", null);
+		SootClass i = makeClass("I", null);
+		i.setModifiers(Modifier.PUBLIC | Modifier.INTERFACE);
+		SootClass a = makeClass("A", object);
+		SootClass b = makeClass("B", a);
+		SootClass c = makeClass("C", object);
+		c.addInterface(i);
+		SootClass d = makeClass("D", b);
+		d.addInterface(i);
+		SootField f = new SootField("f", object.getType());
+		a.addField(f);
+
+		varTypes = new ArrayList<Type>();
+		varTypes.add(object.getType());
+		varTypes.add(a.getType());
+		varTypes.add(b.getType());
+		varTypes.add(i.getType());
+		allocTypes = new ArrayList<Type>();
+		allocTypes.add(a.getType());
+		allocTypes.add(b.getType());
+		allocTypes.add(c.getType());
+		allocTypes.add(d.getType());
+		fields = new ArrayList<SparkField>();
+		fields.add(f);
+		fields.add(ArrayElement.v());
+	}
+
+	private static SootClass makeClass(String name, SootClass superclass) {
+		SootClass ret = new SootClass(name, Modifier.PUBLIC);
+		Scene.v().addClass(ret);
+		if (superclass != null)
+			ret.setSuperclass(superclass);
+		ret.setResolvingLevel(SootClass.HIERARCHY);
+		return ret;
+	}
+
+	/**
+	 * Builds a random pointer assignment graph, always the same one for the
+	 * same seed, and returns its variable nodes in creation order.
+	 */
+	private static List<VarNode> buildGraph(PAG pag, long seed) {
+		Random random = new Random(seed);
+		List<VarNode> vars = new ArrayList<VarNode>();
+		for (int n = 0; n < 600; n++) {
+			Type type = varTypes.get(random.nextInt(varTypes.size()));
+			vars.add(pag.makeGlobalVarNode("v" + n, type));
+		}
+		for (int n = 0; n < 150; n++) {
+			Type type = allocTypes.get(random.nextInt(allocTypes.size()));
+			AllocNode alloc = pag.makeAllocNode("new" + n, type, null);
+			pag.addAllocEdge(alloc, vars.get(random.nextInt(vars.size())));
+		}
+		for (int n = 0; n < 1200; n++) {
+			pag.addSimpleEdge(vars.get(random.nextInt(vars.size())),
+					vars.get(random.nextInt(vars.size())));
+		}
+		for (int n = 0; n < 300; n++) {
+			SparkField field = fields.get(random.nextInt(fields.size()));
+			VarNode base = vars.get(random.nextInt(vars.size()));
+			if (random.nextBoolean()) {
+				pag.addStoreEdge(vars.get(random.nextInt(vars.size())),
+						pag.makeFieldRefNode(base, field));
+			} else {
+				pag.addLoadEdge(pag.makeFieldRefNode(base, field),
+						vars.get(random.nextInt(vars.size())));
+			}
+		}
+		pag.getTypeManager().makeTypeMask();
+		return vars;
+	}
+
+	private static PAG newPAG(String setImpl) {
+		Map<String, String> opts = new HashMap<String, String>();
+		opts.put("set-impl", setImpl);
+		opts.put("double-set-old", "hybrid");
+		opts.put("double-set-new", "hybrid");
+		return new PAG(new SparkOptions(opts));
+	}
+
+	private static List<Set<Integer>> pointsToSets(List<VarNode> vars) {
+		List<Set<Integer>> ret = new ArrayList<Set<Integer>>();
+		for (VarNode var : vars) {
+			final Set<Integer> p2set = new TreeSet<Integer>();
+			var.getP2Set().forall(new P2SetVisitor() {
+				public void visit(Node n) {
+					p2set.add(n.getNumber());
+				}
+			});
+			ret.add(p2set);
+		}
+		return ret;
+	}
+
+	private static void assertSameResult(String setImpl, long seed) {
+		PAG worklistPAG = newPAG(setImpl);
+		List<VarNode> worklistVars = buildGraph(worklistPAG, seed);
+		new PropWorklist(worklistPAG).propagate();
+
+		PAG parallelPAG = newPAG(setImpl);
+		List<VarNode> parallelVars = buildGraph(parallelPAG, seed);
+		new PropParallel(parallelPAG, 4).propagate();
+
+		List<Set<Integer>> expected = pointsToSets(worklistVars);
+		List<Set<Integer>> actual = pointsToSets(parallelVars);
+		int nonEmpty = 0;
+		for (int n = 0; n < expected.size(); n++) {
+			Assert.assertEquals("points-to set of v" + n, expected.get(n),
+					actual.get(n));
+			if (!expected.get(n).isEmpty())
+				nonEmpty++;
+		}
+		Assert.assertTrue(nonEmpty > expected.size() / 2);
+	}
+
+	@Test
+	public void testDoubleSets() {
+		for (long seed = 0; seed < 3; seed++)
+			assertSameResult("double", seed);
+	}
+
+	@Test
+	public void testHybridSets() {
+		assertSameResult("hybrid", 42);
+	}
+
+	@Test
+	public void testHashSets() {
+		// hash sets check types with the FastHierarchy on every addition
+		assertSameResult("hash", 7);
+	}
+}
@@ -0,0 +1,168 @@
+package soot.jimple.toolkits.callgraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Kind;
+import soot.MethodOrMethodContext;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.Stmt;
+
+public class CompactCallGraphTest {
+
+	private static final Kind[] KINDS = { Kind.STATIC, Kind.VIRTUAL,
+			Kind.INTERFACE, Kind.SPECIAL, Kind.THREAD };
+
+	private List<SootMethod> methods;
+	private List<Stmt> stmts;
+	private CallGraph cg;
+	private CallGraph reference;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		SootClass sc = new SootClass("Foo", Modifier.PUBLIC);
+		Scene.v().addClass(sc);
+		methods = new ArrayList<SootMethod>();
+		for (int i = 0; i < 30; i++) {
+			SootMethod m = new SootMethod("m" + i, Collections.<Type> emptyList(),
+					VoidType.v(), Modifier.PUBLIC | Modifier.STATIC);
+			sc.addMethod(m);
+			methods.add(m);
+		}
+		// Some call sites of each method, with one or more targets each
+		Random rnd = new Random(42);
+		stmts = new ArrayList<Stmt>();
+		cg = new CallGraph();
+		List<Edge> edges = new ArrayList<Edge>();
+		for (SootMethod src : methods.subList(0, 25)) {
+			int sites = rnd.nextInt(4);
+			for (int s = 0; s < sites; s++) {
+				Stmt stmt = Jimple.v().newNopStmt();
+				stmts.add(stmt);
+				int targets = 1 + rnd.nextInt(3);
+				for (int t = 0; t < targets; t++)
+					edges.add(new Edge(src, stmt, methods.get(rnd.nextInt(methods.size())),
+							KINDS[rnd.nextInt(KINDS.length)]));
+			}
+		}
+		// Edges from the entry points have no source
+		edges.add(new Edge(null, null, methods.get(0), Kind.STATIC));
+		edges.add(new Edge(null, null, methods.get(1), Kind.CLINIT));
+		// Add the edges in random order, removing some and adding some of
+		// them again
+		Collections.shuffle(edges, rnd);
+		for (Edge e : edges)
+			cg.addEdge(e);
+		for (int i = 0; i < edges.size(); i += 5) {
+			cg.removeEdge(edges.get(i));
+			if (i % 2 == 0)
+				cg.addEdge(edges.get(i));
+		}
+		// The listener of a CallGraph still returns removed edges, so compare
+		// with a graph that never contained them. Edges are linked into the
+		// indexes of their call graph, so it needs copies.
+		reference = new CallGraph();
+		for (Edge e : cg)
+			reference.addEdge(new Edge(e.getSrc(), e.srcUnit(), e.getTgt(), e.kind()));
+	}
+
+	private static Set<Edge> toSet(Iterator<Edge> it, int[] count) {
+		Set<Edge> result = new HashSet<Edge>();
+		count[0] = 0;
+		while (it.hasNext()) {
+			result.add(it.next());
+			count[0]++;
+		}
+		return result;
+	}
+
+	private static void assertSameEdges(String message, Iterator<Edge> expected,
+			Iterator<Edge> actual) {
+		int[] expectedCount = new int[1];
+		int[] actualCount = new int[1];
+		Assert.assertEquals(message, toSet(expected, expectedCount),
+				toSet(actual, actualCount));
+		Assert.assertEquals(message, expectedCount[0], actualCount[0]);
+	}
+
+	@Test
+	public void testEdgesMatch() {
+		CompactCallGraph compact = new CompactCallGraph(cg);
+		Assert.assertEquals(reference.size(), compact.size());
+		assertSameEdges("all edges", reference.iterator(), compact.iterator());
+		assertSameEdges("listener", reference.listener(), compact.listener());
+		Assert.assertFalse(compact.newListener().hasNext());
+
+		Set<MethodOrMethodContext> sources = new HashSet<MethodOrMethodContext>();
+		for (Iterator<MethodOrMethodContext> it = reference.sourceMethods(); it.hasNext();)
+			sources.add(it.next());
+		Set<MethodOrMethodContext> compactSources = new HashSet<MethodOrMethodContext>();
+		for (Iterator<MethodOrMethodContext> it = compact.sourceMethods(); it.hasNext();)
+			compactSources.add(it.next());
+		Assert.assertEquals(sources, compactSources);
+
+		for (SootMethod m : methods) {
+			assertSameEdges("out of " + m, reference.edgesOutOf(m), compact.edgesOutOf(m));
+			assertSameEdges("into " + m, reference.edgesInto(m), compact.edgesInto(m));
+			Assert.assertEquals(m.toString(), reference.isEntryMethod(m), compact.isEntryMethod(m));
+		}
+		for (Stmt s : stmts) {
+			assertSameEdges("out of " + s, reference.edgesOutOf(s), compact.edgesOutOf(s));
+			for (SootMethod m : methods)
+				Assert.assertEquals(reference.findEdge(s, m), compact.findEdge(s, m));
+		}
+	}
+
+	@Test
+	public void testReachableMethods() {
+		CompactCallGraph compact = new CompactCallGraph(cg);
+		List<MethodOrMethodContext> entryPoints = new ArrayList<MethodOrMethodContext>();
+		entryPoints.add(methods.get(0));
+		entryPoints.add(methods.get(1));
+		ReachableMethods expected = new ReachableMethods(reference, entryPoints);
+		expected.update();
+		ReachableMethods actual = new ReachableMethods(compact, entryPoints);
+		actual.update();
+		Assert.assertEquals(expected.size(), actual.size());
+		for (SootMethod m : methods)
+			Assert.assertEquals(m.toString(), expected.contains(m), actual.contains(m));
+	}
+
+	@Test
+	public void testUnknownMethodAndUnit() {
+		CompactCallGraph compact = new CompactCallGraph(cg);
+		// Numbered after the compact call graph was built
+		SootMethod late = new SootMethod("late", Collections.<Type> emptyList(),
+				VoidType.v(), Modifier.PUBLIC | Modifier.STATIC);
+		Unit nop = Jimple.v().newNopStmt();
+		Assert.assertFalse(compact.edgesOutOf(late).hasNext());
+		Assert.assertFalse(compact.edgesInto(late).hasNext());
+		Assert.assertTrue(compact.isEntryMethod(late));
+		Assert.assertFalse(compact.edgesOutOf(nop).hasNext());
+		Assert.assertNull(compact.findEdge(nop, methods.get(0)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable() {
+		new CompactCallGraph(cg).addEdge(new Edge(methods.get(2), stmts.get(0),
+				methods.get(3), Kind.STATIC));
+	}
+}
@@ -0,0 +1,198 @@
+package soot.jimple.toolkits.ide.icfg;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.MethodOrMethodContext;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.spark.SparkTransformer;
+import soot.options.Options;
+
+public class ConcurrentJimpleBasedICFGTest {
+
+	private static final int THREADS = 4;
+
+	private File dir;
+
+	@Before
+	public void setUp() throws Exception {
+		G.reset();
+		dir = File.createTempFile("icfg", "");
+		dir.delete();
+		dir.mkdirs();
+
+		write("java.lang.Object", "public class java.lang.Object\n{\n"
+				+ constructor("java.lang.Object", null) + "}\n");
+		write("A", "public class A extends java.lang.Object\n{\n"
+				+ constructor("A", "java.lang.Object") + method("A", "m", "") + "}\n");
+		write("B", "public class B extends A\n{\n"
+				+ constructor("B", "A")
+				+ method("B", "m", "        staticinvoke <Main: void helper()>();\n") + "}\n");
+		write("Main", "public class Main extends java.lang.Object\n{\n"
+				+ "    public static void main(java.lang.String[])\n    {\n"
+				+ "        java.lang.String[] r0;\n        A r1;\n        int i0;\n\n"
+				+ "        r0 := @parameter0: java.lang.String[];\n"
+				+ "        i0 = lengthof r0;\n"
+				+ "        if i0 == 0 goto label1;\n\n"
+				+ "        r1 = new A;\n"
+				+ "        specialinvoke r1.<A: void <init>()>();\n"
+				+ "        goto label2;\n\n"
+				+ "     label1:\n"
+				+ "        r1 = new B;\n"
+				+ "        specialinvoke r1.<B: void <init>()>();\n\n"
+				+ "     label2:\n"
+				+ "        virtualinvoke r1.<A: void m()>();\n"
+				+ "        staticinvoke <Main: void helper()>();\n"
+				+ "        return;\n    }\n\n"
+				+ "    public static void helper()\n    {\n"
+				+ "        return;\n    }\n}\n");
+	}
+
+	@After
+	public void tearDown() {
+		File[] children = dir.listFiles();
+		if (children != null)
+			for (File c : children)
+				c.delete();
+		dir.delete();
+	}
+
+	private static String constructor(String className, String superName) {
+		return "    public void <init>()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ (superName == null ? "" : "        specialinvoke r0.<"
+						+ superName + ": void <init>()>();\n")
+				+ "        return;\n    }\n\n";
+	}
+
+	private static String method(String className, String name, String body) {
+		return "    public void " + name + "()\n    {\n"
+				+ "        " + className + " r0;\n\n"
+				+ "        r0 := @this: " + className + ";\n"
+				+ body
+				+ "        return;\n    }\n\n";
+	}
+
+	private void write(String className, String contents) throws Exception {
+		Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir,
+				className + ".jimple")), "UTF-8");
+		try {
+			w.write(contents);
+		} finally {
+			w.close();
+		}
+	}
+
+	/** Builds the call graph of the classes in dir with SPARK. */
+	private void buildCallGraph() {
+		Options.v().set_src_prec(Options.src_prec_jimple);
+		Options.v().set_soot_classpath(dir.getPath());
+		Options.v().set_whole_program(true);
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_main_class("Main");
+		Scene.v().addBasicClass("Main", SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+		SootClass main = Scene.v().getSootClass("Main");
+		Scene.v().setEntryPoints(Collections.singletonList(main.getMethodByName("main")));
+		PhaseOptions.v().setPhaseOption("cg.spark", "enabled:true");
+		SparkTransformer.v().transform("cg.spark", PhaseOptions.v().getPhaseOptions("cg.spark"));
+	}
+
+	private static List<SootMethod> reachableMethods() {
+		List<SootMethod> methods = new ArrayList<SootMethod>();
+		for (Iterator<MethodOrMethodContext> it = Scene.v().getReachableMethods().listener(); it.hasNext();) {
+			SootMethod m = it.next().method();
+			if (m.hasActiveBody())
+				methods.add(m);
+		}
+		return methods;
+	}
+
+	@Test
+	public void testConcurrentQueriesMatchJimpleBasedICFG() throws Exception {
+		buildCallGraph();
+		final List<SootMethod> methods = reachableMethods();
+		final List<Unit> units = new ArrayList<Unit>();
+		for (SootMethod m : methods)
+			units.addAll(m.getActiveBody().getUnits());
+
+		// The answers of the lazily computing ICFG, on a single thread
+		JimpleBasedInterproceduralCFG reference = new JimpleBasedInterproceduralCFG();
+		final Map<SootMethod, Set<Unit>> callers = new HashMap<SootMethod, Set<Unit>>();
+		for (SootMethod m : methods)
+			callers.put(m, new HashSet<Unit>(reference.getCallersOf(m)));
+		final Map<Unit, Set<SootMethod>> callees = new HashMap<Unit, Set<SootMethod>>();
+		final Map<Unit, List<Unit>> succs = new HashMap<Unit, List<Unit>>();
+		int calls = 0;
+		for (Unit u : units) {
+			callees.put(u, new HashSet<SootMethod>(reference.getCalleesOfCallAt(u)));
+			succs.put(u, reference.getSuccsOf(u));
+			if (reference.isCallStmt(u))
+				calls++;
+		}
+		Assert.assertTrue(calls >= 5);
+		Assert.assertEquals(2, callers.get(Scene.v().getMethod("<Main: void helper()>")).size());
+		// The virtual call in main() reaches A.m() and B.m()
+		int mostCallees = 0;
+		for (Unit u : Scene.v().getMethod("<Main: void main(java.lang.String[])>").getActiveBody().getUnits())
+			mostCallees = Math.max(mostCallees, callees.get(u).size());
+		Assert.assertEquals(2, mostCallees);
+
+		final ConcurrentJimpleBasedICFG icfg = new ConcurrentJimpleBasedICFG();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int offset = t;
+				results.add(executor.submit(new Callable<Integer>() {
+					public Integer call() {
+						int checked = 0;
+						// Every thread walks the statements from another start
+						for (int round = 0; round < 50; round++) {
+							for (int k = 0; k < units.size(); k++) {
+								Unit u = units.get((k + offset * units.size() / THREADS) % units.size());
+								Assert.assertEquals(callees.get(u),
+										new HashSet<SootMethod>(icfg.getCalleesOfCallAt(u)));
+								Assert.assertEquals(succs.get(u), icfg.getSuccsOf(u));
+								SootMethod m = icfg.getMethodOf(u);
+								Assert.assertEquals(callers.get(m), new HashSet<Unit>(icfg.getCallersOf(m)));
+								checked++;
+							}
+						}
+						return checked;
+					}
+				}));
+			}
+			for (Future<Integer> f : results)
+				Assert.assertEquals(50 * units.size(), f.get(60, TimeUnit.SECONDS).intValue());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
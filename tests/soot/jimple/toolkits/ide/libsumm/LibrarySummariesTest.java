@@ -0,0 +1,155 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.options.Options;
+
+public class LibrarySummariesTest {
+
+	private File libraryDir;
+	private SootMethod method;
+	private SootField field;
+
+	@Before
+	public void setUp() throws IOException {
+		G.reset();
+		libraryDir = File.createTempFile("library", "");
+		libraryDir.delete();
+		new File(libraryDir, "lib").mkdirs();
+		writeFile(new File(libraryDir, "lib/Box.class"), new byte[] { 1, 2, 3 });
+		Options.v().set_soot_classpath(libraryDir.getPath());
+
+		SootClass object = new SootClass("java.lang.Object", Modifier.PUBLIC);
+		Scene.v().addClass(object);
+		object.setResolvingLevel(SootClass.HIERARCHY);
+		SootClass box = new SootClass("lib.Box", Modifier.PUBLIC);
+		box.setSuperclass(object);
+		Scene.v().addClass(box);
+		box.setResolvingLevel(SootClass.SIGNATURES);
+		field = new SootField("f", RefType.v("java.lang.Object"));
+		box.addField(field);
+		method = new SootMethod("set", Collections.<Type> singletonList(object.getType()),
+				soot.VoidType.v(), Modifier.PUBLIC);
+		box.addMethod(method);
+	}
+
+	@After
+	public void tearDown() {
+		new File(libraryDir, "lib/Box.class").delete();
+		new File(libraryDir, "lib").delete();
+		libraryDir.delete();
+	}
+
+	private static void writeFile(File file, byte[] contents) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents);
+		} finally {
+			out.close();
+		}
+	}
+
+	private MethodSummary summary(String target) {
+		Set<SummaryFlow> flows = new LinkedHashSet<SummaryFlow>();
+		flows.add(new SummaryFlow(SummaryLocation.parameter(0), SummaryLocation.parse(target)));
+		flows.add(new SummaryFlow(SummaryLocation.alloc("java.lang.Object[]"), SummaryLocation.returnLocation()));
+		return new MethodSummary(method.getSignature(), flows);
+	}
+
+	private static String write(LibrarySummaries summaries) throws IOException {
+		StringWriter w = new StringWriter();
+		summaries.write(w);
+		return w.toString();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		LibrarySummaries original = new LibrarySummaries(null);
+		original.addSummary(summary("this|" + field.getSignature() + "|[]"));
+		original.addSummary(new MethodSummary("<lib.Other: void m()>", Collections.singleton(
+				new SummaryFlow(SummaryLocation.staticField("<lib.Other: java.lang.Object s>"),
+						SummaryLocation.exception()))));
+		original.addLibraryFingerprint(LibrarySummaries.fingerprint(libraryDir));
+		String text = write(original);
+		Assert.assertTrue(text.startsWith(LibrarySummaries.HEADER));
+
+		LibrarySummaries read = new LibrarySummaries(null);
+		read.read(new StringReader(text));
+		Assert.assertEquals(original.getLibraryFingerprints(), read.getLibraryFingerprints());
+		Assert.assertEquals(2, read.getSummaries().size());
+		for (MethodSummary s : original.getSummaries()) {
+			MethodSummary other = null;
+			for (MethodSummary r : read.getSummaries())
+				if (r.getMethodSignature().equals(s.getMethodSignature()))
+					other = r;
+			Assert.assertNotNull(other);
+			Assert.assertEquals(s.getFlows(), other.getFlows());
+		}
+		Assert.assertEquals(text, write(read));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOldVersion() throws IOException {
+		new LibrarySummaries(null).read(new StringReader("# Soot library summaries, version 1\n"
+				+ "method <lib.Box: void set(java.lang.Object)>\nflow\tparam0\treturn\n"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingHeader() throws IOException {
+		new LibrarySummaries(null).read(new StringReader("method <lib.Box: void set(java.lang.Object)>\n"));
+	}
+
+	@Test
+	public void testUnresolvedSummariesAreSkipped() {
+		LibrarySummaries summaries = new LibrarySummaries(null);
+		summaries.addSummary(summary("this|" + field.getSignature()));
+		Assert.assertNotNull(summaries.getSummary(method));
+
+		summaries = new LibrarySummaries(null);
+		summaries.addSummary(summary("this|<lib.Box: java.lang.Object missing>"));
+		Assert.assertNull(summaries.getSummary(method));
+
+		summaries = new LibrarySummaries(null);
+		summaries.addSummary(summary("static:<lib.Box: java.lang.Object missing>"));
+		Assert.assertNull(summaries.getSummary(method));
+	}
+
+	@Test
+	public void testLibraryFingerprint() throws IOException {
+		String fingerprint = LibrarySummaries.fingerprint(libraryDir);
+		Assert.assertEquals(fingerprint, LibrarySummaries.fingerprint(libraryDir));
+
+		LibrarySummaries summaries = new LibrarySummaries(null);
+		summaries.addSummary(summary("this|" + field.getSignature()));
+		summaries.addLibraryFingerprint(fingerprint);
+		Assert.assertNotNull(summaries.getSummary(method));
+
+		// Summaries of a different version of the library are not used
+		writeFile(new File(libraryDir, "lib/Box.class"), new byte[] { 4, 5, 6 });
+		Assert.assertFalse(fingerprint.equals(LibrarySummaries.fingerprint(libraryDir)));
+		summaries = new LibrarySummaries(null);
+		summaries.addSummary(summary("this|" + field.getSignature()));
+		summaries.addLibraryFingerprint(fingerprint);
+		Assert.assertNull(summaries.getSummary(method));
+	}
+}
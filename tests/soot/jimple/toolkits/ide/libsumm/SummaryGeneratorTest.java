@@ -0,0 +1,173 @@
+package soot.jimple.toolkits.ide.libsumm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Local;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+
+public class SummaryGeneratorTest {
+
+	private SootClass box;
+	private RefType object;
+	private SootField f;
+	private SootField s;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		SootClass objectClass = new SootClass("java.lang.Object", Modifier.PUBLIC);
+		Scene.v().addClass(objectClass);
+		objectClass.setResolvingLevel(SootClass.BODIES);
+		object = objectClass.getType();
+
+		box = new SootClass("lib.Box", Modifier.PUBLIC | Modifier.FINAL);
+		box.setSuperclass(objectClass);
+		Scene.v().addClass(box);
+		box.setResolvingLevel(SootClass.BODIES);
+		f = new SootField("f", object);
+		box.addField(f);
+		s = new SootField("s", object, Modifier.STATIC);
+		box.addField(s);
+	}
+
+	/** Adds a static method to Box whose body is built by the given builder. */
+	private SootMethod method(String name, List<Type> params, Type ret, BodyBuilder builder) {
+		SootMethod m = new SootMethod(name, params, ret, Modifier.PUBLIC | Modifier.STATIC);
+		box.addMethod(m);
+		JimpleBody b = Jimple.v().newBody(m);
+		Local[] locals = new Local[params.size()];
+		for (int i = 0; i < params.size(); i++) {
+			locals[i] = Jimple.v().newLocal("p" + i, params.get(i));
+			b.getLocals().add(locals[i]);
+			b.getUnits().add(Jimple.v().newIdentityStmt(locals[i],
+					Jimple.v().newParameterRef(params.get(i), i)));
+		}
+		builder.build(b, locals);
+		m.setActiveBody(b);
+		return m;
+	}
+
+	private interface BodyBuilder {
+		void build(JimpleBody b, Local[] params);
+	}
+
+	private static Local local(JimpleBody b, String name, Type type) {
+		Local l = Jimple.v().newLocal(name, type);
+		b.getLocals().add(l);
+		return l;
+	}
+
+	private static SummaryFlow flow(String source, String target) {
+		return new SummaryFlow(SummaryLocation.parse(source), SummaryLocation.parse(target));
+	}
+
+	private static Set<SummaryFlow> flows(SummaryFlow... flows) {
+		return new HashSet<SummaryFlow>(Arrays.asList(flows));
+	}
+
+	private SootMethod getter() {
+		return method("get", Collections.<Type> singletonList(box.getType()), object, new BodyBuilder() {
+			public void build(JimpleBody b, Local[] p) {
+				Local v = local(b, "v", object);
+				b.getUnits().add(Jimple.v().newAssignStmt(v,
+						Jimple.v().newInstanceFieldRef(p[0], f.makeRef())));
+				b.getUnits().add(Jimple.v().newReturnStmt(v));
+			}
+		});
+	}
+
+	@Test
+	public void testFieldAccesses() {
+		SootMethod set = method("set", Arrays.<Type> asList(box.getType(), object), VoidType.v(),
+				new BodyBuilder() {
+					public void build(JimpleBody b, Local[] p) {
+						b.getUnits().add(Jimple.v().newAssignStmt(
+								Jimple.v().newInstanceFieldRef(p[0], f.makeRef()), p[1]));
+						b.getUnits().add(Jimple.v().newAssignStmt(
+								Jimple.v().newStaticFieldRef(s.makeRef()), p[1]));
+						b.getUnits().add(Jimple.v().newReturnVoidStmt());
+					}
+				});
+		SummaryGenerator generator = new SummaryGenerator();
+		Assert.assertEquals(flows(flow("param1", "param0|" + f.getSignature()),
+				flow("param1", "static:" + s.getSignature())),
+				generator.summarize(set).getFlows());
+		Assert.assertEquals(flows(flow("param0|" + f.getSignature(), "return")),
+				generator.summarize(getter()).getFlows());
+		Assert.assertEquals(2, generator.getSummaries().size());
+	}
+
+	@Test
+	public void testCalleesAndAllocations() {
+		final SootMethod get = getter();
+		// Box make(Object) { Box b = new Box(); b.f = p0; return b; }
+		final SootMethod make = method("make", Collections.<Type> singletonList(object), box.getType(),
+				new BodyBuilder() {
+					public void build(JimpleBody b, Local[] p) {
+						Local r = local(b, "r", box.getType());
+						b.getUnits().add(Jimple.v().newAssignStmt(r, Jimple.v().newNewExpr(box.getType())));
+						b.getUnits().add(Jimple.v().newAssignStmt(
+								Jimple.v().newInstanceFieldRef(r, f.makeRef()), p[0]));
+						b.getUnits().add(Jimple.v().newReturnStmt(r));
+					}
+				});
+		// Object roundTrip(Object) { return get(make(p0)); }
+		SootMethod roundTrip = method("roundTrip", Collections.<Type> singletonList(object), object,
+				new BodyBuilder() {
+					public void build(JimpleBody b, Local[] p) {
+						Local r = local(b, "r", box.getType());
+						Local v = local(b, "v", object);
+						b.getUnits().add(Jimple.v().newAssignStmt(r, Jimple.v().newStaticInvokeExpr(
+								make.makeRef(), Collections.<Value> singletonList(p[0]))));
+						b.getUnits().add(Jimple.v().newAssignStmt(v, Jimple.v().newStaticInvokeExpr(
+								get.makeRef(), Collections.<Value> singletonList(r))));
+						b.getUnits().add(Jimple.v().newReturnStmt(v));
+					}
+				});
+
+		SummaryGenerator generator = new SummaryGenerator();
+		Assert.assertEquals(flows(flow("alloc:lib.Box", "return"),
+				flow("param0", "return|" + f.getSignature())),
+				generator.summarize(make).getFlows());
+		Assert.assertEquals(flows(flow("param0", "return")),
+				generator.summarize(roundTrip).getFlows());
+	}
+
+	@Test
+	public void testRecursion() {
+		SootMethod rec = new SootMethod("rec", Collections.<Type> singletonList(object), object,
+				Modifier.PUBLIC | Modifier.STATIC);
+		box.addMethod(rec);
+		JimpleBody b = Jimple.v().newBody(rec);
+		Local p = local(b, "p", object);
+		Local v = local(b, "v", object);
+		b.getUnits().add(Jimple.v().newIdentityStmt(p, Jimple.v().newParameterRef(object, 0)));
+		b.getUnits().add(Jimple.v().newAssignStmt(v, Jimple.v().newStaticInvokeExpr(
+				rec.makeRef(), Collections.<Value> singletonList(p))));
+		b.getUnits().add(Jimple.v().newReturnStmt(v));
+		rec.setActiveBody(b);
+
+		SummaryGenerator generator = new SummaryGenerator();
+		Assert.assertNull(generator.summarize(rec));
+		Assert.assertTrue(generator.getSummaries().isEmpty());
+	}
+}
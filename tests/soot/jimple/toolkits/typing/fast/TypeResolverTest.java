@@ -0,0 +1,216 @@
+package soot.jimple.toolkits.typing.fast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.ArrayType;
+import soot.FastHierarchy;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.UnknownType;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.Stmt;
+import soot.options.Options;
+
+public class TypeResolverTest {
+
+	/** The kinds of bodies to type, see {@link #newBody(int)}. */
+	private static final int MERGE_INTERFACES = 0, MERGE_SUBCLASSES = 1,
+			MERGE_ARRAYS = 2, COPIES = 3, BODY_COUNT = 4;
+
+	private SootClass main;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		// The throw analysis needs the basic classes, phantom ones will do
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_soot_classpath(System.getProperty("java.io.tmpdir"));
+		Scene.v().loadNecessaryClasses();
+		SootClass object = Scene.v().getSootClass("java.lang.Object");
+		SootClass i = newClass("I", Modifier.INTERFACE, object);
+		SootClass j = newClass("J", Modifier.INTERFACE, object);
+		SootClass a = newClass("A", 0, object, i, j);
+		newClass("B", 0, object, i, j);
+		newClass("C", 0, a);
+		newClass("D", 0, a);
+		main = newClass("Main", 0, object);
+		for (String name : new String[] { "useI", "useJ" }) {
+			main.addMethod(new SootMethod(name, Collections.<Type> singletonList(
+					RefType.v(name.substring(3))), VoidType.v(), Modifier.PUBLIC | Modifier.STATIC));
+		}
+	}
+
+	private static SootClass newClass(String name, int modifiers, SootClass superclass,
+			SootClass... interfaces) {
+		if ((modifiers & Modifier.INTERFACE) != 0)
+			modifiers |= Modifier.ABSTRACT;
+		SootClass c = new SootClass(name, Modifier.PUBLIC | modifiers);
+		Scene.v().addClass(c);
+		c.setResolvingLevel(SootClass.BODIES);
+		c.setSuperclass(superclass);
+		for (SootClass i : interfaces)
+			c.addInterface(i);
+		return c;
+	}
+
+	/**
+	 * Builds a new body with untyped locals, in which x holds an object of
+	 * one of two types depending on the parameter, and is then passed to
+	 * useI(I).
+	 */
+	private JimpleBody newBody(int kind) {
+		Jimple jimple = Jimple.v();
+		SootMethod m = new SootMethod("m" + main.getMethodCount(), Collections.<Type> singletonList(IntType.v()),
+				VoidType.v(), Modifier.PUBLIC | Modifier.STATIC);
+		main.addMethod(m);
+		JimpleBody body = jimple.newBody(m);
+		m.setActiveBody(body);
+		Local p = jimple.newLocal("p", UnknownType.v());
+		Local x = jimple.newLocal("x", UnknownType.v());
+		Local y = jimple.newLocal("y", UnknownType.v());
+		body.getLocals().addAll(Arrays.asList(p, x, y));
+
+		Stmt ret = jimple.newReturnVoidStmt();
+		Stmt second;
+		Stmt first;
+		Local use = x;
+		switch (kind) {
+		case MERGE_INTERFACES:
+			first = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("A")));
+			second = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("B")));
+			break;
+		case MERGE_SUBCLASSES:
+			first = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("C")));
+			second = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("D")));
+			break;
+		case MERGE_ARRAYS:
+			first = jimple.newAssignStmt(x, jimple.newNewArrayExpr(RefType.v("A"), IntConstant.v(1)));
+			second = jimple.newAssignStmt(x, jimple.newNewArrayExpr(RefType.v("B"), IntConstant.v(1)));
+			use = y;
+			break;
+		case COPIES:
+			first = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("C")));
+			second = jimple.newAssignStmt(x, jimple.newNewExpr(RefType.v("B")));
+			break;
+		default:
+			throw new IllegalArgumentException();
+		}
+		body.getUnits().add(jimple.newIdentityStmt(p, jimple.newParameterRef(IntType.v(), 0)));
+		body.getUnits().add(jimple.newIfStmt(jimple.newGtExpr(p, IntConstant.v(0)), second));
+		body.getUnits().add(first);
+		Stmt join = jimple.newNopStmt();
+		body.getUnits().add(jimple.newGotoStmt(join));
+		body.getUnits().add(second);
+		body.getUnits().add(join);
+		if (kind == MERGE_ARRAYS)
+			body.getUnits().add(jimple.newAssignStmt(y, jimple.newArrayRef(x, IntConstant.v(0))));
+		else if (kind == COPIES)
+			body.getUnits().add(jimple.newAssignStmt(y, x));
+		body.getUnits().add(jimple.newInvokeStmt(jimple.newStaticInvokeExpr(
+				main.getMethodByName("useI").makeRef(), use)));
+		if (kind == COPIES)
+			body.getUnits().add(jimple.newInvokeStmt(jimple.newStaticInvokeExpr(
+					main.getMethodByName("useJ").makeRef(), y)));
+		body.getUnits().add(ret);
+		return body;
+	}
+
+	/**
+	 * Types a new body of the given kind and returns the types of its locals
+	 * and the number of its statements.
+	 */
+	private Map<String, String> type(int kind) {
+		JimpleBody body = newBody(kind);
+		new TypeResolver(body).inferTypes();
+		Map<String, String> types = new TreeMap<String, String>();
+		int temps = 0;
+		for (Local l : body.getLocals()) {
+			// locals for the casts the resolver inserted have random names
+			String name = l.getName().startsWith("tmp$") ? "tmp" + temps++ : l.getName();
+			types.put(name, l.getType().toString());
+		}
+		types.put("units", Integer.toString(body.getUnits().size()));
+		return types;
+	}
+
+	@Test
+	public void testWarmCacheMatchesColdCache() {
+		// Every kind typed in a fresh scene, which starts with an empty cache
+		List<Map<String, String>> cold = new ArrayList<Map<String, String>>();
+		for (int kind = 0; kind < BODY_COUNT; kind++) {
+			setUp();
+			cold.add(type(kind));
+		}
+
+		// All kinds typed after the cache was filled by typing all of them
+		setUp();
+		for (int kind = 0; kind < BODY_COUNT; kind++)
+			type(kind);
+		for (int kind = BODY_COUNT - 1; kind >= 0; kind--)
+			Assert.assertEquals("kind " + kind, cold.get(kind), type(kind));
+
+		Assert.assertEquals("I", cold.get(MERGE_INTERFACES).get("x"));
+		Assert.assertEquals("A", cold.get(MERGE_SUBCLASSES).get("x"));
+		Assert.assertEquals("I", cold.get(MERGE_ARRAYS).get("y"));
+		Assert.assertTrue(cold.get(MERGE_ARRAYS).get("x").endsWith("[]"));
+		Assert.assertEquals("int", cold.get(COPIES).get("p"));
+	}
+
+	@Test
+	public void testCacheSurvivesAcrossBodies() {
+		RefType c = RefType.v("C"), d = RefType.v("D");
+		Collection<Type> lcas = BytecodeHierarchy.lcas_(c, d);
+		int count = Scene.v().getHierarchyModificationCount();
+		// Typing bodies neither changes the hierarchy nor drops the cache
+		for (int i = 0; i < 3; i++)
+			for (int kind = 0; kind < BODY_COUNT; kind++)
+				type(kind);
+		Assert.assertEquals(count, Scene.v().getHierarchyModificationCount());
+		Assert.assertSame(lcas, BytecodeHierarchy.lcas_(c, d));
+
+		// A new scene starts with an empty cache
+		setUp();
+		Assert.assertNotSame(lcas, BytecodeHierarchy.lcas_(RefType.v("C"), RefType.v("D")));
+	}
+
+	@Test
+	public void testLcasMatchAfterHierarchyChange() {
+		RefType c = RefType.v("C"), d = RefType.v("D");
+		Assert.assertEquals(Collections.singletonList(RefType.v("A")),
+				BytecodeHierarchy.lcas_(c, d));
+		Assert.assertEquals("A", type(MERGE_SUBCLASSES).get("x"));
+
+		// D no longer extends A, so C and D only share the interfaces
+		Scene.v().getSootClass("D").setSuperclass(Scene.v().getSootClass("B"));
+		Scene.v().setFastHierarchy(new FastHierarchy());
+		Assert.assertEquals(new HashSet<Type>(Arrays.asList(RefType.v("I"), RefType.v("J"))),
+				new HashSet<Type>(BytecodeHierarchy.lcas_(c, d)));
+		Assert.assertEquals("I", type(MERGE_SUBCLASSES).get("x"));
+
+		// Repeated queries are answered from the cache
+		Assert.assertSame(BytecodeHierarchy.lcas_(c, d), BytecodeHierarchy.lcas_(c, d));
+		Assert.assertTrue(new BytecodeHierarchy().lcas(ArrayType.v(c, 1),
+				ArrayType.v(d, 1)).contains(ArrayType.v(RefType.v("J"), 1)));
+	}
+}
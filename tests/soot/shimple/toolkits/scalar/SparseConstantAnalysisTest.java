@@ -0,0 +1,137 @@
+package soot.shimple.toolkits.scalar;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.Constant;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.options.Options;
+import soot.shimple.Shimple;
+import soot.shimple.ShimpleBody;
+import soot.shimple.toolkits.scalar.SEvaluator.BottomConstant;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+public class SparseConstantAnalysisTest {
+
+	private SootMethod method;
+
+	@Before
+	public void setUp() {
+		G.reset();
+		// The throw analysis needs the basic classes, phantom ones will do
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_soot_classpath(System.getProperty("java.io.tmpdir"));
+		Scene.v().loadNecessaryClasses();
+		SootClass object = Scene.v().getSootClass("java.lang.Object");
+		SootClass sc = new SootClass("Foo", Modifier.PUBLIC);
+		sc.setSuperclass(object);
+		Scene.v().addClass(sc);
+		sc.setResolvingLevel(SootClass.BODIES);
+		method = new SootMethod("m", Collections.<Type> singletonList(IntType.v()),
+				IntType.v(), Modifier.PUBLIC | Modifier.STATIC);
+		sc.addMethod(method);
+	}
+
+	/**
+	 * Builds a body in which b is 3, c is 5 on both branches, e is 1 or 2,
+	 * and d = c is returned.
+	 */
+	private JimpleBody newBody() {
+		Jimple j = Jimple.v();
+		JimpleBody body = j.newBody(method);
+		method.setActiveBody(body);
+		Map<String, Local> locals = new HashMap<String, Local>();
+		for (String name : new String[] { "p", "a", "b", "c", "d", "e", "f" }) {
+			Local l = j.newLocal(name, IntType.v());
+			body.getLocals().add(l);
+			locals.put(name, l);
+		}
+		Local p = locals.get("p"), a = locals.get("a"), b = locals.get("b"),
+				c = locals.get("c"), d = locals.get("d"), e = locals.get("e"),
+				f = locals.get("f");
+
+		Stmt c2 = j.newAssignStmt(c, IntConstant.v(5));
+		Stmt useC = j.newAssignStmt(d, c);
+		Stmt e2 = j.newAssignStmt(e, IntConstant.v(2));
+		Stmt useE = j.newAssignStmt(f, e);
+		body.getUnits().add(j.newIdentityStmt(p, j.newParameterRef(IntType.v(), 0)));
+		body.getUnits().add(j.newAssignStmt(a, IntConstant.v(1)));
+		body.getUnits().add(j.newAssignStmt(b, j.newAddExpr(a, IntConstant.v(2))));
+		body.getUnits().add(j.newIfStmt(j.newGtExpr(p, IntConstant.v(0)), c2));
+		body.getUnits().add(j.newAssignStmt(c, IntConstant.v(5)));
+		body.getUnits().add(j.newGotoStmt(useC));
+		body.getUnits().add(c2);
+		body.getUnits().add(useC);
+		body.getUnits().add(j.newIfStmt(j.newGtExpr(p, IntConstant.v(1)), e2));
+		body.getUnits().add(j.newAssignStmt(e, IntConstant.v(1)));
+		body.getUnits().add(j.newGotoStmt(useE));
+		body.getUnits().add(e2);
+		body.getUnits().add(useE);
+		body.getUnits().add(j.newReturnStmt(d));
+		return body;
+	}
+
+	private static Local getLocal(JimpleBody body, String name) {
+		for (Local l : body.getLocals())
+			if (l.getName().equals(name))
+				return l;
+		throw new AssertionError("no local " + name);
+	}
+
+	@Test
+	public void testJimple() {
+		JimpleBody body = newBody();
+		SparseConstantAnalysis analysis = new SparseConstantAnalysis(body);
+		Assert.assertEquals(BottomConstant.v(), analysis.getValueOf(getLocal(body, "p")));
+		Assert.assertEquals(IntConstant.v(1), analysis.getValueOf(getLocal(body, "a")));
+		Assert.assertEquals(IntConstant.v(3), analysis.getValueOf(getLocal(body, "b")));
+		Assert.assertEquals(IntConstant.v(5), analysis.getValueOf(getLocal(body, "c")));
+		Assert.assertEquals(IntConstant.v(5), analysis.getValueOf(getLocal(body, "d")));
+		Assert.assertEquals(BottomConstant.v(), analysis.getValueOf(getLocal(body, "e")));
+		Assert.assertEquals(BottomConstant.v(), analysis.getValueOf(getLocal(body, "f")));
+	}
+
+	@Test
+	public void testShimpleMatchesConditionalAnalysis() {
+		ShimpleBody sb = Shimple.v().newBody(newBody());
+		Map<Local, Constant> sparse = new SparseConstantAnalysis(sb).getResults();
+		Map<Local, Constant> conditional = new SCPFAnalysis(new ExceptionalUnitGraph(sb)).getResults();
+		// No branch condition is constant, so both find the same constants
+		for (Local l : sb.getLocals()) {
+			Constant expected = conditional.get(l);
+			if (expected == null)
+				expected = SEvaluator.TopConstant.v();
+			Assert.assertEquals(l.getName(), expected, sparse.get(l));
+		}
+		Assert.assertTrue(sparse.containsValue(IntConstant.v(5)));
+		Assert.assertTrue(sparse.containsValue(BottomConstant.v()));
+	}
+
+	@Test
+	public void testSparseOption() {
+		ShimpleBody sb = Shimple.v().newBody(newBody());
+		PhaseOptions.v().setPhaseOption("sop.cpf", "sparse:true");
+		SConstantPropagatorAndFolder.v().transform(sb, "sop.cpf");
+		Unit last = sb.getUnits().getLast();
+		Assert.assertEquals(IntConstant.v(5), ((ReturnStmt) last).getOp());
+	}
+}
@@ -0,0 +1,97 @@
+package soot.toDex;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jf.dexlib2.DexFileFactory;
+import org.jf.dexlib2.Opcodes;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.jf.dexlib2.iface.ClassDef;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+import soot.options.Options;
+
+public class DexPrinterTest {
+
+	private static final int CLASSES = 70, METHODS_PER_CLASS = 1000;
+
+	private File outputDir;
+
+	@Before
+	public void setUp() throws Exception {
+		outputDir = File.createTempFile("dex", "");
+		outputDir.delete();
+		outputDir.mkdir();
+		G.reset();
+		Options.v().set_allow_phantom_refs(true);
+		Options.v().set_output_dir(outputDir.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		for (File f : outputDir.listFiles())
+			f.delete();
+		outputDir.delete();
+	}
+
+	private List<String> readClassNames(String fileName) throws Exception {
+		DexBackedDexFile dex = DexFileFactory.loadDexFile(new File(outputDir, fileName),
+				Opcodes.forApi(Scene.v().getAndroidAPIVersion()));
+		// Each method of a dex file is referenced through its 16-bit index
+		Assert.assertTrue(dex.getMethodCount() <= 0x10000);
+		List<String> names = new ArrayList<String>();
+		for (ClassDef c : dex.getClasses())
+			names.add(c.getType());
+		Collections.sort(names);
+		return names;
+	}
+
+	@Test
+	public void testSplitIntoDexFiles() throws Exception {
+		// More methods than fit into a single dex file
+		SootClass object = Scene.v().getSootClass("java.lang.Object");
+		DexPrinter printer = new DexPrinter();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < CLASSES; i++) {
+			SootClass c = new SootClass("p.C" + i, Modifier.PUBLIC | Modifier.ABSTRACT);
+			Scene.v().addClass(c);
+			c.setResolvingLevel(SootClass.BODIES);
+			c.setSuperclass(object);
+			for (int j = 0; j < METHODS_PER_CLASS; j++)
+				c.addMethod(new SootMethod("m" + j, Collections.<Type> emptyList(), VoidType.v(),
+						Modifier.PUBLIC | Modifier.ABSTRACT));
+			printer.add(c);
+			expected.add("Lp/C" + i + ";");
+		}
+		printer.print();
+
+		Assert.assertTrue(new File(outputDir, "classes.dex").isFile());
+		Assert.assertTrue(new File(outputDir, "classes2.dex").isFile());
+		Assert.assertFalse(new File(outputDir, "classes3.dex").exists());
+		List<String> first = readClassNames("classes.dex");
+		List<String> second = readClassNames("classes2.dex");
+		Assert.assertFalse(first.isEmpty());
+		Assert.assertFalse(second.isEmpty());
+
+		// Each class is in exactly one file, and the first ones go to classes.dex
+		List<String> all = new ArrayList<String>(first);
+		all.addAll(second);
+		Collections.sort(all);
+		Collections.sort(expected);
+		Assert.assertEquals(expected, all);
+		Assert.assertTrue(first.contains("Lp/C0;"));
+		Assert.assertTrue(second.contains("Lp/C" + (CLASSES - 1) + ";"));
+	}
+}
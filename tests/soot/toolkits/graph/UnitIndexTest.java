@@ -0,0 +1,40 @@
+package soot.toolkits.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.Unit;
+import soot.jimple.internal.JNopStmt;
+
+public class UnitIndexTest {
+
+	private static List<Unit> units(int n) {
+		List<Unit> ret = new ArrayList<Unit>();
+		for (int i = 0; i < n; i++)
+			ret.add(new JNopStmt());
+		return ret;
+	}
+
+	@Test
+	public void testIndex() {
+		List<Unit> units = units(100);
+		UnitIndex index = new UnitIndex(units);
+		Assert.assertEquals(100, index.size());
+		for (int i = 0; i < units.size(); i++) {
+			Assert.assertEquals(i, index.indexOf(units.get(i)));
+			Assert.assertSame(units.get(i), index.get(i));
+		}
+		Assert.assertEquals(-1, index.indexOf(new JNopStmt()));
+		Assert.assertEquals(-1, index.indexOf(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateUnit() {
+		Unit u = new JNopStmt();
+		new UnitIndex(Arrays.asList(u, u));
+	}
+}
@@ -0,0 +1,94 @@
+package soot.util;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.G;
+import soot.Modifier;
+import soot.PhaseEvent;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.VoidType;
+
+public class PhaseStatisticsTest {
+
+	private static List<SootMethod> methods(int n) {
+		G.reset();
+		SootClass c = new SootClass("A", Modifier.PUBLIC);
+		Scene.v().addClass(c);
+		List<SootMethod> ret = new ArrayList<SootMethod>();
+		for (int i = 0; i < n; i++) {
+			SootMethod m = new SootMethod("m" + i, Collections.<Type> emptyList(), VoidType.v());
+			c.addMethod(m);
+			ret.add(m);
+		}
+		return ret;
+	}
+
+	private static PhaseEvent event(String phase, SootMethod m, long wallTime) {
+		return new PhaseEvent(phase, PhaseEvent.Kind.TRANSFORM, m, 1, "main", 0, wallTime,
+				wallTime, -1, 1);
+	}
+
+	@Test
+	public void testConcurrentEvents() throws InterruptedException {
+		final List<SootMethod> methods = methods(50);
+		final PhaseStatistics stats = new PhaseStatistics();
+		final String[] phases = { "jtp.a", "jop.b" };
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int round = 0; round < 100; round++)
+						for (SootMethod m : methods)
+							for (String phase : phases)
+								stats.phaseFinished(event(phase, m, 10));
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+
+		List<PhaseStatistics.Stats> byPhase = stats.getPhases();
+		Assert.assertEquals(2, byPhase.size());
+		for (PhaseStatistics.Stats s : byPhase) {
+			Assert.assertEquals(4 * 100 * 50, s.getCount());
+			Assert.assertEquals(4 * 100 * 50 * 10, s.getWallTime());
+			Assert.assertEquals(-1, s.getAllocatedBytes());
+		}
+		List<PhaseStatistics.Stats> byMethod = stats.getMethods(Integer.MAX_VALUE);
+		Assert.assertEquals(50, byMethod.size());
+		Assert.assertEquals(4 * 100 * 2, byMethod.get(0).getCount());
+		Assert.assertEquals(100, stats.getHotspots(Integer.MAX_VALUE).size());
+	}
+
+	@Test
+	public void testNamesAndOrder() throws Exception {
+		List<SootMethod> methods = methods(2);
+		PhaseStatistics stats = new PhaseStatistics();
+		stats.phaseFinished(event("jtp.a", methods.get(0), 5));
+		stats.phaseFinished(event("jtp.a", methods.get(1), 20));
+		stats.phaseFinished(event("jop.b", methods.get(1), 1));
+
+		List<PhaseStatistics.Stats> hotspots = stats.getHotspots(2);
+		Assert.assertEquals(2, hotspots.size());
+		Assert.assertEquals("jtp.a <A: void m1()>", hotspots.get(0).getName());
+		Assert.assertEquals("jtp.a", hotspots.get(0).getPhaseName());
+		Assert.assertSame(methods.get(1), hotspots.get(0).getMethod());
+		Assert.assertEquals("<A: void m1()>", stats.getMethods(1).get(0).getName());
+		Assert.assertEquals("jtp.a", stats.getPhases().get(0).getName());
+
+		StringWriter json = new StringWriter();
+		stats.writeJSON(json, 1);
+		Assert.assertTrue(json.toString().contains(
+				"\"phase\": \"jtp.a\", \"method\": \"<A: void m1()>\""));
+	}
+}
@@ -0,0 +1,72 @@
+package soot.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringNumbererTest {
+
+	private static final String[] STRINGS = { "", "a", "<java.lang.Object: void <init>()>",
+			"\u0000", "nul\u0000inside", "gr\u00fc\u00dfe", "\u07ff\u0800", "\u4e16\u754c", "\uffff",
+			// a surrogate pair, and unpaired surrogates in both orders
+			"\ud83d\ude00", "x\ud83dy", "\ude00\ud83d", "emoji \ud83d\ude00 and text" };
+
+	@Test
+	public void testRoundTrip() {
+		StringNumberer numberer = new StringNumberer();
+		List<NumberedString> numbered = new ArrayList<NumberedString>();
+		for (String s : STRINGS)
+			numbered.add(numberer.findOrAdd(s));
+		Set<Integer> numbers = new HashSet<Integer>();
+		for (int i = 0; i < STRINGS.length; i++) {
+			NumberedString ns = numbered.get(i);
+			Assert.assertEquals(STRINGS[i], ns.getString());
+			Assert.assertEquals(STRINGS[i], ns.toString());
+			Assert.assertTrue(numbers.add(ns.getNumber()));
+			Assert.assertSame(ns, numberer.findOrAdd(STRINGS[i]));
+			Assert.assertSame(ns, numberer.findOrAdd(new StringBuilder(STRINGS[i])));
+			Assert.assertSame(ns, numberer.get(ns.getNumber()));
+		}
+		Assert.assertEquals(STRINGS.length, numberer.size());
+	}
+
+	@Test
+	public void testNumberedStringConstructor() {
+		for (String s : STRINGS) {
+			NumberedString ns = new NumberedString(s);
+			ns.setNumber(1);
+			Assert.assertEquals(s, ns.getString());
+		}
+	}
+
+	@Test
+	public void testManyStrings() {
+		// Enough strings to grow the table and to fill several arena chunks,
+		// and some that are too large for a chunk
+		StringNumberer numberer = new StringNumberer();
+		Random rnd = new Random(7);
+		List<String> strings = new ArrayList<String>();
+		Set<String> distinct = new HashSet<String>();
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int len = i % 1000 == 0 ? 20000 : rnd.nextInt(30);
+			for (int j = 0; j < len; j++)
+				sb.append((char) (rnd.nextBoolean() ? 'a' + rnd.nextInt(26) : rnd.nextInt(0x10000)));
+			strings.add(sb.toString());
+			distinct.add(sb.toString());
+		}
+		List<NumberedString> numbered = new ArrayList<NumberedString>();
+		for (String s : strings)
+			numbered.add(numberer.findOrAdd(s));
+		Assert.assertEquals(distinct.size(), numberer.size());
+		for (int i = 0; i < strings.size(); i++) {
+			Assert.assertEquals(strings.get(i), numbered.get(i).getString());
+			Assert.assertSame(numbered.get(i), numberer.findOrAdd(strings.get(i)));
+		}
+	}
+}
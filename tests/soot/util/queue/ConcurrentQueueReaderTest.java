@@ -0,0 +1,149 @@
+package soot.util.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentQueueReaderTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int PER_PRODUCER = 50000;
+
+	@Test
+	public void testSingleThread() {
+		ConcurrentChunkedQueue<Integer> q = new ConcurrentChunkedQueue<Integer>();
+		ConcurrentQueueReader<Integer> reader = q.reader();
+		Assert.assertFalse(reader.hasNext());
+		// Enough objects to span several chunks, and a null
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 200; i++)
+			expected.add(i == 100 ? null : i);
+		q.addAll(expected.subList(0, 150));
+		ConcurrentQueueReader<Integer> late = q.reader();
+		for (Integer i : expected.subList(150, 200))
+			q.add(i);
+
+		ConcurrentQueueReader<Integer> clone = reader.clone();
+		List<Integer> read = new ArrayList<Integer>();
+		while (reader.hasNext())
+			read.add(reader.next());
+		Assert.assertEquals(expected, read);
+
+		Integer[] buffer = new Integer[70];
+		Assert.assertEquals(70, clone.drainTo(buffer));
+		Assert.assertEquals(expected.subList(0, 70), Arrays.asList(buffer));
+		Assert.assertEquals(20, clone.drainTo(buffer, 50, 20));
+		Assert.assertEquals(expected.subList(70, 90), Arrays.asList(buffer).subList(50, 70));
+
+		// A reader only sees objects added after its creation
+		read.clear();
+		while (late.hasNext())
+			read.add(late.next());
+		Assert.assertEquals(expected.subList(150, 200), read);
+	}
+
+	/**
+	 * Reads until the given number of objects was received, and checks that
+	 * the objects of every producer arrive in the order they were added.
+	 */
+	private static Callable<Integer> consumer(final ConcurrentQueueReader<Integer> reader,
+			final boolean batched, final CountDownLatch start) {
+		return new Callable<Integer>() {
+			public Integer call() throws Exception {
+				start.await();
+				int[] next = new int[PRODUCERS];
+				int received = 0;
+				int nulls = 0;
+				Integer[] buffer = new Integer[37];
+				while (received < PRODUCERS * PER_PRODUCER) {
+					int n;
+					if (batched) {
+						n = reader.drainTo(buffer);
+					} else if (reader.hasNext()) {
+						buffer[0] = reader.next();
+						n = 1;
+					} else {
+						n = 0;
+					}
+					if (n == 0) {
+						Thread.yield();
+						continue;
+					}
+					for (int k = 0; k < n; k++) {
+						Integer value = buffer[k];
+						received++;
+						if (value == null) {
+							nulls++;
+							continue;
+						}
+						int producer = value / PER_PRODUCER;
+						Assert.assertEquals(next[producer], value % PER_PRODUCER);
+						next[producer]++;
+						// every 1000th object is replaced by a null
+						if (next[producer] % 1000 == 999)
+							next[producer]++;
+					}
+				}
+				Assert.assertFalse(reader.hasNext());
+				return nulls;
+			}
+		};
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final ConcurrentChunkedQueue<Integer> q = new ConcurrentChunkedQueue<Integer>();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS + 3);
+		try {
+			List<Future<Integer>> consumers = new ArrayList<Future<Integer>>();
+			consumers.add(executor.submit(consumer(q.reader(), false, start)));
+			consumers.add(executor.submit(consumer(q.reader(), true, start)));
+			ConcurrentQueueReader<Integer> shared = q.reader();
+			List<Future<?>> producers = new ArrayList<Future<?>>();
+			for (int p = 0; p < PRODUCERS; p++) {
+				final int base = p * PER_PRODUCER;
+				producers.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						start.await();
+						// Groups of ten objects, added one by one and in
+						// batches by turns
+						List<Integer> batch = new ArrayList<Integer>();
+						for (int i = 0; i < PER_PRODUCER; i++) {
+							Integer value = i % 1000 == 999 ? null : base + i;
+							if ((i / 10) % 2 == 0) {
+								q.add(value);
+							} else {
+								batch.add(value);
+								if (batch.size() == 10) {
+									q.addAll(batch);
+									batch.clear();
+								}
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			// A clone handed to another thread while the queue is being written
+			consumers.add(executor.submit(consumer(shared.clone(), true, start)));
+			for (Future<?> f : producers)
+				f.get(60, TimeUnit.SECONDS);
+			for (Future<Integer> f : consumers)
+				Assert.assertEquals(PRODUCERS * (PER_PRODUCER / 1000),
+						f.get(60, TimeUnit.SECONDS).intValue());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}